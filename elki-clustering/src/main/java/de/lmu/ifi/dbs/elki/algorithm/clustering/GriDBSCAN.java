@@ -399,7 +399,7 @@ public class GriDBSCAN<V extends NumberVector> extends AbstractDistanceBasedAlgo
      *
      * @return Total number of grid cells
      */
-    private long computeGridBaseOffsets() {
+    protected long computeGridBaseOffsets() {
       StringBuffer buf = LOG.isDebuggingFinest() ? new StringBuffer() : null;
       double[] min = domain[0], max = domain[1];
       long total = 1;
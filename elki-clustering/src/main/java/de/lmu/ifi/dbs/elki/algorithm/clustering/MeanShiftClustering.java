@@ -0,0 +1,524 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.MeanModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.EpanechnikovKernelDensityFunction;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * Parallel mean-shift clustering.
+ *
+ * In contrast to {@link NaiveMeanShiftClustering}, the mean-shift trajectories
+ * of all points are computed independently and in parallel, using range
+ * queries (and thus index structures) with the kernel bandwidth as radius.
+ * The converged modes are then merged in a single pass, using a spatial hash
+ * grid on the first coordinates: modes closer than half the bandwidth form
+ * one cluster. This assumes that the distance function is at least as large
+ * as the difference in every single coordinate, as it is the case for all
+ * Lp norms.
+ *
+ * If no bandwidth is given, it is chosen automatically using Silverman's rule
+ * of thumb, scaled to the standard deviation of the kernel. Because this rule
+ * assumes a unimodal normal distribution, it tends to oversmooth data with
+ * many clusters, so it is best seen as an upper bound for the bandwidth.
+ *
+ * <p>
+ * Reference:<br />
+ * Y. Cheng<br />
+ * Mean shift, mode seeking, and clustering<br />
+ * IEEE Transactions on Pattern Analysis and Machine Intelligence 17-8
+ * </p>
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @param <V> Vector type
+ */
+@Reference(authors = "Y. Cheng", title = "Mean shift, mode seeking, and clustering", booktitle = "IEEE Transactions on Pattern Analysis and Machine Intelligence 17-8", url = "http://dx.doi.org/10.1109/34.400568")
+public class MeanShiftClustering<V extends NumberVector> extends AbstractDistanceBasedAlgorithm<V, Clustering<MeanModel>> implements ClusteringAlgorithm<Clustering<MeanModel>> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(MeanShiftClustering.class);
+
+  /**
+   * Maximum number of iterations.
+   */
+  static final int MAXITER = 1000;
+
+  /**
+   * Number of objects processed at once by a worker.
+   */
+  private static final int BLOCKSIZE = 256;
+
+  /**
+   * Maximum number of coordinates used for the merging grid.
+   */
+  private static final int GRIDDIM = 3;
+
+  /**
+   * Density estimation kernel.
+   */
+  KernelDensityFunction kernel = EpanechnikovKernelDensityFunction.KERNEL;
+
+  /**
+   * Range of the kernel, 0 for automatic.
+   */
+  double bandwidth;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param kernel Kernel function
+   * @param range Kernel radius, 0 for automatic
+   */
+  public MeanShiftClustering(DistanceFunction<? super V> distanceFunction, KernelDensityFunction kernel, double range) {
+    super(distanceFunction);
+    this.kernel = kernel;
+    this.bandwidth = range;
+  }
+
+  /**
+   * Run the mean-shift clustering algorithm.
+   *
+   * @param database Database
+   * @param relation Data relation
+   * @return Clustering result
+   */
+  public Clustering<MeanModel> run(Database database, Relation<V> relation) {
+    final double bandwidth = this.bandwidth > 0 ? this.bandwidth : estimateBandwidth(relation, kernel);
+    if(LOG.isStatistics()) {
+      LOG.statistics(new DoubleStatistic(MeanShiftClustering.class.getName() + ".bandwidth", bandwidth));
+    }
+    final DistanceQuery<V> distq = database.getDistanceQuery(relation, getDistanceFunction());
+    final RangeQuery<V> rangeq = database.getRangeQuery(distq, bandwidth);
+    final NumberVector.Factory<V> factory = RelationUtil.getNumberVectorFactory(relation);
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+
+    // Shift all points in parallel:
+    final double[][] modes = new double[size][];
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Mean-shift", size, LOG) : null;
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    long iterations = 0;
+    try {
+      AtomicInteger next = new AtomicInteger();
+      List<Future<Long>> futures = new ArrayList<>();
+      for(int i = core.getParallelism(); i > 0; i--) {
+        futures.add(core.submit(new ShiftTask(relation, distq, rangeq, factory, ids, next, bandwidth, modes, prog)));
+      }
+      for(Future<Long> f : futures) {
+        iterations += f.get();
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+    LOG.ensureCompleted(prog);
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(MeanShiftClustering.class.getName() + ".iterations", iterations));
+    }
+    return mergeModes(distq, factory, ids, modes, bandwidth * .5);
+  }
+
+  /**
+   * Merge the converged modes into clusters, using a hash grid.
+   *
+   * @param distq Distance query
+   * @param factory Vector factory
+   * @param ids Object IDs
+   * @param modes Mode of each object, {@code null} for noise
+   * @param radius Merge radius (and grid width)
+   * @return Clustering
+   */
+  private Clustering<MeanModel> mergeModes(DistanceQuery<V> distq, NumberVector.Factory<V> factory, ArrayDBIDs ids, double[][] modes, double radius) {
+    final int size = ids.size();
+    // Cluster centers (the first mode of each cluster), members, and mode sums
+    List<V> centers = new ArrayList<>();
+    List<ArrayModifiableDBIDs> members = new ArrayList<>();
+    List<double[]> sums = new ArrayList<>();
+    ModifiableDBIDs noise = DBIDUtil.newArray();
+    Long2ObjectOpenHashMap<IntArrayList> grid = new Long2ObjectOpenHashMap<>();
+    int[] cell = null, probe = null;
+    DBIDArrayIter iter = ids.iter();
+    for(int i = 0; i < size; i++) {
+      iter.seek(i);
+      final double[] mode = modes[i];
+      if(mode == null) {
+        noise.add(iter);
+        continue;
+      }
+      if(cell == null) {
+        cell = new int[Math.min(mode.length, GRIDDIM)];
+        probe = new int[cell.length];
+      }
+      for(int d = 0; d < cell.length; d++) {
+        cell[d] = (int) Math.floor(mode[d] / radius);
+      }
+      V vec = factory.newNumberVector(mode);
+      // Find the nearest existing cluster center in the adjacent cells.
+      int best = -1;
+      double bestd = Double.POSITIVE_INFINITY;
+      final int ncells = pow3(cell.length);
+      for(int c = 0; c < ncells; c++) {
+        for(int d = 0, r = c; d < cell.length; d++, r /= 3) {
+          probe[d] = cell[d] + (r % 3) - 1;
+        }
+        IntArrayList candidates = grid.get(cellKey(probe));
+        if(candidates == null) {
+          continue;
+        }
+        for(int j = 0; j < candidates.size(); j++) {
+          final int cand = candidates.getInt(j);
+          final double dist = distq.distance(vec, centers.get(cand));
+          if(dist < bestd || (dist == bestd && best >= 0 && cand < best)) {
+            bestd = dist;
+            best = cand;
+          }
+        }
+      }
+      if(best < 0 || bestd > radius) {
+        best = centers.size();
+        centers.add(vec);
+        members.add(DBIDUtil.newArray());
+        sums.add(new double[mode.length]);
+        final long key = cellKey(cell);
+        IntArrayList list = grid.get(key);
+        if(list == null) {
+          grid.put(key, list = new IntArrayList());
+        }
+        list.add(best);
+      }
+      members.get(best).add(iter);
+      final double[] sum = sums.get(best);
+      for(int d = 0; d < mode.length; d++) {
+        sum[d] += mode[d];
+      }
+    }
+
+    List<Cluster<MeanModel>> cs = new ArrayList<>(centers.size() + 1);
+    for(int c = 0; c < centers.size(); c++) {
+      final double[] sum = sums.get(c);
+      final ArrayModifiableDBIDs cids = members.get(c);
+      for(int d = 0; d < sum.length; d++) {
+        sum[d] /= cids.size();
+      }
+      cs.add(new Cluster<>(cids, new MeanModel(sum)));
+    }
+    if(noise.size() > 0) {
+      cs.add(new Cluster<MeanModel>(noise, true));
+    }
+    return new Clustering<>("Mean-shift Clustering", "mean-shift-clustering", cs);
+  }
+
+  /**
+   * Compute 3^d.
+   *
+   * @param d Exponent
+   * @return 3^d
+   */
+  private static int pow3(int d) {
+    int r = 1;
+    for(int i = 0; i < d; i++) {
+      r *= 3;
+    }
+    return r;
+  }
+
+  /**
+   * Hash key of a grid cell. Collisions only cause additional candidates.
+   *
+   * @param cell Cell coordinates
+   * @return Key
+   */
+  private static long cellKey(int[] cell) {
+    long key = 0;
+    for(int c : cell) {
+      key = key * 0x9E3779B97F4A7C15L + c;
+    }
+    return key;
+  }
+
+  /**
+   * Estimate the kernel bandwidth using Silverman's rule of thumb, for the
+   * average standard deviation of all dimensions.
+   *
+   * @param relation Data relation
+   * @param kernel Kernel function
+   * @return Kernel radius
+   */
+  @Reference(authors = "B. W. Silverman", //
+      title = "Density Estimation for Statistics and Data Analysis", //
+      booktitle = "Monographs on Statistics and Applied Probability, Chapman and Hall")
+  public static double estimateBandwidth(Relation<? extends NumberVector> relation, KernelDensityFunction kernel) {
+    final int dim = RelationUtil.dimensionality(relation);
+    MeanVariance[] mvs = MeanVariance.newArray(dim);
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+      final NumberVector vec = relation.get(iter);
+      for(int d = 0; d < dim; d++) {
+        mvs[d].put(vec.doubleValue(d));
+      }
+    }
+    double var = 0.;
+    for(MeanVariance mv : mvs) {
+      var += mv.getSampleVariance();
+    }
+    final double sigma = Math.sqrt(var / dim);
+    final double h = Math.pow(4. / (dim + 2.), 1. / (dim + 4.)) * Math.pow(relation.size(), -1. / (dim + 4.)) * sigma;
+    // Convert to the kernel scale:
+    return h / kernel.standardDeviation();
+  }
+
+  /**
+   * Worker shifting blocks of points until convergence.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class ShiftTask implements Callable<Long> {
+    /**
+     * Data relation.
+     */
+    private Relation<V> relation;
+
+    /**
+     * Distance query.
+     */
+    private DistanceQuery<V> distq;
+
+    /**
+     * Range query.
+     */
+    private RangeQuery<V> rangeq;
+
+    /**
+     * Vector factory.
+     */
+    private NumberVector.Factory<V> factory;
+
+    /**
+     * Object IDs.
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * Next block to process.
+     */
+    private AtomicInteger next;
+
+    /**
+     * Kernel bandwidth.
+     */
+    private double bandwidth;
+
+    /**
+     * Output modes.
+     */
+    private double[][] modes;
+
+    /**
+     * Progress, may be {@code null}.
+     */
+    private FiniteProgress prog;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param distq Distance query
+     * @param rangeq Range query
+     * @param factory Vector factory
+     * @param ids Object IDs
+     * @param next Next block to process
+     * @param bandwidth Kernel bandwidth
+     * @param modes Output modes
+     * @param prog Progress, may be {@code null}.
+     */
+    ShiftTask(Relation<V> relation, DistanceQuery<V> distq, RangeQuery<V> rangeq, NumberVector.Factory<V> factory, ArrayDBIDs ids, AtomicInteger next, double bandwidth, double[][] modes, FiniteProgress prog) {
+      this.relation = relation;
+      this.distq = distq;
+      this.rangeq = rangeq;
+      this.factory = factory;
+      this.ids = ids;
+      this.next = next;
+      this.bandwidth = bandwidth;
+      this.modes = modes;
+      this.prog = prog;
+    }
+
+    @Override
+    public Long call() {
+      final int size = ids.size();
+      final int dim = RelationUtil.dimensionality(relation);
+      final double threshold = bandwidth * 1E-6;
+      final double[] sum = new double[dim];
+      DBIDArrayIter iter = ids.iter();
+      long iterations = 0;
+      for(int begin = next.getAndAdd(BLOCKSIZE); begin < size; begin = next.getAndAdd(BLOCKSIZE)) {
+        final int end = Math.min(begin + BLOCKSIZE, size);
+        for(int i = begin; i < end; i++) {
+          V position = relation.get(iter.seek(i));
+          double[] mode = null;
+          for(int j = 1; j <= MAXITER; j++, iterations++) {
+            DoubleDBIDList neigh = rangeq.getRangeForObject(position, bandwidth);
+            if(j == 1 && neigh.size() <= 1) {
+              break; // Noise: no neighbors.
+            }
+            // Compute the new position:
+            double wsum = 0.;
+            for(int d = 0; d < dim; d++) {
+              sum[d] = 0.;
+            }
+            for(DoubleDBIDListIter niter = neigh.iter(); niter.valid(); niter.advance()) {
+              final double weight = kernel.density(niter.doubleValue() / bandwidth);
+              if(weight > 0.) {
+                final NumberVector vec = relation.get(niter);
+                for(int d = 0; d < dim; d++) {
+                  sum[d] += weight * vec.doubleValue(d);
+                }
+                wsum += weight;
+              }
+            }
+            if(!(wsum > 0.)) {
+              mode = position.toArray(); // Keep the current position.
+              break;
+            }
+            mode = new double[dim];
+            for(int d = 0; d < dim; d++) {
+              mode[d] = sum[d] / wsum;
+            }
+            V newvec = factory.newNumberVector(mode);
+            final double delta = distq.distance(position, newvec);
+            position = newvec;
+            if(!(delta >= threshold)) { // Converged, or NaN.
+              break;
+            }
+          }
+          modes[i] = mode;
+          LOG.incrementProcessed(prog);
+        }
+      }
+      return iterations;
+    }
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterizer.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <V> Vector type
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractDistanceBasedAlgorithm.Parameterizer<V> {
+    /**
+     * Kernel function.
+     */
+    KernelDensityFunction kernel = EpanechnikovKernelDensityFunction.KERNEL;
+
+    /**
+     * Kernel radius.
+     */
+    double range;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      ObjectParameter<KernelDensityFunction> kernelP = new ObjectParameter<>(NaiveMeanShiftClustering.Parameterizer.KERNEL_ID, KernelDensityFunction.class, EpanechnikovKernelDensityFunction.class);
+      if(config.grab(kernelP)) {
+        kernel = kernelP.instantiateClass(config);
+      }
+      DoubleParameter rangeP = new DoubleParameter(NaiveMeanShiftClustering.Parameterizer.RANGE_ID) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+          .setOptional(true);
+      if(config.grab(rangeP)) {
+        range = rangeP.getValue();
+      }
+    }
+
+    @Override
+    protected MeanShiftClustering<V> makeInstance() {
+      return new MeanShiftClustering<>(distanceFunction, kernel, range);
+    }
+  }
+}
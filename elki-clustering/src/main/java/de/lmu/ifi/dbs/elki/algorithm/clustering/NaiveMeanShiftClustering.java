@@ -65,7 +65,8 @@ import de.lmu.ifi.dbs.elki.utilities.pairs.Pair;
  * 
  * By using range queries, the algorithm does benefit from index structures!
  * 
- * TODO: add methods to automatically choose the bandwidth?
+ * See {@link MeanShiftClustering} for a parallel implementation that can also
+ * choose the bandwidth automatically.
  * 
  * <p>
  * Reference:<br />
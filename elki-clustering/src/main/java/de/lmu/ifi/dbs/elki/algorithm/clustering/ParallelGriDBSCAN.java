@@ -0,0 +1,537 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.ClusterModel;
+import de.lmu.ifi.dbs.elki.data.model.Model;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.*;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.ProxyView;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.IntegerArrayQuickSort;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.IntegerComparator;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel version of {@link GriDBSCAN}.
+ *
+ * The data set is partitioned using the same overlapping grid as GriDBSCAN.
+ * Every object has a unique "home" cell (the cell it falls into without the
+ * epsilon overlap), and because the cells overlap by epsilon, the full
+ * epsilon-neighborhood of an object is contained in its home cell. Therefore,
+ * each object only needs to be queried within its home cell, and the cells can
+ * be processed independently on different cores.
+ *
+ * Clusters are not labeled by expansion (which would need synchronization), but
+ * core points are connected using a lock-free union-find data structure on an
+ * integer array, where roots are linked by compare-and-set. Cells are processed
+ * twice: first to determine the core points, then to link core points and to
+ * assign border points. Border points are assigned to the cluster of the
+ * nearest core point, so the result does not depend on the thread scheduling.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.composedOf Instance
+ *
+ * @param <V> the type of vector the algorithm is applied to
+ */
+@Reference(authors = "M. M. A. Patwary, D. Palsetia, A. Agrawal, W. Liao, F. Manne, A. Choudhary", //
+    title = "A new scalable parallel DBSCAN algorithm using the disjoint-set data structure", //
+    booktitle = "Proc. Int. Conf. on High Performance Computing, Networking, Storage and Analysis (SC)", //
+    url = "http://dx.doi.org/10.1109/SC.2012.9")
+public class ParallelGriDBSCAN<V extends NumberVector> extends GriDBSCAN<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelGriDBSCAN.class);
+
+  /**
+   * Constructor with parameters.
+   *
+   * @param distanceFunction Distance function
+   * @param epsilon Epsilon value
+   * @param minpts Minpts parameter
+   * @param gridwidth Grid width
+   */
+  public ParallelGriDBSCAN(DistanceFunction<? super V> distanceFunction, double epsilon, int minpts, double gridwidth) {
+    super(distanceFunction, epsilon, minpts, gridwidth);
+  }
+
+  /**
+   * Performs the DBSCAN algorithm on the given database.
+   */
+  @Override
+  public Clustering<Model> run(Relation<V> relation) {
+    final DBIDs ids = relation.getDBIDs();
+
+    // Degenerate result:
+    if(ids.size() < minpts) {
+      Clustering<Model> result = new Clustering<>("DBSCAN Clustering", "dbscan-clustering");
+      result.addToplevelCluster(new Cluster<Model>(ids, true, ClusterModel.CLUSTER));
+      return result;
+    }
+
+    double gridwidth = this.gridwidth; // local copy.
+    if(gridwidth < 2. * epsilon) {
+      LOG.warning("Invalid grid width (less than 2*epsilon, recommended 10*epsilon). Increasing grid width automatically.");
+      gridwidth = 2. * epsilon;
+    }
+    return new Instance<V>(getDistanceFunction(), epsilon, minpts, gridwidth).run(relation);
+  }
+
+  /**
+   * Instance, for a single run.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  protected static class Instance<V extends NumberVector> extends GriDBSCAN.Instance<V> {
+    /**
+     * Data relation.
+     */
+    private Relation<V> relation;
+
+    /**
+     * Map from object to its position in the arrays below.
+     */
+    private WritableIntegerDataStore offsets;
+
+    /**
+     * Core point flags.
+     */
+    private boolean[] core;
+
+    /**
+     * Nearest core point of border points, -1 otherwise.
+     */
+    private int[] border;
+
+    /**
+     * Union-find parent pointers.
+     */
+    private AtomicIntegerArray parent;
+
+    /**
+     * Grid cell keys.
+     */
+    private long[] keys;
+
+    /**
+     * Grid cell contents.
+     */
+    private ModifiableDBIDs[] contents;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceFunction Distance function
+     * @param epsilon Epsilon
+     * @param minpts MinPts
+     * @param gridwidth Grid width
+     */
+    public Instance(DistanceFunction<? super V> distanceFunction, double epsilon, int minpts, double gridwidth) {
+      super(distanceFunction, epsilon, minpts, gridwidth);
+    }
+
+    /**
+     * Performs the DBSCAN algorithm on the given database.
+     *
+     * @param relation Relation to process
+     */
+    @Override
+    public Clustering<Model> run(Relation<V> relation) {
+      this.relation = relation;
+      final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+      final int size = ids.size();
+
+      // Domain of the database
+      this.domain = RelationUtil.computeMinMax(relation);
+      this.dim = domain[0].length;
+      this.offset = new double[dim];
+      this.cells = new int[dim];
+      // Compute the grid start, and the number of cells in each dimension.
+      long numcells = computeGridBaseOffsets();
+      if(numcells > size) {
+        LOG.warning("The generated grid has more cells than data points. This may need excessive amounts of memory.");
+      }
+      else if(numcells < ParallelCore.getCore().getParallelism()) {
+        LOG.warning("There are only " + numcells + " cells. Use a smaller grid width to use all cores.");
+      }
+      buildGrid(relation, (int) numcells, offset);
+      checkGridCellSizes(size, numcells);
+      sortCells();
+
+      offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        offsets.putInt(it, it.getOffset());
+      }
+      core = new boolean[size];
+      border = new int[size];
+      parent = new AtomicIntegerArray(size);
+      for(int i = 0; i < size; i++) {
+        parent.set(i, i);
+      }
+
+      ParallelCore pcore = ParallelCore.getCore();
+      pcore.connect();
+      try {
+        runPhase(pcore, false, "Finding core points");
+        runPhase(pcore, true, "Linking core points");
+      }
+      finally {
+        pcore.disconnect();
+      }
+      offsets.destroy();
+      grid = null;
+      contents = null;
+
+      // Build the final clustering, in the order of the database.
+      FiniteProgress pprog = LOG.isVerbose() ? new FiniteProgress("Building final result", size, LOG) : null;
+      int[] clusterof = new int[size];
+      List<ModifiableDBIDs> clusters = new ArrayList<>();
+      ModifiableDBIDs noise = DBIDUtil.newArray();
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        final int i = it.getOffset();
+        final int c = core[i] ? i : border[i];
+        if(c < 0) {
+          noise.add(it);
+        }
+        else {
+          final int root = find(c);
+          if(clusterof[root] == 0) {
+            clusters.add(DBIDUtil.newArray());
+            clusterof[root] = clusters.size(); // 1-based, 0 is unassigned.
+          }
+          clusters.get(clusterof[root] - 1).add(it);
+        }
+        LOG.incrementProcessed(pprog);
+      }
+      LOG.ensureCompleted(pprog);
+      LOG.statistics(new LongStatistic(ParallelGriDBSCAN.class.getName() + ".clusters", clusters.size()));
+
+      Clustering<Model> result = new Clustering<>("DBSCAN Clustering", "dbscan-clustering");
+      for(ModifiableDBIDs c : clusters) {
+        result.addToplevelCluster(new Cluster<Model>(c, ClusterModel.CLUSTER));
+      }
+      if(noise.size() > 0) {
+        result.addToplevelCluster(new Cluster<Model>(noise, true, ClusterModel.CLUSTER));
+      }
+      return result;
+    }
+
+    /**
+     * Copy the grid cells into arrays, largest cells first. Because the cells
+     * are handed out dynamically, processing the expensive cells first gives a
+     * better load balance.
+     */
+    private void sortCells() {
+      final int n = grid.size();
+      final long[] ks = grid.keySet().toLongArray();
+      final int[] order = new int[n];
+      for(int i = 0; i < n; i++) {
+        order[i] = i;
+      }
+      IntegerArrayQuickSort.sort(order, new IntegerComparator() {
+        @Override
+        public int compare(int x, int y) {
+          return Integer.compare(grid.get(ks[y]).size(), grid.get(ks[x]).size());
+        }
+      });
+      keys = new long[n];
+      contents = new ModifiableDBIDs[n];
+      for(int i = 0; i < n; i++) {
+        keys[i] = ks[order[i]];
+        contents[i] = grid.get(keys[i]);
+      }
+    }
+
+    /**
+     * Process all grid cells in parallel.
+     *
+     * @param pcore Parallel core
+     * @param link Link phase (otherwise: core point phase)
+     * @param title Progress title
+     */
+    private void runPhase(ParallelCore pcore, boolean link, String title) {
+      FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress(title, contents.length, LOG) : null;
+      AtomicInteger next = new AtomicInteger(0);
+      final int numtasks = Math.min(pcore.getParallelism(), contents.length);
+      List<Future<Void>> tasks = new ArrayList<>(numtasks);
+      for(int i = 0; i < numtasks; i++) {
+        tasks.add(pcore.submit(new CellTask(next, link, cprog)));
+      }
+      try {
+        for(Future<Void> task : tasks) {
+          task.get();
+        }
+      }
+      catch(ExecutionException e) {
+        throw new RuntimeException("Processor execution failed.", e);
+      }
+      catch(InterruptedException e) {
+        throw new RuntimeException("Parallel execution interrupted.");
+      }
+      LOG.ensureCompleted(cprog);
+    }
+
+    /**
+     * Compute the home cell of an object, i.e. the cell it is in when ignoring
+     * the epsilon overlap. This uses the same key computation as
+     * {@link #buildGrid}.
+     *
+     * @param obj Object
+     * @return Cell key
+     */
+    private long homeCell(V obj) {
+      int v = 0;
+      for(int d = 0; d < dim; d++) {
+        final int cn = cells[d];
+        int i = (int) FastMath.floor((obj.doubleValue(d) - offset[d]) / gridwidth);
+        i = i < 0 ? 0 : i >= cn ? cn - 1 : i;
+        v = v * cn + i;
+      }
+      return v;
+    }
+
+    /**
+     * Find the root of a union-find tree, with path halving by CAS.
+     *
+     * @param i Start element
+     * @return Root
+     */
+    private int find(int i) {
+      while(true) {
+        final int p = parent.get(i);
+        if(p == i) {
+          return i;
+        }
+        final int g = parent.get(p);
+        if(g != p) {
+          // May fail if another thread was faster; which does no harm.
+          parent.compareAndSet(i, p, g);
+        }
+        i = g;
+      }
+    }
+
+    /**
+     * Union two components. The larger root is always linked to the smaller
+     * root, so no cycles can be created by concurrent unions.
+     *
+     * @param a First element
+     * @param b Second element
+     */
+    private void union(int a, int b) {
+      while(true) {
+        a = find(a);
+        b = find(b);
+        if(a == b) {
+          return;
+        }
+        if(a < b) {
+          final int t = a;
+          a = b;
+          b = t;
+        }
+        if(parent.compareAndSet(a, a, b)) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Task processing grid cells, until no cells are left.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    private class CellTask implements Callable<Void> {
+      /**
+       * Next cell to process.
+       */
+      private AtomicInteger next;
+
+      /**
+       * Link phase (otherwise: core point phase).
+       */
+      private boolean link;
+
+      /**
+       * Progress.
+       */
+      private FiniteProgress cprog;
+
+      /**
+       * Constructor.
+       *
+       * @param next Next cell to process
+       * @param link Link phase
+       * @param cprog Progress
+       */
+      public CellTask(AtomicInteger next, boolean link, FiniteProgress cprog) {
+        this.next = next;
+        this.link = link;
+        this.cprog = cprog;
+      }
+
+      @Override
+      public Void call() {
+        // Reused storage for neighbors:
+        ModifiableDoubleDBIDList neighbors = DBIDUtil.newDistanceDBIDList(minpts << 1);
+        for(int c = next.getAndIncrement(); c < contents.length; c = next.getAndIncrement()) {
+          if(link) {
+            linkCell(keys[c], contents[c], neighbors);
+          }
+          else {
+            findCores(keys[c], contents[c], neighbors);
+          }
+          LOG.incrementProcessed(cprog);
+        }
+        return null;
+      }
+
+      /**
+       * Determine the core points of a cell.
+       *
+       * @param key Cell key
+       * @param cellids Cell contents
+       * @param neighbors Neighbors buffer
+       */
+      private void findCores(long key, DBIDs cellids, ModifiableDoubleDBIDList neighbors) {
+        if(cellids.size() < minpts) {
+          return; // Cannot contain core points.
+        }
+        RangeQuery<V> rq = new ProxyView<>(cellids, relation).getRangeQuery(distanceFunction, epsilon);
+        for(DBIDIter id = cellids.iter(); id.valid(); id.advance()) {
+          if(homeCell(relation.get(id)) != key) {
+            continue;
+          }
+          neighbors.clear();
+          rq.getRangeForDBID(id, epsilon, neighbors);
+          // Each object has exactly one home cell, so no write conflicts.
+          core[offsets.intValue(id)] = neighbors.size() >= minpts;
+        }
+      }
+
+      /**
+       * Link the core points of a cell, and assign border points.
+       *
+       * @param key Cell key
+       * @param cellids Cell contents
+       * @param neighbors Neighbors buffer
+       */
+      private void linkCell(long key, DBIDs cellids, ModifiableDoubleDBIDList neighbors) {
+        boolean hascore = false;
+        for(DBIDIter id = cellids.iter(); id.valid() && !hascore; id.advance()) {
+          hascore |= core[offsets.intValue(id)];
+        }
+        if(!hascore) {
+          // Only noise objects have their home here.
+          for(DBIDIter id = cellids.iter(); id.valid(); id.advance()) {
+            if(homeCell(relation.get(id)) == key) {
+              border[offsets.intValue(id)] = -1;
+            }
+          }
+          return;
+        }
+        RangeQuery<V> rq = new ProxyView<>(cellids, relation).getRangeQuery(distanceFunction, epsilon);
+        for(DBIDIter id = cellids.iter(); id.valid(); id.advance()) {
+          if(homeCell(relation.get(id)) != key) {
+            continue;
+          }
+          final int i = offsets.intValue(id);
+          neighbors.clear();
+          rq.getRangeForDBID(id, epsilon, neighbors);
+          if(core[i]) {
+            for(DoubleDBIDListIter n = neighbors.iter(); n.valid(); n.advance()) {
+              final int j = offsets.intValue(n);
+              // Each edge is seen from both sides, we only need it once.
+              if(j < i && core[j]) {
+                union(i, j);
+              }
+            }
+            continue;
+          }
+          // Border point: assign to the nearest core point.
+          int best = -1;
+          double bestd = Double.POSITIVE_INFINITY;
+          for(DoubleDBIDListIter n = neighbors.iter(); n.valid(); n.advance()) {
+            final int j = offsets.intValue(n);
+            if(core[j]) {
+              final double d = n.doubleValue();
+              if(d < bestd || (d == bestd && j < best)) {
+                best = j;
+                bestd = d;
+              }
+            }
+          }
+          border[i] = best;
+        }
+      }
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Vector type to use
+   */
+  public static class Parameterizer<O extends NumberVector> extends GriDBSCAN.Parameterizer<O> {
+    @Override
+    protected ParallelGriDBSCAN<O> makeInstance() {
+      return new ParallelGriDBSCAN<>(distanceFunction, epsilon, minpts, gridwidth);
+    }
+  }
+}
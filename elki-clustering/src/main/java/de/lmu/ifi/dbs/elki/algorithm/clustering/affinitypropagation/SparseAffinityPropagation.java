@@ -0,0 +1,804 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.affinitypropagation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.ClusteringAlgorithm;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.model.MedoidModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.progress.MutableProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+/**
+ * Affinity propagation on a sparse k-nearest-neighbor similarity graph.
+ *
+ * Instead of a dense similarity matrix, the (symmetrized) k nearest neighbor
+ * graph is used; pairs of objects that are not neighbors have a similarity of
+ * negative infinity, and thus do not exchange messages. Similarities,
+ * responsibilities and availabilities are stored in compressed sparse row
+ * (CSR) arrays, so memory is O(n k) instead of O(n²). Responsibilities are
+ * updated row by row, availabilities column by column; both are done in
+ * parallel. The neighbors are obtained with a kNN query, so an index (for
+ * example an NN-descent preprocessor) is used if available.
+ *
+ * The preference (similarity of an object to itself) is the given quantile of
+ * the similarities in the graph. With k = n-1, this is the same as
+ * {@link AffinityPropagationClusteringAlgorithm} with
+ * {@link DistanceBasedInitializationWithMedian}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @param <O> object type
+ */
+@Title("Sparse Affinity Propagation")
+@Reference(title = "Clustering by Passing Messages Between Data Points", //
+    authors = "B. J. Frey and D. Dueck", //
+    booktitle = "Science Vol 315", //
+    url = "http://dx.doi.org/10.1126/science.1136800")
+public class SparseAffinityPropagation<O> extends AbstractDistanceBasedAlgorithm<O, Clustering<MedoidModel>> implements ClusteringAlgorithm<Clustering<MedoidModel>> {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(SparseAffinityPropagation.class);
+
+  /**
+   * Number of neighbors.
+   */
+  int k;
+
+  /**
+   * Quantile for the preference.
+   */
+  double quantile;
+
+  /**
+   * Damping factor lambda.
+   */
+  double lambda = 0.5;
+
+  /**
+   * Terminate after 10 iterations with no changes.
+   */
+  int convergence = 10;
+
+  /**
+   * Maximum number of iterations.
+   */
+  int maxiter = 1000;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param k Number of neighbors
+   * @param quantile Quantile for the preference
+   * @param lambda Damping factor
+   * @param convergence Termination threshold (Number of stable iterations)
+   * @param maxiter Maximum number of iterations
+   */
+  public SparseAffinityPropagation(DistanceFunction<? super O> distanceFunction, int k, double quantile, double lambda, int convergence, int maxiter) {
+    super(distanceFunction);
+    this.k = k;
+    this.quantile = quantile;
+    this.lambda = lambda;
+    this.convergence = convergence;
+    this.maxiter = maxiter;
+  }
+
+  /**
+   * Perform affinity propagation clustering.
+   *
+   * @param db Database
+   * @param relation Relation
+   * @return Clustering result
+   */
+  public Clustering<MedoidModel> run(Database db, Relation<O> relation) {
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    if(size <= 1) {
+      // Nothing to propagate: a single object is its own (noise) exemplar.
+      return buildClustering(ids, new int[size]);
+    }
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      Instance inst = new Instance(core, size);
+      inst.buildGraph(db, relation, ids);
+      int[] assignment = inst.run();
+      return buildClustering(ids, assignment);
+    }
+    finally {
+      core.disconnect();
+    }
+  }
+
+  /**
+   * Build the clustering from the exemplar assignment.
+   *
+   * @param ids Object IDs
+   * @param assignment Exemplar of each object
+   * @return Clustering
+   */
+  private Clustering<MedoidModel> buildClustering(ArrayDBIDs ids, int[] assignment) {
+    // Cluster map, by lead object
+    Int2ObjectOpenHashMap<ModifiableDBIDs> map = new Int2ObjectOpenHashMap<>();
+    DBIDArrayIter i1 = ids.iter();
+    for(int i = 0; i1.valid(); i1.advance(), i++) {
+      int c = assignment[i];
+      // Add to cluster members:
+      ModifiableDBIDs cids = map.get(c);
+      if(cids == null) {
+        cids = DBIDUtil.newArray();
+        map.put(c, cids);
+      }
+      cids.add(i1);
+    }
+    Clustering<MedoidModel> clustering = new Clustering<>("Affinity Propagation Clustering", "ap-clustering");
+    ModifiableDBIDs noise = DBIDUtil.newArray();
+    for(ObjectIterator<Int2ObjectOpenHashMap.Entry<ModifiableDBIDs>> iter = map.int2ObjectEntrySet().fastIterator(); iter.hasNext();) {
+      Int2ObjectOpenHashMap.Entry<ModifiableDBIDs> entry = iter.next();
+      i1.seek(entry.getIntKey());
+      if(entry.getValue().size() > 1) {
+        MedoidModel mod = new MedoidModel(DBIDUtil.deref(i1));
+        clustering.addToplevelCluster(new Cluster<>(entry.getValue(), mod));
+      }
+      else {
+        noise.addDBIDs(entry.getValue());
+      }
+    }
+    if(noise.size() > 0) {
+      MedoidModel mod = new MedoidModel(DBIDUtil.deref(noise.iter()));
+      clustering.addToplevelCluster(new Cluster<>(noise, true, mod));
+    }
+    return clustering;
+  }
+
+  /**
+   * Instance for a single run, holding the sparse matrixes.
+   *
+   * @author Erich Schubert
+   */
+  private class Instance {
+    /**
+     * Parallel core.
+     */
+    ParallelCore core;
+
+    /**
+     * Number of objects.
+     */
+    int size;
+
+    /**
+     * Start of each row in the edge arrays (size+1 entries).
+     */
+    int[] rowstart;
+
+    /**
+     * Column (target object) of each edge.
+     */
+    int[] column;
+
+    /**
+     * Start of each column in {@link #coledges} (size+1 entries).
+     */
+    int[] colstart;
+
+    /**
+     * Edges of each column, ordered by row.
+     */
+    int[] coledges;
+
+    /**
+     * Similarity, responsibility and availability of each edge.
+     */
+    double[] s, r, a;
+
+    /**
+     * Current exemplar assignment.
+     */
+    int[] assignment;
+
+    /**
+     * Constructor.
+     *
+     * @param core Parallel core
+     * @param size Number of objects
+     */
+    Instance(ParallelCore core, int size) {
+      this.core = core;
+      this.size = size;
+    }
+
+    /**
+     * Build the symmetric kNN similarity graph in CSR format.
+     *
+     * @param db Database
+     * @param relation Data relation
+     * @param ids Object IDs
+     */
+    void buildGraph(Database db, Relation<O> relation, ArrayDBIDs ids) {
+      DistanceQuery<O> dq = db.getDistanceQuery(relation, getDistanceFunction());
+      final int kk = Math.min(k, size - 1);
+      KNNQuery<O> knnq = db.getKNNQuery(dq, kk + 1);
+      WritableIntegerDataStore offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP, -1);
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        offsets.putInt(it, it.getOffset());
+      }
+      // Compute the kNN in parallel:
+      final int[][] nn = new int[size][];
+      final double[][] nd = new double[size][];
+      runParallel(new KNNTask(ids, knnq, offsets, kk, nn, nd));
+      offsets.destroy();
+
+      // Symmetrize: count the degree of each node, including itself.
+      int[] deg = new int[size];
+      for(int i = 0; i < size; i++) {
+        deg[i] += nn[i].length + 1;
+        for(int j : nn[i]) {
+          ++deg[j];
+        }
+      }
+      int[] start = new int[size + 1];
+      for(int i = 0; i < size; i++) {
+        start[i + 1] = start[i] + deg[i];
+      }
+      int[] col = new int[start[size]];
+      double[] sim = new double[start[size]];
+      int[] fill = new int[size];
+      for(int i = 0; i < size; i++) {
+        final int[] nni = nn[i];
+        final double[] ndi = nd[i];
+        for(int p = 0; p < nni.length; p++) {
+          final int j = nni[p];
+          col[start[i] + fill[i]] = j;
+          sim[start[i] + fill[i]++] = -ndi[p];
+          col[start[j] + fill[j]] = i;
+          sim[start[j] + fill[j]++] = -ndi[p];
+        }
+        col[start[i] + fill[i]] = i; // Preference, below.
+        sim[start[i] + fill[i]++] = Double.NaN;
+      }
+      // Sort each row by column, and remove duplicates:
+      rowstart = new int[size + 1];
+      int m = 0;
+      for(int i = 0; i < size; i++) {
+        final int b = start[i], e = start[i + 1];
+        sortRow(col, sim, b, e);
+        rowstart[i] = m;
+        for(int p = b; p < e; p++) {
+          if(p > b && col[p] == col[p - 1]) {
+            continue; // Duplicate edge.
+          }
+          col[m] = col[p];
+          sim[m++] = sim[p];
+        }
+      }
+      rowstart[size] = m;
+      column = new int[m];
+      System.arraycopy(col, 0, column, 0, m);
+      s = new double[m];
+      System.arraycopy(sim, 0, s, 0, m);
+      r = new double[m];
+      a = new double[m];
+      LOG.statistics(new LongStatistic(SparseAffinityPropagation.class.getName() + ".edges", m));
+
+      // Preference: quantile of the similarities, each pair counted once.
+      double[] flat = new double[(m - size) >> 1];
+      for(int i = 0, f = 0; i < size; i++) {
+        for(int p = rowstart[i]; p < rowstart[i + 1]; p++) {
+          if(column[p] > i) {
+            flat[f++] = s[p];
+          }
+        }
+      }
+      final double pref = QuickSelect.quantile(flat, quantile);
+      for(int i = 0; i < size; i++) {
+        for(int p = rowstart[i]; p < rowstart[i + 1]; p++) {
+          if(column[p] == i) {
+            s[p] = pref;
+          }
+        }
+      }
+
+      // Build the column index, ordered by row:
+      colstart = new int[size + 1];
+      for(int p = 0; p < m; p++) {
+        ++colstart[column[p] + 1];
+      }
+      for(int i = 0; i < size; i++) {
+        colstart[i + 1] += colstart[i];
+      }
+      coledges = new int[m];
+      System.arraycopy(colstart, 0, fill, 0, size);
+      for(int p = 0; p < m; p++) {
+        coledges[fill[column[p]]++] = p;
+      }
+    }
+
+    /**
+     * Run affinity propagation.
+     *
+     * @return Exemplar assignment
+     */
+    int[] run() {
+      assignment = new int[size];
+      IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Affinity Propagation Iteration", LOG) : null;
+      MutableProgress aprog = LOG.isVerbose() ? new MutableProgress("Stable assignments", size + 1, LOG) : null;
+      int inactive = 0;
+      for(int iteration = 0; iteration < maxiter && inactive < convergence; iteration++) {
+        runParallel(new ResponsibilityTask());
+        runParallel(new AvailabilityTask());
+        int changed = 0;
+        for(Integer c : runParallel(new AssignmentTask())) {
+          changed += c;
+        }
+        inactive = (changed > 0) ? 0 : (inactive + 1);
+        LOG.incrementProcessed(prog);
+        if(aprog != null) {
+          aprog.setProcessed(size - changed, LOG);
+        }
+      }
+      if(aprog != null) {
+        aprog.setProcessed(aprog.getTotal(), LOG);
+      }
+      LOG.setCompleted(prog);
+      return assignment;
+    }
+
+    /**
+     * Run a task on blocks of rows (or columns) in parallel.
+     *
+     * @param task Task to run
+     * @return Results of each block
+     */
+    <T> List<T> runParallel(BlockTask<T> task) {
+      final int numparts = Math.min(core.getParallelism(), size);
+      final int blocksize = (size + numparts - 1) / numparts;
+      List<Future<T>> futures = new ArrayList<>(numparts);
+      for(int b = 0; b < size; b += blocksize) {
+        futures.add(core.submit(new BlockRunner<>(task, b, Math.min(b + blocksize, size))));
+      }
+      List<T> results = new ArrayList<>(futures.size());
+      try {
+        for(Future<T> f : futures) {
+          results.add(f.get());
+        }
+      }
+      catch(ExecutionException e) {
+        throw new RuntimeException("Processor execution failed.", e);
+      }
+      catch(InterruptedException e) {
+        throw new RuntimeException("Parallel execution interrupted.");
+      }
+      return results;
+    }
+
+    /**
+     * Compute the kNN of each object.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    private class KNNTask implements BlockTask<Void> {
+      /**
+       * Object IDs.
+       */
+      ArrayDBIDs ids;
+
+      /**
+       * kNN query.
+       */
+      KNNQuery<O> knnq;
+
+      /**
+       * Object offsets.
+       */
+      WritableIntegerDataStore offsets;
+
+      /**
+       * Number of neighbors.
+       */
+      int kk;
+
+      /**
+       * Output neighbors and distances.
+       */
+      int[][] nn;
+
+      /**
+       * Output distances.
+       */
+      double[][] nd;
+
+      /**
+       * Constructor.
+       *
+       * @param ids Object IDs
+       * @param knnq kNN query
+       * @param offsets Object offsets
+       * @param kk Number of neighbors
+       * @param nn Output neighbors
+       * @param nd Output distances
+       */
+      KNNTask(ArrayDBIDs ids, KNNQuery<O> knnq, WritableIntegerDataStore offsets, int kk, int[][] nn, double[][] nd) {
+        this.ids = ids;
+        this.knnq = knnq;
+        this.offsets = offsets;
+        this.kk = kk;
+        this.nn = nn;
+        this.nd = nd;
+      }
+
+      @Override
+      public Void process(int begin, int end) {
+        DBIDArrayIter it = ids.iter();
+        for(int i = begin; i < end; i++) {
+          KNNList knn = knnq.getKNNForDBID(it.seek(i), kk + 1);
+          int[] nni = new int[kk];
+          double[] ndi = new double[kk];
+          int c = 0;
+          for(DoubleDBIDListIter n = knn.iter(); n.valid() && c < kk; n.advance()) {
+            final int j = offsets.intValue(n);
+            if(j != i) { // Skip the query point.
+              nni[c] = j;
+              ndi[c++] = n.doubleValue();
+            }
+          }
+          if(c < kk) { // Duplicates
+            System.arraycopy(nni, 0, nni = new int[c], 0, c);
+            System.arraycopy(ndi, 0, ndi = new double[c], 0, c);
+          }
+          nn[i] = nni;
+          nd[i] = ndi;
+        }
+        return null;
+      }
+    }
+
+    /**
+     * Update the responsibilities, by row.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    private class ResponsibilityTask implements BlockTask<Void> {
+      @Override
+      public Void process(int begin, int end) {
+        for(int i = begin; i < end; i++) {
+          final int b = rowstart[i], e = rowstart[i + 1];
+          // Find the two largest values
+          double max1 = Double.NEGATIVE_INFINITY, max2 = Double.NEGATIVE_INFINITY;
+          int maxk = -1;
+          for(int p = b; p < e; p++) {
+            double val = a[p] + s[p];
+            if(val > max1) {
+              max2 = max1;
+              max1 = val;
+              maxk = p;
+            }
+            else if(val > max2) {
+              max2 = val;
+            }
+          }
+          // With the maximum value known, update r:
+          for(int p = b; p < e; p++) {
+            double val = s[p] - ((p != maxk) ? max1 : max2);
+            r[p] = r[p] * lambda + val * (1. - lambda);
+          }
+        }
+        return null;
+      }
+    }
+
+    /**
+     * Update the availabilities, by column.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    private class AvailabilityTask implements BlockTask<Void> {
+      @Override
+      public Void process(int begin, int end) {
+        for(int c = begin; c < end; c++) {
+          final int b = colstart[c], e = colstart[c + 1];
+          // Compute sum of max(0, r_ik) for all i.
+          // For r_kk, don't apply the max.
+          double colposum = 0.;
+          for(int q = b; q < e; q++) {
+            final int p = coledges[q];
+            if(r[p] > 0. || isDiagonal(p)) {
+              colposum += r[p];
+            }
+          }
+          for(int q = b; q < e; q++) {
+            final int p = coledges[q];
+            final boolean diag = isDiagonal(p);
+            double val = colposum;
+            // Adjust column sum by the one extra term.
+            if(diag || r[p] > 0.) {
+              val -= r[p];
+            }
+            if(!diag && val > 0.) { // min
+              val = 0.;
+            }
+            a[p] = a[p] * lambda + val * (1 - lambda);
+          }
+        }
+        return null;
+      }
+
+      /**
+       * Test whether an edge is on the diagonal, i.e. its row is its column.
+       *
+       * @param p Edge
+       * @return {@code true} for diagonal edges
+       */
+      private boolean isDiagonal(int p) {
+        final int c = column[p];
+        return rowstart[c] <= p && p < rowstart[c + 1];
+      }
+    }
+
+    /**
+     * Update the assignments, by row.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    private class AssignmentTask implements BlockTask<Integer> {
+      @Override
+      public Integer process(int begin, int end) {
+        int changed = 0;
+        for(int i = begin; i < end; i++) {
+          double max = Double.NEGATIVE_INFINITY;
+          int maxj = -1;
+          for(int p = rowstart[i], e = rowstart[i + 1]; p < e; p++) {
+            final int j = column[p];
+            double v = a[p] + r[p];
+            if(v > max || (i == j && v >= max)) {
+              max = v;
+              maxj = j;
+            }
+          }
+          if(assignment[i] != maxj) {
+            changed += 1;
+            assignment[i] = maxj;
+          }
+        }
+        return changed;
+      }
+    }
+  }
+
+  /**
+   * Sort a row of the graph by column, insertion sort (rows are short).
+   *
+   * @param col Columns
+   * @param sim Similarities
+   * @param b Begin
+   * @param e End
+   */
+  private static void sortRow(int[] col, double[] sim, int b, int e) {
+    for(int i = b + 1; i < e; i++) {
+      final int c = col[i];
+      final double v = sim[i];
+      int j = i - 1;
+      for(; j >= b && col[j] > c; j--) {
+        col[j + 1] = col[j];
+        sim[j + 1] = sim[j];
+      }
+      col[j + 1] = c;
+      sim[j + 1] = v;
+    }
+  }
+
+  /**
+   * Task operating on a block of rows or columns.
+   *
+   * @author Erich Schubert
+   *
+   * @param <T> Result type
+   */
+  private interface BlockTask<T> {
+    /**
+     * Process a block.
+     *
+     * @param begin First row
+     * @param end End row (exclusive)
+     * @return Result
+     */
+    T process(int begin, int end);
+  }
+
+  /**
+   * Adapter to run a block task on the executor.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <T> Result type
+   */
+  private static class BlockRunner<T> implements Callable<T> {
+    /**
+     * Task to run.
+     */
+    private BlockTask<T> task;
+
+    /**
+     * Block range.
+     */
+    private int begin, end;
+
+    /**
+     * Constructor.
+     *
+     * @param task Task to run
+     * @param begin First row
+     * @param end End row (exclusive)
+     */
+    BlockRunner(BlockTask<T> task, int begin, int end) {
+      this.task = task;
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    public T call() {
+      return task.process(begin, end);
+    }
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> object type
+   */
+  public static class Parameterizer<O> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * Number of neighbors in the similarity graph.
+     */
+    public static final OptionID K_ID = new OptionID("ap.knn", "Number of nearest neighbors to use in the sparse similarity graph.");
+
+    /**
+     * Number of neighbors.
+     */
+    int k;
+
+    /**
+     * Quantile for the preference.
+     */
+    double quantile;
+
+    /**
+     * Dampening parameter.
+     */
+    double lambda = .5;
+
+    /**
+     * Number of stable iterations for convergence.
+     */
+    int convergence;
+
+    /**
+     * Maximum number of iterations.
+     */
+    int maxiter;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      // Disabled: super.makeOptions(config);
+      // Use the same option as the dense version.
+      ObjectParameter<DistanceFunction<O>> distanceFunctionP = new ObjectParameter<>(DistanceBasedInitializationWithMedian.Parameterizer.DISTANCE_ID, DistanceFunction.class, SquaredEuclideanDistanceFunction.class);
+      if(config.grab(distanceFunctionP)) {
+        distanceFunction = distanceFunctionP.instantiateClass(config);
+      }
+      final IntParameter kP = new IntParameter(K_ID, 30) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.intValue();
+      }
+      DoubleParameter quantileP = new DoubleParameter(AffinityPropagationInitialization.QUANTILE_ID, .5);
+      if(config.grab(quantileP)) {
+        quantile = quantileP.doubleValue();
+      }
+      final DoubleParameter lambdaP = new DoubleParameter(AffinityPropagationClusteringAlgorithm.Parameterizer.LAMBDA_ID, .5) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+          .addConstraint(CommonConstraints.LESS_THAN_ONE_DOUBLE);
+      if(config.grab(lambdaP)) {
+        lambda = lambdaP.doubleValue();
+      }
+      final IntParameter convergenceP = new IntParameter(AffinityPropagationClusteringAlgorithm.Parameterizer.CONVERGENCE_ID, 15) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(convergenceP)) {
+        convergence = convergenceP.intValue();
+      }
+      final IntParameter maxiterP = new IntParameter(AffinityPropagationClusteringAlgorithm.Parameterizer.MAXITER_ID, 1000);
+      if(config.grab(maxiterP)) {
+        maxiter = maxiterP.intValue();
+      }
+    }
+
+    @Override
+    protected SparseAffinityPropagation<O> makeInstance() {
+      return new SparseAffinityPropagation<>(distanceFunction, k, quantile, lambda, convergence, maxiter);
+    }
+  }
+}
@@ -147,7 +147,7 @@ public class EM<V extends NumberVector, M extends MeanModel> extends AbstractAlg
   /**
    * Minimum loglikelihood to avoid -infinity.
    */
-  private static final double MIN_LOGLIKELIHOOD = -100000;
+  static final double MIN_LOGLIKELIHOOD = -100000;
 
   /**
    * Soft assignment result type.
@@ -361,7 +361,7 @@ public class EM<V extends NumberVector, M extends MeanModel> extends AbstractAlg
    * @param x Input
    * @return Result
    */
-  private static double logSumExp(double[] x) {
+  static double logSumExp(double[] x) {
     double max = x[0];
     for(int i = 1; i < x.length; i++) {
       final double v = x[i];
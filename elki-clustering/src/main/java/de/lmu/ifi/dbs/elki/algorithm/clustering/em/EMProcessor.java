@@ -0,0 +1,320 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.em;
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel processor for EM with multivariate Gaussian models.
+ *
+ * In a single pass over the data, this computes the cluster probabilities
+ * ("responsibilities") of each object, and aggregates the weighted sums needed
+ * to compute the next models. Each thread uses its own scratch buffers and
+ * sums, which are merged after the thread finished. Sums are computed relative
+ * to the previous cluster means, for numerical stability.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.has Instance
+ *
+ * @param <V> Vector type
+ */
+public class EMProcessor<V extends NumberVector> implements Processor {
+  /**
+   * Data relation.
+   */
+  Relation<V> relation;
+
+  /**
+   * Cluster probabilities of each object. Arrays must be preallocated, as the
+   * data store is not modified concurrently.
+   */
+  DataStore<double[]> probClusterIGivenX;
+
+  /**
+   * Current models.
+   */
+  List<MultivariateGaussianModel> models;
+
+  /**
+   * Reference points (previous means).
+   */
+  double[][] centers;
+
+  /**
+   * Sum of all weights.
+   */
+  double[] wall;
+
+  /**
+   * Sum of weights used for the models.
+   */
+  double[] wsum;
+
+  /**
+   * Weighted sum of deviations from the center.
+   */
+  double[][] sum1;
+
+  /**
+   * Weighted sum of outer products of deviations (lower triangle only).
+   */
+  double[][][] sum2;
+
+  /**
+   * Sum of log likelihoods.
+   */
+  double loglikelihood;
+
+  /**
+   * Number of objects processed.
+   */
+  int count;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param probClusterIGivenX Cluster probabilities, with preallocated arrays
+   */
+  public EMProcessor(Relation<V> relation, DataStore<double[]> probClusterIGivenX) {
+    super();
+    this.relation = relation;
+    this.probClusterIGivenX = probClusterIGivenX;
+  }
+
+  /**
+   * Initialize for a new iteration.
+   *
+   * @param models Current models
+   */
+  public void nextIteration(List<MultivariateGaussianModel> models) {
+    final int k = models.size(), dim = models.get(0).mean.length;
+    this.models = models;
+    if(centers == null || centers.length != k) {
+      centers = new double[k][dim];
+      wall = new double[k];
+      wsum = new double[k];
+      sum1 = new double[k][dim];
+      sum2 = new double[k][dim][dim];
+    }
+    for(int i = 0; i < k; i++) {
+      System.arraycopy(models.get(i).mean, 0, centers[i], 0, dim);
+      Arrays.fill(sum1[i], 0.);
+      for(double[] row : sum2[i]) {
+        Arrays.fill(row, 0.);
+      }
+    }
+    Arrays.fill(wall, 0.);
+    Arrays.fill(wsum, 0.);
+    loglikelihood = 0.;
+    count = 0;
+  }
+
+  @Override
+  public Instance<V> instantiate(Executor exectutor) {
+    return new Instance<>(relation, probClusterIGivenX, models, centers);
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    @SuppressWarnings("unchecked")
+    Instance<V> instance = (Instance<V>) inst;
+    synchronized(this) {
+      final int k = centers.length, dim = centers[0].length;
+      for(int i = 0; i < k; i++) {
+        wall[i] += instance.wall[i];
+        wsum[i] += instance.wsum[i];
+        final double[] s1 = sum1[i], is1 = instance.sum1[i];
+        for(int a = 0; a < dim; a++) {
+          s1[a] += is1[a];
+          final double[] s2a = sum2[i][a], is2a = instance.sum2[i][a];
+          for(int b = 0; b <= a; b++) {
+            s2a[b] += is2a[b];
+          }
+        }
+      }
+      loglikelihood += instance.loglikelihood;
+      count += instance.count;
+    }
+  }
+
+  /**
+   * Get the average log likelihood of the last pass.
+   *
+   * @return Log likelihood
+   */
+  public double getLogLikelihood() {
+    return loglikelihood / count;
+  }
+
+  /**
+   * Get the weighted mean and scatter matrix of a cluster, from the last pass.
+   *
+   * @param i Cluster number
+   * @param mean Output mean
+   * @param scatter Output scatter matrix, lower triangle only
+   */
+  public void getMeanAndScatter(int i, double[] mean, double[][] scatter) {
+    final double[] c = centers[i], s1 = sum1[i];
+    final double w = wsum[i], f = w > 0 ? 1. / w : 0.;
+    for(int a = 0; a < mean.length; a++) {
+      mean[a] = c[a] + s1[a] * f;
+      final double[] s2a = sum2[i][a], sca = scatter[a];
+      final double s1a = s1[a] * f;
+      for(int b = 0; b <= a; b++) {
+        sca[b] = s2a[b] - s1a * s1[b];
+      }
+    }
+  }
+
+  /**
+   * Instance to process part of the data set, for a single iteration.
+   *
+   * @author Erich Schubert
+   */
+  public static class Instance<V extends NumberVector> implements Processor.Instance {
+    /**
+     * Data relation.
+     */
+    private Relation<V> relation;
+
+    /**
+     * Cluster probabilities of each object.
+     */
+    private DataStore<double[]> probClusterIGivenX;
+
+    /**
+     * Current models.
+     */
+    private MultivariateGaussianModel[] models;
+
+    /**
+     * Reference points.
+     */
+    private double[][] centers;
+
+    /**
+     * Sum of all weights.
+     */
+    double[] wall;
+
+    /**
+     * Sum of weights used for the models.
+     */
+    double[] wsum;
+
+    /**
+     * Weighted sum of deviations from the center.
+     */
+    double[][] sum1;
+
+    /**
+     * Weighted sum of outer products of deviations (lower triangle only).
+     */
+    double[][][] sum2;
+
+    /**
+     * Sum of log likelihoods.
+     */
+    double loglikelihood;
+
+    /**
+     * Number of objects processed.
+     */
+    int count;
+
+    /**
+     * Scratch buffer.
+     */
+    private double[] buf;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param probClusterIGivenX Cluster probabilities
+     * @param models Current models
+     * @param centers Reference points
+     */
+    public Instance(Relation<V> relation, DataStore<double[]> probClusterIGivenX, List<MultivariateGaussianModel> models, double[][] centers) {
+      super();
+      this.relation = relation;
+      this.probClusterIGivenX = probClusterIGivenX;
+      this.models = models.toArray(new MultivariateGaussianModel[models.size()]);
+      this.centers = centers;
+      final int k = centers.length, dim = centers[0].length;
+      this.wall = new double[k];
+      this.wsum = new double[k];
+      this.sum1 = new double[k][dim];
+      this.sum2 = new double[k][dim][dim];
+      this.buf = new double[dim];
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      final V vec = relation.get(id);
+      final double[] probs = probClusterIGivenX.get(id);
+      final int k = models.length, dim = buf.length;
+      for(int i = 0; i < k; i++) {
+        double v = models[i].estimateLogDensity(vec, buf);
+        probs[i] = v > EM.MIN_LOGLIKELIHOOD ? v : EM.MIN_LOGLIKELIHOOD;
+      }
+      final double logP = EM.logSumExp(probs);
+      for(int i = 0; i < k; i++) {
+        probs[i] = FastMath.exp(probs[i] - logP);
+      }
+      loglikelihood += logP;
+      ++count;
+      // Aggregate for the next models:
+      for(int i = 0; i < k; i++) {
+        final double prob = probs[i];
+        wall[i] += prob;
+        if(!(prob > 1e-10)) {
+          continue;
+        }
+        wsum[i] += prob;
+        final double[] c = centers[i], s1 = sum1[i];
+        for(int a = 0; a < dim; a++) {
+          final double da = vec.doubleValue(a) - c[a];
+          buf[a] = da;
+          s1[a] += prob * da;
+          final double pda = prob * da;
+          final double[] s2a = sum2[i][a];
+          for(int b = 0; b <= a; b++) {
+            s2a[b] += pda * buf[b];
+          }
+        }
+      }
+    }
+  }
+}
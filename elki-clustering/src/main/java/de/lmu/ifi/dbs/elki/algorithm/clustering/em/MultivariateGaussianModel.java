@@ -248,11 +248,57 @@ public class MultivariateGaussianModel implements EMClusterModel<EMModel> {
     return squareSum(chol.solveLInplace(minusEquals(vec.toArray(), mean)));
   }
 
+  /**
+   * Compute the Mahalanobis distance from the centroid for a given vector,
+   * without allocating memory.
+   *
+   * @param vec Vector
+   * @param buf Scratch buffer, of the dimensionality of the data
+   * @return Mahalanobis distance
+   */
+  public double mahalanobisDistance(NumberVector vec, double[] buf) {
+    for(int i = 0; i < buf.length; i++) {
+      buf[i] = vec.doubleValue(i) - mean[i];
+    }
+    return squareSum(chol.solveLInplace(buf));
+  }
+
   @Override
   public double estimateLogDensity(NumberVector vec) {
     return -.5 * mahalanobisDistance(vec) + logNormDet;
   }
 
+  /**
+   * Estimate the log likelihood of a vector, without allocating memory.
+   *
+   * This is safe to use from multiple threads, as long as the model is not
+   * modified at the same time.
+   *
+   * @param vec Vector
+   * @param buf Scratch buffer, of the dimensionality of the data
+   * @return log likelihood.
+   */
+  public double estimateLogDensity(NumberVector vec, double[] buf) {
+    return -.5 * mahalanobisDistance(vec, buf) + logNormDet;
+  }
+
+  /**
+   * Set the aggregated statistics of the E step directly, e.g. when they were
+   * computed in parallel. {@link #finalizeEStep} must be called afterwards.
+   *
+   * @param wsum Sum of weights
+   * @param mean Weighted mean
+   * @param scatter Weighted scatter matrix (only the lower triangle is used)
+   */
+  void setEStatistics(double wsum, double[] mean, double[][] scatter) {
+    final int dim = this.mean.length;
+    this.wsum = wsum;
+    System.arraycopy(mean, 0, this.mean, 0, dim);
+    for(int i = 0; i < dim; i++) {
+      System.arraycopy(scatter[i], 0, covariance[i], 0, i + 1);
+    }
+  }
+
   @Override
   public double getWeight() {
     return weight;
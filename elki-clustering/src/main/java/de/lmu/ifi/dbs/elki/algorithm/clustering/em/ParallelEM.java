@@ -0,0 +1,509 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.em;
+
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.argmax;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.ClusteringAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeans;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.EMModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel EM clustering with multivariate Gaussian models.
+ *
+ * The expensive part of each iteration, computing the cluster probabilities of
+ * all objects and aggregating the weighted means and covariances, is done in a
+ * single parallel pass using {@link EMProcessor}. The models are the same as in
+ * {@link EM} with {@link MultivariateGaussianModelFactory}, and the results
+ * agree up to floating point rounding.
+ *
+ * For very large data sets, a mini-batch mode is available (stepwise EM), where
+ * each iteration only processes a random sample, and the aggregated statistics
+ * are blended into a running average with a decaying step size. A final pass
+ * over all data then computes the cluster assignments.
+ *
+ * Reference:
+ * <p>
+ * A. P. Dempster, N. M. Laird, D. B. Rubin:<br />
+ * Maximum Likelihood from Incomplete Data via the EM algorithm.<br />
+ * In Journal of the Royal Statistical Society, Series B, 39(1), 1977, pp. 1-31
+ * </p>
+ *
+ * The step size decay of the mini-batch mode follows
+ * <p>
+ * P. Liang, D. Klein:<br />
+ * Online EM for Unsupervised Models<br />
+ * Proc. Human Language Technologies: The 2009 Annual Conference of the North
+ * American Chapter of the ACL
+ * </p>
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.has EMProcessor
+ *
+ * @param <V> vector type to analyze
+ */
+@Reference(authors = "A. P. Dempster, N. M. Laird, D. B. Rubin", //
+    title = "Maximum Likelihood from Incomplete Data via the EM algorithm", //
+    booktitle = "Journal of the Royal Statistical Society, Series B, 39(1), 1977, pp. 1-31", //
+    url = "http://www.jstor.org/stable/2984875")
+public class ParallelEM<V extends NumberVector> extends AbstractAlgorithm<Clustering<EMModel>> implements ClusteringAlgorithm<Clustering<EMModel>> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelEM.class);
+
+  /**
+   * Key for statistics logging.
+   */
+  private static final String KEY = ParallelEM.class.getName();
+
+  /**
+   * Default number of iterations in mini-batch mode.
+   */
+  private static final int DEFAULT_MINIBATCH_ITERATIONS = 100;
+
+  /**
+   * Number of clusters
+   */
+  private int k;
+
+  /**
+   * Delta parameter
+   */
+  private double delta;
+
+  /**
+   * Factory for producing the initial cluster model.
+   */
+  private MultivariateGaussianModelFactory<V> mfactory;
+
+  /**
+   * Maximum number of iterations to allow
+   */
+  private int maxiter;
+
+  /**
+   * Prior to enable MAP estimation (use 0 for MLE)
+   */
+  private double prior = 0.;
+
+  /**
+   * Mini-batch size, 0 to process all data in each iteration.
+   */
+  private int batchsize;
+
+  /**
+   * Step size decay in mini-batch mode, see the class documentation.
+   */
+  private static final double STEP_DECAY = 0.6;
+
+  /**
+   * Random generator for sampling mini-batches.
+   */
+  private RandomFactory rnd;
+
+  /**
+   * Retain soft assignments.
+   */
+  private boolean soft;
+
+  /**
+   * Constructor.
+   *
+   * @param k k parameter
+   * @param delta delta parameter
+   * @param mfactory EM cluster model factory
+   * @param maxiter Maximum number of iterations
+   * @param prior MAP prior
+   * @param batchsize Mini-batch size, 0 for full batches
+   * @param rnd Random generator for sampling mini-batches
+   * @param soft Include soft assignments
+   */
+  public ParallelEM(int k, double delta, MultivariateGaussianModelFactory<V> mfactory, int maxiter, double prior, int batchsize, RandomFactory rnd, boolean soft) {
+    super();
+    this.k = k;
+    this.delta = delta;
+    this.mfactory = mfactory;
+    this.maxiter = maxiter;
+    this.prior = prior;
+    this.batchsize = batchsize;
+    this.rnd = rnd;
+    this.soft = soft;
+  }
+
+  /**
+   * Performs the EM clustering algorithm on the given database.
+   *
+   * @param database Database
+   * @param relation Relation
+   * @return Result
+   */
+  public Clustering<EMModel> run(Database database, Relation<V> relation) {
+    if(relation.size() == 0) {
+      throw new IllegalArgumentException("database empty: must contain elements");
+    }
+    final DBIDs ids = relation.getDBIDs();
+    // initial models
+    List<MultivariateGaussianModel> models = mfactory.buildInitialModels(database, relation, k, SquaredEuclideanDistanceFunction.STATIC);
+    WritableDataStore<double[]> probClusterIGivenX = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_SORTED, double[].class);
+    // Preallocate, so that the storage is not modified by multiple threads:
+    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      probClusterIGivenX.put(iditer, new double[k]);
+    }
+    EMProcessor<V> proc = new EMProcessor<>(relation, probClusterIGivenX);
+    DoubleStatistic likestat = LOG.isStatistics() ? new DoubleStatistic(KEY + ".loglikelihood") : null;
+
+    int it = batchsize > 0 ? runMiniBatch(relation, models, proc, likestat) : runFullBatch(relation, models, proc, likestat);
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(KEY + ".iterations", it));
+    }
+
+    // fill result with clusters and models
+    List<ModifiableDBIDs> hardClusters = new ArrayList<>(k);
+    for(int i = 0; i < k; i++) {
+      hardClusters.add(DBIDUtil.newArray());
+    }
+    // provide a hard clustering
+    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      hardClusters.get(argmax(probClusterIGivenX.get(iditer))).add(iditer);
+    }
+    Clustering<EMModel> result = new Clustering<>("EM Clustering", "em-clustering");
+    // provide models within the result
+    for(int i = 0; i < k; i++) {
+      result.addToplevelCluster(new Cluster<>(hardClusters.get(i), models.get(i).finalizeCluster()));
+    }
+    if(soft) {
+      result.addChildResult(new MaterializedRelation<>("cluster assignments", "em-soft-score", EM.SOFT_TYPE, probClusterIGivenX, ids));
+    }
+    else {
+      probClusterIGivenX.destroy();
+    }
+    return result;
+  }
+
+  /**
+   * Run EM on the full data set in each iteration.
+   *
+   * @param relation Data relation
+   * @param models Models to optimize
+   * @param proc Processor
+   * @param likestat Log likelihood statistic
+   * @return Number of iterations
+   */
+  private int runFullBatch(Relation<V> relation, List<MultivariateGaussianModel> models, EMProcessor<V> proc, DoubleStatistic likestat) {
+    final DBIDs ids = relation.getDBIDs();
+    final int dim = models.get(0).mean.length;
+    proc.nextIteration(models);
+    ParallelExecutor.run(ids, proc);
+    double loglikelihood = proc.getLogLikelihood();
+    if(likestat != null) {
+      LOG.statistics(likestat.setDouble(loglikelihood));
+    }
+    double[] mean = new double[dim];
+    double[][] scatter = new double[dim][dim];
+    // iteration unless no change
+    int it = 0, lastimprovement = 0;
+    double bestloglikelihood = loglikelihood; // For detecting instabilities.
+    for(++it; it < maxiter || maxiter < 0; it++) {
+      final double oldloglikelihood = loglikelihood;
+      final double n = ids.size();
+      for(int i = 0; i < k; i++) {
+        proc.getMeanAndScatter(i, mean, scatter);
+        updateModel(models.get(i), proc.wsum[i], mean, scatter, proc.wall[i], n);
+      }
+      // reassign probabilities, and aggregate for the next iteration
+      proc.nextIteration(models);
+      ParallelExecutor.run(ids, proc);
+      loglikelihood = proc.getLogLikelihood();
+      if(likestat != null) {
+        LOG.statistics(likestat.setDouble(loglikelihood));
+      }
+      if(loglikelihood - bestloglikelihood > delta) {
+        lastimprovement = it;
+        bestloglikelihood = loglikelihood;
+      }
+      if(Math.abs(loglikelihood - oldloglikelihood) <= delta || lastimprovement < it >> 1) {
+        break;
+      }
+    }
+    return it;
+  }
+
+  /**
+   * Run stepwise EM on mini-batches, followed by a final assignment pass.
+   *
+   * @param relation Data relation
+   * @param models Models to optimize
+   * @param proc Processor
+   * @param likestat Log likelihood statistic
+   * @return Number of iterations
+   */
+  private int runMiniBatch(Relation<V> relation, List<MultivariateGaussianModel> models, EMProcessor<V> proc, DoubleStatistic likestat) {
+    final DBIDs ids = relation.getDBIDs();
+    final int dim = models.get(0).mean.length, size = ids.size();
+    final int bsize = Math.min(batchsize, size);
+    final int iters = maxiter >= 0 ? maxiter : DEFAULT_MINIBATCH_ITERATIONS;
+    final Random random = rnd.getSingleThreadedRandom();
+    // Running averages of the sufficient statistics, normalized per object:
+    double[] rall = new double[k], rsum = new double[k];
+    double[][] rmean = new double[k][dim];
+    double[][][] rscatter = new double[k][dim][dim];
+    double[] mean = new double[dim], delta = new double[dim];
+    double[][] scatter = new double[dim][dim];
+    int it = 0;
+    for(; it < iters; it++) {
+      proc.nextIteration(models);
+      ParallelExecutor.run(DBIDUtil.randomSample(ids, bsize, random), proc);
+      if(likestat != null) {
+        LOG.statistics(likestat.setDouble(proc.getLogLikelihood()));
+      }
+      final double eta = it == 0 ? 1. : FastMath.pow(it + 1, -STEP_DECAY);
+      for(int i = 0; i < k; i++) {
+        proc.getMeanAndScatter(i, mean, scatter);
+        // Weights of the previous statistics and of the new batch:
+        final double wa = (1. - eta) * rsum[i], wb = eta * proc.wsum[i] / bsize;
+        final double w = wa + wb, f = w > 0 ? wb / w : 0., g = w > 0 ? wa * f : 0.;
+        final double[] rm = rmean[i];
+        for(int a = 0; a < dim; a++) {
+          delta[a] = mean[a] - rm[a];
+        }
+        for(int a = 0; a < dim; a++) {
+          final double[] rsa = rscatter[i][a], sca = scatter[a];
+          for(int b = 0; b <= a; b++) {
+            rsa[b] = (1. - eta) * rsa[b] + eta * sca[b] / bsize + g * delta[a] * delta[b];
+          }
+          rm[a] += delta[a] * f;
+        }
+        rsum[i] = w;
+        rall[i] = (1. - eta) * rall[i] + eta * proc.wall[i] / bsize;
+        // Scale to the full data set, to make the prior comparable:
+        double[][] sc = scatter;
+        for(int a = 0; a < dim; a++) {
+          for(int b = 0; b <= a; b++) {
+            sc[a][b] = rscatter[i][a][b] * size;
+          }
+        }
+        updateModel(models.get(i), rsum[i] * size, rm, sc, rall[i] * size, size);
+      }
+    }
+    // Final assignment pass over all data:
+    proc.nextIteration(models);
+    ParallelExecutor.run(ids, proc);
+    if(likestat != null) {
+      LOG.statistics(likestat.setDouble(proc.getLogLikelihood()));
+    }
+    return it;
+  }
+
+  /**
+   * Update a single model.
+   *
+   * @param model Model to update
+   * @param wsum Weight sum for the model
+   * @param mean New mean
+   * @param scatter New scatter matrix
+   * @param wall Total weight of the cluster
+   * @param n Data set size
+   */
+  private void updateModel(MultivariateGaussianModel model, double wsum, double[] mean, double[][] scatter, double wall, double n) {
+    // Keep the old mean of empty clusters.
+    model.setEStatistics(wsum, wsum > 0 ? mean : model.mean, scatter);
+    // MLE / MAP
+    final double weight = prior <= 0. ? wall / n : (wall + prior - 1) / (n + prior * k - k);
+    model.finalizeEStep(weight, prior);
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractParameterizer {
+    /**
+     * Parameter for the mini-batch size.
+     */
+    public static final OptionID MINIBATCH_ID = new OptionID("em.minibatch", //
+        "Mini-batch size for stepwise EM on large data sets. If not set, all data is used in each iteration.");
+
+    /**
+     * Random seed for sampling mini-batches.
+     */
+    public static final OptionID SEED_ID = new OptionID("em.minibatch.seed", //
+        "Random seed for sampling mini-batches.");
+
+    /**
+     * Flag to retain the soft assignments.
+     */
+    public static final OptionID SOFT_ID = new OptionID("em.soft", //
+        "Retain the soft cluster assignments of all objects as a relation.");
+
+    /**
+     * Number of clusters.
+     */
+    protected int k;
+
+    /**
+     * Stopping threshold
+     */
+    protected double delta;
+
+    /**
+     * Initialization method
+     */
+    protected MultivariateGaussianModelFactory<V> initializer;
+
+    /**
+     * Maximum number of iterations.
+     */
+    protected int maxiter = -1;
+
+    /**
+     * Prior to enable MAP estimation (use 0 for MLE)
+     */
+    protected double prior = 0.;
+
+    /**
+     * Mini-batch size.
+     */
+    protected int batchsize = 0;
+
+    /**
+     * Random generator.
+     */
+    protected RandomFactory rnd;
+
+    /**
+     * Retain soft assignments.
+     */
+    protected boolean soft = false;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter kP = new IntParameter(EM.Parameterizer.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.getValue();
+      }
+
+      ObjectParameter<MultivariateGaussianModelFactory<V>> initialP = new ObjectParameter<>(EM.Parameterizer.INIT_ID, MultivariateGaussianModelFactory.class, MultivariateGaussianModelFactory.class);
+      if(config.grab(initialP)) {
+        initializer = initialP.instantiateClass(config);
+      }
+
+      DoubleParameter deltaP = new DoubleParameter(EM.Parameterizer.DELTA_ID, 1e-7)//
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_DOUBLE);
+      if(config.grab(deltaP)) {
+        delta = deltaP.getValue();
+      }
+
+      IntParameter maxiterP = new IntParameter(KMeans.MAXITER_ID)//
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
+          .setOptional(true);
+      if(config.grab(maxiterP)) {
+        maxiter = maxiterP.getValue();
+      }
+
+      DoubleParameter priorP = new DoubleParameter(EM.Parameterizer.PRIOR_ID) //
+          .setOptional(true) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+      if(config.grab(priorP)) {
+        prior = priorP.doubleValue();
+      }
+
+      IntParameter batchP = new IntParameter(MINIBATCH_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .setOptional(true);
+      if(config.grab(batchP)) {
+        batchsize = batchP.getValue();
+      }
+
+      if(batchsize > 0) {
+        RandomParameter rndP = new RandomParameter(SEED_ID);
+        if(config.grab(rndP)) {
+          rnd = rndP.getValue();
+        }
+      }
+
+      Flag softF = new Flag(SOFT_ID);
+      if(config.grab(softF)) {
+        soft = softF.isTrue();
+      }
+    }
+
+    @Override
+    protected ParallelEM<V> makeInstance() {
+      return new ParallelEM<>(k, delta, initializer, maxiter, prior, batchsize, rnd, soft);
+    }
+  }
+}
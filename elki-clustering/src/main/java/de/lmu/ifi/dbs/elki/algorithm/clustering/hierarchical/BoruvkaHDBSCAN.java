@@ -0,0 +1,675 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical;
+
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.algorithm.DistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.data.ModifiableHyperBoundingBox;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.CombinedTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDBIDDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListMIter;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.QuickSelectDBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleLongHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleLongMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleMaxHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * HDBSCAN using a dual-tree Boruvka minimum spanning tree on an internal k-d
+ * tree, to compute the mutual-reachability spanning tree in roughly O(n log n)
+ * time on low-dimensional data, instead of the O(n²) of
+ * {@link HDBSCANLinearMemory} and {@link SLINKHDBSCANLinearMemory}.
+ *
+ * The core distances are computed with the same k-d-tree, so no additional
+ * index is required. The resulting spanning tree is converted into the same
+ * pointer representation as produced by the other HDBSCAN variants, so all
+ * extraction methods (such as
+ * {@link de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.extraction.HDBSCANHierarchyExtraction})
+ * can be used unchanged.
+ *
+ * With minPts = 1, the core distances are all zero, and this yields a
+ * single-linkage clustering.
+ *
+ * This requires a spatial distance function (that can compute the minimum
+ * distance of two bounding boxes), such as the Lp norms.
+ *
+ * Reference:
+ * <p>
+ * L. McInnes and J. Healy<br />
+ * Accelerated Hierarchical Density Based Clustering<br />
+ * IEEE International Conference on Data Mining Workshops (ICDMW)
+ * </p>
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.composedOf Instance
+ * @apiviz.has PointerDensityHierarchyRepresentationResult
+ *
+ * @param <O> Vector type
+ */
+@Reference(authors = "L. McInnes and J. Healy", //
+    title = "Accelerated Hierarchical Density Based Clustering", //
+    booktitle = "IEEE International Conference on Data Mining Workshops (ICDMW)", //
+    url = "http://dx.doi.org/10.1109/ICDMW.2017.12")
+public class BoruvkaHDBSCAN<O extends NumberVector> extends AbstractHDBSCAN<O, PointerDensityHierarchyRepresentationResult> implements HierarchicalClusteringAlgorithm {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(BoruvkaHDBSCAN.class);
+
+  /**
+   * Maximum size of leaf nodes.
+   */
+  protected int leafsize;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param minPts Minimum number of points for density
+   * @param leafsize Maximum size of k-d-tree leaves
+   */
+  public BoruvkaHDBSCAN(SpatialPrimitiveDistanceFunction<? super O> distanceFunction, int minPts, int leafsize) {
+    super(distanceFunction, minPts);
+    this.leafsize = leafsize;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public SpatialPrimitiveDistanceFunction<? super O> getDistanceFunction() {
+    return (SpatialPrimitiveDistanceFunction<? super O>) super.getDistanceFunction();
+  }
+
+  /**
+   * Run the algorithm
+   *
+   * @param relation Relation
+   * @return Clustering hierarchy
+   */
+  public PointerDensityHierarchyRepresentationResult run(Relation<O> relation) {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    Instance<O> inst = new Instance<>(relation, getDistanceFunction(), leafsize);
+    // 1. Build the k-d-tree.
+    inst.buildTree();
+    // 2. Compute the core distances
+    final WritableDoubleDataStore coredists = inst.computeCoreDists(minPts);
+
+    final int numedges = ids.size() - 1;
+    DoubleLongHeap heap = new DoubleLongMinHeap(numedges > 0 ? numedges : 1);
+    // 3. Build spanning tree.
+    FiniteProgress mprog = LOG.isVerbose() ? new FiniteProgress("Computing minimum spanning tree (n-1 edges)", numedges, LOG) : null;
+    inst.boruvka(new HeapMSTCollector(heap, mprog, LOG));
+    LOG.ensureCompleted(mprog);
+    // Storage for pointer representation:
+    WritableDBIDDataStore pi = DataStoreUtil.makeDBIDStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC);
+    WritableDoubleDataStore lambda = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC, Double.POSITIVE_INFINITY);
+    // Note: the heap uses offsets into the tree order, not into ids!
+    convertToPointerRepresentation(inst.order, heap, pi, lambda);
+
+    return new PointerDensityHierarchyRepresentationResult(ids, pi, lambda, getDistanceFunction().isSquared(), coredists);
+  }
+
+  /**
+   * Instance for a single run, holding the k-d-tree.
+   *
+   * The tree is stored in preorder: the left child of a node {@code i} is
+   * {@code i + 1}, the right child is stored explicitly ({@code -1} for
+   * leaves). Each node covers a contiguous range of {@link #order}.
+   *
+   * @author Erich Schubert
+   *
+   * @param <O> Vector type
+   */
+  @Reference(authors = "W. B. March, P. Ram, and A. G. Gray", //
+      title = "Fast Euclidean minimum spanning tree: algorithm, analysis, and applications", //
+      booktitle = "Proc. 16th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining", //
+      url = "http://dx.doi.org/10.1145/1835804.1835882")
+  protected static class Instance<O extends NumberVector> {
+    /**
+     * Data relation.
+     */
+    private Relation<O> relation;
+
+    /**
+     * Distance function.
+     */
+    private SpatialPrimitiveDistanceFunction<? super O> distf;
+
+    /**
+     * Maximum leaf size.
+     */
+    private int leafsize;
+
+    /**
+     * Objects, in tree order.
+     */
+    protected ArrayDBIDs order;
+
+    /**
+     * Iterators into the tree order.
+     */
+    private DBIDArrayIter iq, ir;
+
+    /**
+     * Node ranges.
+     */
+    private int[] nstart, nend;
+
+    /**
+     * Right child of each node, -1 for leaves.
+     */
+    private int[] nright;
+
+    /**
+     * Node bounding boxes.
+     */
+    private ModifiableHyperBoundingBox[] nbox;
+
+    /**
+     * Minimum core distance within each node.
+     */
+    private double[] nmincore;
+
+    /**
+     * Shared component of each node, or -1 if not uniform.
+     */
+    private int[] ncomp;
+
+    /**
+     * Upper bound of the current candidate distance of all objects in a node.
+     */
+    private double[] nbound;
+
+    /**
+     * Number of nodes used.
+     */
+    private int numnodes;
+
+    /**
+     * Core distances, in tree order.
+     */
+    private double[] core;
+
+    /**
+     * Union-find parent pointers, and the current component of each object.
+     */
+    private int[] parent, comp;
+
+    /**
+     * Length of the best candidate edge of each component.
+     */
+    private double[] candDist;
+
+    /**
+     * Best candidate edge of each component (encoded as pair of offsets).
+     */
+    private long[] candKey;
+
+    /**
+     * Number of distance computations.
+     */
+    private long distcalc;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param distf Distance function
+     * @param leafsize Maximum leaf size
+     */
+    public Instance(Relation<O> relation, SpatialPrimitiveDistanceFunction<? super O> distf, int leafsize) {
+      this.relation = relation;
+      this.distf = distf;
+      this.leafsize = leafsize;
+    }
+
+    /**
+     * Build the k-d-tree.
+     */
+    protected void buildTree() {
+      final int size = relation.size();
+      ModifiableDoubleDBIDList sorted = DBIDUtil.newDistanceDBIDList(size);
+      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+        sorted.add(Double.NaN, it);
+      }
+      final int maxnodes = countNodes(size);
+      nstart = new int[maxnodes];
+      nend = new int[maxnodes];
+      nright = new int[maxnodes];
+      nbox = new ModifiableHyperBoundingBox[maxnodes];
+      numnodes = 0;
+      if(size > 0) {
+        buildTree(sorted, sorted.iter(), 0, size);
+      }
+      order = DBIDUtil.newArray(sorted);
+      iq = order.iter();
+      ir = order.iter();
+    }
+
+    /**
+     * Upper bound on the number of nodes.
+     *
+     * @param size Number of objects
+     * @return Number of nodes
+     */
+    private int countNodes(int size) {
+      return size <= leafsize ? 1 : 1 + countNodes(size >>> 1) + countNodes(size - (size >>> 1));
+    }
+
+    /**
+     * Recursively build the tree by partial sorting.
+     *
+     * @param sorted Data in tree order
+     * @param iter Iterator
+     * @param start Interval begin
+     * @param end Interval end (exclusive)
+     * @return Node number
+     */
+    private int buildTree(ModifiableDoubleDBIDList sorted, DoubleDBIDListMIter iter, int start, int end) {
+      final int node = numnodes++;
+      nstart[node] = start;
+      nend[node] = end;
+      ModifiableHyperBoundingBox box = nbox[node] = new ModifiableHyperBoundingBox(relation.get(iter.seek(start)));
+      for(iter.advance(); iter.getOffset() < end; iter.advance()) {
+        box.extend(relation.get(iter));
+      }
+      // Choose the widest dimension for splitting:
+      final double[] min = box.getMinRef(), max = box.getMaxRef();
+      int axis = 0;
+      double width = max[0] - min[0];
+      for(int d = 1; d < min.length; d++) {
+        final double w = max[d] - min[d];
+        if(w > width) {
+          width = w;
+          axis = d;
+        }
+      }
+      if(end - start <= leafsize || !(width > 0.)) {
+        nright[node] = -1;
+        return node;
+      }
+      for(iter.seek(start); iter.getOffset() < end; iter.advance()) {
+        iter.setDouble(relation.get(iter).doubleValue(axis));
+      }
+      final int middle = (start + end) >>> 1;
+      QuickSelectDBIDs.quickSelect(sorted, start, end, middle);
+      buildTree(sorted, iter, start, middle);
+      nright[node] = buildTree(sorted, iter, middle, end);
+      return node;
+    }
+
+    /**
+     * Compute the core distances for all objects, using the k-d-tree.
+     *
+     * @param minPts Minimum neighborhood size
+     * @return Data store with core distances
+     */
+    protected WritableDoubleDataStore computeCoreDists(int minPts) {
+      final int size = order.size();
+      final WritableDoubleDataStore coredists = DataStoreUtil.makeDoubleStorage(order, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_DB);
+      core = new double[size];
+      DoubleMaxHeap heap = new DoubleMaxHeap(minPts);
+      FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Computing core sizes", size, LOG) : null;
+      for(DBIDArrayIter it = order.iter(); it.valid(); it.advance()) {
+        heap.clear();
+        knnSearch(0, relation.get(it), heap, minPts);
+        coredists.putDouble(it, core[it.getOffset()] = heap.peek());
+        LOG.incrementProcessed(cprog);
+      }
+      LOG.ensureCompleted(cprog);
+      // Minimum core distance of each node, bottom-up (reverse preorder):
+      nmincore = new double[numnodes];
+      for(int node = numnodes - 1; node >= 0; node--) {
+        final int right = nright[node];
+        if(right >= 0) {
+          nmincore[node] = Math.min(nmincore[node + 1], nmincore[right]);
+          continue;
+        }
+        double m = Double.POSITIVE_INFINITY;
+        for(int i = nstart[node], end = nend[node]; i < end; i++) {
+          m = core[i] < m ? core[i] : m;
+        }
+        nmincore[node] = m;
+      }
+      return coredists;
+    }
+
+    /**
+     * Find the k nearest neighbor distances of a single object.
+     *
+     * @param node Current node
+     * @param obj Query object
+     * @param heap Heap of the k smallest distances
+     * @param k Number of neighbors
+     */
+    private void knnSearch(int node, O obj, DoubleMaxHeap heap, int k) {
+      final int right = nright[node];
+      if(right < 0) {
+        for(ir.seek(nstart[node]); ir.getOffset() < nend[node]; ir.advance()) {
+          final double d = distf.distance(obj, relation.get(ir));
+          ++distcalc;
+          if(heap.size() < k) {
+            heap.add(d);
+          }
+          else if(d < heap.peek()) {
+            heap.replaceTopElement(d);
+          }
+        }
+        return;
+      }
+      final int left = node + 1;
+      final double dl = distf.minDist(obj, nbox[left]);
+      final double dr = distf.minDist(obj, nbox[right]);
+      final int first = dl <= dr ? left : right, second = dl <= dr ? right : left;
+      final double dfirst = dl <= dr ? dl : dr, dsecond = dl <= dr ? dr : dl;
+      if(heap.size() < k || dfirst < heap.peek()) {
+        knnSearch(first, obj, heap, k);
+      }
+      if(heap.size() < k || dsecond < heap.peek()) {
+        knnSearch(second, obj, heap, k);
+      }
+    }
+
+    /**
+     * Run Boruvka's algorithm, using dual-tree searches for the nearest
+     * neighbor component of each component.
+     *
+     * @param collector Edge collector
+     */
+    protected void boruvka(HeapMSTCollector collector) {
+      final int size = order.size();
+      parent = new int[size];
+      comp = new int[size];
+      candDist = new double[size];
+      candKey = new long[size];
+      ncomp = new int[numnodes];
+      nbound = new double[numnodes];
+      for(int i = 0; i < size; i++) {
+        parent[i] = comp[i] = i;
+      }
+      int components = size, rounds = 0;
+      while(components > 1) {
+        Arrays.fill(candDist, Double.POSITIVE_INFINITY);
+        Arrays.fill(candKey, Long.MAX_VALUE);
+        updateNodes(0);
+        dualTree(0, 0);
+        ++rounds;
+        // Add the best edge of each component:
+        int added = 0;
+        for(int c = 0; c < size; c++) {
+          final long key = candKey[c];
+          if(comp[c] != c || key == Long.MAX_VALUE) {
+            continue;
+          }
+          final int p = (int) (key >>> 31), q = (int) (key & 0x7FFFFFFFL);
+          final int rp = find(p), rq = find(q);
+          if(rp == rq) {
+            // Already joined, via the same edge or a tied edge.
+            continue;
+          }
+          parent[rp < rq ? rq : rp] = rp < rq ? rp : rq;
+          collector.addEdge(candDist[c], p, q);
+          ++added;
+        }
+        if(added == 0) {
+          LOG.warning("Boruvka did not find any edge to add, the data may contain NaN values.");
+          break;
+        }
+        components -= added;
+        for(int i = 0; i < size; i++) {
+          comp[i] = find(i);
+        }
+      }
+      if(LOG.isStatistics()) {
+        LOG.statistics(new LongStatistic(BoruvkaHDBSCAN.class.getName() + ".boruvka-rounds", rounds));
+        LOG.statistics(new LongStatistic(BoruvkaHDBSCAN.class.getName() + ".distance-computations", distcalc));
+      }
+    }
+
+    /**
+     * Find the component of an object, with path halving.
+     *
+     * @param i Object offset
+     * @return Component
+     */
+    private int find(int i) {
+      while(parent[i] != i) {
+        i = parent[i] = parent[parent[i]];
+      }
+      return i;
+    }
+
+    /**
+     * Update the node components, and reset the bounds.
+     *
+     * @param node Node
+     */
+    private void updateNodes(int node) {
+      nbound[node] = Double.POSITIVE_INFINITY;
+      final int right = nright[node];
+      if(right >= 0) {
+        updateNodes(node + 1);
+        updateNodes(right);
+        final int cl = ncomp[node + 1];
+        ncomp[node] = cl == ncomp[right] ? cl : -1;
+        return;
+      }
+      final int c = comp[nstart[node]];
+      for(int i = nstart[node] + 1, end = nend[node]; i < end; i++) {
+        if(comp[i] != c) {
+          ncomp[node] = -1;
+          return;
+        }
+      }
+      ncomp[node] = c;
+    }
+
+    /**
+     * Lower bound of the mutual reachability distance of two nodes.
+     *
+     * @param q Query node
+     * @param r Reference node
+     * @return Lower bound
+     */
+    private double lowerBound(int q, int r) {
+      final double cq = nmincore[q], cr = nmincore[r];
+      final double d = q == r ? 0. : distf.minDist(nbox[q], nbox[r]);
+      return d > cq ? (d > cr ? d : cr) : (cq > cr ? cq : cr);
+    }
+
+    /**
+     * Dual-tree search for the nearest other component.
+     *
+     * @param q Query node
+     * @param r Reference node
+     */
+    private void dualTree(int q, int r) {
+      final int cq = ncomp[q];
+      if(cq >= 0 && cq == ncomp[r]) {
+        return; // Same component.
+      }
+      if(lowerBound(q, r) >= nbound[q]) {
+        return; // Cannot improve.
+      }
+      final int qright = nright[q], rright = nright[r];
+      if(qright < 0) {
+        if(rright < 0) {
+          baseCase(q, r);
+          return;
+        }
+        dualTreeReference(q, r + 1, rright);
+        return;
+      }
+      final int qleft = q + 1;
+      if(rright < 0) {
+        dualTree(qleft, r);
+        dualTree(qright, r);
+      }
+      else {
+        dualTreeReference(qleft, r + 1, rright);
+        dualTreeReference(qright, r + 1, rright);
+      }
+      final double bl = nbound[qleft], br = nbound[qright];
+      nbound[q] = bl > br ? bl : br;
+    }
+
+    /**
+     * Descend into two reference nodes, the closer one first.
+     *
+     * @param q Query node
+     * @param r1 First reference node
+     * @param r2 Second reference node
+     */
+    private void dualTreeReference(int q, int r1, int r2) {
+      final double l1 = lowerBound(q, r1), l2 = lowerBound(q, r2);
+      // On ties (usually 0), prefer the node containing q, for tighter bounds.
+      if(l1 < l2 || (l1 == l2 && nstart[q] < nend[r1])) {
+        dualTree(q, r1);
+        dualTree(q, r2);
+      }
+      else {
+        dualTree(q, r2);
+        dualTree(q, r1);
+      }
+    }
+
+    /**
+     * Compare all objects of two leaf nodes.
+     *
+     * @param q Query leaf
+     * @param r Reference leaf
+     */
+    private void baseCase(int q, int r) {
+      final int qend = nend[q], rstart = nstart[r], rend = nend[r];
+      double bound = 0.;
+      for(iq.seek(nstart[q]); iq.getOffset() < qend; iq.advance()) {
+        final int i = iq.getOffset(), c = comp[i];
+        final double corei = core[i];
+        if(corei < candDist[c]) {
+          O oi = relation.get(iq);
+          for(ir.seek(rstart); ir.getOffset() < rend; ir.advance()) {
+            final int j = ir.getOffset();
+            if(comp[j] == c) {
+              continue;
+            }
+            double m = corei > core[j] ? corei : core[j];
+            if(m >= candDist[c]) {
+              continue;
+            }
+            final double d = distf.distance(oi, relation.get(ir));
+            ++distcalc;
+            m = d > m ? d : m;
+            if(m < candDist[c]) {
+              candDist[c] = m;
+              candKey[c] = (((long) i) << 31) | j;
+            }
+          }
+        }
+        bound = candDist[c] > bound ? candDist[c] : bound;
+      }
+      nbound[q] = bound;
+    }
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    // We strictly need a vector field of fixed dimensionality!
+    TypeInformation type = new CombinedTypeInformation(TypeUtil.NUMBER_VECTOR_FIELD, getDistanceFunction().getInputTypeRestriction());
+    return TypeUtil.array(type);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O extends NumberVector> extends AbstractHDBSCAN.Parameterizer<O> {
+    /**
+     * Option ID for the leaf size of the k-d-tree.
+     */
+    public static final OptionID LEAFSIZE_ID = new OptionID("hdbscan.boruvka.leafsize", "Maximum number of objects in a k-d-tree leaf.");
+
+    /**
+     * Maximum size of leaf nodes.
+     */
+    protected int leafsize;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      // Disabled: super.makeOptions(config);
+      // Because we need spatial distance functions, and allow minPts = 1.
+      ObjectParameter<SpatialPrimitiveDistanceFunction<? super O>> distanceFunctionP = new ObjectParameter<>(DistanceBasedAlgorithm.DISTANCE_FUNCTION_ID, SpatialPrimitiveDistanceFunction.class, EuclideanDistanceFunction.class);
+      if(config.grab(distanceFunctionP)) {
+        distanceFunction = distanceFunctionP.instantiateClass(config);
+      }
+
+      IntParameter minptsP = new IntParameter(MIN_PTS_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(minptsP)) {
+        minPts = minptsP.getValue();
+      }
+
+      IntParameter leafsizeP = new IntParameter(LEAFSIZE_ID, 16) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(leafsizeP)) {
+        leafsize = leafsizeP.getValue();
+      }
+    }
+
+    @Override
+    protected BoruvkaHDBSCAN<O> makeInstance() {
+      return new BoruvkaHDBSCAN<>((SpatialPrimitiveDistanceFunction<? super O>) distanceFunction, minPts, leafsize);
+    }
+  }
+}
@@ -103,8 +103,19 @@ public class BIRCHLeafClustering extends AbstractAlgorithm<Clustering<MeanModel>
    * @return Clustering
    */
   public Clustering<MeanModel> run(Relation<NumberVector> relation) {
+    return clusterLeaves(cffactory.newTree(relation.getDBIDs(), relation), relation);
+  }
+
+  /**
+   * Build the clustering from an existing tree, for example a tree built in a
+   * single pass with {@link CFTree.Factory#newTree(de.lmu.ifi.dbs.elki.datasource.bundle.BundleStreamSource)}.
+   *
+   * @param tree CF-tree
+   * @param relation Data to assign to the leaves
+   * @return Clustering
+   */
+  public Clustering<MeanModel> clusterLeaves(CFTree tree, Relation<? extends NumberVector> relation) {
     final int dim = RelationUtil.dimensionality(relation);
-    CFTree tree = cffactory.newTree(relation.getDBIDs(), relation);
     // The CFTree does not store points. We have to reassign them (and the
     // quality is better than if we used the initial assignment, because centers
     // move in particular in the beginning, so we always had many outliers.
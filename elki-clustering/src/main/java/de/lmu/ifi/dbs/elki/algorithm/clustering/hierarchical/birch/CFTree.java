@@ -22,15 +22,28 @@ package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.birch;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleMeta;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleStreamSource;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.iterator.Iter;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 import de.lmu.ifi.dbs.elki.utilities.io.FormatUtil;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
@@ -168,6 +181,40 @@ public class CFTree {
     }
   }
 
+  /**
+   * Insert a clustering feature into the tree, for example a leaf of another
+   * tree when merging trees.
+   *
+   * @param leaf Leaf clustering feature
+   */
+  public void insert(ClusteringFeature leaf) {
+    // No root created yet:
+    if(root == null) {
+      root = new TreeNode(leaf.getDimensionality(), capacity);
+      root.children[0] = leaf;
+      root.addToStatistics(leaf);
+      ++leaves;
+      return;
+    }
+    TreeNode other = insert(root, leaf);
+    // Handle root overflow:
+    if(other != null) {
+      TreeNode newnode = new TreeNode(leaf.getDimensionality(), capacity);
+      newnode.addToStatistics(newnode.children[0] = root);
+      newnode.addToStatistics(newnode.children[1] = other);
+      root = newnode;
+    }
+  }
+
+  /**
+   * Get the number of leaf entries.
+   *
+   * @return Number of leaves
+   */
+  public int numLeaves() {
+    return leaves;
+  }
+
   /**
    * Rebuild the CFTree to condense it to approximately half the size.
    */
@@ -631,6 +678,11 @@ public class CFTree {
      */
     double maxleaves;
 
+    /**
+     * Number of partitions to build in parallel (0: number of processors).
+     */
+    int partitions = 1;
+
     /**
      * Constructor.
      *
@@ -641,11 +693,27 @@ public class CFTree {
      * @param maxleaves Maximum number of leaves
      */
     public Factory(BIRCHDistance distance, BIRCHAbsorptionCriterion absorption, double threshold, int branchingFactor, double maxleaves) {
+      this(distance, absorption, threshold, branchingFactor, maxleaves, 1);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param distance Distance to use
+     * @param absorption Absorption criterion (diameter, distance).
+     * @param threshold Distance threshold
+     * @param branchingFactor Maximum branching factor.
+     * @param maxleaves Maximum number of leaves
+     * @param partitions Number of partitions to build in parallel, 0 for the
+     *        number of processors.
+     */
+    public Factory(BIRCHDistance distance, BIRCHAbsorptionCriterion absorption, double threshold, int branchingFactor, double maxleaves, int partitions) {
       this.distance = distance;
       this.absorption = absorption;
       this.threshold = threshold;
       this.branchingFactor = branchingFactor;
       this.maxleaves = maxleaves;
+      this.partitions = partitions;
     }
 
     /**
@@ -656,6 +724,19 @@ public class CFTree {
      * @return New tree
      */
     public CFTree newTree(DBIDs ids, Relation<? extends NumberVector> relation) {
+      if(partitions != 1 && ids.size() > 1) {
+        ParallelCore core = ParallelCore.getCore();
+        core.connect();
+        try {
+          final int p = Math.min(partitions > 0 ? partitions : core.getParallelism(), ids.size());
+          if(p > 1) {
+            return newTreeParallel(DBIDUtil.ensureArray(ids), relation, core, p);
+          }
+        }
+        finally {
+          core.disconnect();
+        }
+      }
       CFTree tree = new CFTree(distance, absorption, threshold, branchingFactor);
       final double max = maxleaves <= 1 ? maxleaves * ids.size() : maxleaves;
       FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Building tree", relation.size(), LOG) : null;
@@ -673,6 +754,168 @@ public class CFTree {
       return tree;
     }
 
+    /**
+     * Build a tree for each partition of the data in parallel, then merge the
+     * leaf clustering features of all trees into the first.
+     *
+     * @param ids DBIDs to insert
+     * @param relation Data relation
+     * @param core Parallel core
+     * @param p Number of partitions
+     * @return Merged tree
+     */
+    private CFTree newTreeParallel(ArrayDBIDs ids, Relation<? extends NumberVector> relation, ParallelCore core, int p) {
+      final int size = ids.size(), blocksize = (size + p - 1) / p;
+      List<Future<CFTree>> futures = new ArrayList<>(p);
+      for(int b = 0; b < size; b += blocksize) {
+        futures.add(core.submit(new PartitionBuilder(ids, b, Math.min(b + blocksize, size), relation)));
+      }
+      List<CFTree> trees = new ArrayList<>(futures.size());
+      try {
+        for(Future<CFTree> f : futures) {
+          trees.add(f.get());
+        }
+      }
+      catch(ExecutionException e) {
+        throw new RuntimeException("Processor execution failed.", e);
+      }
+      catch(InterruptedException e) {
+        throw new RuntimeException("Parallel execution interrupted.");
+      }
+      // Merge into the first tree. Start with the smallest threshold of all
+      // trees, rebuilding will increase it as necessary.
+      CFTree tree = trees.get(0);
+      for(CFTree other : trees) {
+        tree.thresholdsq = other.thresholdsq < tree.thresholdsq ? other.thresholdsq : tree.thresholdsq;
+      }
+      final double max = maxleaves <= 1 ? maxleaves * size : maxleaves;
+      FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Merging partition trees", trees.size() - 1, LOG) : null;
+      for(int i = 1; i < trees.size(); i++) {
+        for(LeafIterator iter = trees.get(i).leafIterator(); iter.valid(); iter.advance()) {
+          tree.insert(iter.get());
+          if(tree.leaves > max) {
+            if(LOG.isVerbose()) {
+              LOG.verbose("Compacting CF-tree.");
+            }
+            tree.rebuildTree();
+          }
+        }
+        trees.set(i, null); // Allow garbage collection.
+        LOG.incrementProcessed(prog);
+      }
+      LOG.ensureCompleted(prog);
+      return tree;
+    }
+
+    /**
+     * Make a new tree, reading the data in a single pass from a stream, for
+     * example from a {@link de.lmu.ifi.dbs.elki.datasource.parser.StreamingParser}.
+     * The data is not kept in memory, only the tree summary.
+     *
+     * The first number vector column of the stream is used. Because the
+     * stream size is not known in advance, a relative leaf limit is applied to
+     * the number of objects read so far (but never less than the branching
+     * factor).
+     *
+     * @param source Data stream
+     * @return New tree
+     */
+    public CFTree newTree(BundleStreamSource source) {
+      CFTree tree = new CFTree(distance, absorption, threshold, branchingFactor);
+      IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Building tree", LOG) : null;
+      int col = -1, count = 0;
+      loop: while(true) {
+        BundleStreamSource.Event ev = source.nextEvent();
+        switch(ev){
+        case END_OF_STREAM:
+          break loop;
+        case META_CHANGED:
+          col = -1;
+          BundleMeta meta = source.getMeta();
+          for(int i = 0; i < meta.size(); i++) {
+            if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(meta.get(i))) {
+              col = i;
+              break;
+            }
+          }
+          break; // switch
+        case NEXT_OBJECT:
+          if(col < 0) {
+            throw new AbortException("No number vector column found in the data stream.");
+          }
+          tree.insert((NumberVector) source.data(col));
+          ++count;
+          final double max = maxleaves <= 1 ? Math.max(maxleaves * count, branchingFactor) : maxleaves;
+          if(tree.leaves > max) {
+            if(LOG.isVerbose()) {
+              LOG.verbose("Compacting CF-tree.");
+            }
+            tree.rebuildTree();
+          }
+          LOG.incrementProcessed(prog);
+          break; // switch
+        default:
+          LOG.warning("Unknown bundle stream event. API inconsistent? " + ev);
+          break; // switch
+        }
+      }
+      LOG.setCompleted(prog);
+      return tree;
+    }
+
+    /**
+     * Build the tree of a single partition.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    private class PartitionBuilder implements Callable<CFTree> {
+      /**
+       * Object IDs.
+       */
+      private ArrayDBIDs ids;
+
+      /**
+       * Partition range.
+       */
+      private int begin, end;
+
+      /**
+       * Data relation.
+       */
+      private Relation<? extends NumberVector> relation;
+
+      /**
+       * Constructor.
+       *
+       * @param ids Object IDs
+       * @param begin Partition begin
+       * @param end Partition end (exclusive)
+       * @param relation Data relation
+       */
+      PartitionBuilder(ArrayDBIDs ids, int begin, int end, Relation<? extends NumberVector> relation) {
+        this.ids = ids;
+        this.begin = begin;
+        this.end = end;
+        this.relation = relation;
+      }
+
+      @Override
+      public CFTree call() {
+        CFTree tree = new CFTree(distance, absorption, threshold, branchingFactor);
+        final double max = maxleaves <= 1 ? maxleaves * (end - begin) : maxleaves;
+        DBIDArrayIter it = ids.iter();
+        for(int i = begin; i < end; i++) {
+          tree.insert(relation.get(it.seek(i)));
+          if(tree.leaves > max) {
+            tree.rebuildTree();
+          }
+        }
+        return tree;
+      }
+    }
+
     /**
      * Parameterization class for CFTrees.
      *
@@ -701,6 +944,11 @@ public class CFTree {
        */
       public static final OptionID BRANCHING_ID = new OptionID("cftree.branching", "Maximum branching factor of the CF-Tree");
 
+      /**
+       * Number of partitions for parallel construction.
+       */
+      public static final OptionID PARTITIONS_ID = new OptionID("cftree.partitions", "Number of data partitions to build CF-trees for in parallel, which are then merged. 0 uses the number of processors.");
+
       /**
        * Maximum number of leaves.
        */
@@ -731,6 +979,11 @@ public class CFTree {
        */
       double maxleaves;
 
+      /**
+       * Number of partitions.
+       */
+      int partitions;
+
       @Override
       protected void makeOptions(Parameterization config) {
         ObjectParameter<BIRCHDistance> distanceP = new ObjectParameter<>(DISTANCE_ID, BIRCHDistance.class, VarianceIncreaseDistance.class);
@@ -763,11 +1016,17 @@ public class CFTree {
         if(config.grab(maxleavesP)) {
           maxleaves = maxleavesP.doubleValue();
         }
+
+        IntParameter partitionsP = new IntParameter(PARTITIONS_ID, 1) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+        if(config.grab(partitionsP)) {
+          partitions = partitionsP.intValue();
+        }
       }
 
       @Override
       protected CFTree.Factory makeInstance() {
-        return new CFTree.Factory(distance, absorption, threshold, branchingFactor, maxleaves);
+        return new CFTree.Factory(distance, absorption, threshold, branchingFactor, maxleaves, partitions);
       }
     }
   }
@@ -0,0 +1,419 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractNumberVectorDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.DistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.ClusteringAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.BestOfMultipleKMeans;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeans;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeansLloyd;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.RandomlyChosenInitialMeans;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.quality.KMeansQualityMeasure;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.quality.WithinClusterVarianceQualityMeasure;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.ProxyView;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Parallel bisecting k-means.
+ *
+ * As in {@link de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeansBisecting},
+ * the largest cluster is split repeatedly, keeping the best of several
+ * 2-means trials. Here, all trials run concurrently, and the splits of new
+ * clusters are computed speculatively as soon as the clusters are created,
+ * while the next cluster is still being chosen. Every split trial has its own
+ * random seed, drawn in a fixed order, so the result does not depend on the
+ * number of threads.
+ *
+ * Reference:<br>
+ * <p>
+ * M. Steinbach, G. Karypis, V. Kumar:<br />
+ * A Comparison of Document Clustering Techniques<br />
+ * KDD workshop on text mining. Vol. 400. No. 1
+ * </p>
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @param <V> Vector type
+ */
+@Reference(authors = "M. Steinbach, G. Karypis, V. Kumar", title = "A Comparison of Document Clustering Techniques", booktitle = "KDD workshop on text mining. Vol. 400. No. 1")
+public class ParallelKMeansBisecting<V extends NumberVector> extends AbstractNumberVectorDistanceBasedAlgorithm<V, Clustering<KMeansModel>> implements ClusteringAlgorithm<Clustering<KMeansModel>> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelKMeansBisecting.class);
+
+  /**
+   * Desired value of k.
+   */
+  private int k;
+
+  /**
+   * Maximum number of iterations of each 2-means run.
+   */
+  private int maxiter;
+
+  /**
+   * Number of trials for each split.
+   */
+  private int trials;
+
+  /**
+   * Quality measure to choose the best trial.
+   */
+  private KMeansQualityMeasure<V> qualityMeasure;
+
+  /**
+   * Random generator for the split seeds.
+   */
+  private RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param k Number of result clusters
+   * @param maxiter Maximum number of iterations of each 2-means run
+   * @param trials Number of trials for each split
+   * @param qualityMeasure Quality measure to choose the best trial
+   * @param rnd Random generator for the split seeds
+   */
+  public ParallelKMeansBisecting(NumberVectorDistanceFunction<? super V> distanceFunction, int k, int maxiter, int trials, KMeansQualityMeasure<V> qualityMeasure, RandomFactory rnd) {
+    super(distanceFunction);
+    this.k = k;
+    this.maxiter = maxiter;
+    this.trials = trials;
+    this.qualityMeasure = qualityMeasure;
+    this.rnd = rnd;
+  }
+
+  /**
+   * Run the bisecting k-means algorithm.
+   *
+   * @param database Database
+   * @param relation Data relation
+   * @return Clustering result
+   */
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation) {
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      Random random = rnd.getSingleThreadedRandom();
+      List<Split> current = new ArrayList<>();
+      Split root = new Split(relation.getDBIDs(), null);
+      root.submit(core, database, relation, random);
+      current.add(root);
+
+      FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Bisecting k-means", k - 1, LOG) : null;
+      for(int j = 0; j < k - 1; j++) {
+        Split largest = null;
+        for(Split split : current) {
+          if(largest == null || split.ids.size() > largest.ids.size()) {
+            largest = split;
+          }
+        }
+        if(largest.ids.size() < 2) {
+          break;
+        }
+        current.remove(largest);
+        for(Cluster<KMeansModel> child : largest.getBest()) {
+          Split split = new Split(child.getIDs(), child.getModel());
+          // Speculatively split the new clusters, unless this was the last.
+          if(j < k - 2) {
+            split.submit(core, database, relation, random);
+          }
+          current.add(split);
+        }
+        LOG.incrementProcessed(prog);
+      }
+      LOG.ensureCompleted(prog);
+
+      Clustering<KMeansModel> result = new Clustering<>("Bisecting k-Means Result", "Bisecting-k-means");
+      for(Split split : current) {
+        split.cancel();
+        result.addToplevelCluster(new Cluster<>(split.ids, split.model));
+      }
+      return result;
+    }
+    finally {
+      core.disconnect();
+    }
+  }
+
+  /**
+   * A cluster, with its pending split trials.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class Split {
+    /**
+     * Cluster members.
+     */
+    DBIDs ids;
+
+    /**
+     * Cluster model.
+     */
+    KMeansModel model;
+
+    /**
+     * Pending trials.
+     */
+    List<Future<Trial>> pending;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Cluster members
+     * @param model Cluster model
+     */
+    Split(DBIDs ids, KMeansModel model) {
+      this.ids = ids;
+      this.model = model;
+    }
+
+    /**
+     * Submit the split trials.
+     *
+     * @param core Parallel core
+     * @param database Database
+     * @param relation Data relation
+     * @param random Random generator for the seeds
+     */
+    void submit(ParallelCore core, Database database, Relation<V> relation, Random random) {
+      pending = new ArrayList<>(trials);
+      for(int i = 0; i < trials; i++) {
+        pending.add(core.submit(new Trial(database, new ProxyView<>(ids, relation), random.nextLong())));
+      }
+    }
+
+    /**
+     * Wait for all trials, and get the best split.
+     *
+     * @return Clusters of the best split
+     */
+    List<Cluster<KMeansModel>> getBest() {
+      Trial best = null;
+      try {
+        for(Future<Trial> f : pending) {
+          Trial t = f.get();
+          if(best == null || qualityMeasure.isBetter(t.quality, best.quality)) {
+            best = t;
+          }
+        }
+      }
+      catch(ExecutionException e) {
+        throw new RuntimeException("Processor execution failed.", e);
+      }
+      catch(InterruptedException e) {
+        throw new RuntimeException("Parallel execution interrupted.");
+      }
+      pending = null;
+      return best.result.getAllClusters();
+    }
+
+    /**
+     * Cancel unused trials.
+     */
+    void cancel() {
+      if(pending != null) {
+        for(Future<Trial> f : pending) {
+          f.cancel(false);
+        }
+        pending = null;
+      }
+    }
+  }
+
+  /**
+   * A single 2-means trial.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class Trial implements Callable<Trial> {
+    /**
+     * Database.
+     */
+    Database database;
+
+    /**
+     * Cluster to split.
+     */
+    Relation<V> relation;
+
+    /**
+     * Random seed.
+     */
+    long seed;
+
+    /**
+     * Clustering result.
+     */
+    Clustering<KMeansModel> result;
+
+    /**
+     * Quality of the result.
+     */
+    double quality;
+
+    /**
+     * Constructor.
+     *
+     * @param database Database
+     * @param relation Cluster to split
+     * @param seed Random seed
+     */
+    Trial(Database database, Relation<V> relation, long seed) {
+      this.database = database;
+      this.relation = relation;
+      this.seed = seed;
+    }
+
+    @Override
+    public Trial call() {
+      KMeansLloyd<V> kmeans = new KMeansLloyd<>(getDistanceFunction(), 2, maxiter, new RandomlyChosenInitialMeans<>(new RandomFactory(seed)));
+      result = kmeans.run(database, relation);
+      quality = qualityMeasure.quality(result, getDistanceFunction(), relation);
+      return this;
+    }
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <V> Vector type
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractNumberVectorDistanceBasedAlgorithm.Parameterizer<V> {
+    /**
+     * Random seed for the split trials.
+     */
+    public static final OptionID SEED_ID = new OptionID("bisecting.seed", "Random seed for the split trials.");
+
+    /**
+     * Desired number of clusters.
+     */
+    protected int k;
+
+    /**
+     * Maximum number of iterations.
+     */
+    protected int maxiter;
+
+    /**
+     * Number of trials.
+     */
+    protected int trials;
+
+    /**
+     * Quality measure.
+     */
+    protected KMeansQualityMeasure<V> qualityMeasure;
+
+    /**
+     * Random generator.
+     */
+    protected RandomFactory rnd;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      // Do not call super, to use squared Euclidean as default distance.
+      ObjectParameter<NumberVectorDistanceFunction<? super V>> distanceFunctionP = new ObjectParameter<>(DistanceBasedAlgorithm.DISTANCE_FUNCTION_ID, NumberVectorDistanceFunction.class, SquaredEuclideanDistanceFunction.class);
+      if(config.grab(distanceFunctionP)) {
+        distanceFunction = distanceFunctionP.instantiateClass(config);
+      }
+      IntParameter kP = new IntParameter(KMeans.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.intValue();
+      }
+      IntParameter maxiterP = new IntParameter(KMeans.MAXITER_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(maxiterP)) {
+        maxiter = maxiterP.intValue();
+      }
+      IntParameter trialsP = new IntParameter(BestOfMultipleKMeans.Parameterizer.TRIALS_ID, 5) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(trialsP)) {
+        trials = trialsP.intValue();
+      }
+      ObjectParameter<KMeansQualityMeasure<V>> qualityMeasureP = new ObjectParameter<>(BestOfMultipleKMeans.Parameterizer.QUALITYMEASURE_ID, KMeansQualityMeasure.class, WithinClusterVarianceQualityMeasure.class);
+      if(config.grab(qualityMeasureP)) {
+        qualityMeasure = qualityMeasureP.instantiateClass(config);
+      }
+      RandomParameter rndP = new RandomParameter(SEED_ID);
+      if(config.grab(rndP)) {
+        rnd = rndP.getValue();
+      }
+    }
+
+    @Override
+    protected ParallelKMeansBisecting<V> makeInstance() {
+      return new ParallelKMeansBisecting<>(distanceFunction, k, maxiter, trials, qualityMeasure, rnd);
+    }
+  }
+}
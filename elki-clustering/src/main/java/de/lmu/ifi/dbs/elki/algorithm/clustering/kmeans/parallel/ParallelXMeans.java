@@ -0,0 +1,394 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.parallel;
+
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.AbstractKMeans;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeans;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeansLloyd;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.XMeans;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.KMeansInitialization;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.PredefinedInitialMeans;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.quality.KMeansQualityMeasure;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.ProxyView;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.MutableProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.StringStatistic;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.WrongParameterValueException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Parallel X-means.
+ *
+ * In the Improve-Structure step of {@link XMeans}, every cluster is split
+ * tentatively with 2-means, and the split is kept if it improves the
+ * information criterion. These splits are independent, and are computed
+ * concurrently here, including the evaluation of the information criterion.
+ * The Improve-Params step uses {@link ParallelLloydKMeans}. Each split uses
+ * its own random seed, drawn in cluster order, so the result does not depend
+ * on the number of threads.
+ *
+ * Reference:<br>
+ * <p>
+ * D. Pelleg, A. Moore:<br />
+ * X-means: Extending K-means with Efficient Estimation on the Number of
+ * Clusters<br />
+ * In: Proceedings of the 17th International Conference on Machine Learning
+ * (ICML 2000)
+ * </p>
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.uses ParallelLloydKMeans
+ *
+ * @param <V> Vector type
+ */
+@Reference(authors = "D. Pelleg, A. Moore", //
+    title = "X-means: Extending K-means with Efficient Estimation on the Number of Clusters", //
+    booktitle = "Proceedings of the 17th International Conference on Machine Learning (ICML 2000)", //
+    url = "http://www.pelleg.org/shared/hp/download/xmeans.ps")
+public class ParallelXMeans<V extends NumberVector> extends AbstractKMeans<V, KMeansModel> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelXMeans.class);
+
+  /**
+   * Key for statistics logging.
+   */
+  private static final String KEY = ParallelXMeans.class.getName();
+
+  /**
+   * Minimum and maximum number of clusters.
+   */
+  private int k_min, k_max;
+
+  /**
+   * Information criterion to choose the better split.
+   */
+  KMeansQualityMeasure<V> informationCriterion;
+
+  /**
+   * Random factory.
+   */
+  RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param k_min k_min parameter - minimum number of result clusters
+   * @param k_max k_max parameter - maximum number of result clusters
+   * @param maxiter Maximum number of iterations each.
+   * @param initializer Initialization method for the first k_min clusters
+   * @param informationCriterion The information criterion used for the
+   *        splitting step
+   * @param random Random factory
+   */
+  public ParallelXMeans(NumberVectorDistanceFunction<? super V> distanceFunction, int k_min, int k_max, int maxiter, KMeansInitialization<? super V> initializer, KMeansQualityMeasure<V> informationCriterion, RandomFactory random) {
+    super(distanceFunction, k_min, maxiter, initializer);
+    this.k_min = k_min;
+    this.k_max = k_max;
+    this.informationCriterion = informationCriterion;
+    this.rnd = random;
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation) {
+    MutableProgress prog = LOG.isVerbose() ? new MutableProgress("X-means number of clusters", k_max, LOG) : null;
+
+    // Run initial k-means to find at least k_min clusters
+    if(LOG.isStatistics()) {
+      LOG.statistics(new StringStatistic(KEY + ".initialization", initializer.toString()));
+    }
+    Clustering<KMeansModel> clustering = new ParallelLloydKMeans<V>(getDistanceFunction(), k_min, maxiter, initializer).run(database, relation);
+    int k = k_min;
+    if(prog != null) {
+      prog.setProcessed(k, LOG);
+    }
+
+    Random random = rnd.getSingleThreadedRandom();
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      List<Cluster<KMeansModel>> clusters = new ArrayList<>(clustering.getAllClusters());
+      while(clusters.size() <= k_max) {
+        // Improve-Structure, all splits in parallel:
+        List<Future<List<Cluster<KMeansModel>>>> splits = new ArrayList<>(clusters.size());
+        for(Cluster<KMeansModel> cluster : clusters) {
+          splits.add(core.submit(new SplitTask(database, relation, cluster, random.nextLong())));
+        }
+        List<Cluster<KMeansModel>> nextClusters = new ArrayList<>();
+        try {
+          for(Future<List<Cluster<KMeansModel>>> f : splits) {
+            List<Cluster<KMeansModel>> childClusterList = f.get();
+            nextClusters.addAll(childClusterList);
+            if(childClusterList.size() > 1) {
+              k += childClusterList.size() - 1;
+              if(prog != null) {
+                if(k >= k_max) {
+                  prog.setTotal(k + 1);
+                }
+                prog.setProcessed(k, LOG);
+              }
+            }
+          }
+        }
+        catch(ExecutionException e) {
+          throw new RuntimeException("Processor execution failed.", e);
+        }
+        catch(InterruptedException e) {
+          throw new RuntimeException("Parallel execution interrupted.");
+        }
+        if(clusters.size() == nextClusters.size()) {
+          break;
+        }
+        // Improve-Params:
+        double[][] means = new double[nextClusters.size()][];
+        for(int i = 0; i < means.length; i++) {
+          means[i] = nextClusters.get(i).getModel().getMean();
+        }
+        clustering = new ParallelLloydKMeans<V>(getDistanceFunction(), means.length, maxiter, new PredefinedInitialMeans(means)).run(database, relation);
+        clusters.clear();
+        clusters.addAll(clustering.getAllClusters());
+      }
+
+      // Ensure that the progress bar finished.
+      if(prog != null) {
+        prog.setTotal(k);
+        prog.setProcessed(k, LOG);
+      }
+      if(LOG.isDebugging()) {
+        LOG.debug("X-means returned k=" + k + " clusters.");
+      }
+      return new Clustering<>("X-Means Result", "X-Means", clusters);
+    }
+    finally {
+      core.disconnect();
+    }
+  }
+
+  /**
+   * Split an existing centroid into two initial centers.
+   *
+   * @param parentCluster Existing cluster
+   * @param relation Data relation
+   * @param random Random generator
+   * @return List of new centroids
+   */
+  protected double[][] splitCentroid(Cluster<KMeansModel> parentCluster, Relation<V> relation, Random random) {
+    double[] parentCentroid = parentCluster.getModel().getMean();
+
+    // Compute size of cluster/region
+    double radius = 0.;
+    for(DBIDIter it = parentCluster.getIDs().iter(); it.valid(); it.advance()) {
+      double d = getDistanceFunction().distance(relation.get(it), DoubleVector.wrap(parentCentroid));
+      radius = (d > radius) ? d : radius;
+    }
+
+    // Choose random vector
+    final int dim = RelationUtil.dimensionality(relation);
+    double[] randomVector = normalize(MathUtil.randomDoubleArray(dim, random));
+    timesEquals(randomVector, (.4 + random.nextDouble() * .5) * radius);
+
+    // Get the new centroids
+    double[][] vecs = new double[2][];
+    vecs[0] = minus(parentCentroid, randomVector);
+    vecs[1] = plusEquals(randomVector, parentCentroid);
+    return vecs;
+  }
+
+  /**
+   * Task to conditionally split a cluster.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class SplitTask implements Callable<List<Cluster<KMeansModel>>> {
+    /**
+     * Database.
+     */
+    Database database;
+
+    /**
+     * Data relation.
+     */
+    Relation<V> relation;
+
+    /**
+     * Cluster to split.
+     */
+    Cluster<KMeansModel> parentCluster;
+
+    /**
+     * Random seed.
+     */
+    long seed;
+
+    /**
+     * Constructor.
+     *
+     * @param database Database
+     * @param relation Data relation
+     * @param parentCluster Cluster to split
+     * @param seed Random seed
+     */
+    SplitTask(Database database, Relation<V> relation, Cluster<KMeansModel> parentCluster, long seed) {
+      this.database = database;
+      this.relation = relation;
+      this.parentCluster = parentCluster;
+      this.seed = seed;
+    }
+
+    /**
+     * Conditionally splits the cluster based on the information criterion.
+     *
+     * @return Parent cluster when split decreases clustering quality or child
+     *         clusters when split improves clustering.
+     */
+    @Override
+    public List<Cluster<KMeansModel>> call() {
+      List<Cluster<KMeansModel>> parentClusterList = new ArrayList<>(1);
+      parentClusterList.add(parentCluster);
+      if(parentCluster.size() < 2) {
+        return parentClusterList; // Split is not possible
+      }
+      Clustering<KMeansModel> parentClustering = new Clustering<>(parentCluster.getName(), parentCluster.getName(), parentClusterList);
+      double[][] initial = splitCentroid(parentCluster, relation, new Random(seed));
+      KMeansLloyd<V> kmeans = new KMeansLloyd<>(getDistanceFunction(), 2, maxiter, new PredefinedInitialMeans(initial));
+      Clustering<KMeansModel> childClustering = kmeans.run(database, new ProxyView<>(parentCluster.getIDs(), relation));
+
+      double parentEvaluation = informationCriterion.quality(parentClustering, getDistanceFunction(), relation);
+      double childrenEvaluation = informationCriterion.quality(childClustering, getDistanceFunction(), relation);
+      // Check if split is an improvement:
+      return (childrenEvaluation > parentEvaluation) ^ informationCriterion.ascending() ? parentClusterList : childClustering.getAllClusters();
+    }
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <V> Vector type
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractKMeans.Parameterizer<V> {
+    /**
+     * Information criterion.
+     */
+    protected KMeansQualityMeasure<V> informationCriterion;
+
+    /**
+     * Minimum and maximum number of result clusters.
+     */
+    protected int k_min, k_max;
+
+    /**
+     * Random number generator.
+     */
+    private RandomFactory random;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      // Do NOT invoke super.makeOptions to hide the "k" parameter.
+      IntParameter kMinP = new IntParameter(XMeans.Parameterizer.K_MIN_ID, 2) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kMinP)) {
+        k_min = kMinP.intValue();
+      }
+      IntParameter kMaxP = new IntParameter(KMeans.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kMaxP)) {
+        k_max = kMaxP.intValue();
+      }
+      // Non-formalized parameter constraint: k_min <= k_max
+      if(k_min > k_max) {
+        config.reportError(new WrongParameterValueException(kMinP, "must be at most", kMaxP, ""));
+      }
+
+      getParameterInitialization(config);
+      getParameterMaxIter(config);
+      getParameterDistanceFunction(config);
+
+      RandomParameter rndP = new RandomParameter(XMeans.Parameterizer.SEED_ID);
+      if(config.grab(rndP)) {
+        random = rndP.getValue();
+      }
+
+      ObjectParameter<KMeansQualityMeasure<V>> informationCriterionP = new ObjectParameter<>(XMeans.Parameterizer.INFORMATION_CRITERION_ID, KMeansQualityMeasure.class);
+      if(config.grab(informationCriterionP)) {
+        informationCriterion = informationCriterionP.instantiateClass(config);
+      }
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+
+    @Override
+    protected ParallelXMeans<V> makeInstance() {
+      return new ParallelXMeans<>(distanceFunction, k_min, k_max, maxiter, initializer, informationCriterion, random);
+    }
+  }
+}
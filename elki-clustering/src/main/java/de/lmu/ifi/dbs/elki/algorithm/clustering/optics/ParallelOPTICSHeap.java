@@ -0,0 +1,358 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.optics;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBID;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.Heap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.UpdatableHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * The OPTICS algorithm for density-based hierarchical clustering, with
+ * speculative parallel range queries.
+ *
+ * The cluster order is built sequentially exactly as in {@link OPTICSHeap},
+ * but while the current object is processed, the neighborhoods of the objects
+ * at the top of the candidate heap (which are likely to be processed next) are
+ * already computed on the other cores. Because every object in the heap will
+ * be processed eventually, no speculative query is wasted, and the resulting
+ * cluster order is identical to {@link OPTICSHeap}. The number of prefetched
+ * neighborhoods held in memory is bounded by a parameter.
+ *
+ * This pays off when the range queries dominate the run time, which is the
+ * usual case unless the data set is very small.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.composedOf Instance
+ *
+ * @param <O> the type of DatabaseObjects handled by the algorithm
+ */
+@Title("OPTICS: Density-Based Hierarchical Clustering")
+@Description("OPTICS with speculative range queries computed in parallel on the candidates at the top of the heap.")
+public class ParallelOPTICSHeap<O> extends AbstractOPTICS<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelOPTICSHeap.class);
+
+  /**
+   * Maximum number of prefetched neighborhoods.
+   */
+  protected int prefetch;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param epsilon Epsilon value
+   * @param minpts Minpts value
+   * @param prefetch Maximum number of prefetched neighborhoods
+   */
+  public ParallelOPTICSHeap(DistanceFunction<? super O> distanceFunction, double epsilon, int minpts, int prefetch) {
+    super(distanceFunction, epsilon, minpts);
+    this.prefetch = prefetch;
+  }
+
+  @Override
+  public ClusterOrder run(Database db, Relation<O> relation) {
+    return new Instance(db, relation).run();
+  }
+
+  /**
+   * Instance for processing a single data set.
+   *
+   * @author Erich Schubert
+   */
+  private class Instance {
+    /**
+     * Holds a set of processed ids.
+     */
+    private ModifiableDBIDs processedIDs;
+
+    /**
+     * Heap of candidates.
+     */
+    UpdatableHeap<OPTICSHeapEntry> heap;
+
+    /**
+     * Output cluster order.
+     */
+    ClusterOrder clusterOrder;
+
+    /**
+     * IDs to process.
+     */
+    private DBIDs ids;
+
+    /**
+     * Progress for logging.
+     */
+    FiniteProgress progress;
+
+    /**
+     * Range query.
+     */
+    RangeQuery<O> rangeQuery;
+
+    /**
+     * Pending and finished speculative range queries.
+     */
+    WritableDataStore<Future<DoubleDBIDList>> cache;
+
+    /**
+     * Number of entries in the cache.
+     */
+    int cached;
+
+    /**
+     * Parallel executor.
+     */
+    ParallelCore core;
+
+    /**
+     * Number of neighborhoods that were prefetched, and that were not.
+     */
+    long hits, misses;
+
+    /**
+     * Constructor for a single data set.
+     *
+     * @param db Database
+     * @param relation Data relation
+     */
+    public Instance(Database db, Relation<O> relation) {
+      ids = relation.getDBIDs();
+      processedIDs = DBIDUtil.newHashSet(ids.size());
+      clusterOrder = new ClusterOrder(ids, "OPTICS Clusterorder", "optics-clusterorder");
+      progress = LOG.isVerbose() ? new FiniteProgress("OPTICS", ids.size(), LOG) : null;
+      DistanceQuery<O> dq = db.getDistanceQuery(relation, getDistanceFunction());
+      rangeQuery = db.getRangeQuery(dq, epsilon);
+      heap = new UpdatableHeap<>();
+      cache = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, Future.class);
+    }
+
+    /**
+     * Process the data set.
+     *
+     * @return Cluster order result.
+     */
+    public ClusterOrder run() {
+      core = ParallelCore.getCore();
+      core.connect();
+      try {
+        for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+          if(!processedIDs.contains(iditer)) {
+            assert (heap.isEmpty());
+            expandClusterOrder(iditer);
+          }
+        }
+      }
+      finally {
+        core.disconnect();
+      }
+      assert (cached == 0) : "Unused prefetched neighborhoods.";
+      LOG.ensureCompleted(progress);
+      cache.destroy();
+      LOG.statistics(new LongStatistic(ParallelOPTICSHeap.class.getName() + ".prefetch.hits", hits));
+      LOG.statistics(new LongStatistic(ParallelOPTICSHeap.class.getName() + ".prefetch.misses", misses));
+      return clusterOrder;
+    }
+
+    /**
+     * OPTICS-function expandClusterOrder.
+     *
+     * @param objectID the currently processed object
+     */
+    protected void expandClusterOrder(DBIDRef objectID) {
+      heap.add(new OPTICSHeapEntry(DBIDUtil.deref(objectID), null, Double.POSITIVE_INFINITY));
+
+      while(!heap.isEmpty()) {
+        final OPTICSHeapEntry current = heap.poll();
+        clusterOrder.add(current.objectID, current.reachability, current.predecessorID);
+        processedIDs.add(current.objectID);
+
+        // Keep the other cores busy while we wait for this neighborhood:
+        prefetchCandidates();
+        DoubleDBIDList neighbors = getNeighbors(current.objectID);
+        if(neighbors.size() >= minpts) {
+          DoubleDBIDListIter neighbor = neighbors.iter();
+          final double coreDistance = neighbor.seek(minpts - 1).doubleValue();
+
+          for(neighbor.seek(0); neighbor.valid(); neighbor.advance()) {
+            if(processedIDs.contains(neighbor)) {
+              continue;
+            }
+            double reachability = MathUtil.max(neighbor.doubleValue(), coreDistance);
+            heap.add(new OPTICSHeapEntry(DBIDUtil.deref(neighbor), current.objectID, reachability));
+          }
+        }
+        LOG.incrementProcessed(progress);
+      }
+    }
+
+    /**
+     * Get the neighbors of an object, from the cache if available.
+     *
+     * @param id Object
+     * @return Neighbors, sorted if there are at least minpts.
+     */
+    private DoubleDBIDList getNeighbors(DBIDRef id) {
+      Future<DoubleDBIDList> pending = cache.get(id);
+      if(pending == null) {
+        ++misses;
+        return new RangeTask(DBIDUtil.deref(id)).call();
+      }
+      ++hits;
+      cache.delete(id);
+      --cached;
+      try {
+        return pending.get();
+      }
+      catch(ExecutionException e) {
+        throw new RuntimeException("Range query failed.", e);
+      }
+      catch(InterruptedException e) {
+        throw new RuntimeException("Parallel execution interrupted.");
+      }
+    }
+
+    /**
+     * Submit range queries for the candidates at the top of the heap.
+     *
+     * We use the first entries of the heap array, i.e. its top levels; the
+     * next object to be processed is always among them.
+     */
+    private void prefetchCandidates() {
+      for(Heap<OPTICSHeapEntry>.UnorderedIter it = heap.unorderedIter(); it.valid() && cached < prefetch; it.advance()) {
+        final DBID cand = it.get().objectID;
+        if(cache.get(cand) == null) {
+          cache.put(cand, core.submit(new RangeTask(cand)));
+          ++cached;
+        }
+      }
+    }
+
+    /**
+     * Task to compute a single neighborhood.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    private class RangeTask implements Callable<DoubleDBIDList> {
+      /**
+       * Query object.
+       */
+      private DBID id;
+
+      /**
+       * Constructor.
+       *
+       * @param id Query object
+       */
+      public RangeTask(DBID id) {
+        this.id = id;
+      }
+
+      @Override
+      public DoubleDBIDList call() {
+        ModifiableDoubleDBIDList neighbors = DBIDUtil.newDistanceDBIDList();
+        rangeQuery.getRangeForDBID(id, epsilon, neighbors);
+        // Only sort when needed, as in the sequential version.
+        if(neighbors.size() >= minpts) {
+          neighbors.sort();
+        }
+        return neighbors;
+      }
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<O> extends AbstractOPTICS.Parameterizer<O> {
+    /**
+     * Maximum number of neighborhoods to prefetch.
+     */
+    public static final OptionID PREFETCH_ID = new OptionID("optics.prefetch", "Maximum number of neighborhoods of heap candidates to compute in advance (bounds the memory used for speculative range queries).");
+
+    /**
+     * Maximum number of prefetched neighborhoods.
+     */
+    protected int prefetch;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter prefetchP = new IntParameter(PREFETCH_ID, 4 * ParallelCore.ALL_PROCESSORS) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(prefetchP)) {
+        prefetch = prefetchP.intValue();
+      }
+    }
+
+    @Override
+    protected ParallelOPTICSHeap<O> makeInstance() {
+      return new ParallelOPTICSHeap<>(distanceFunction, epsilon, minpts, prefetch);
+    }
+  }
+}
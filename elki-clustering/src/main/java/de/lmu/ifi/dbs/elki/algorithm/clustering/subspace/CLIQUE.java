@@ -27,6 +27,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.clustering.subspace.clique.CLIQUEInterval;
@@ -39,7 +42,10 @@ import de.lmu.ifi.dbs.elki.data.Subspace;
 import de.lmu.ifi.dbs.elki.data.model.SubspaceModel;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
@@ -47,6 +53,7 @@ import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.StepProgress;
 import de.lmu.ifi.dbs.elki.math.MathUtil;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.Centroid;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
@@ -72,6 +79,11 @@ import net.jafama.FastMath;
  * The third step of the original algorithm (Generation of minimal description
  * for the clusters) is not (yet) implemented.
  * 
+ * Unit memberships are stored as bitsets, so joining units is a word-parallel
+ * intersection. The one-dimensional units are filled in parallel (one task per
+ * dimension), and the candidate joins of each level are evaluated in
+ * parallel.
+ * 
  * Reference:
  * <p>
  * R. Agrawal, J. Gehrke, D. Gunopulos, P. Raghavan:<br>
@@ -242,9 +254,10 @@ public class CLIQUE<V extends NumberVector> extends AbstractAlgorithm<Clustering
    * Initializes and returns the one dimensional units.
    * 
    * @param database the database to run the algorithm on
+   * @param ids all object IDs, units refer to their offsets
    * @return the created one dimensional units
    */
-  private Collection<CLIQUEUnit<V>> initOneDimensionalUnits(Relation<V> database) {
+  private List<CLIQUEUnit<V>> initOneDimensionalUnits(Relation<V> database, ArrayDBIDs ids) {
     StringBuilder buf = LOG.isDebuggingFiner() ? new StringBuilder(1000) : null;
     int dimensionality = RelationUtil.dimensionality(database);
     // initialize minima and maxima
@@ -287,7 +300,7 @@ public class CLIQUE<V extends NumberVector> extends AbstractAlgorithm<Clustering
     List<CLIQUEUnit<V>> units = new ArrayList<>(xsi * dimensionality);
     for(int x = 0; x < xsi; x++) {
       for(int d = 0; d < dimensionality; d++) {
-        units.add(new CLIQUEUnit<V>(new CLIQUEInterval(d, unit_bounds[x][d], unit_bounds[x + 1][d])));
+        units.add(new CLIQUEUnit<V>(new CLIQUEInterval(d, unit_bounds[x][d], unit_bounds[x + 1][d]), ids));
       }
     }
 
@@ -326,14 +339,30 @@ public class CLIQUE<V extends NumberVector> extends AbstractAlgorithm<Clustering
    *         their coverage
    */
   private List<CLIQUESubspace<V>> findOneDimensionalDenseSubspaceCandidates(Relation<V> database) {
-    Collection<CLIQUEUnit<V>> units = initOneDimensionalUnits(database);
-    // identify dense units
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(database.getDBIDs());
+    final int dimensionality = RelationUtil.dimensionality(database);
+    List<CLIQUEUnit<V>> units = initOneDimensionalUnits(database, ids);
+    // identify dense units, one task per dimension:
     double total = database.size();
-    for(DBIDIter it = database.iterDBIDs(); it.valid(); it.advance()) {
-      V featureVector = database.get(it);
-      for(CLIQUEUnit<V> unit : units) {
-        unit.addFeatureVector(it, featureVector);
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      List<Future<?>> futures = new ArrayList<>(dimensionality);
+      for(int d = 0; d < dimensionality; d++) {
+        futures.add(core.submit(new FillUnitsTask(database, ids, units, d)));
       }
+      for(Future<?> f : futures) {
+        f.get();
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
     }
 
     Collection<CLIQUEUnit<V>> denseUnits = new ArrayList<>();
@@ -380,14 +409,26 @@ public class CLIQUE<V extends NumberVector> extends AbstractAlgorithm<Clustering
     double all = database.size();
     List<CLIQUESubspace<V>> denseSubspaceCandidates = new ArrayList<>();
 
-    while(!denseSubspacesByDimensions.isEmpty()) {
-      CLIQUESubspace<V> s1 = denseSubspacesByDimensions.remove(0);
-      for(CLIQUESubspace<V> s2 : denseSubspacesByDimensions) {
-        CLIQUESubspace<V> s = s1.join(s2, all, tau);
-        if(s != null) {
-          denseSubspaceCandidates.add(s);
-        }
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      List<Future<List<CLIQUESubspace<V>>>> futures = new ArrayList<>(denseSubspacesByDimensions.size());
+      for(int i = 0; i < denseSubspacesByDimensions.size(); i++) {
+        futures.add(core.submit(new JoinTask(denseSubspacesByDimensions, i, all)));
       }
+      // Collect in order, for deterministic results:
+      for(Future<List<CLIQUESubspace<V>>> f : futures) {
+        denseSubspaceCandidates.addAll(f.get());
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
     }
 
     // sort reverse by coverage
@@ -395,6 +436,126 @@ public class CLIQUE<V extends NumberVector> extends AbstractAlgorithm<Clustering
     return denseSubspaceCandidates;
   }
 
+  /**
+   * Task to assign all objects to the one-dimensional units of one dimension.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private class FillUnitsTask implements Callable<Void> {
+    /**
+     * Data relation.
+     */
+    private Relation<V> relation;
+
+    /**
+     * All object IDs.
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * All one-dimensional units.
+     */
+    private List<CLIQUEUnit<V>> units;
+
+    /**
+     * Dimension to process.
+     */
+    private int dim;
+
+    /**
+     * Constructor.
+     * 
+     * @param relation Data relation
+     * @param ids All object IDs
+     * @param units All one-dimensional units
+     * @param dim Dimension to process
+     */
+    FillUnitsTask(Relation<V> relation, ArrayDBIDs ids, List<CLIQUEUnit<V>> units, int dim) {
+      this.relation = relation;
+      this.ids = ids;
+      this.units = units;
+      this.dim = dim;
+    }
+
+    @Override
+    public Void call() {
+      final int dimensionality = units.size() / xsi;
+      final CLIQUEInterval first = units.get(dim).getIntervals().get(0);
+      final double min = first.getMin(), width = first.getMax() - min;
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        final double v = relation.get(it).doubleValue(dim);
+        if(!(v >= min)) { // Also excludes NaN.
+          continue;
+        }
+        // Estimate the interval, then correct for rounding:
+        int x = Math.min((int) ((v - min) / width), xsi - 1);
+        CLIQUEInterval in = units.get(x * dimensionality + dim).getIntervals().get(0);
+        while(x > 0 && v < in.getMin()) {
+          in = units.get(--x * dimensionality + dim).getIntervals().get(0);
+        }
+        while(x < xsi - 1 && v >= in.getMax()) {
+          in = units.get(++x * dimensionality + dim).getIntervals().get(0);
+        }
+        if(in.getMin() <= v && v < in.getMax()) {
+          units.get(x * dimensionality + dim).addOffset(it.getOffset());
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Task to join one subspace with all following subspaces.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private class JoinTask implements Callable<List<CLIQUESubspace<V>>> {
+    /**
+     * Subspaces, sorted by dimensions.
+     */
+    private List<CLIQUESubspace<V>> subspaces;
+
+    /**
+     * Index of the first subspace.
+     */
+    private int i;
+
+    /**
+     * Total number of objects.
+     */
+    private double all;
+
+    /**
+     * Constructor.
+     * 
+     * @param subspaces Subspaces, sorted by dimensions
+     * @param i Index of the first subspace
+     * @param all Total number of objects
+     */
+    JoinTask(List<CLIQUESubspace<V>> subspaces, int i, double all) {
+      this.subspaces = subspaces;
+      this.i = i;
+      this.all = all;
+    }
+
+    @Override
+    public List<CLIQUESubspace<V>> call() {
+      List<CLIQUESubspace<V>> result = new ArrayList<>();
+      CLIQUESubspace<V> s1 = subspaces.get(i);
+      for(int j = i + 1; j < subspaces.size(); j++) {
+        CLIQUESubspace<V> s = s1.join(subspaces.get(j), all, tau);
+        if(s != null) {
+          result.add(s);
+        }
+      }
+      return result;
+    }
+  }
+
   /**
    * Performs a MDL-based pruning of the specified dense subspaces as described
    * in the CLIQUE algorithm.
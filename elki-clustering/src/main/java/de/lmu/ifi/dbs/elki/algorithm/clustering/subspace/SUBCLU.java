@@ -36,6 +36,14 @@ import de.lmu.ifi.dbs.elki.data.model.SubspaceModel;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.ProxyDatabase;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
@@ -64,6 +72,13 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
  * subspace separately.
  * </p>
  * <p>
+ * The members of all clusters in a subspace are kept as a bitset. Because of
+ * the monotonicity of density-connectivity, objects of a cluster in a
+ * candidate subspace must be clustered in every lower-dimensional subspace, so
+ * the input of DBSCAN is restricted to the (word-parallel) intersection of
+ * these bitsets.
+ * </p>
+ * <p>
  * Reference: <br>
  * K. Kailing, H.-P. Kriegel, P. Kröger:<br />
  * Density connected Subspace Clustering for High Dimensional Data<br />
@@ -166,6 +181,12 @@ public class SUBCLU<V extends NumberVector> extends AbstractAlgorithm<Clustering
    */
   public Clustering<SubspaceModel> run(Relation<V> relation) {
     final int dimensionality = RelationUtil.dimensionality(relation);
+    // Offsets of all objects, for bitset memberships:
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final WritableIntegerDataStore offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      offsets.putInt(it, it.getOffset());
+    }
 
     StepProgress stepprog = LOG.isVerbose() ? new StepProgress(dimensionality) : null;
 
@@ -181,6 +202,8 @@ public class SUBCLU<V extends NumberVector> extends AbstractAlgorithm<Clustering
 
     // mapping of subspaces to list of clusters
     TreeMap<Subspace, List<Cluster<Model>>> clusterMap = new TreeMap<>(new Subspace.DimensionComparator());
+    // mapping of subspaces to the members of all their clusters, as bitset
+    TreeMap<Subspace, long[]> memberMap = new TreeMap<>(new Subspace.DimensionComparator());
 
     for(int d = 0; d < dimensionality; d++) {
       Subspace currentSubspace = new Subspace(d);
@@ -198,6 +221,7 @@ public class SUBCLU<V extends NumberVector> extends AbstractAlgorithm<Clustering
       if(!clusters.isEmpty()) {
         s_1.add(currentSubspace);
         clusterMap.put(currentSubspace, clusters);
+        memberMap.put(currentSubspace, members(clusters, offsets, ids.size()));
       }
     }
 
@@ -226,10 +250,26 @@ public class SUBCLU<V extends NumberVector> extends AbstractAlgorithm<Clustering
           LOG.debugFine("best subspace of " + candidate.dimensonsToString() + ": " + bestSubspace.dimensonsToString());
         }
 
+        // Objects clustered in all lower-dimensional subspaces:
+        long[] mask = null;
+        for(Subspace lower : lowerSubspaces(candidate)) {
+          final long[] m = memberMap.get(lower);
+          mask = mask == null ? BitsUtil.copy(m) : BitsUtil.andI(mask, m);
+        }
+
         List<Cluster<Model>> bestSubspaceClusters = clusterMap.get(bestSubspace);
         List<Cluster<Model>> clusters = new ArrayList<>();
         for(Cluster<Model> cluster : bestSubspaceClusters) {
-          List<Cluster<Model>> candidateClusters = runDBSCAN(relation, cluster.getIDs(), candidate);
+          ArrayModifiableDBIDs cids = DBIDUtil.newArray(cluster.size());
+          for(DBIDIter it = cluster.getIDs().iter(); it.valid(); it.advance()) {
+            if(BitsUtil.get(mask, offsets.intValue(it))) {
+              cids.add(it);
+            }
+          }
+          if(cids.size() < minpts) {
+            continue; // Cannot contain a core point.
+          }
+          List<Cluster<Model>> candidateClusters = runDBSCAN(relation, cids, candidate);
           if(!candidateClusters.isEmpty()) {
             clusters.addAll(candidateClusters);
           }
@@ -247,6 +287,7 @@ public class SUBCLU<V extends NumberVector> extends AbstractAlgorithm<Clustering
         if(!clusters.isEmpty()) {
           s_d.add(candidate);
           clusterMap.put(candidate, clusters);
+          memberMap.put(candidate, members(clusters, offsets, ids.size()));
         }
       }
 
@@ -281,6 +322,24 @@ public class SUBCLU<V extends NumberVector> extends AbstractAlgorithm<Clustering
     return result;
   }
 
+  /**
+   * Collect the members of all clusters as bitset.
+   * 
+   * @param clusters Clusters
+   * @param offsets Object offsets
+   * @param size Number of objects
+   * @return Bitset of offsets
+   */
+  private static long[] members(List<Cluster<Model>> clusters, WritableIntegerDataStore offsets, int size) {
+    long[] bits = BitsUtil.zero(size);
+    for(Cluster<Model> cluster : clusters) {
+      for(DBIDIter it = cluster.getIDs().iter(); it.valid(); it.advance()) {
+        BitsUtil.setI(bits, offsets.intValue(it));
+      }
+    }
+    return bits;
+  }
+
   /**
    * Runs the DBSCAN algorithm on the specified partition of the database in the
    * given subspace. If parameter {@code ids} is null DBSCAN will be applied to
@@ -27,7 +27,6 @@ import java.util.List;
 
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.Subspace;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.BitsUtil;
 import de.lmu.ifi.dbs.elki.utilities.pairs.Pair;
@@ -105,10 +104,11 @@ public class CLIQUESubspace<V extends NumberVector> extends Subspace {
 
     for(CLIQUEUnit<V> unit : getDenseUnits()) {
       if(!unit.isAssigned()) {
-        ModifiableDBIDs cluster = DBIDUtil.newHashSet();
+        long[] cluster = new long[unit.getBits().length];
         CLIQUESubspace<V> model = new CLIQUESubspace<>(getDimensions());
-        clusters.add(new Pair<Subspace, ModifiableDBIDs>(model, cluster));
         dfs(unit, cluster, model);
+        ModifiableDBIDs ids = unit.toDBIDs(cluster, BitsUtil.cardinality(cluster));
+        clusters.add(new Pair<Subspace, ModifiableDBIDs>(model, ids));
       }
     }
     return clusters;
@@ -120,11 +120,11 @@ public class CLIQUESubspace<V extends NumberVector> extends Subspace {
    * finds all units it is connected to.
    * 
    * @param unit the unit
-   * @param cluster the IDs of the feature vectors of the current cluster
+   * @param cluster the members of the current cluster, as bitset
    * @param model the model of the cluster
    */
-  public void dfs(CLIQUEUnit<V> unit, ModifiableDBIDs cluster, CLIQUESubspace<V> model) {
-    cluster.addDBIDs(unit.getIds());
+  public void dfs(CLIQUEUnit<V> unit, long[] cluster, CLIQUESubspace<V> model) {
+    BitsUtil.orI(cluster, unit.getBits());
     unit.markAsAssigned();
     model.addDenseUnit(unit);
 
@@ -24,33 +24,53 @@ import java.util.ArrayList;
 import java.util.Iterator;
 
 import de.lmu.ifi.dbs.elki.data.NumberVector;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
-import de.lmu.ifi.dbs.elki.database.ids.HashSetModifiableDBIDs;
-import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.BitsUtil;
 
 /**
  * Represents a unit in the CLIQUE algorithm.
  * 
+ * The members of a unit are stored as a bitset over the offsets of an array
+ * of all object IDs, such that joining units only needs word-parallel
+ * intersections of bitsets.
+ * 
  * @author Elke Achtert
  * @since 0.2
  * 
  * @apiviz.composedOf CLIQUEInterval
- * @apiviz.composedOf ModifiableDBIDs
  * 
  * @param <V> the type of NumberVector this unit contains
  */
 public class CLIQUEUnit<V extends NumberVector> {
   /**
-   * The one-dimensional intervals of which this unit is build.
+   * The one-dimensional intervals of which this unit is build, sorted by
+   * dimension.
    */
   private ArrayList<CLIQUEInterval> intervals;
 
   /**
-   * The ids of the feature vectors this unit contains.
+   * All object IDs, the bitset refers to the offsets in this array.
+   */
+  private ArrayDBIDs all;
+
+  /**
+   * The offsets of the feature vectors this unit contains, as bitset.
+   */
+  private long[] bits;
+
+  /**
+   * The number of feature vectors this unit contains.
+   */
+  private int size;
+
+  /**
+   * Materialized IDs, created on demand.
    */
-  private ModifiableDBIDs ids;
+  private ArrayModifiableDBIDs ids;
 
   /**
    * Flag that indicates if this unit is already assigned to a cluster.
@@ -61,11 +81,15 @@ public class CLIQUEUnit<V extends NumberVector> {
    * Creates a new k-dimensional unit for the given intervals.
    * 
    * @param intervals the intervals belonging to this unit
-   * @param ids the ids of the feature vectors belonging to this unit
+   * @param all all object IDs
+   * @param bits the offsets of the feature vectors belonging to this unit
+   * @param size the number of feature vectors belonging to this unit
    */
-  private CLIQUEUnit(ArrayList<CLIQUEInterval> intervals, ModifiableDBIDs ids) {
+  private CLIQUEUnit(ArrayList<CLIQUEInterval> intervals, ArrayDBIDs all, long[] bits, int size) {
     this.intervals = intervals;
-    this.ids = ids;
+    this.all = all;
+    this.bits = bits;
+    this.size = size;
     assigned = false;
   }
 
@@ -73,11 +97,14 @@ public class CLIQUEUnit<V extends NumberVector> {
    * Creates a new one-dimensional unit for the given interval.
    * 
    * @param interval the interval belonging to this unit
+   * @param all all object IDs, the unit will contain a subset of
    */
-  public CLIQUEUnit(CLIQUEInterval interval) {
+  public CLIQUEUnit(CLIQUEInterval interval, ArrayDBIDs all) {
     intervals = new ArrayList<>();
     intervals.add(interval);
-    ids = DBIDUtil.newHashSet();
+    this.all = all;
+    this.bits = BitsUtil.zero(all.size());
+    this.size = 0;
     assigned = false;
   }
 
@@ -103,26 +130,40 @@ public class CLIQUEUnit<V extends NumberVector> {
    * Adds the id of the specified feature vector to this unit, if this unit
    * contains the feature vector.
    * 
-   * @param id Vector id
+   * @param id Vector id, the offset must refer to the array of all IDs
    * @param vector the feature vector to be added
    * @return true, if this unit contains the specified feature vector, false
    *         otherwise
    */
-  public boolean addFeatureVector(DBIDRef id, V vector) {
+  public boolean addFeatureVector(DBIDArrayIter id, V vector) {
     if(contains(vector)) {
-      ids.add(id);
+      addOffset(id.getOffset());
       return true;
     }
     return false;
   }
 
+  /**
+   * Adds the object at the given offset to this unit, without checking the
+   * intervals.
+   * 
+   * @param offset Offset in the array of all IDs
+   */
+  public void addOffset(int offset) {
+    if(!BitsUtil.get(bits, offset)) {
+      BitsUtil.setI(bits, offset);
+      ++size;
+      ids = null;
+    }
+  }
+
   /**
    * Returns the number of feature vectors this unit contains.
    * 
    * @return the number of feature vectors this unit contains
    */
   public int numberOfFeatureVectors() {
-    return ids.size();
+    return size;
   }
 
   /**
@@ -133,7 +174,7 @@ public class CLIQUEUnit<V extends NumberVector> {
    * @return the selectivity of this unit
    */
   public double selectivity(double total) {
-    return ids.size() / total;
+    return size / total;
   }
 
   /**
@@ -152,11 +193,21 @@ public class CLIQUEUnit<V extends NumberVector> {
    * @return the interval of the specified dimension
    */
   public CLIQUEInterval getInterval(int dimension) {
-    // TODO: use binary search instead?
-    for(CLIQUEInterval i : intervals) {
-      if(i.getDimension() == dimension) {
+    // Binary search, intervals are sorted by dimension.
+    int l = 0, r = intervals.size() - 1;
+    while(l <= r) {
+      final int m = (l + r) >>> 1;
+      final CLIQUEInterval i = intervals.get(m);
+      final int d = i.getDimension();
+      if(d == dimension) {
         return i;
       }
+      if(d < dimension) {
+        l = m + 1;
+      }
+      else {
+        r = m - 1;
+      }
     }
     return null;
   }
@@ -210,9 +261,37 @@ public class CLIQUEUnit<V extends NumberVector> {
    * @return the ids of the feature vectors this unit contains
    */
   public DBIDs getIds() {
+    if(ids == null) {
+      ids = toDBIDs(bits, size);
+    }
     return ids;
   }
 
+  /**
+   * Materialize a bitset over the same IDs as this unit.
+   * 
+   * @param set Bitset of offsets
+   * @param card Cardinality of the bitset (for preallocation)
+   * @return IDs
+   */
+  ArrayModifiableDBIDs toDBIDs(long[] set, int card) {
+    ArrayModifiableDBIDs res = DBIDUtil.newArray(card);
+    DBIDArrayIter it = all.iter();
+    for(int i = BitsUtil.nextSetBit(set, 0); i >= 0; i = BitsUtil.nextSetBit(set, i + 1)) {
+      res.add(it.seek(i));
+    }
+    return res;
+  }
+
+  /**
+   * Returns the members of this unit, as bitset over the offsets of all IDs.
+   * 
+   * @return Bitset, do not modify
+   */
+  public long[] getBits() {
+    return bits;
+  }
+
   /**
    * Joins this unit with the specified unit.
    * 
@@ -243,11 +322,11 @@ public class CLIQUEUnit<V extends NumberVector> {
     resultIntervals.add(this.intervals.get(this.intervals.size() - 1));
     resultIntervals.add(other.intervals.get(other.intervals.size() - 1));
 
-    HashSetModifiableDBIDs resultIDs = DBIDUtil.newHashSet(this.ids);
-    resultIDs.retainAll(other.ids);
-
-    if(resultIDs.size() / all >= tau) {
-      return new CLIQUEUnit<>(resultIntervals, resultIDs);
+    // Count first, to avoid allocating sparse units:
+    final int resultSize = BitsUtil.intersectionSize(this.bits, other.bits);
+    if(resultSize / all >= tau) {
+      long[] resultBits = BitsUtil.andI(BitsUtil.copy(this.bits), other.bits);
+      return new CLIQUEUnit<>(resultIntervals, this.all, resultBits, resultSize);
     }
 
     return null;
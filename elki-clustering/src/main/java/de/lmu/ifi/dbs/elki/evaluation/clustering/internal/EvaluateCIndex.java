@@ -159,7 +159,7 @@ public class EvaluateCIndex<O> implements Evaluator {
           LOG.incrementProcessed(prog);
           continue; // Ignore
         case TREAT_NOISE_AS_SINGLETONS:
-          processSingleton(cluster, rel, dq, maxDists, minDists, w);
+          processSingleton(cluster, clusters, i, dq, maxDists, minDists, w);
           LOG.incrementProcessed(prog);
           continue;
         case MERGE_NOISE:
@@ -217,7 +217,7 @@ public class EvaluateCIndex<O> implements Evaluator {
           }
         }
         for(DBIDIter it2 = ocluster.getIDs().iter(); it2.valid(); it2.advance()) {
-          if(DBIDUtil.compare(it1, it2) <= 0) { // Only once.
+          if(j == i && DBIDUtil.compare(it1, it2) <= 0) { // Only once.
             continue;
           }
           double dist = dq.distance(it1, it2);
@@ -232,16 +232,23 @@ public class EvaluateCIndex<O> implements Evaluator {
     return theta;
   }
 
-  protected void processSingleton(Cluster<?> cluster, Relation<? extends O> rel, DistanceQuery<O> dq, DoubleHeap maxDists, DoubleHeap minDists, int w) {
+  protected void processSingleton(Cluster<?> cluster, List<? extends Cluster<?>> clusters, int i, DistanceQuery<O> dq, DoubleHeap maxDists, DoubleHeap minDists, int w) {
     // All other objects are in other clusters!
     for(DBIDIter it1 = cluster.getIDs().iter(); it1.valid(); it1.advance()) {
-      for(DBIDIter it2 = rel.iterDBIDs(); it2.valid(); it2.advance()) {
-        if(DBIDUtil.compare(it1, it2) <= 0) { // Only once.
-          continue;
+      // Compare object to every cluster, but only once
+      for(int j = i; j < clusters.size(); j++) {
+        Cluster<?> ocluster = clusters.get(j);
+        if(noiseOption == NoiseHandling.IGNORE_NOISE && (ocluster.size() <= 1 || ocluster.isNoise())) {
+          continue; // Ignore this cluster.
+        }
+        for(DBIDIter it2 = ocluster.getIDs().iter(); it2.valid(); it2.advance()) {
+          if(j == i && DBIDUtil.compare(it1, it2) <= 0) { // Only once.
+            continue;
+          }
+          double dist = dq.distance(it1, it2);
+          minDists.add(dist, w);
+          maxDists.add(dist, w);
         }
-        double dist = dq.distance(it1, it2);
-        minDists.add(dist, w);
-        maxDists.add(dist, w);
       }
     }
   }
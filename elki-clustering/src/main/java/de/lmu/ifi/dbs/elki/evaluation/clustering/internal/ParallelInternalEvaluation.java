@@ -0,0 +1,879 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.evaluation.clustering.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.evaluation.Evaluator;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.StringStatistic;
+import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.math.statistics.distribution.NormalDistribution;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.result.EvaluationResult;
+import de.lmu.ifi.dbs.elki.result.EvaluationResult.MeasurementGroup;
+import de.lmu.ifi.dbs.elki.result.Result;
+import de.lmu.ifi.dbs.elki.result.ResultHierarchy;
+import de.lmu.ifi.dbs.elki.result.ResultUtil;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleMaxHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.io.FormatUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.EnumParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Parallel evaluation of the pairwise distance based internal measures.
+ *
+ * Both the silhouette ({@link EvaluateSilhouette}) and the C-index
+ * ({@link EvaluateCIndex}) need all pairwise distances. Here, they are computed
+ * together in a single parallel pass: each worker processes blocks of objects,
+ * and aggregates the distance sums to every cluster (for the silhouette). For
+ * the C-index, the smallest and largest distances are kept in a single pair of
+ * shared heaps; workers only buffer the distances beyond the current cutoffs,
+ * and merge them in blocks, so the memory is the same as for the serial
+ * {@link EvaluateCIndex}.
+ *
+ * For data sets too large for the quadratic computation, both measures can be
+ * estimated instead: the silhouette is averaged over a random sample of
+ * objects (each of which requires a linear scan), and the C-index is estimated
+ * from a random sample of object pairs, using the exact fraction of
+ * within-cluster pairs. Confidence intervals are given for both: for the
+ * silhouette based on the sample variance, for the C-index based on the
+ * variance of the estimates on independent batches of pairs.
+ *
+ * The centroid-based measures (e.g., {@link EvaluateDaviesBouldin},
+ * {@link EvaluateVarianceRatioCriteria}) only need linear time, and are not
+ * included here.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.composedOf NoiseHandling
+ *
+ * @param <O> Object type
+ */
+public class ParallelInternalEvaluation<O> implements Evaluator {
+  /**
+   * Logger for debug output.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelInternalEvaluation.class);
+
+  /**
+   * Number of objects processed at once by a worker.
+   */
+  private static final int BLOCKSIZE = 64;
+
+  /**
+   * Number of candidate distances buffered by a worker before merging.
+   */
+  private static final int BUFSIZE = 1024;
+
+  /**
+   * Number of independent batches of pairs, for the C-index confidence
+   * interval.
+   */
+  private static final int BATCHES = 10;
+
+  /**
+   * Confidence level of the reported intervals.
+   */
+  private static final double CONFIDENCE = 0.95;
+
+  /**
+   * Distance function to use.
+   */
+  private DistanceFunction<? super O> distance;
+
+  /**
+   * Option for noise handling.
+   */
+  private NoiseHandling noiseOption;
+
+  /**
+   * Penalize noise, if {@link NoiseHandling#IGNORE_NOISE} is set.
+   */
+  private boolean penalize = true;
+
+  /**
+   * Number of objects to sample for the silhouette, 0 for exact evaluation.
+   */
+  private int samplesize;
+
+  /**
+   * Number of pairs to sample for the C-index.
+   */
+  private int pairs;
+
+  /**
+   * Random generator for sampling.
+   */
+  private RandomFactory rnd;
+
+  /**
+   * Key for logging statistics.
+   */
+  private String key = ParallelInternalEvaluation.class.getName();
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param noiseOption Handling of "noise" clusters.
+   * @param penalize noise, if {@link NoiseHandling#IGNORE_NOISE} is set.
+   * @param samplesize Number of objects to sample, 0 for exact evaluation
+   * @param pairs Number of pairs to sample for the C-index
+   * @param rnd Random generator for sampling
+   */
+  public ParallelInternalEvaluation(DistanceFunction<? super O> distance, NoiseHandling noiseOption, boolean penalize, int samplesize, int pairs, RandomFactory rnd) {
+    super();
+    this.distance = distance;
+    this.noiseOption = noiseOption;
+    this.penalize = penalize;
+    this.samplesize = samplesize;
+    this.pairs = pairs;
+    this.rnd = rnd;
+  }
+
+  /**
+   * Evaluate a single clustering.
+   *
+   * @param db Database
+   * @param rel Data relation
+   * @param dq Distance query
+   * @param c Clustering
+   * @return Silhouette and C-index (exact or estimated)
+   */
+  public double[] evaluateClustering(Database db, Relation<O> rel, DistanceQuery<O> dq, Clustering<?> c) {
+    List<? extends Cluster<?>> clusters = c.getAllClusters();
+    // Flatten the clustering, dropping ignored noise.
+    ArrayModifiableDBIDs ids = DBIDUtil.newArray(rel.size());
+    int[] sizes = new int[clusters.size()];
+    boolean[] noiselike = new boolean[clusters.size()];
+    int k = 0, ignorednoise = 0;
+    for(Cluster<?> cluster : clusters) {
+      // Note: we treat 1-element clusters the same as noise.
+      final boolean isnoise = cluster.size() <= 1 || cluster.isNoise();
+      if(isnoise && noiseOption == NoiseHandling.IGNORE_NOISE) {
+        ignorednoise += cluster.size();
+        continue;
+      }
+      sizes[k] = cluster.size();
+      noiselike[k] = isnoise && noiseOption != NoiseHandling.MERGE_NOISE;
+      ids.addDBIDs(cluster.getIDs());
+      k++;
+    }
+    final int n = ids.size();
+    int[] assign = new int[n];
+    for(int i = 0, j = 0; i < k; i++) {
+      Arrays.fill(assign, j, j += sizes[i], i);
+    }
+    long w = 0;
+    for(int i = 0; i < k; i++) {
+      w += noiselike[i] ? 0 : (sizes[i] * (long) (sizes[i] - 1)) >>> 1;
+    }
+    final boolean sample = samplesize > 0 && samplesize < n;
+    if(!sample && w > Integer.MAX_VALUE - 8) {
+      throw new AbortException("Too many within-cluster pairs for the exact C-index; enable sampling.");
+    }
+    final Context ctx = new Context(dq, ids, assign, sizes, noiselike, (int) w);
+    final Extremes extremes = !sample && w > 0 ? new Extremes((int) w) : null;
+
+    // Objects to compute the silhouette for:
+    final Random random = sample ? rnd.getSingleThreadedRandom() : null;
+    int[] rows;
+    if(sample) {
+      rows = randomOffsets(n, samplesize, random);
+    }
+    else {
+      rows = new int[n];
+      for(int i = 0; i < n; i++) {
+        rows[i] = i;
+      }
+    }
+    double[] sil = new double[rows.length];
+    double[] dists = sample ? new double[pairs] : null;
+    boolean[] within = sample ? new boolean[pairs] : null;
+    double[] batchest = sample ? new double[BATCHES] : null;
+
+    double theta = 0., min = 0., max = 0.;
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Computing pairwise distances", rows.length, LOG) : null;
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      AtomicInteger next = new AtomicInteger();
+      List<Future<Double>> futures = new ArrayList<>();
+      for(int i = core.getParallelism(); i > 0; i--) {
+        futures.add(core.submit(new RowTask(ctx, rows, sil, next, !sample, extremes, prog)));
+      }
+      List<Future<?>> batches = new ArrayList<>();
+      if(sample) {
+        for(int b = 0; b < BATCHES; b++) {
+          final int start = (int) (pairs * (long) b / BATCHES), end = (int) (pairs * (long) (b + 1) / BATCHES);
+          batches.add(core.submit(new PairTask(ctx, random.nextLong(), dists, within, start, end, batchest, b)));
+        }
+      }
+      for(Future<Double> f : futures) {
+        theta += f.get();
+      }
+      if(extremes != null) {
+        for(DoubleHeap.UnsortedIter it = extremes.minDists.unsortedIter(); it.valid(); it.advance()) {
+          min += it.get();
+        }
+        for(DoubleHeap.UnsortedIter it = extremes.maxDists.unsortedIter(); it.valid(); it.advance()) {
+          max += it.get();
+        }
+      }
+      for(Future<?> f : batches) {
+        f.get();
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+    LOG.ensureCompleted(prog);
+
+    // Silhouette:
+    MeanVariance msil = new MeanVariance();
+    for(double s : sil) {
+      msil.put(s);
+    }
+    final double penalty = (penalize && ignorednoise > 0) ? (rel.size() - ignorednoise) / (double) rel.size() : 1.;
+    final double meansil = penalty * msil.getMean();
+    final double stdsil = penalty * msil.getSampleStddev();
+    // C-index:
+    final double cIndex = !sample ? ((max > min) ? (theta - min) / (max - min) : 1.) //
+        : estimateCIndex(dists, within, 0, pairs, w / (n * (n - 1.) * .5));
+
+    EvaluationResult ev = EvaluationResult.findOrCreate(db.getHierarchy(), c, "Internal Clustering Evaluation", "internal evaluation");
+    MeasurementGroup g = ev.findOrCreateGroup("Distance-based Evaluation");
+    if(LOG.isStatistics()) {
+      LOG.statistics(new StringStatistic(key + ".noise-handling", noiseOption.toString()));
+      if(ignorednoise > 0) {
+        LOG.statistics(new LongStatistic(key + ".ignored", ignorednoise));
+      }
+    }
+    if(!sample) {
+      if(LOG.isStatistics()) {
+        LOG.statistics(new DoubleStatistic(key + ".silhouette.mean", meansil));
+        LOG.statistics(new DoubleStatistic(key + ".silhouette.stddev", stdsil));
+        LOG.statistics(new DoubleStatistic(key + ".c-index", cIndex));
+      }
+      g.addMeasure("Silhouette +-" + FormatUtil.NF2.format(stdsil), meansil, -1., 1., 0., false);
+      g.addMeasure("C-Index", cIndex, 0., 1., 0., true);
+    }
+    else {
+      final double z = NormalDistribution.standardNormalQuantile(.5 + CONFIDENCE * .5);
+      // Standard error, with finite population correction:
+      final double silerr = z * stdsil / Math.sqrt(rows.length) * Math.sqrt((n - rows.length) / (n - 1.));
+      MeanVariance mci = new MeanVariance();
+      for(double v : batchest) {
+        if(v == v) { // Not NaN
+          mci.put(v);
+        }
+      }
+      final double cierr = mci.getCount() > 1 ? z * mci.getSampleStddev() / Math.sqrt(mci.getCount()) : Double.NaN;
+      if(LOG.isStatistics()) {
+        LOG.statistics(new LongStatistic(key + ".sample.objects", rows.length));
+        LOG.statistics(new LongStatistic(key + ".sample.pairs", pairs));
+        LOG.statistics(new DoubleStatistic(key + ".silhouette.estimate", meansil));
+        LOG.statistics(new DoubleStatistic(key + ".silhouette.ci-low", meansil - silerr));
+        LOG.statistics(new DoubleStatistic(key + ".silhouette.ci-high", meansil + silerr));
+        LOG.statistics(new DoubleStatistic(key + ".c-index.estimate", cIndex));
+        LOG.statistics(new DoubleStatistic(key + ".c-index.ci-low", cIndex - cierr));
+        LOG.statistics(new DoubleStatistic(key + ".c-index.ci-high", cIndex + cierr));
+      }
+      g.addMeasure("Silhouette (sampled) +-" + FormatUtil.NF2.format(silerr), meansil, -1., 1., 0., false);
+      g.addMeasure("C-Index (sampled) +-" + FormatUtil.NF2.format(cierr), cIndex, 0., 1., 0., true);
+    }
+    db.getHierarchy().resultChanged(ev);
+    return new double[] { meansil, cIndex };
+  }
+
+  /**
+   * Draw a sorted random sample of offsets, without replacement.
+   *
+   * @param n Number of objects
+   * @param k Sample size
+   * @param r Random generator
+   * @return Sorted offsets
+   */
+  private static int[] randomOffsets(int n, int k, Random r) {
+    int[] all = new int[n];
+    for(int i = 0; i < n; i++) {
+      all[i] = i;
+    }
+    // Partial Fisher-Yates shuffle:
+    for(int i = 0; i < k; i++) {
+      final int j = i + r.nextInt(n - i);
+      final int tmp = all[i];
+      all[i] = all[j];
+      all[j] = tmp;
+    }
+    int[] sample = Arrays.copyOf(all, k);
+    Arrays.sort(sample);
+    return sample;
+  }
+
+  /**
+   * Estimate the C-index from a sample of pairs.
+   *
+   * As the C-index is invariant to the number of pairs, the sums can be
+   * replaced by means: the mean within-cluster distance is compared to the
+   * mean of the smallest and largest fraction of distances, where the fraction
+   * is the (exactly known) share of within-cluster pairs.
+   *
+   * @param dists Sampled distances
+   * @param within Flags for within-cluster pairs
+   * @param start Begin of range
+   * @param end End of range (exclusive)
+   * @param frac Fraction of within-cluster pairs
+   * @return Estimated C-index, NaN if no within-cluster pair was sampled
+   */
+  protected static double estimateCIndex(double[] dists, boolean[] within, int start, int end, double frac) {
+    double[] sorted = Arrays.copyOfRange(dists, start, end);
+    double sumw = 0.;
+    int cntw = 0;
+    for(int i = start; i < end; i++) {
+      if(within[i]) {
+        sumw += dists[i];
+        cntw++;
+      }
+    }
+    if(cntw == 0) {
+      return Double.NaN;
+    }
+    Arrays.sort(sorted);
+    final int len = sorted.length;
+    final int kk = Math.max(1, Math.min(len, (int) Math.round(frac * len)));
+    double min = 0., max = 0.;
+    for(int i = 0; i < kk; i++) {
+      min += sorted[i];
+      max += sorted[len - 1 - i];
+    }
+    min /= kk;
+    max /= kk;
+    return (max > min) ? (sumw / cntw - min) / (max - min) : 1.;
+  }
+
+  /**
+   * Shared (read-only) state of the workers.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class Context {
+    /**
+     * Distance query.
+     */
+    DistanceQuery<O> dq;
+
+    /**
+     * Object IDs, ordered by cluster.
+     */
+    ArrayDBIDs ids;
+
+    /**
+     * Cluster number of each object.
+     */
+    int[] assign;
+
+    /**
+     * Cluster sizes.
+     */
+    int[] sizes;
+
+    /**
+     * Flags for clusters to be treated as singletons.
+     */
+    boolean[] noiselike;
+
+    /**
+     * Number of within-cluster pairs.
+     */
+    int w;
+
+    /**
+     * Constructor.
+     *
+     * @param dq Distance query
+     * @param ids Object IDs, ordered by cluster
+     * @param assign Cluster number of each object
+     * @param sizes Cluster sizes
+     * @param noiselike Flags for clusters to be treated as singletons
+     * @param w Number of within-cluster pairs
+     */
+    Context(DistanceQuery<O> dq, ArrayDBIDs ids, int[] assign, int[] sizes, boolean[] noiselike, int w) {
+      this.dq = dq;
+      this.ids = ids;
+      this.assign = assign;
+      this.sizes = sizes;
+      this.noiselike = noiselike;
+      this.w = w;
+    }
+  }
+
+  /**
+   * Shared heaps of the smallest and largest distances, for the exact C-index.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class Extremes {
+    /**
+     * Largest distances; yes, this is supposed to be a min heap.
+     */
+    DoubleHeap maxDists;
+
+    /**
+     * Smallest distances; yes, this is supposed to be a max heap.
+     */
+    DoubleHeap minDists;
+
+    /**
+     * Number of distances to keep.
+     */
+    int w;
+
+    /**
+     * Only distances below this can enter the smallest distances.
+     */
+    volatile double lowcut = Double.POSITIVE_INFINITY;
+
+    /**
+     * Only distances above this can enter the largest distances.
+     */
+    volatile double highcut = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Constructor.
+     *
+     * @param w Number of distances to keep
+     */
+    Extremes(int w) {
+      this.w = w;
+      this.maxDists = new DoubleMinHeap(w);
+      this.minDists = new DoubleMaxHeap(w);
+    }
+
+    /**
+     * Test whether a distance can enter either heap.
+     *
+     * @param dist Distance
+     * @return {@code true} if the distance needs to be merged
+     */
+    boolean isCandidate(double dist) {
+      return dist < lowcut || dist > highcut;
+    }
+
+    /**
+     * Merge a buffer of candidate distances.
+     *
+     * @param buf Buffer
+     * @param len Number of distances
+     */
+    synchronized void merge(double[] buf, int len) {
+      for(int i = 0; i < len; i++) {
+        minDists.add(buf[i], w);
+        maxDists.add(buf[i], w);
+      }
+      if(minDists.size() >= w) {
+        lowcut = minDists.peek();
+        highcut = maxDists.peek();
+      }
+    }
+  }
+
+  /**
+   * Worker computing the distances of blocks of objects to all others.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class RowTask implements Callable<Double> {
+    /**
+     * Shared state.
+     */
+    private Context ctx;
+
+    /**
+     * Objects to process.
+     */
+    private int[] rows;
+
+    /**
+     * Output silhouette values.
+     */
+    private double[] sil;
+
+    /**
+     * Next block to process.
+     */
+    private AtomicInteger next;
+
+    /**
+     * Aggregate the exact C-index.
+     */
+    private boolean cindex;
+
+    /**
+     * Shared heaps for the exact C-index, may be {@code null}.
+     */
+    private Extremes extremes;
+
+    /**
+     * Progress, may be {@code null}.
+     */
+    private FiniteProgress prog;
+
+    /**
+     * Constructor.
+     *
+     * @param ctx Shared state
+     * @param rows Objects to process
+     * @param sil Output silhouette values
+     * @param next Next block to process
+     * @param cindex Aggregate the exact C-index
+     * @param extremes Shared heaps for the exact C-index, may be {@code null}
+     * @param prog Progress, may be {@code null}.
+     */
+    RowTask(Context ctx, int[] rows, double[] sil, AtomicInteger next, boolean cindex, Extremes extremes, FiniteProgress prog) {
+      this.ctx = ctx;
+      this.rows = rows;
+      this.sil = sil;
+      this.next = next;
+      this.cindex = cindex;
+      this.extremes = extremes;
+      this.prog = prog;
+    }
+
+    /**
+     * Compute the silhouettes of the assigned objects.
+     *
+     * @return Sum of within-cluster distances, for the exact C-index
+     */
+    @Override
+    public Double call() {
+      final int[] assign = ctx.assign, sizes = ctx.sizes;
+      final boolean[] noiselike = ctx.noiselike;
+      final int k = sizes.length, n = assign.length;
+      final double[] buf = extremes != null ? new double[BUFSIZE] : null;
+      int fill = 0;
+      double theta = 0.;
+      final double[] sums = new double[k], mins = new double[k];
+      DBIDArrayIter it1 = ctx.ids.iter(), it2 = ctx.ids.iter();
+      for(int begin = next.getAndAdd(BLOCKSIZE); begin < rows.length; begin = next.getAndAdd(BLOCKSIZE)) {
+        final int end = Math.min(begin + BLOCKSIZE, rows.length);
+        for(int r = begin; r < end; r++) {
+          final int i = rows[r], ci = assign[i];
+          if(noiselike[ci] && !cindex) {
+            // As suggested in Rousseeuw, we use 0 for singletons.
+            sil[r] = 0.;
+            LOG.incrementProcessed(prog);
+            continue;
+          }
+          Arrays.fill(sums, 0.);
+          Arrays.fill(mins, Double.POSITIVE_INFINITY);
+          it1.seek(i);
+          for(int j = 0; j < n; j++) {
+            if(j == i) {
+              continue;
+            }
+            final int cj = assign[j];
+            final double dist = ctx.dq.distance(it1, it2.seek(j));
+            sums[cj] += dist;
+            mins[cj] = dist < mins[cj] ? dist : mins[cj];
+            if(j > i && buf != null) {
+              if(extremes.isCandidate(dist)) {
+                buf[fill++] = dist;
+                if(fill == BUFSIZE) {
+                  extremes.merge(buf, fill);
+                  fill = 0;
+                }
+              }
+              if(cj == ci && !noiselike[ci]) { // Within-cluster distances.
+                theta += dist;
+              }
+            }
+          }
+          if(noiselike[ci]) {
+            sil[r] = 0.;
+            LOG.incrementProcessed(prog);
+            continue;
+          }
+          // a: In-cluster distances
+          final double a = sums[ci] / (sizes[ci] - 1);
+          // b: minimum average distance to other clusters:
+          double b = Double.POSITIVE_INFINITY;
+          for(int oc = 0; oc < k; oc++) {
+            if(oc == ci) {
+              continue;
+            }
+            final double btmp = noiselike[oc] ? mins[oc] : sums[oc] / sizes[oc];
+            b = btmp < b ? btmp : b; // Minimum average
+          }
+          // One cluster only?
+          b = b < Double.POSITIVE_INFINITY ? b : a;
+          sil[r] = (b - a) / (b > a ? b : a);
+          LOG.incrementProcessed(prog);
+        }
+      }
+      if(fill > 0) {
+        extremes.merge(buf, fill);
+      }
+      return theta;
+    }
+  }
+
+  /**
+   * Worker sampling a batch of random pairs for the C-index.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class PairTask implements Callable<Void> {
+    /**
+     * Shared state.
+     */
+    private Context ctx;
+
+    /**
+     * Random seed of this batch.
+     */
+    private long seed;
+
+    /**
+     * Output distances.
+     */
+    private double[] dists;
+
+    /**
+     * Output within-cluster flags.
+     */
+    private boolean[] within;
+
+    /**
+     * Range of this batch.
+     */
+    private int start, end;
+
+    /**
+     * Output batch estimates.
+     */
+    private double[] batchest;
+
+    /**
+     * Batch number.
+     */
+    private int batch;
+
+    /**
+     * Constructor.
+     *
+     * @param ctx Shared state
+     * @param seed Random seed of this batch
+     * @param dists Output distances
+     * @param within Output within-cluster flags
+     * @param start Begin of range
+     * @param end End of range (exclusive)
+     * @param batchest Output batch estimates
+     * @param batch Batch number
+     */
+    PairTask(Context ctx, long seed, double[] dists, boolean[] within, int start, int end, double[] batchest, int batch) {
+      this.ctx = ctx;
+      this.seed = seed;
+      this.dists = dists;
+      this.within = within;
+      this.start = start;
+      this.end = end;
+      this.batchest = batchest;
+      this.batch = batch;
+    }
+
+    @Override
+    public Void call() {
+      final int[] assign = ctx.assign;
+      final int n = assign.length;
+      Random r = new Random(seed);
+      DBIDArrayIter it1 = ctx.ids.iter(), it2 = ctx.ids.iter();
+      for(int p = start; p < end; p++) {
+        final int i = r.nextInt(n);
+        int j = r.nextInt(n - 1);
+        j = j < i ? j : j + 1;
+        dists[p] = ctx.dq.distance(it1.seek(i), it2.seek(j));
+        within[p] = assign[i] == assign[j] && !ctx.noiselike[assign[i]];
+      }
+      batchest[batch] = estimateCIndex(dists, within, start, end, ctx.w / (n * (n - 1.) * .5));
+      return null;
+    }
+  }
+
+  @Override
+  public void processNewResult(ResultHierarchy hier, Result result) {
+    List<Clustering<?>> crs = Clustering.getClusteringResults(result);
+    if(crs.isEmpty()) {
+      return;
+    }
+    Database db = ResultUtil.findDatabase(hier);
+    Relation<O> rel = db.getRelation(distance.getInputTypeRestriction());
+    DistanceQuery<O> dq = db.getDistanceQuery(rel, distance);
+    for(Clustering<?> c : crs) {
+      evaluateClustering(db, rel, dq, c);
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<O> extends AbstractParameterizer {
+    /**
+     * Number of objects to sample for the silhouette.
+     */
+    public static final OptionID SAMPLE_ID = new OptionID("internal.sample", "Number of objects to sample for estimating the silhouette, 0 for exact evaluation.");
+
+    /**
+     * Number of pairs to sample for the C-index.
+     */
+    public static final OptionID PAIRS_ID = new OptionID("internal.pairs", "Number of object pairs to sample for estimating the C-index.");
+
+    /**
+     * Random seed for sampling.
+     */
+    public static final OptionID SEED_ID = new OptionID("internal.seed", "Random seed for sampling.");
+
+    /**
+     * Distance function to use.
+     */
+    private DistanceFunction<? super O> distance;
+
+    /**
+     * Noise handling
+     */
+    private NoiseHandling noiseOption;
+
+    /**
+     * Penalize noise, if {@link NoiseHandling#IGNORE_NOISE} is set.
+     */
+    private boolean penalize = true;
+
+    /**
+     * Sample size, 0 for exact evaluation.
+     */
+    private int samplesize;
+
+    /**
+     * Number of pairs to sample.
+     */
+    private int pairs;
+
+    /**
+     * Random generator.
+     */
+    private RandomFactory rnd;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      ObjectParameter<DistanceFunction<? super O>> distP = new ObjectParameter<>(EvaluateSilhouette.Parameterizer.DISTANCE_ID, DistanceFunction.class, EuclideanDistanceFunction.class);
+      if(config.grab(distP)) {
+        distance = distP.instantiateClass(config);
+      }
+
+      EnumParameter<NoiseHandling> noiseP = new EnumParameter<>(EvaluateSilhouette.Parameterizer.NOISE_ID, NoiseHandling.class, NoiseHandling.TREAT_NOISE_AS_SINGLETONS);
+      if(config.grab(noiseP)) {
+        noiseOption = noiseP.getValue();
+      }
+
+      if(noiseOption == NoiseHandling.IGNORE_NOISE) {
+        Flag penalizeP = new Flag(EvaluateSilhouette.Parameterizer.NO_PENALIZE_ID);
+        if(config.grab(penalizeP)) {
+          penalize = penalizeP.isFalse();
+        }
+      }
+
+      IntParameter sampleP = new IntParameter(SAMPLE_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(sampleP)) {
+        samplesize = sampleP.intValue();
+      }
+      if(samplesize > 0) {
+        IntParameter pairsP = new IntParameter(PAIRS_ID, 1000000) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(pairsP)) {
+          pairs = pairsP.intValue();
+        }
+        RandomParameter rndP = new RandomParameter(SEED_ID);
+        if(config.grab(rndP)) {
+          rnd = rndP.getValue();
+        }
+      }
+    }
+
+    @Override
+    protected ParallelInternalEvaluation<O> makeInstance() {
+      return new ParallelInternalEvaluation<>(distance, noiseOption, penalize, samplesize, pairs, rnd);
+    }
+  }
+}
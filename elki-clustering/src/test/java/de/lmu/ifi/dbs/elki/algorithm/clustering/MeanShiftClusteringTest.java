@@ -0,0 +1,62 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for the parallel mean-shift clustering.
+ *
+ * @author Erich Schubert
+ */
+public class MeanShiftClusteringTest extends AbstractClusterAlgorithmTest {
+  /**
+   * Run mean-shift with fixed parameters and compare the result to a golden
+   * standard.
+   */
+  @Test
+  public void testMeanShiftResults() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Clustering<?> result = new ELKIBuilder<MeanShiftClustering<DoubleVector>>(MeanShiftClustering.class) //
+        .with(NaiveMeanShiftClustering.Parameterizer.RANGE_ID, 0.2) //
+        .build().run(db);
+    testFMeasure(db, result, 0.930947101);
+    testClusterSizes(result, new int[] { 2, 4, 56, 114, 154 });
+  }
+
+  /**
+   * Run mean-shift with automatic bandwidth and compare the result to a golden
+   * standard.
+   */
+  @Test
+  public void testMeanShiftAutomatic() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Clustering<?> result = new ELKIBuilder<MeanShiftClustering<DoubleVector>>(MeanShiftClustering.class) //
+        .build().run(db);
+    testFMeasure(db, result, 0.927275595);
+    testClusterSizes(result, new int[] { 1, 1, 3, 56, 114, 155 });
+  }
+}
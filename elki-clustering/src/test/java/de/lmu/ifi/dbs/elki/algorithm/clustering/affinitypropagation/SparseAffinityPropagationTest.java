@@ -0,0 +1,87 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.affinitypropagation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.AbstractClusterAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.model.MedoidModel;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.datasource.ArrayAdapterDatabaseConnection;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Test sparse Affinity Propagation.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class SparseAffinityPropagationTest extends AbstractClusterAlgorithmTest {
+  /**
+   * With the complete graph, the result must be the same as with the dense
+   * variant.
+   */
+  @Test
+  public void testCompleteGraph() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Clustering<MedoidModel> result = new ELKIBuilder<SparseAffinityPropagation<DoubleVector>>(SparseAffinityPropagation.class)//
+        .with(SparseAffinityPropagation.Parameterizer.K_ID, 329) //
+        .build().run(db);
+    testFMeasure(db, result, 0.957227259);
+    testClusterSizes(result, new int[] { 5, 5, 7, 55, 105, 153 });
+  }
+
+  /**
+   * Run SparseAffinityPropagation with fixed parameters and compare the result
+   * to a golden standard.
+   */
+  @Test
+  public void testSparseAffinityPropagation() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Clustering<MedoidModel> result = new ELKIBuilder<SparseAffinityPropagation<DoubleVector>>(SparseAffinityPropagation.class)//
+        .with(SparseAffinityPropagation.Parameterizer.K_ID, 50) //
+        .with(AffinityPropagationInitialization.QUANTILE_ID, 0.01) //
+        .build().run(db);
+    testFMeasure(db, result, 0.699452036);
+    testClusterSizes(result, new int[] { 5, 6, 7, 49, 50, 54, 55, 104 });
+  }
+
+  /**
+   * A single object cannot be propagated, and becomes noise.
+   */
+  @Test
+  public void testSingleObject() {
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(new double[][] { { 1., 2. } }), null);
+    db.initialize();
+    Clustering<MedoidModel> result = new ELKIBuilder<SparseAffinityPropagation<DoubleVector>>(SparseAffinityPropagation.class)//
+        .with(SparseAffinityPropagation.Parameterizer.K_ID, 5) //
+        .build().run(db);
+    assertEquals("Number of clusters", 1, result.getAllClusters().size());
+    assertTrue("Not noise", result.getAllClusters().get(0).isNoise());
+    testClusterSizes(result, new int[] { 1 });
+  }
+}
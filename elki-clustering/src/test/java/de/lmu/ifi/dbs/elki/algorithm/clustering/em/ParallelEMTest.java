@@ -0,0 +1,106 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.em;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.AbstractClusterAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeans;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.result.ResultUtil;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Performs a full parallel EM run, and compares the result with a clustering
+ * derived from the data set labels. The full-batch results must be the same as
+ * with {@link EM}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class ParallelEMTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testEMMLEMultivariate() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(EM.Parameterizer.K_ID, 6) //
+        .build().run(db);
+    testFMeasure(db, result, 0.967410486);
+    testClusterSizes(result, new int[] { 3, 5, 91, 98, 200, 313 });
+  }
+
+  @Test
+  public void testEMMAPMultivariate() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(EM.Parameterizer.PRIOR_ID, 10) //
+        .with(EM.Parameterizer.K_ID, 5) //
+        .build().run(db);
+    testFMeasure(db, result, 0.958843);
+    testClusterSizes(result, new int[] { 3, 95, 97, 202, 313 });
+  }
+
+  @Test
+  public void testEMMiniBatch() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(EM.Parameterizer.K_ID, 5) //
+        .with(ParallelEM.Parameterizer.MINIBATCH_ID, 50) //
+        .with(ParallelEM.Parameterizer.SEED_ID, 0) //
+        .with(KMeans.MAXITER_ID, 1000) //
+        .build().run(db);
+    testFMeasure(db, result, 0.912664974);
+    testClusterSizes(result, new int[] { 40, 94, 100, 200, 276 });
+  }
+
+  @Test
+  public void testEMSoft() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(EM.Parameterizer.K_ID, 6) //
+        .with(ParallelEM.Parameterizer.SOFT_ID) //
+        .build().run(db);
+    testFMeasure(db, result, 0.967410486);
+    List<Relation<?>> rels = ResultUtil.filterResults(result.getHierarchy(), result, Relation.class);
+    assertEquals("No soft assignments.", 1, rels.size());
+    Relation<?> soft = rels.get(0);
+    assertEquals("Soft assignments type.", EM.SOFT_TYPE, soft.getDataTypeInformation());
+    for(DBIDIter it = soft.iterDBIDs(); it.valid(); it.advance()) {
+      double sum = 0.;
+      for(double p : (double[]) soft.get(it)) {
+        sum += p;
+      }
+      assertEquals("Probabilities do not sum to 1.", 1., sum, 1e-10);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.AbstractClusterAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.extraction.CutDendrogramByNumberOfClusters;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Perform HDBSCAN unit test, using the dual-tree Boruvka spanning tree.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class BoruvkaHDBSCANTest extends AbstractClusterAlgorithmTest {
+  /**
+   * Run HDBSCAN with fixed parameters and compare the result to a golden
+   * standard. The result must be the same as with {@link HDBSCANLinearMemory}.
+   */
+  @Test
+  public void testHDBSCAN() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Parameterizer.MINCLUSTERS_ID, 3) //
+        .with(AbstractAlgorithm.ALGORITHM_ID, BoruvkaHDBSCAN.class) //
+        .with(BoruvkaHDBSCAN.Parameterizer.MIN_PTS_ID, 20) //
+        .build().run(db);
+    testFMeasure(db, clustering, 0.686953412);
+    testClusterSizes(clustering, new int[] { 1, 200, 437 });
+  }
+
+  /**
+   * With minPts = 1, this must produce the same result as {@link SLINK}.
+   */
+  @Test
+  public void testSingleLink() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Parameterizer.MINCLUSTERS_ID, 3) //
+        .with(AbstractAlgorithm.ALGORITHM_ID, BoruvkaHDBSCAN.class) //
+        .with(BoruvkaHDBSCAN.Parameterizer.MIN_PTS_ID, 1) //
+        .with(BoruvkaHDBSCAN.Parameterizer.LEAFSIZE_ID, 4) //
+        .build().run(db);
+    testFMeasure(db, clustering, 0.6829722);
+    testClusterSizes(clustering, new int[] { 9, 200, 429 });
+  }
+}
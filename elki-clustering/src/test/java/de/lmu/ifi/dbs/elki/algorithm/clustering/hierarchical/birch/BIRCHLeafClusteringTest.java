@@ -20,11 +20,20 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.birch;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 import org.junit.Test;
 
 import de.lmu.ifi.dbs.elki.algorithm.clustering.AbstractClusterAlgorithmTest;
 import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.MeanModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.parser.NumberVectorLabelParser;
 import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
 
 /**
@@ -113,4 +122,37 @@ public class BIRCHLeafClusteringTest extends AbstractClusterAlgorithmTest {
     testFMeasure(db, clustering, 0.82023);
     testClusterSizes(clustering, new int[] { 158, 224, 256 });
   }
+
+  @Test
+  public void testParallelPartitions() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(BIRCHLeafClustering.class) //
+        .with(CFTree.Factory.Parameterizer.ABSORPTION_ID, DiameterCriterion.class) //
+        .with(CFTree.Factory.Parameterizer.MAXLEAVES_ID, 4) //
+        .with(CFTree.Factory.Parameterizer.PARTITIONS_ID, 3) //
+        .build().run(db);
+    testFMeasure(db, clustering, 0.938341051);
+    testClusterSizes(clustering, new int[] { 200, 214, 224 });
+  }
+
+  @Test
+  public void testStreaming() throws IOException {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Relation<NumberVector> relation = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    BIRCHLeafClustering birch = new ELKIBuilder<>(BIRCHLeafClustering.class) //
+        .with(CFTree.Factory.Parameterizer.ABSORPTION_ID, DiameterCriterion.class) //
+        .with(CFTree.Factory.Parameterizer.MAXLEAVES_ID, 4) //
+        .build();
+    CFTree tree;
+    try (InputStream in = open(UNITTEST + "single-link-effect.ascii")) {
+      NumberVectorLabelParser<DoubleVector> parser = new NumberVectorLabelParser<>(DoubleVector.FACTORY);
+      parser.initStream(in);
+      tree = birch.cffactory.newTree(parser);
+      parser.cleanup();
+    }
+    // Reading the stream must give the same tree as the relation.
+    Clustering<MeanModel> clustering = birch.clusterLeaves(tree, relation);
+    testFMeasure(db, clustering, 0.93866);
+    testClusterSizes(clustering, new int[] { 200, 211, 227 });
+  }
 }
@@ -0,0 +1,56 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.parallel;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.AbstractClusterAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.BestOfMultipleKMeans;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeans;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for parallel bisecting k-means.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class ParallelKMeansBisectingTest extends AbstractClusterAlgorithmTest {
+  /**
+   * Run ParallelKMeansBisecting with fixed parameters and compare the result
+   * to a golden standard.
+   */
+  @Test
+  public void testParallelKMeansBisecting() {
+    Database db = makeSimpleDatabase(UNITTEST + "bisecting-test.csv", 300);
+    Clustering<KMeansModel> result = new ELKIBuilder<ParallelKMeansBisecting<DoubleVector>>(ParallelKMeansBisecting.class) //
+        .with(KMeans.K_ID, 3) //
+        .with(ParallelKMeansBisecting.Parameterizer.SEED_ID, 0) //
+        .with(BestOfMultipleKMeans.Parameterizer.TRIALS_ID, 5) //
+        .build().run(db);
+    testFMeasure(db, result, 0.936877076);
+    testClusterSizes(result, new int[] { 90, 100, 110 });
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.optics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.AbstractClusterAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Performs a full parallel OPTICS run, and compares the result with a
+ * clustering derived from the data set labels, and with the cluster order of
+ * the sequential version.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class ParallelOPTICSHeapTest extends AbstractClusterAlgorithmTest {
+  /**
+   * Run OPTICS with fixed parameters and compare the result to a golden
+   * standard.
+   */
+  @Test
+  public void testOPTICSResults() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> clustering = new ELKIBuilder<>(OPTICSXi.class) //
+        .with(OPTICSHeap.Parameterizer.MINPTS_ID, 18) //
+        .with(OPTICSXi.Parameterizer.XI_ID, 0.038) //
+        .with(OPTICSXi.Parameterizer.XIALG_ID, ParallelOPTICSHeap.class) //
+        .build().run(db);
+    testFMeasure(db, clustering, 0.8819664);
+    testClusterSizes(clustering, new int[] { 108, 120, 209, 273 });
+  }
+
+  /**
+   * The cluster order must be identical to the sequential version.
+   */
+  @Test
+  public void testSameClusterOrder() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    ClusterOrder expected = new ELKIBuilder<OPTICSHeap<DoubleVector>>(OPTICSHeap.class) //
+        .with(OPTICSHeap.Parameterizer.EPSILON_ID, 0.1) //
+        .with(OPTICSHeap.Parameterizer.MINPTS_ID, 18) //
+        .build().run(db);
+    ClusterOrder order = new ELKIBuilder<ParallelOPTICSHeap<DoubleVector>>(ParallelOPTICSHeap.class) //
+        .with(OPTICSHeap.Parameterizer.EPSILON_ID, 0.1) //
+        .with(OPTICSHeap.Parameterizer.MINPTS_ID, 18) //
+        .with(ParallelOPTICSHeap.Parameterizer.PREFETCH_ID, 3) //
+        .build().run(db);
+    assertEquals("Cluster order size", expected.size(), order.size());
+    DBIDVar p1 = DBIDUtil.newVar(), p2 = DBIDUtil.newVar();
+    for(DBIDArrayIter i1 = expected.iter(), i2 = order.iter(); i1.valid(); i1.advance(), i2.advance()) {
+      assertTrue("Cluster order differs.", DBIDUtil.equal(i1, i2));
+      assertEquals("Reachability differs.", expected.getReachability(i1), order.getReachability(i2), 0.);
+      expected.getPredecessor(i1, p1);
+      order.getPredecessor(i2, p2);
+      assertTrue("Predecessor differs.", p1.isSet() ? DBIDUtil.equal(p1, p2) : !p2.isSet());
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.evaluation.clustering.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.trivial.ByLabelClustering;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Compare the parallel evaluation to the serial silhouette and C-index.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class ParallelInternalEvaluationTest extends AbstractSimpleAlgorithmTest {
+  /**
+   * Exact evaluation must match the serial evaluators, for every kind of noise
+   * handling.
+   */
+  @Test
+  public void testExact() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    DistanceQuery<NumberVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    Clustering<?> c = new ByLabelClustering(false, Pattern.compile("Noise")).run(db);
+    for(NoiseHandling noise : NoiseHandling.values()) {
+      double[] par = new ParallelInternalEvaluation<NumberVector>(EuclideanDistanceFunction.STATIC, noise, true, 0, 0, null).evaluateClustering(db, rel, dq, c);
+      double sil = new EvaluateSilhouette<NumberVector>(EuclideanDistanceFunction.STATIC, noise, true).evaluateClustering(db, rel, dq, c);
+      double cindex = new EvaluateCIndex<NumberVector>(EuclideanDistanceFunction.STATIC, noise).evaluateClustering(db, rel, dq, c);
+      assertEquals("Silhouette differs with " + noise, sil, par[0], 1e-12);
+      assertEquals("C-index differs with " + noise, cindex, par[1], 1e-12);
+    }
+  }
+
+  /**
+   * Sampled evaluation must be close to the exact values.
+   */
+  @Test
+  public void testSampled() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    DistanceQuery<NumberVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    Clustering<?> c = new ByLabelClustering(false, Pattern.compile("Noise")).run(db);
+    NoiseHandling noise = NoiseHandling.TREAT_NOISE_AS_SINGLETONS;
+    double[] exact = new ParallelInternalEvaluation<NumberVector>(EuclideanDistanceFunction.STATIC, noise, true, 0, 0, null).evaluateClustering(db, rel, dq, c);
+    double[] sampled = new ParallelInternalEvaluation<NumberVector>(EuclideanDistanceFunction.STATIC, noise, true, 150, 20000, new RandomFactory(0L)).evaluateClustering(db, rel, dq, c);
+    assertEquals("Sampled silhouette too far off", exact[0], sampled[0], 0.05);
+    assertEquals("Sampled C-index too far off", exact[1], sampled[1], 0.02);
+  }
+}
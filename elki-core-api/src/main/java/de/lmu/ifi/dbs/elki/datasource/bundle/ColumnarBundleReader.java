@@ -0,0 +1,444 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.bundle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformationSerializer;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBID;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.io.BlockCompression;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteArrayUtil;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteBufferSerializer;
+
+/**
+ * Read a columnar ELKI bundle file, as written by
+ * {@link ColumnarBundleWriter}.
+ *
+ * Only the header and the block index are read on opening. Column chunks are
+ * mapped one at a time, so files larger than 2 GB can be read. A subset of the
+ * columns can be selected, and the other columns are then never read. Rows
+ * can be accessed randomly with {@link #get}, which decodes (and caches) only
+ * the block containing the row.
+ *
+ * As stream source, the rows are produced block by block.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.uses FileChannel - - «reads»
+ * @apiviz.uses BlockCompression
+ */
+public class ColumnarBundleReader implements BundleStreamSource {
+  /**
+   * Magic number, shared with {@link ColumnarBundleWriter}.
+   */
+  public static final int MAGIC = ColumnarBundleWriter.MAGIC;
+
+  /**
+   * Input channel.
+   */
+  private FileChannel input;
+
+  /**
+   * Bundle metadata, of the selected columns.
+   */
+  private BundleMeta meta;
+
+  /**
+   * Serializers of the file columns.
+   */
+  private ByteBufferSerializer<?>[] sers;
+
+  /**
+   * File columns to read, including the DBIDs.
+   */
+  private int[] columns;
+
+  /**
+   * Whether or not we have DBIDs.
+   */
+  private boolean hasids = false;
+
+  /**
+   * First row of each block, and the total number of rows at the end.
+   */
+  private int[] blockstart;
+
+  /**
+   * Chunk file offsets, by block and file column.
+   */
+  private long[][] offsets;
+
+  /**
+   * Stored and uncompressed chunk sizes, and record sizes.
+   */
+  private int[][] stored, rawsize, strides;
+
+  /**
+   * Chunk codecs.
+   */
+  private byte[][] codecs;
+
+  /**
+   * Currently decoded block.
+   */
+  private int curblock = -1;
+
+  /**
+   * Decoded values of the current block, by selected column.
+   */
+  private Object[][] values;
+
+  /**
+   * Stream position.
+   */
+  private int streampos = -1;
+
+  /**
+   * Row of the stream, within the current block.
+   */
+  private int streamrow;
+
+  /**
+   * Constructor, reading all columns.
+   *
+   * @param input Input channel
+   * @throws IOException on IO errors
+   */
+  public ColumnarBundleReader(FileChannel input) throws IOException {
+    this(input, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param input Input channel
+   * @param select Data columns to read (not counting DBIDs), {@code null} for
+   *        all columns
+   * @throws IOException on IO errors
+   */
+  public ColumnarBundleReader(FileChannel input, int[] select) throws IOException {
+    super();
+    this.input = input;
+    readHeader(select);
+    readIndex();
+  }
+
+  /**
+   * Test whether a file is a columnar bundle.
+   *
+   * @param input Input channel
+   * @return {@code true} when the file starts with the columnar magic
+   * @throws IOException on IO errors
+   */
+  public static boolean isColumnarBundle(FileChannel input) throws IOException {
+    ByteBuffer magic = ByteBuffer.allocate(ByteArrayUtil.SIZE_INT);
+    input.read(magic, 0);
+    return magic.position() == ByteArrayUtil.SIZE_INT && magic.getInt(0) == MAGIC;
+  }
+
+  /**
+   * Read the header with the column types.
+   *
+   * @param select Data columns to read, {@code null} for all
+   * @throws IOException on IO errors
+   */
+  private void readHeader(int[] select) throws IOException {
+    ByteBuffer buffer = read(0, 3 * ByteArrayUtil.SIZE_INT);
+    if(buffer.getInt() != MAGIC) {
+      throw new AbortException("File does not start with expected magic.");
+    }
+    final int version = buffer.getInt();
+    if(version != ColumnarBundleWriter.VERSION) {
+      throw new AbortException("Unsupported bundle version: " + version);
+    }
+    buffer = read(3 * ByteArrayUtil.SIZE_INT, buffer.getInt());
+    final int numcols = buffer.getInt();
+    sers = new ByteBufferSerializer<?>[numcols];
+    SimpleTypeInformation<?>[] types = new SimpleTypeInformation<?>[numcols];
+    for(int i = 0; i < numcols; i++) {
+      try {
+        types[i] = (SimpleTypeInformation<?>) TypeInformationSerializer.STATIC.fromByteBuffer(buffer);
+      }
+      catch(UnsupportedOperationException e) {
+        throw new AbortException("Deserialization failed: " + e.getMessage(), e);
+      }
+      sers[i] = types[i].getSerializer();
+    }
+    hasids = numcols > 0 && DBID.class.isAssignableFrom(types[0].getRestrictionClass());
+    final int first = hasids ? 1 : 0;
+    if(select == null) {
+      select = new int[numcols - first];
+      for(int i = 0; i < select.length; i++) {
+        select[i] = i;
+      }
+    }
+    columns = new int[first + select.length];
+    meta = new BundleMeta(select.length);
+    for(int i = 0; i < select.length; i++) {
+      final int c = select[i] + first;
+      if(c < first || c >= numcols) {
+        throw new AbortException("Bundle does not have a column " + select[i]);
+      }
+      columns[first + i] = c;
+      meta.add(types[c]);
+    }
+    values = new Object[columns.length][];
+  }
+
+  /**
+   * Read the block index.
+   *
+   * @throws IOException on IO errors
+   */
+  private void readIndex() throws IOException {
+    final int numcols = sers.length;
+    ByteBuffer trailer = read(input.size() - ColumnarBundleWriter.TRAILER_SIZE, ColumnarBundleWriter.TRAILER_SIZE);
+    final int numblocks = trailer.getInt();
+    final long indexpos = trailer.getLong();
+    if(trailer.getInt() != MAGIC) {
+      throw new AbortException("Bundle file is truncated.");
+    }
+    ByteBuffer index = read(indexpos, numblocks * (ByteArrayUtil.SIZE_INT + numcols * ColumnarBundleWriter.ENTRY_SIZE));
+    blockstart = new int[numblocks + 1];
+    offsets = new long[numblocks][numcols];
+    stored = new int[numblocks][numcols];
+    rawsize = new int[numblocks][numcols];
+    strides = new int[numblocks][numcols];
+    codecs = new byte[numblocks][numcols];
+    for(int b = 0; b < numblocks; b++) {
+      blockstart[b + 1] = blockstart[b] + index.getInt();
+      for(int c = 0; c < numcols; c++) {
+        offsets[b][c] = index.getLong();
+        stored[b][c] = index.getInt();
+        rawsize[b][c] = index.getInt();
+        codecs[b][c] = index.get();
+        strides[b][c] = index.getInt();
+      }
+    }
+  }
+
+  /**
+   * Read a small region of the file.
+   *
+   * @param pos File position
+   * @param len Length
+   * @return Buffer
+   * @throws IOException on IO errors
+   */
+  private ByteBuffer read(long pos, int len) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(len);
+    while(buffer.hasRemaining()) {
+      if(input.read(buffer, pos + buffer.position()) < 0) {
+        throw new AbortException("Bundle file is truncated.");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Get the number of rows.
+   *
+   * @return Number of rows
+   */
+  public int size() {
+    return blockstart[blockstart.length - 1];
+  }
+
+  /**
+   * Get the number of blocks.
+   *
+   * @return Number of blocks
+   */
+  public int getNumBlocks() {
+    return blockstart.length - 1;
+  }
+
+  /**
+   * Get a single value, decoding the block containing the row.
+   *
+   * @param row Row number
+   * @param col Selected column
+   * @return Value
+   */
+  public Object get(int row, int col) {
+    if(row < 0 || row >= size()) {
+      throw new ArrayIndexOutOfBoundsException(row);
+    }
+    final int b = findBlock(row);
+    loadBlock(b);
+    return values[(hasids ? 1 : 0) + col][row - blockstart[b]];
+  }
+
+  /**
+   * Find the block containing a row.
+   *
+   * @param row Row number
+   * @return Block number
+   */
+  private int findBlock(int row) {
+    int b = Arrays.binarySearch(blockstart, row);
+    if(b < 0) {
+      return -b - 2;
+    }
+    // Skip empty blocks.
+    while(blockstart[b + 1] == row) {
+      ++b;
+    }
+    return b;
+  }
+
+  /**
+   * Decode a block, for all selected columns.
+   *
+   * @param b Block number
+   */
+  private void loadBlock(int b) {
+    if(curblock == b) {
+      return;
+    }
+    for(int i = 0; i < columns.length; i++) {
+      values[i] = decodeChunk(b, columns[i]);
+    }
+    curblock = b;
+  }
+
+  /**
+   * Decode a column chunk.
+   *
+   * @param b Block number
+   * @param c File column
+   * @return Values
+   */
+  private Object[] decodeChunk(int b, int c) {
+    final int rows = blockstart[b + 1] - blockstart[b];
+    Object[] vals = new Object[rows];
+    MappedByteBuffer map = null;
+    try {
+      map = input.map(MapMode.READ_ONLY, offsets[b][c], stored[b][c]);
+      ByteBuffer buffer = map;
+      if(codecs[b][c] != ColumnarBundleWriter.CODEC_NONE) {
+        final int len = rawsize[b][c];
+        byte[] data = new byte[len];
+        BlockCompression.decompress(map, 0, stored[b][c], data);
+        if(codecs[b][c] == ColumnarBundleWriter.CODEC_SHUFFLE) {
+          byte[] unshuffled = new byte[len];
+          BlockCompression.unshuffle(data, len, strides[b][c], unshuffled);
+          data = unshuffled;
+        }
+        buffer = ByteBuffer.wrap(data);
+      }
+      for(int i = 0; i < rows; i++) {
+        vals[i] = sers[c].fromByteBuffer(buffer);
+      }
+    }
+    catch(UnsupportedOperationException e) {
+      throw new AbortException("Deserialization failed.", e);
+    }
+    catch(IOException e) {
+      throw new AbortException("IO error", e);
+    }
+    finally {
+      ByteArrayUtil.unmapByteBuffer(map);
+    }
+    return vals;
+  }
+
+  @Override
+  public BundleMeta getMeta() {
+    return meta;
+  }
+
+  @Override
+  public Event nextEvent() {
+    // Send initial meta
+    if(streampos < 0) {
+      streampos = 0;
+      streamrow = -1;
+      return Event.META_CHANGED;
+    }
+    if(streampos >= size()) {
+      return Event.END_OF_STREAM;
+    }
+    if(curblock < 0 || streampos >= blockstart[curblock + 1] || streampos < blockstart[curblock]) {
+      loadBlock(findBlock(streampos));
+    }
+    streamrow = streampos++ - blockstart[curblock];
+    return Event.NEXT_OBJECT;
+  }
+
+  @Override
+  public Object data(int rnum) {
+    return values[(hasids ? 1 : 0) + rnum][streamrow];
+  }
+
+  @Override
+  public boolean hasDBIDs() {
+    return hasids;
+  }
+
+  @Override
+  public boolean assignDBID(DBIDVar var) {
+    if(!hasids) {
+      return false;
+    }
+    var.set((DBID) values[0][streamrow]);
+    return true;
+  }
+
+  /**
+   * Read the selected columns into a bundle, column by column.
+   */
+  @Override
+  public MultipleObjectsBundle asMultipleObjectsBundle() {
+    final int size = size(), numblocks = getNumBlocks();
+    MultipleObjectsBundle bundle = new MultipleObjectsBundle();
+    if(hasids) {
+      ArrayModifiableDBIDs ids = DBIDUtil.newArray(size);
+      for(int b = 0; b < numblocks; b++) {
+        for(Object id : decodeChunk(b, 0)) {
+          ids.add((DBID) id);
+        }
+      }
+      bundle.setDBIDs(ids);
+    }
+    for(int i = hasids ? 1 : 0, j = 0; i < columns.length; i++, j++) {
+      ArrayList<Object> data = new ArrayList<>(size);
+      for(int b = 0; b < numblocks; b++) {
+        data.addAll(Arrays.asList(decodeChunk(b, columns[i])));
+      }
+      bundle.appendColumn(meta.get(j), data);
+    }
+    return bundle;
+  }
+}
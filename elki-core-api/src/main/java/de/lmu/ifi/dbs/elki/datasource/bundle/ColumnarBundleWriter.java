@@ -0,0 +1,397 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.bundle;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformationSerializer;
+import de.lmu.ifi.dbs.elki.database.ids.DBID;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDFactory;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.io.BlockCompression;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteArrayUtil;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteBufferSerializer;
+
+/**
+ * Write an object bundle stream to a file channel, in the columnar bundle
+ * format (version 2).
+ *
+ * The objects are split into blocks of rows, and each block stores the
+ * serialized values of each column separately, optionally compressed with
+ * {@link BlockCompression}. The file ends with an index of the position of
+ * every column of every block, so {@link ColumnarBundleReader} can read single
+ * columns, or single blocks, without touching the rest of the file.
+ *
+ * File layout, in big endian byte order:
+ * <ol>
+ * <li>Header: {@link #MAGIC}, {@link #VERSION}, the byte size of the types,
+ * and the number of columns followed by their types. DBIDs are stored as first
+ * column, as in the {@link BundleWriter} format.</li>
+ * <li>The column chunks of every block.</li>
+ * <li>Index: for every block, the number of rows, then for every column the
+ * file offset, stored size, uncompressed size, codec and record size of the
+ * chunk.</li>
+ * <li>Trailer: the number of blocks, the file offset of the index, and
+ * {@link #MAGIC} again.</li>
+ * </ol>
+ *
+ * Bundle streams that add new columns are not supported.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.uses BundleStreamSource - - «reads»
+ * @apiviz.uses WritableByteChannel - - «writes»
+ * @apiviz.uses BlockCompression
+ */
+public class ColumnarBundleWriter {
+  /**
+   * Class logger for the bundle writer.
+   */
+  private static final Logging LOG = Logging.getLogger(ColumnarBundleWriter.class);
+
+  /**
+   * Magic number of the columnar format.
+   */
+  public static final int MAGIC = 0xa8123b13;
+
+  /**
+   * Format version.
+   */
+  public static final int VERSION = 2;
+
+  /**
+   * Default number of rows per block.
+   */
+  public static final int DEFAULT_BLOCKSIZE = 1 << 14;
+
+  /**
+   * Size of the trailer.
+   */
+  public static final int TRAILER_SIZE = ByteArrayUtil.SIZE_INT + ByteArrayUtil.SIZE_LONG + ByteArrayUtil.SIZE_INT;
+
+  /**
+   * Size of an index entry of a column chunk.
+   */
+  public static final int ENTRY_SIZE = ByteArrayUtil.SIZE_LONG + 3 * ByteArrayUtil.SIZE_INT + 1;
+
+  /**
+   * Chunk is stored uncompressed.
+   */
+  public static final byte CODEC_NONE = 0;
+
+  /**
+   * Chunk is compressed.
+   */
+  public static final byte CODEC_LZ = 1;
+
+  /**
+   * Chunk is shuffled by record size, then compressed.
+   */
+  public static final byte CODEC_SHUFFLE = 2;
+
+  /**
+   * Compression of the column chunks.
+   *
+   * @author Erich Schubert
+   */
+  public enum Compression {
+    /** No compression. */
+    NONE,
+    /** LZ compression. */
+    LZ,
+    /** Byte shuffle and LZ compression, for fixed size records. */
+    SHUFFLE,
+  }
+
+  /**
+   * Compression to use.
+   */
+  private Compression compression;
+
+  /**
+   * Rows per block.
+   */
+  private int blocksize;
+
+  /**
+   * Serializers of the columns.
+   */
+  private ByteBufferSerializer<?>[] serializers;
+
+  /**
+   * Index being built.
+   */
+  private ByteBuffer index;
+
+  /**
+   * Number of blocks written.
+   */
+  private int numblocks;
+
+  /**
+   * Current file position.
+   */
+  private long position;
+
+  /**
+   * Serialization buffer.
+   */
+  private ByteBuffer raw = ByteBuffer.allocate(1 << 16);
+
+  /**
+   * Compression buffers.
+   */
+  private byte[] tmp = new byte[0], out = new byte[0];
+
+  /**
+   * Constructor.
+   *
+   * @param compression Compression to use
+   * @param blocksize Rows per block
+   */
+  public ColumnarBundleWriter(Compression compression, int blocksize) {
+    super();
+    this.compression = compression;
+    this.blocksize = blocksize;
+  }
+
+  /**
+   * Constructor, with the default block size and compression.
+   */
+  public ColumnarBundleWriter() {
+    this(Compression.SHUFFLE, DEFAULT_BLOCKSIZE);
+  }
+
+  /**
+   * Write a bundle stream to a file output channel.
+   *
+   * @param source Data source
+   * @param output Output channel
+   * @throws IOException on IO errors
+   */
+  public void writeBundleStream(BundleStreamSource source, WritableByteChannel output) throws IOException {
+    DBIDVar var = null;
+    Object[][] block = null;
+    int fill = 0;
+    position = 0L;
+    numblocks = 0;
+    serializers = null;
+    index = ByteBuffer.allocate(1024);
+    loop: while(true) {
+      BundleStreamSource.Event ev = source.nextEvent();
+      switch(ev){
+      case NEXT_OBJECT:
+        if(serializers == null) {
+          writeHeader(source, output);
+          block = new Object[serializers.length][blocksize];
+          var = serializers[0] != null ? DBIDUtil.newVar() : null;
+        }
+        if(serializers[0] != null) {
+          if(!source.assignDBID(var)) {
+            throw new AbortException("An object did not have an DBID assigned.");
+          }
+          block[0][fill] = DBIDUtil.deref(var);
+        }
+        for(int i = 1, j = 0; i < serializers.length; ++i, ++j) {
+          block[i][fill] = source.data(j);
+        }
+        if(++fill == blocksize) {
+          writeBlock(block, fill, output);
+          fill = 0;
+        }
+        break; // switch
+      case META_CHANGED:
+        if(serializers != null) {
+          throw new AbortException("Meta changes are not supported, once the block header has been written.");
+        }
+        break; // switch
+      case END_OF_STREAM:
+        break loop;
+      default:
+        LOG.warning("Unknown bundle stream event. API inconsistent? " + ev);
+        break; // switch
+      }
+    }
+    if(serializers == null) {
+      throw new AbortException("Cannot write an empty bundle.");
+    }
+    if(fill > 0) {
+      writeBlock(block, fill, output);
+    }
+    // Index and trailer.
+    final long indexpos = position;
+    index.flip();
+    write(index, output);
+    ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+    trailer.putInt(numblocks).putLong(indexpos).putInt(MAGIC).flip();
+    write(trailer, output);
+    index = null;
+  }
+
+  /**
+   * Write the header, and set up the serializers.
+   *
+   * @param source Bundle stream
+   * @param output Output channel
+   * @throws IOException on IO errors
+   */
+  private void writeHeader(BundleStreamSource source, WritableByteChannel output) throws IOException {
+    final BundleMeta meta = source.getMeta();
+    final int nummeta = meta.size();
+    serializers = new ByteBufferSerializer<?>[1 + nummeta];
+    SimpleTypeInformation<?>[] types = new SimpleTypeInformation<?>[1 + nummeta];
+    if(source.hasDBIDs()) {
+      ByteBufferSerializer<DBID> ser = DBIDFactory.FACTORY.getDBIDSerializer();
+      types[0] = new SimpleTypeInformation<>(DBID.class, ser);
+      serializers[0] = ser;
+    }
+    for(int i = 1; i < types.length; i++) {
+      types[i] = meta.get(i - 1);
+      serializers[i] = types[i].getSerializer();
+      if(serializers[i] == null) {
+        throw new AbortException("Cannot serialize - no serializer found for type: " + types[i].toString());
+      }
+    }
+    // The type serializers cannot size unlabeled types, so grow on demand.
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+    final int start = 3 * ByteArrayUtil.SIZE_INT;
+    while(true) {
+      try {
+        buffer.clear();
+        buffer.putInt(MAGIC).putInt(VERSION);
+        buffer.putInt(0); // Placeholder for the size.
+        buffer.putInt(serializers[0] != null ? types.length : nummeta);
+        for(int i = 0; i < types.length; i++) {
+          if(types[i] != null) {
+            TypeInformationSerializer.STATIC.toByteBuffer(buffer, types[i]);
+          }
+        }
+        break;
+      }
+      catch(BufferOverflowException e) {
+        buffer = ByteBuffer.allocate(buffer.capacity() << 1);
+      }
+    }
+    buffer.putInt(start - ByteArrayUtil.SIZE_INT, buffer.position() - start);
+    buffer.flip();
+    write(buffer, output);
+  }
+
+  /**
+   * Write a block of rows.
+   *
+   * @param block Column values
+   * @param fill Number of rows
+   * @param output Output channel
+   * @throws IOException on IO errors
+   */
+  private void writeBlock(Object[][] block, int fill, WritableByteChannel output) throws IOException {
+    ensureIndex(ByteArrayUtil.SIZE_INT + serializers.length * ENTRY_SIZE);
+    index.putInt(fill);
+    for(int i = 0; i < serializers.length; i++) {
+      if(serializers[i] == null) {
+        continue;
+      }
+      @SuppressWarnings("unchecked")
+      ByteBufferSerializer<Object> ser = (ByteBufferSerializer<Object>) serializers[i];
+      // Serialize, and detect fixed size records.
+      raw.clear();
+      int stride = -1;
+      for(int j = 0; j < fill; j++) {
+        final int size = ser.getByteSize(block[i][j]);
+        if(raw.remaining() < size) {
+          ByteBuffer grown = ByteBuffer.allocate(Math.max(raw.capacity() << 1, raw.position() + size));
+          raw.flip();
+          raw = grown.put(raw);
+        }
+        final int before = raw.position();
+        ser.toByteBuffer(raw, block[i][j]);
+        final int len = raw.position() - before;
+        stride = (stride == -1 || stride == len) ? len : 0;
+        block[i][j] = null;
+      }
+      final int rawlen = raw.position();
+      byte codec = CODEC_NONE;
+      // Not chained, as Buffer.flip() does not return a ByteBuffer on Java 8.
+      raw.flip();
+      ByteBuffer data = raw;
+      if(compression != Compression.NONE && rawlen > 0) {
+        final byte[] src;
+        if(compression == Compression.SHUFFLE && stride > 1) {
+          tmp = tmp.length >= rawlen ? tmp : new byte[rawlen];
+          BlockCompression.shuffle(raw.array(), rawlen, stride, tmp);
+          src = tmp;
+          codec = CODEC_SHUFFLE;
+        }
+        else {
+          src = raw.array();
+          codec = CODEC_LZ;
+        }
+        final int maxlen = BlockCompression.maxCompressedLength(rawlen);
+        out = out.length >= maxlen ? out : new byte[maxlen];
+        final int clen = BlockCompression.compress(src, rawlen, out);
+        if(clen < rawlen) {
+          data = ByteBuffer.wrap(out, 0, clen);
+        }
+        else {
+          codec = CODEC_NONE;
+        }
+      }
+      index.putLong(position).putInt(data.remaining()).putInt(rawlen).put(codec).putInt(stride > 0 ? stride : 0);
+      write(data, output);
+    }
+    ++numblocks;
+  }
+
+  /**
+   * Ensure the index buffer has enough space.
+   *
+   * @param size Required space
+   */
+  private void ensureIndex(int size) {
+    if(index.remaining() < size) {
+      ByteBuffer grown = ByteBuffer.allocate(Math.max(index.capacity() << 1, index.position() + size));
+      index.flip();
+      index = grown.put(index);
+    }
+  }
+
+  /**
+   * Write a buffer completely.
+   *
+   * @param buffer Buffer
+   * @param output Output channel
+   * @throws IOException on IO errors
+   */
+  private void write(ByteBuffer buffer, WritableByteChannel output) throws IOException {
+    while(buffer.hasRemaining()) {
+      position += output.write(buffer);
+    }
+  }
+}
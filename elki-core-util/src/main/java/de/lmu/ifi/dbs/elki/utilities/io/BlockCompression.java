@@ -0,0 +1,248 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.utilities.io;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Fast compression of data blocks, in the style of LZ4.
+ *
+ * The compressed format is a sequence of tokens. Each token has a literal
+ * length in the upper four bits and a match length in the lower four bits,
+ * both extended by bytes of 255 when 15. The literals follow, then a two byte
+ * little endian offset of the match. The last token has literals only.
+ *
+ * For arrays of fixed size records, such as vectors of the same
+ * dimensionality, {@link #shuffle} groups the i-th bytes of all records and
+ * takes byte differences, which makes slowly varying values compress much
+ * better.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public final class BlockCompression {
+  /**
+   * Private constructor. Static methods only.
+   */
+  private BlockCompression() {
+    // Do not use.
+  }
+
+  /**
+   * Minimum match length.
+   */
+  private static final int MIN_MATCH = 4;
+
+  /**
+   * Bits of the hash table.
+   */
+  private static final int HASH_BITS = 14;
+
+  /**
+   * Maximum match offset.
+   */
+  private static final int MAX_OFFSET = 0xFFFF;
+
+  /**
+   * Maximum compressed size.
+   *
+   * @param len Input length
+   * @return Maximum size of the compressed data
+   */
+  public static int maxCompressedLength(int len) {
+    return len + len / 255 + 16;
+  }
+
+  /**
+   * Compress a block of data.
+   *
+   * @param src Source data
+   * @param len Source length
+   * @param dst Destination, of at least {@link #maxCompressedLength} size
+   * @return Compressed length
+   */
+  public static int compress(byte[] src, int len, byte[] dst) {
+    final int[] table = new int[1 << HASH_BITS];
+    Arrays.fill(table, -1);
+    final int limit = len - MIN_MATCH;
+    int anchor = 0, ip = 0, op = 0;
+    while(ip < limit) {
+      final int seq = readInt(src, ip);
+      final int h = (seq * -1640531535) >>> (32 - HASH_BITS);
+      final int ref = table[h];
+      table[h] = ip;
+      if(ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+        ++ip;
+        continue;
+      }
+      int mlen = MIN_MATCH;
+      while(ip + mlen < len && src[ref + mlen] == src[ip + mlen]) {
+        ++mlen;
+      }
+      op = writeSequence(src, anchor, ip - anchor, ip - ref, mlen, dst, op);
+      ip += mlen;
+      anchor = ip;
+    }
+    return writeSequence(src, anchor, len - anchor, 0, 0, dst, op);
+  }
+
+  /**
+   * Write a single sequence.
+   *
+   * @param src Source data
+   * @param start Start of literals
+   * @param llen Literal length
+   * @param offset Match offset
+   * @param mlen Match length, 0 for the last sequence
+   * @param dst Destination
+   * @param op Output position
+   * @return New output position
+   */
+  private static int writeSequence(byte[] src, int start, int llen, int offset, int mlen, byte[] dst, int op) {
+    final int mcode = mlen > 0 ? mlen - MIN_MATCH : 0;
+    final int token = op++;
+    dst[token] = (byte) ((Math.min(llen, 15) << 4) | Math.min(mcode, 15));
+    op = writeLength(llen, dst, op);
+    System.arraycopy(src, start, dst, op, llen);
+    op += llen;
+    if(mlen > 0) {
+      dst[op++] = (byte) offset;
+      dst[op++] = (byte) (offset >>> 8);
+      op = writeLength(mcode, dst, op);
+    }
+    return op;
+  }
+
+  /**
+   * Write the extension of a length.
+   *
+   * @param len Length
+   * @param dst Destination
+   * @param op Output position
+   * @return New output position
+   */
+  private static int writeLength(int len, byte[] dst, int op) {
+    if(len < 15) {
+      return op;
+    }
+    len -= 15;
+    for(; len >= 255; len -= 255) {
+      dst[op++] = (byte) 255;
+    }
+    dst[op++] = (byte) len;
+    return op;
+  }
+
+  /**
+   * Decompress a block of data.
+   *
+   * @param src Source buffer, read with absolute positions
+   * @param start Start position
+   * @param end End position
+   * @param dst Destination, of the uncompressed size
+   * @return Decompressed length
+   */
+  public static int decompress(ByteBuffer src, int start, int end, byte[] dst) {
+    int ip = start, op = 0;
+    while(ip < end) {
+      final int token = src.get(ip++) & 0xFF;
+      int llen = token >>> 4;
+      if(llen == 15) {
+        int b;
+        do {
+          llen += b = src.get(ip++) & 0xFF;
+        }
+        while(b == 255);
+      }
+      for(int i = 0; i < llen; i++) {
+        dst[op++] = src.get(ip++);
+      }
+      if(ip >= end) {
+        break; // Last sequence.
+      }
+      final int offset = (src.get(ip) & 0xFF) | ((src.get(ip + 1) & 0xFF) << 8);
+      ip += 2;
+      int mlen = token & 0xF;
+      if(mlen == 15) {
+        int b;
+        do {
+          mlen += b = src.get(ip++) & 0xFF;
+        }
+        while(b == 255);
+      }
+      mlen += MIN_MATCH;
+      // Byte-wise, as the match may overlap the output.
+      for(int ref = op - offset; mlen > 0; --mlen) {
+        dst[op++] = dst[ref++];
+      }
+    }
+    return op;
+  }
+
+  /**
+   * Group the bytes of fixed size records, and take byte differences.
+   *
+   * @param src Source data, a multiple of the stride in length
+   * @param len Source length
+   * @param stride Record size
+   * @param dst Destination
+   */
+  public static void shuffle(byte[] src, int len, int stride, byte[] dst) {
+    assert (len % stride == 0) : "Not a multiple of the stride.";
+    byte prev = 0;
+    for(int j = 0, op = 0; j < stride; j++) {
+      for(int i = j; i < len; i += stride, op++) {
+        final byte b = src[i];
+        dst[op] = (byte) (b - prev);
+        prev = b;
+      }
+    }
+  }
+
+  /**
+   * Undo {@link #shuffle}.
+   *
+   * @param src Shuffled data
+   * @param len Length
+   * @param stride Record size
+   * @param dst Destination
+   */
+  public static void unshuffle(byte[] src, int len, int stride, byte[] dst) {
+    byte prev = 0;
+    for(int j = 0, ip = 0; j < stride; j++) {
+      for(int i = j; i < len; i += stride, ip++) {
+        prev = dst[i] = (byte) (src[ip] + prev);
+      }
+    }
+  }
+
+  /**
+   * Read a big endian integer.
+   *
+   * @param src Source
+   * @param i Position
+   * @return Integer
+   */
+  private static int readInt(byte[] src, int i) {
+    return (src[i] << 24) | ((src[i + 1] & 0xFF) << 16) | ((src[i + 2] & 0xFF) << 8) | (src[i + 3] & 0xFF);
+  }
+}
@@ -23,6 +23,9 @@ package de.lmu.ifi.dbs.elki.utilities.io;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 
 /**
  * Class for buffered IO, avoiding some of the overheads of the Java API.
@@ -31,6 +34,14 @@ import java.io.InputStreamReader;
  * reuse the buffer. <b>After a call to {@code nextLine()}, the buffer will be
  * overwitten!</b>
  *
+ * When reset to a {@link FileChannel}, the file is memory mapped in windows,
+ * and lines are returned as {@link ByteBufferCharSequence} views of the mapped
+ * data, without decoding or copying. This requires the platform default
+ * charset, used by the stream path, to be ASCII compatible such as UTF-8 (see
+ * {@link ByteBufferCharSequence#isSupported}). Lines that cross a window border are handled by
+ * mapping the next window starting at the line, so files larger than 2 GB can
+ * be read, too.
+ *
  * @author Erich Schubert
  * @since 0.7.0
  */
@@ -50,6 +61,46 @@ public class BufferedLineReader implements AutoCloseable {
    */
   protected int lineNumber = 0;
 
+  /**
+   * Default size of a mapped window.
+   */
+  private static final int WINDOW_SIZE = 1 << 26;
+
+  /**
+   * File channel, when reading mapped files.
+   */
+  private FileChannel channel = null;
+
+  /**
+   * Current mapped window.
+   */
+  private MappedByteBuffer window = null;
+
+  /**
+   * File position of the window, and file size.
+   */
+  private long windowStart, fileSize;
+
+  /**
+   * Position of the next line in the window.
+   */
+  private int windowPos;
+
+  /**
+   * Size of the windows to map.
+   */
+  private int windowSize = WINDOW_SIZE;
+
+  /**
+   * Initial size of the windows, doubled for lines longer than a window.
+   */
+  private int initialWindowSize = WINDOW_SIZE;
+
+  /**
+   * Current line, when reading mapped files.
+   */
+  private ByteBufferCharSequence line = new ByteBufferCharSequence();
+
   /**
    * Constructor. Use {@link #reset} to assign an input stream.
    */
@@ -93,6 +144,9 @@ public class BufferedLineReader implements AutoCloseable {
     reader = null;
     buf.setLength(0);
     lineNumber = 0;
+    channel = null;
+    window = null;
+    line.reset(null, 0, 0);
   }
 
   /**
@@ -131,6 +185,39 @@ public class BufferedLineReader implements AutoCloseable {
     this.reader = new LineReader(in);
   }
 
+  /**
+   * Reset to a file channel, which will be memory mapped from its current
+   * position on.
+   *
+   * <b>A previous stream will not be closed automatically!</b>
+   *
+   * @param channel File channel
+   * @throws IOException on IO errors, or if the default charset cannot be
+   *         mapped
+   */
+  public void reset(FileChannel channel) throws IOException {
+    if(!ByteBufferCharSequence.isSupported(Charset.defaultCharset())) {
+      throw new IOException("Files in charset " + Charset.defaultCharset() + " cannot be memory mapped.");
+    }
+    reset();
+    this.channel = channel;
+    this.fileSize = channel.size();
+    this.windowStart = channel.position();
+    this.windowPos = 0;
+    this.windowSize = initialWindowSize;
+  }
+
+  /**
+   * Set the initial size of mapped windows, used by the next
+   * {@link #reset(FileChannel)}. Small windows are used in unit tests of the
+   * window handling.
+   *
+   * @param size Window size in bytes
+   */
+  void setInitialWindowSize(int size) {
+    this.initialWindowSize = size;
+  }
+
   /**
    * Get the reader buffer.
    *
@@ -139,7 +226,7 @@ public class BufferedLineReader implements AutoCloseable {
    * @return Buffer.
    */
   public CharSequence getBuffer() {
-    return buf;
+    return channel != null ? line : buf;
   }
 
   /**
@@ -158,6 +245,9 @@ public class BufferedLineReader implements AutoCloseable {
    * @throws IOException on IO errors.
    */
   public boolean nextLine() throws IOException {
+    if(channel != null) {
+      return nextMappedLine();
+    }
     while(reader.readLine(buf.delete(0, buf.length()))) {
       ++lineNumber;
       if(lengthWithoutLinefeed(buf) > 0) {
@@ -167,11 +257,75 @@ public class BufferedLineReader implements AutoCloseable {
     return false;
   }
 
+  /**
+   * Read the next line from the mapped file.
+   *
+   * @return {@code true} if another line was read successfully.
+   * @throws IOException on IO errors.
+   */
+  private boolean nextMappedLine() throws IOException {
+    while(true) {
+      if(window == null || windowPos >= window.limit()) {
+        if(!map(windowStart + windowPos)) {
+          return false;
+        }
+      }
+      final int begin = windowPos, limit = window.limit();
+      int end = begin;
+      while(end < limit && window.get(end) != '\n') {
+        ++end;
+      }
+      // Line continues after the window: map a new window at the line start.
+      if(end == limit && windowStart + limit < fileSize) {
+        if(begin == 0) { // Line longer than the window.
+          if(windowSize == Integer.MAX_VALUE) {
+            throw new IOException("Line " + (lineNumber + 1) + " is longer than 2 GB.");
+          }
+          windowSize = (int) Math.min(Integer.MAX_VALUE, windowSize * 2L);
+        }
+        map(windowStart + begin);
+        continue;
+      }
+      windowPos = end + 1;
+      ++lineNumber;
+      while(end > begin && (window.get(end - 1) == '\r' || window.get(end - 1) == '\n')) {
+        --end;
+      }
+      if(end > begin) {
+        line.reset(window, begin, end);
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Map the next window of the file.
+   *
+   * @param start File position
+   * @return {@code false} at the end of the file.
+   * @throws IOException on IO errors.
+   */
+  private boolean map(long start) throws IOException {
+    if(start >= fileSize) {
+      window = null;
+      return false;
+    }
+    window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, fileSize - start));
+    windowStart = start;
+    windowPos = 0;
+    return true;
+  }
+
   @Override
   public void close() throws IOException {
     if(reader != null) {
       reader.close();
     }
+    if(channel != null) {
+      channel.close();
+      channel = null;
+      window = null;
+    }
     buf.setLength(0);
     buf.trimToSize();
   }
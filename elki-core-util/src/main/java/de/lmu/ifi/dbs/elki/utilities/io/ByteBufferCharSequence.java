@@ -0,0 +1,209 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.utilities.io;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Character sequence view of a range of a byte buffer, for ASCII compatible
+ * encodings such as UTF-8 (see {@link #isSupported}).
+ *
+ * Each byte is one character, so the view can be tokenized with regular
+ * expressions and parsed without decoding or copying the data. Bytes of
+ * multi-byte characters show as characters above 127, which do not
+ * match ASCII separators. Use {@link #decode} to get the actual string of a
+ * range, decoded with the platform default charset, as an
+ * {@link java.io.InputStreamReader} would.
+ *
+ * The view can be reused with {@link #reset}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class ByteBufferCharSequence implements CharSequence {
+  /**
+   * Data buffer.
+   */
+  private ByteBuffer buffer;
+
+  /**
+   * Offset and length in the buffer.
+   */
+  private int offset, length;
+
+  /**
+   * Scratch space for decoding.
+   */
+  private byte[] scratch = new byte[64];
+
+  /**
+   * Charset used for decoding.
+   */
+  private Charset charset = Charset.defaultCharset();
+
+  /**
+   * Constructor, for an empty sequence.
+   */
+  public ByteBufferCharSequence() {
+    super();
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param buffer Data buffer
+   * @param begin Begin, absolute position in the buffer
+   * @param end End, absolute position in the buffer
+   */
+  public ByteBufferCharSequence(ByteBuffer buffer, int begin, int end) {
+    super();
+    reset(buffer, begin, end);
+  }
+
+  /**
+   * Reset to a new range.
+   *
+   * @param buffer Data buffer
+   * @param begin Begin, absolute position in the buffer
+   * @param end End, absolute position in the buffer
+   * @return this
+   */
+  public ByteBufferCharSequence reset(ByteBuffer buffer, int begin, int end) {
+    this.buffer = buffer;
+    this.offset = begin;
+    this.length = end - begin;
+    return this;
+  }
+
+  /**
+   * Get the underlying buffer.
+   *
+   * @return Buffer
+   */
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * Get the offset of the first character in the buffer.
+   *
+   * @return Offset
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    return (char) (buffer.get(offset + index) & 0xFF);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return new ByteBufferCharSequence(buffer, offset + start, offset + end).setCharset(charset);
+  }
+
+  /**
+   * Set the charset used for decoding.
+   *
+   * @param charset Charset, must be supported (see {@link #isSupported})
+   * @return this
+   */
+  public ByteBufferCharSequence setCharset(Charset charset) {
+    this.charset = charset;
+    return this;
+  }
+
+  /**
+   * Get the charset used for decoding.
+   *
+   * @return Charset
+   */
+  public Charset getCharset() {
+    return charset;
+  }
+
+  /**
+   * Decode a range as string.
+   *
+   * @param start Begin, relative to this sequence
+   * @param end End, relative to this sequence
+   * @return String
+   */
+  public String decode(int start, int end) {
+    final int len = end - start;
+    if(len > scratch.length) {
+      scratch = new byte[Math.max(len, scratch.length << 1)];
+    }
+    for(int i = 0, p = offset + start; i < len; i++, p++) {
+      scratch[i] = buffer.get(p);
+    }
+    return new String(scratch, 0, len, charset);
+  }
+
+  @Override
+  public String toString() {
+    return decode(0, length);
+  }
+
+  /**
+   * Test whether a charset can be viewed byte-wise: it must encode ASCII as
+   * single bytes, and must not use bytes below 128 within other characters.
+   * This holds for UTF-8 and for ASCII based single-byte encodings such as
+   * ISO-8859-1, but not for UTF-16, EBCDIC or Shift_JIS.
+   *
+   * @param charset Charset
+   * @return {@code true} when the charset can be viewed byte-wise.
+   */
+  public static boolean isSupported(Charset charset) {
+    if(StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset)) {
+      return true;
+    }
+    if(!charset.canEncode() || charset.newEncoder().maxBytesPerChar() > 1.f) {
+      return false;
+    }
+    byte[] ascii = new byte[128];
+    for(int i = 0; i < ascii.length; i++) {
+      ascii[i] = (byte) i;
+    }
+    try {
+      CharBuffer chars = charset.newDecoder().decode(ByteBuffer.wrap(ascii));
+      for(int i = 0; i < ascii.length; i++) {
+        if(chars.get(i) != i) {
+          return false;
+        }
+      }
+      return chars.length() == ascii.length;
+    }
+    catch(CharacterCodingException e) {
+      return false;
+    }
+  }
+}
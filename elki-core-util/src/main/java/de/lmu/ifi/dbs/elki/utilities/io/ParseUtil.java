@@ -20,6 +20,8 @@
  */
 package de.lmu.ifi.dbs.elki.utilities.io;
 
+import java.nio.ByteBuffer;
+
 import de.lmu.ifi.dbs.elki.utilities.datastructures.BitsUtil;
 
 /**
@@ -243,6 +245,122 @@ public final class ParseUtil {
     return BitsUtil.lpow10(isNegative ? -decimal : decimal, exp);
   }
 
+  /**
+   * Parse a double from a byte buffer, using absolute positions.
+   *
+   * In contrast to Javas {@link Double#parseDouble}, this will <em>not</em>
+   * create an object and thus is expected to put less load on the garbage
+   * collector. It will accept some more spellings of NaN and infinity, thus
+   * removing the need for checking for these independently.
+   *
+   * @param str Byte buffer, with ASCII or UTF-8 contents
+   * @param start Begin
+   * @param end End
+   * @return Double value
+   */
+  public static double parseDouble(final ByteBuffer str, final int start, final int end) {
+    if(start >= end) {
+      throw EMPTY_STRING;
+    }
+    // Current position and character.
+    int pos = start;
+    byte cur = str.get(pos);
+
+    // Match for NaN spellings
+    if(matchNaN(str, cur, pos, end)) {
+      return Double.NaN;
+    }
+    // Match sign
+    boolean isNegative = (cur == '-');
+    // Carefully consume the - character, update c and i:
+    if((isNegative || (cur == '+')) && (++pos < end)) {
+      cur = str.get(pos);
+    }
+    if(matchInf(str, cur, pos, end)) {
+      return isNegative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+    }
+
+    // Begin parsing real numbers!
+    if(((cur < '0') || (cur > '9')) && (cur != '.')) {
+      throw NOT_A_NUMBER;
+    }
+
+    // Parse digits into a long, remember offset of decimal point.
+    long decimal = 0;
+    int decimalPoint = -1;
+    while(true) {
+      final int digit = cur - '0';
+      if((digit >= 0) && (digit <= 9)) {
+        final long tmp = (decimal << 3) + (decimal << 1) + digit;
+        if((decimal > MAX_LONG_OVERFLOW) || (tmp < decimal)) {
+          throw PRECISION_OVERFLOW;
+        }
+        decimal = tmp;
+      }
+      else if((cur == '.') && (decimalPoint < 0)) {
+        decimalPoint = pos;
+      }
+      else { // No more digits, or a second dot.
+        break;
+      }
+      if(++pos < end) {
+        cur = str.get(pos);
+      }
+      else {
+        break;
+      }
+    }
+    // We need the offset from the back for adjusting the exponent:
+    // Note that we need the current value of i!
+    decimalPoint = (decimalPoint >= 0) ? pos - decimalPoint - 1 : 0;
+
+    // Reads exponent.
+    int exp = 0;
+    if((pos + 1 < end) && ((cur == 'E') || (cur == 'e'))) {
+      cur = str.get(++pos);
+      final boolean isNegativeExp = (cur == '-');
+      if((isNegativeExp || (cur == '+')) && (++pos < end)) {
+        cur = str.get(pos);
+      }
+      if((cur < '0') || (cur > '9')) { // At least one digit required.
+        throw INVALID_EXPONENT;
+      }
+      while(true) {
+        final int digit = cur - '0';
+        if((digit >= 0) && (digit < 10)) {
+          final int tmp = (exp << 3) + (exp << 1) + digit;
+          // Actually, double can only handle Double.MAX_EXPONENT? How about
+          // subnormal?
+          if((exp > MAX_INT_OVERFLOW) || (tmp < exp)) {
+            throw EXPONENT_OVERFLOW;
+          }
+          exp = tmp;
+        }
+        else {
+          break;
+        }
+        if(++pos < end) {
+          cur = str.get(pos);
+        }
+        else {
+          break;
+        }
+      }
+      if(isNegativeExp) {
+        exp = -exp;
+      }
+    }
+    // Adjust exponent by the offset of the dot in our long.
+    if(decimalPoint >= 0) {
+      exp = exp - decimalPoint;
+    }
+    if(pos != end) {
+      throw TRAILING_CHARACTERS;
+    }
+
+    return BitsUtil.lpow10(isNegative ? -decimal : decimal, exp);
+  }
+
   /**
    * Parse a double from a character sequence.
    *
@@ -437,6 +555,59 @@ public final class ParseUtil {
     return isNegative ? -decimal : decimal;
   }
 
+  /**
+   * Parse a long integer from a byte buffer, using absolute positions.
+   *
+   * @param str Byte buffer, with ASCII or UTF-8 contents
+   * @param start Begin
+   * @param end End
+   * @return Long value
+   */
+  public static long parseLongBase10(final ByteBuffer str, final int start, final int end) {
+    // Current position and character.
+    int pos = start;
+    byte cur = str.get(pos);
+
+    // Match sign
+    boolean isNegative = (cur == '-');
+    // Carefully consume the - character, update c and i:
+    if((isNegative || (cur == '+')) && (++pos < end)) {
+      cur = str.get(pos);
+    }
+
+    // Begin parsing real numbers!
+    if((cur < '0') || (cur > '9')) {
+      throw NOT_A_NUMBER;
+    }
+
+    // Parse digits into a long, remember offset of decimal point.
+    long decimal = 0;
+    while(true) {
+      final int digit = cur - '0';
+      if((digit >= 0) && (digit <= 9)) {
+        final long tmp = (decimal << 3) + (decimal << 1) + digit;
+        if(tmp < decimal) {
+          throw PRECISION_OVERFLOW;
+        }
+        decimal = tmp;
+      }
+      else { // No more digits, or a second dot.
+        break;
+      }
+      if(++pos < end) {
+        cur = str.get(pos);
+      }
+      else {
+        break;
+      }
+    }
+    if(pos != end) {
+      throw TRAILING_CHARACTERS;
+    }
+
+    return isNegative ? -decimal : decimal;
+  }
+
   /**
    * Parse an integer from a character sequence.
    *
@@ -500,6 +671,59 @@ public final class ParseUtil {
     return isNegative ? -decimal : decimal;
   }
 
+  /**
+   * Parse an integer from a byte buffer, using absolute positions.
+   *
+   * @param str Byte buffer, with ASCII or UTF-8 contents
+   * @param start Begin
+   * @param end End
+   * @return int value
+   */
+  public static int parseIntBase10(final ByteBuffer str, final int start, final int end) {
+    // Current position and character.
+    int pos = start;
+    byte cur = str.get(pos);
+
+    // Match sign
+    boolean isNegative = (cur == '-');
+    // Carefully consume the - character, update c and i:
+    if((isNegative || (cur == '+')) && (++pos < end)) {
+      cur = str.get(pos);
+    }
+
+    // Begin parsing real numbers!
+    if((cur < '0') || (cur > '9')) {
+      throw NOT_A_NUMBER;
+    }
+
+    // Parse digits into a long, remember offset of decimal point.
+    int decimal = 0;
+    while(true) {
+      final int digit = cur - '0';
+      if((digit >= 0) && (digit <= 9)) {
+        final int tmp = (decimal << 3) + (decimal << 1) + digit;
+        if(tmp < decimal) {
+          throw PRECISION_OVERFLOW;
+        }
+        decimal = tmp;
+      }
+      else { // No more digits, or a second dot.
+        break;
+      }
+      if(++pos < end) {
+        cur = str.get(pos);
+      }
+      else {
+        break;
+      }
+    }
+    if(pos != end) {
+      throw TRAILING_CHARACTERS;
+    }
+
+    return isNegative ? -decimal : decimal;
+  }
+
   /**
    * Match "inf", "infinity" in a number of different capitalizations.
    *
@@ -531,6 +755,37 @@ public final class ParseUtil {
     return true;
   }
 
+  /**
+   * Match "inf", "infinity" in a number of different capitalizations.
+   *
+   * @param str String to match
+   * @param firstchar First character
+   * @param start Interval begin
+   * @param end Interval end
+   * @return {@code true} when infinity was recognized.
+   */
+  private static boolean matchInf(ByteBuffer str, byte firstchar, int start, int end) {
+    final int len = end - start;
+    // The wonders of unicode. The infinity symbol \u221E is three bytes:
+    if(len == 3 && firstchar == -0x1E && str.get(start + 1) == -0x78 && str.get(start + 2) == -0x62) {
+      return true;
+    }
+    if((len != 3 && len != INFINITY_LENGTH) //
+        || (firstchar != 'I' && firstchar != 'i')) {
+      return false;
+    }
+    for(int i = 1, j = INFINITY_LENGTH + 1; i < INFINITY_LENGTH; i++, j++) {
+      final byte c = str.get(start + i);
+      if(c != INFINITY_PATTERN[i] && c != INFINITY_PATTERN[j]) {
+        return false;
+      }
+      if(i == 2 && len == 3) {
+        return true;
+      }
+    }
+    return true;
+  }
+
   /**
    * Match "inf", "infinity" in a number of different capitalizations.
    *
@@ -588,6 +843,32 @@ public final class ParseUtil {
     return c2 == 'N' || c2 == 'n';
   }
 
+  /**
+   * Match "NaN" in a number of different capitalizations.
+   *
+   * @param str String to match
+   * @param firstchar First character
+   * @param start Interval begin
+   * @param end Interval end
+   * @return {@code true} when NaN was recognized.
+   */
+  private static boolean matchNaN(ByteBuffer str, byte firstchar, int start, int end) {
+    final int len = end - start;
+    if(len < 2 || len > 3 || (firstchar != 'N' && firstchar != 'n')) {
+      return false;
+    }
+    final byte c1 = str.get(start + 1);
+    if(c1 != 'a' && c1 != 'A') {
+      return false;
+    }
+    // Accept just "NA", too:
+    if(len == 2) {
+      return true;
+    }
+    final byte c2 = str.get(start + 2);
+    return c2 == 'N' || c2 == 'n';
+  }
+
   /**
    * Match "NaN" in a number of different capitalizations.
    *
@@ -63,8 +63,9 @@ public class TokenizedReader extends BufferedLineReader {
    */
   public boolean nextLineExceptComments() throws IOException {
     while(nextLine()) {
-      if(comment == null || !comment.reset(buf).matches()) {
-        tokenizer.initialize(buf, 0, buf.length());
+      final CharSequence line = getBuffer();
+      if(comment == null || !comment.reset(line).matches()) {
+        tokenizer.initialize(line, 0, line.length());
         return true;
       }
     }
@@ -71,6 +71,11 @@ public class Tokenizer implements Iter {
    */
   private CharSequence input;
 
+  /**
+   * Input as byte sequence, or {@code null}.
+   */
+  private ByteBufferCharSequence bytes;
+
   /**
    * Substring to process.
    */
@@ -89,12 +94,16 @@ public class Tokenizer implements Iter {
   /**
    * Initialize parser with a new string.
    *
+   * For a {@link ByteBufferCharSequence}, numbers are parsed from the bytes
+   * directly, and only strings are decoded.
+   *
    * @param input New string to parse.
    * @param begin Begin
    * @param end End
    */
   public void initialize(CharSequence input, int begin, int end) {
     this.input = input;
+    this.bytes = input instanceof ByteBufferCharSequence ? (ByteBufferCharSequence) input : null;
     this.send = end;
     this.matcher.reset(input).region(begin, end);
     this.index = begin;
@@ -157,7 +166,7 @@ public class Tokenizer implements Iter {
   public String getSubstring() {
     // TODO: detect Java <6 and make sure we only return the substring?
     // With java 7, String.substring will arraycopy the characters.
-    return input.subSequence(start, end).toString();
+    return bytes != null ? bytes.decode(start, end) : input.subSequence(start, end).toString();
   }
 
   /**
@@ -183,7 +192,10 @@ public class Tokenizer implements Iter {
       }
     }
     ++send;
-    return (sstart < send) ? input.subSequence(sstart, send).toString() : "";
+    if(sstart >= send) {
+      return "";
+    }
+    return bytes != null ? bytes.decode(sstart, send) : input.subSequence(sstart, send).toString();
   }
 
   /**
@@ -193,6 +205,10 @@ public class Tokenizer implements Iter {
    * @throws NumberFormatException when current value cannot be parsed as double
    */
   public double getDouble() throws NumberFormatException {
+    if(bytes != null) {
+      final int off = bytes.getOffset();
+      return ParseUtil.parseDouble(bytes.getBuffer(), off + start, off + end);
+    }
     return ParseUtil.parseDouble(input, start, end);
   }
 
@@ -203,6 +219,10 @@ public class Tokenizer implements Iter {
    * @throws NumberFormatException when current value cannot be parsed as int.
    */
   public int getIntBase10() throws NumberFormatException {
+    if(bytes != null) {
+      final int off = bytes.getOffset();
+      return ParseUtil.parseIntBase10(bytes.getBuffer(), off + start, off + end);
+    }
     return ParseUtil.parseIntBase10(input, start, end);
   }
 
@@ -213,6 +233,10 @@ public class Tokenizer implements Iter {
    * @throws NumberFormatException when current value cannot be parsed as long.
    */
   public long getLongBase10() throws NumberFormatException {
+    if(bytes != null) {
+      final int off = bytes.getOffset();
+      return ParseUtil.parseLongBase10(bytes.getBuffer(), off + start, off + end);
+    }
     return ParseUtil.parseLongBase10(input, start, end);
   }
 
@@ -279,6 +303,7 @@ public class Tokenizer implements Iter {
    */
   public void cleanup() {
     input = null;
+    bytes = null;
     matcher.reset("");
   }
 }
@@ -0,0 +1,100 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.utilities.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test the block compression codec.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class BlockCompressionTest {
+  @Test
+  public void testRandom() {
+    Random r = new Random(0L);
+    for(int len : new int[] { 0, 1, 5, 17, 1000, 65536 + 123 }) {
+      byte[] data = new byte[len];
+      r.nextBytes(data);
+      assertRoundTrip(data, len);
+    }
+  }
+
+  @Test
+  public void testRepetitive() {
+    Random r = new Random(0L);
+    StringBuilder buf = new StringBuilder();
+    while(buf.length() < 100000) {
+      buf.append("label").append(r.nextInt(10)).append('\n');
+    }
+    byte[] data = buf.toString().getBytes(StandardCharsets.UTF_8);
+    int clen = assertRoundTrip(data, data.length);
+    assertTrue("Not compressed: " + clen, clen < data.length / 2);
+    Arrays.fill(data, (byte) 7);
+    clen = assertRoundTrip(data, data.length);
+    assertTrue("Not compressed: " + clen, clen < data.length / 100);
+  }
+
+  @Test
+  public void testShuffle() {
+    ByteBuffer buf = ByteBuffer.allocate(8 * 1000);
+    for(int i = 0; i < 1000; i++) {
+      buf.putDouble(i * .5);
+    }
+    byte[] data = buf.array(), shuffled = new byte[data.length], back = new byte[data.length];
+    BlockCompression.shuffle(data, data.length, 8, shuffled);
+    BlockCompression.unshuffle(shuffled, shuffled.length, 8, back);
+    assertArrayEquals(data, back);
+    // Shuffled regular doubles compress much better.
+    int plain = assertRoundTrip(data, data.length);
+    int clen = assertRoundTrip(shuffled, shuffled.length);
+    assertTrue("Shuffle did not help: " + clen + " >= " + plain, clen < plain);
+  }
+
+  /**
+   * Compress and decompress a block.
+   *
+   * @param data Data
+   * @param len Length
+   * @return Compressed length
+   */
+  private static int assertRoundTrip(byte[] data, int len) {
+    byte[] comp = new byte[BlockCompression.maxCompressedLength(len) + 3];
+    int clen = BlockCompression.compress(data, len, comp);
+    assertTrue(clen <= BlockCompression.maxCompressedLength(len));
+    // Decompress from an offset within a larger buffer.
+    System.arraycopy(comp, 0, comp, 3, clen);
+    byte[] back = new byte[len];
+    assertEquals(len, BlockCompression.decompress(ByteBuffer.wrap(comp), 3, 3 + clen, back));
+    assertArrayEquals(Arrays.copyOf(data, len), back);
+    return clen;
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.utilities.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test the line reader, in particular the windows of mapped files.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class BufferedLineReaderTest {
+  @Test
+  public void testSupportedCharsets() {
+    assertTrue(ByteBufferCharSequence.isSupported(StandardCharsets.UTF_8));
+    assertTrue(ByteBufferCharSequence.isSupported(StandardCharsets.US_ASCII));
+    assertTrue(ByteBufferCharSequence.isSupported(StandardCharsets.ISO_8859_1));
+    assertFalse(ByteBufferCharSequence.isSupported(StandardCharsets.UTF_16));
+    assertFalse(ByteBufferCharSequence.isSupported(StandardCharsets.UTF_16LE));
+  }
+
+  @Test
+  public void testStraddlingLines() throws IOException {
+    Random r = new Random(0L);
+    StringBuilder buf = new StringBuilder();
+    for(int i = 0; i < 200; i++) {
+      for(int j = r.nextInt(30); j > 0; j--) {
+        buf.append((char) ('a' + r.nextInt(26)));
+      }
+      buf.append(r.nextInt(4) == 0 ? "\r\n" : "\n");
+    }
+    byte[] data = buf.toString().getBytes(StandardCharsets.UTF_8);
+    // Window sizes in bytes, such that many lines cross a window border.
+    for(int size : new int[] { 7, 16, 32, 33, 100, 1 << 20 }) {
+      assertSameLines(data, 0, size);
+      assertSameLines(data, 5, size);
+    }
+  }
+
+  @Test
+  public void testLongLine() throws IOException {
+    StringBuilder buf = new StringBuilder();
+    buf.append("first\n");
+    for(int i = 0; i < 1000; i++) {
+      buf.append((char) ('a' + i % 26));
+    }
+    buf.append("\nx\n\n");
+    for(int i = 0; i < 100; i++) {
+      buf.append((char) ('a' + i % 26));
+    }
+    byte[] data = buf.toString().getBytes(StandardCharsets.UTF_8);
+    // Lines longer than the window, also at the beginning and end of file.
+    for(int size : new int[] { 1, 8, 64, 999, 1000 }) {
+      assertSameLines(data, 0, size);
+      assertSameLines(data, 6, size);
+    }
+  }
+
+  /**
+   * Compare the lines of a mapped file with the lines read from a stream.
+   *
+   * @param data File contents
+   * @param skip Bytes to skip before mapping
+   * @param size Initial window size
+   * @throws IOException on errors
+   */
+  private static void assertSameLines(byte[] data, int skip, int size) throws IOException {
+    List<String> lines = new ArrayList<>();
+    List<Integer> numbers = new ArrayList<>();
+    try (BufferedLineReader reader = new BufferedLineReader(new ByteArrayInputStream(data, skip, data.length - skip))) {
+      while(reader.nextLine()) {
+        lines.add(reader.getBuffer().toString().substring(0, BufferedLineReader.lengthWithoutLinefeed(reader.getBuffer())));
+        numbers.add(reader.getLineNumber());
+      }
+    }
+    File file = File.createTempFile("elki-lines", ".txt");
+    file.deleteOnExit();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(data);
+    }
+    try (FileInputStream in = new FileInputStream(file);
+        BufferedLineReader reader = new BufferedLineReader()) {
+      in.getChannel().position(skip);
+      reader.setInitialWindowSize(size);
+      reader.reset(in.getChannel());
+      for(int i = 0; i < lines.size(); i++) {
+        assertTrue("Missing line " + numbers.get(i) + " with window size " + size, reader.nextLine());
+        assertTrue("Not a byte view.", reader.getBuffer() instanceof ByteBufferCharSequence);
+        assertEquals("Line differs with window size " + size, lines.get(i), reader.getBuffer().toString());
+        assertEquals("Line number differs with window size " + size, (int) numbers.get(i), reader.getLineNumber());
+      }
+      assertFalse("Too many lines with window size " + size, reader.nextLine());
+    }
+    finally {
+      file.delete();
+    }
+  }
+}
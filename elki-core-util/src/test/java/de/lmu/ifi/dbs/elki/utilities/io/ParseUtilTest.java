@@ -23,6 +23,9 @@ package de.lmu.ifi.dbs.elki.utilities.io;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 import org.junit.Test;
 
 /**
@@ -143,6 +146,26 @@ public class ParseUtilTest {
     return ParseUtil.parseDouble(bytes, 0, bytes.length);
   }
 
+  @Test
+  public void testByteBuffer() {
+    final String[] inputs = { "0", "0.0", "0.", "0e10", "0E-10", "1", "1.", "1e-0", //
+        "-1.0", "0.2", "-.2", "2.0e3", "-2.0E-3", "2.2250738585072012e-308", //
+        "00000000002.2250738585072012e-308", "inf", "-inf", "\u221E", "-\u221E", "+1" };
+    for(String input : inputs) {
+      assertEquals(input, ParseUtil.parseDouble(input), parseByteBuffer(input), 0.);
+    }
+    assertTrue(Double.isNaN(parseByteBuffer("nan")));
+    ByteBuffer buf = ByteBuffer.wrap("x-1234567y".getBytes(StandardCharsets.UTF_8));
+    assertEquals(-1234567, ParseUtil.parseIntBase10(buf, 1, 9));
+    assertEquals(-1234567L, ParseUtil.parseLongBase10(buf, 1, 9));
+  }
+
+  private static double parseByteBuffer(String string) {
+    // Use an offset, to test absolute positions.
+    byte[] bytes = ("x" + string).getBytes(StandardCharsets.UTF_8);
+    return ParseUtil.parseDouble(ByteBuffer.wrap(bytes), 1, bytes.length);
+  }
+
   @Test(expected = NumberFormatException.class)
   public void textOnlyPlus() {
     ParseUtil.parseDouble("+");
@@ -25,6 +25,12 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.regex.Pattern;
 
 import org.junit.Test;
@@ -88,6 +94,39 @@ public class TokenizerTest {
     tokenizerTest(expect);
   }
 
+  @Test
+  public void testBytes() {
+    final String input = "abc 1 -234 3.1415 'a b' -∞ NA bänänä";
+    final Object[] expect = { 1L, -234L, 3.1415, "a b", Double.NEGATIVE_INFINITY, Double.NaN, "bänänä" };
+    ByteBuffer buf = ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8));
+    ByteBufferCharSequence seq = new ByteBufferCharSequence(buf, 4, buf.limit()).setCharset(StandardCharsets.UTF_8);
+    t.initialize(seq, 0, seq.length());
+    tokenizerTest(expect);
+  }
+
+  @Test
+  public void testMapped() throws IOException {
+    File file = File.createTempFile("elki-tokenizer", ".csv");
+    file.deleteOnExit();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write("# comment\r\n1 2\r\n\n3 'x y'\n4".getBytes(StandardCharsets.UTF_8));
+    }
+    TokenizedReader reader = new TokenizedReader(Pattern.compile("\\s"), "\"'", Pattern.compile("^\\s*#.*$"));
+    t = reader.getTokenizer();
+    try (FileInputStream in = new FileInputStream(file)) {
+      reader.reset(in.getChannel());
+      assertTrue(reader.nextLineExceptComments());
+      tokenizerTest(new Object[] { 1L, 2L });
+      assertTrue(reader.nextLineExceptComments());
+      tokenizerTest(new Object[] { 3L, "x y" });
+      assertTrue(reader.nextLineExceptComments());
+      tokenizerTest(new Object[] { 4L });
+      assertFalse(reader.nextLineExceptComments());
+      assertEquals("Line number", 5, reader.getLineNumber());
+      reader.close();
+    }
+  }
+
   private void tokenizerTest(Object[] expect) {
     for(int i = 0; i < expect.length; i++, t.advance()) {
       assertTrue("Tokenizer stopped early.", t.valid());
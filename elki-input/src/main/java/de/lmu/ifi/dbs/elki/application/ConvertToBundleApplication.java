@@ -28,15 +28,25 @@ import java.nio.channels.FileChannel;
 import de.lmu.ifi.dbs.elki.datasource.DatabaseConnection;
 import de.lmu.ifi.dbs.elki.datasource.FileBasedDatabaseConnection;
 import de.lmu.ifi.dbs.elki.datasource.bundle.BundleWriter;
+import de.lmu.ifi.dbs.elki.datasource.bundle.ColumnarBundleWriter;
 import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.EnumParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
  * Convert an input file to the more efficient ELKI bundle format.
  *
+ * By default, the row-wise format of {@link BundleWriter} is written, which
+ * all versions can read. The columnar format of {@link ColumnarBundleWriter}
+ * supports compression and loading selected columns, but cannot be read by
+ * versions before 0.7.2.
+ *
  * @author Erich Schubert
  * @since 0.5.5
  */
@@ -56,16 +66,33 @@ public class ConvertToBundleApplication extends AbstractApplication {
    */
   private File outfile;
 
+  /**
+   * Columnar writer, {@code null} for the row-wise format.
+   */
+  private ColumnarBundleWriter columnar;
+
   /**
    * Constructor.
    *
    * @param input Data source configuration
    * @param outfile Output filename
+   * @param columnar Columnar writer, {@code null} for the row-wise format
    */
-  public ConvertToBundleApplication(DatabaseConnection input, File outfile) {
+  public ConvertToBundleApplication(DatabaseConnection input, File outfile, ColumnarBundleWriter columnar) {
     super();
     this.input = input;
     this.outfile = outfile;
+    this.columnar = columnar;
+  }
+
+  /**
+   * Constructor, for the row-wise format.
+   *
+   * @param input Data source configuration
+   * @param outfile Output filename
+   */
+  public ConvertToBundleApplication(DatabaseConnection input, File outfile) {
+    this(input, outfile, null);
   }
 
   @Override
@@ -77,12 +104,15 @@ public class ConvertToBundleApplication extends AbstractApplication {
     if(LOG.isVerbose()) {
       LOG.verbose("Serializing to output file: " + outfile.toString());
     }
-    // TODO: make configurable?
-    BundleWriter writer = new BundleWriter();
     try {
       FileOutputStream fos = new FileOutputStream(outfile);
       FileChannel channel = fos.getChannel();
-      writer.writeBundleStream(bundle.asStream(), channel);
+      if(columnar != null) {
+        columnar.writeBundleStream(bundle.asStream(), channel);
+      }
+      else {
+        new BundleWriter().writeBundleStream(bundle.asStream(), channel);
+      }
       channel.close();
       fos.close();
     }
@@ -109,6 +139,21 @@ public class ConvertToBundleApplication extends AbstractApplication {
      */
     public static final OptionID DATABASE_CONNECTION_ID = new OptionID("dbc", "Database connection class.");
 
+    /**
+     * Flag to write the columnar bundle format.
+     */
+    public static final OptionID COLUMNAR_ID = new OptionID("bundle.columnar", "Write the compressed columnar bundle format, which supports loading selected columns, but cannot be read by versions before 0.7.2.");
+
+    /**
+     * Compression of the columnar format.
+     */
+    public static final OptionID COMPRESSION_ID = new OptionID("bundle.compression", "Compression of the columns. SHUFFLE groups the bytes of fixed size records before compression.");
+
+    /**
+     * Rows per block of the columnar format.
+     */
+    public static final OptionID BLOCKSIZE_ID = new OptionID("bundle.blocksize", "Number of rows per block of the columnar format.");
+
     /**
      * The data input step.
      */
@@ -119,6 +164,11 @@ public class ConvertToBundleApplication extends AbstractApplication {
      */
     private File outfile;
 
+    /**
+     * Columnar writer.
+     */
+    private ColumnarBundleWriter columnar;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -127,11 +177,27 @@ public class ConvertToBundleApplication extends AbstractApplication {
         input = inputP.instantiateClass(config);
       }
       outfile = super.getParameterOutputFile(config, "File name to serialize the bundle to.");
+      Flag columnarF = new Flag(COLUMNAR_ID);
+      if(!config.grab(columnarF) || columnarF.isFalse()) {
+        return;
+      }
+      ColumnarBundleWriter.Compression compression = ColumnarBundleWriter.Compression.SHUFFLE;
+      EnumParameter<ColumnarBundleWriter.Compression> compressionP = new EnumParameter<>(COMPRESSION_ID, ColumnarBundleWriter.Compression.class, compression);
+      if(config.grab(compressionP)) {
+        compression = compressionP.getValue();
+      }
+      int blocksize = ColumnarBundleWriter.DEFAULT_BLOCKSIZE;
+      IntParameter blocksizeP = new IntParameter(BLOCKSIZE_ID, blocksize) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(blocksizeP)) {
+        blocksize = blocksizeP.intValue();
+      }
+      columnar = new ColumnarBundleWriter(compression, blocksize);
     }
 
     @Override
     protected ConvertToBundleApplication makeInstance() {
-      return new ConvertToBundleApplication(input, outfile);
+      return new ConvertToBundleApplication(input, outfile, columnar);
     }
   }
 
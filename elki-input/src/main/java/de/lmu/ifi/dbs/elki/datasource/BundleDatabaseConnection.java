@@ -27,13 +27,17 @@ import java.nio.channels.FileChannel;
 import java.util.List;
 
 import de.lmu.ifi.dbs.elki.datasource.bundle.BundleReader;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleStreamSource;
+import de.lmu.ifi.dbs.elki.datasource.bundle.ColumnarBundleReader;
 import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
 import de.lmu.ifi.dbs.elki.datasource.filter.ObjectFilter;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntListParameter;
 
 /**
  * Class to load a database from a bundle file.
@@ -42,10 +46,15 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
  * that parsing should be simpler, albeit the focus was on using it in on-disk
  * indexes.
  *
+ * Both the row-wise format of {@link BundleReader} and the columnar format of
+ * {@link ColumnarBundleReader} can be read. For columnar bundles, a subset of
+ * the columns can be loaded, without reading the other columns.
+ *
  * @author Erich Schubert
  * @since 0.5.5
  *
  * @apiviz.composedOf BundleReader
+ * @apiviz.composedOf ColumnarBundleReader
  */
 public class BundleDatabaseConnection extends AbstractDatabaseConnection {
   /**
@@ -58,6 +67,11 @@ public class BundleDatabaseConnection extends AbstractDatabaseConnection {
    */
   private File infile;
 
+  /**
+   * Columns to load, {@code null} for all.
+   */
+  private int[] columns;
+
   /**
    * Constructor.
    *
@@ -65,8 +79,21 @@ public class BundleDatabaseConnection extends AbstractDatabaseConnection {
    * @param infile Input file
    */
   public BundleDatabaseConnection(List<ObjectFilter> filters, File infile) {
+    this(filters, infile, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param filters Filters
+   * @param infile Input file
+   * @param columns Columns to load (columnar bundles only), {@code null} for
+   *        all
+   */
+  public BundleDatabaseConnection(List<ObjectFilter> filters, File infile, int[] columns) {
     super(filters);
     this.infile = infile;
+    this.columns = columns;
   }
 
   @Override
@@ -74,7 +101,17 @@ public class BundleDatabaseConnection extends AbstractDatabaseConnection {
     try {
       FileInputStream fis = new FileInputStream(infile);
       FileChannel channel = fis.getChannel();
-      MultipleObjectsBundle bundle = invokeStreamFilters(new BundleReader(channel)).asMultipleObjectsBundle();
+      BundleStreamSource source;
+      if(ColumnarBundleReader.isColumnarBundle(channel)) {
+        source = new ColumnarBundleReader(channel, columns);
+      }
+      else {
+        if(columns != null) {
+          LOG.warning("Column selection is only supported for columnar bundles, loading all columns.");
+        }
+        source = new BundleReader(channel);
+      }
+      MultipleObjectsBundle bundle = invokeStreamFilters(source).asMultipleObjectsBundle();
       channel.close();
       fis.close();
       return bundle;
@@ -102,11 +139,21 @@ public class BundleDatabaseConnection extends AbstractDatabaseConnection {
      */
     private static final OptionID BUNDLE_ID = new OptionID("bundle.input", "Bundle file to load the data from.");
 
+    /**
+     * Option ID for the columns to load.
+     */
+    private static final OptionID COLUMNS_ID = new OptionID("bundle.columns", "Columns to load from a columnar bundle, starting with 0. By default, all columns are loaded.");
+
     /**
      * File to load.
      */
     private File infile;
 
+    /**
+     * Columns to load.
+     */
+    private int[] columns;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -115,11 +162,17 @@ public class BundleDatabaseConnection extends AbstractDatabaseConnection {
       if(config.grab(infileP)) {
         infile = infileP.getValue();
       }
+      IntListParameter columnsP = new IntListParameter(COLUMNS_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT_LIST) //
+          .setOptional(true);
+      if(config.grab(columnsP)) {
+        columns = columnsP.getValue().clone();
+      }
     }
 
     @Override
     protected BundleDatabaseConnection makeInstance() {
-      return new BundleDatabaseConnection(filters, infile);
+      return new BundleDatabaseConnection(filters, infile, columns);
     }
   }
 }
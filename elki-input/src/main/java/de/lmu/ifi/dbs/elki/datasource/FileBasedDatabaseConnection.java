@@ -25,9 +25,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.List;
 
 import de.lmu.ifi.dbs.elki.datasource.filter.ObjectFilter;
+import de.lmu.ifi.dbs.elki.datasource.parser.AbstractStreamingParser;
 import de.lmu.ifi.dbs.elki.datasource.parser.ArffParser;
 import de.lmu.ifi.dbs.elki.datasource.parser.NumberVectorLabelParser;
 import de.lmu.ifi.dbs.elki.datasource.parser.Parser;
@@ -60,7 +63,7 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
   public FileBasedDatabaseConnection(List<ObjectFilter> filters, Parser parser, File infile) {
     super(null, filters, parser);
     try {
-      this.in = new BufferedInputStream(FileUtil.tryGzipInput(new FileInputStream(infile)));
+      this.in = open(new FileInputStream(infile), parser);
     }
     catch(IOException e) {
       throw new AbortException("Could not load input file: " + infile, e);
@@ -77,7 +80,7 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
   public FileBasedDatabaseConnection(List<ObjectFilter> filters, Parser parser, String infile) {
     super(null, filters, parser);
     try {
-      this.in = new BufferedInputStream(FileUtil.tryGzipInput(new FileInputStream(infile)));
+      this.in = open(new FileInputStream(infile), parser);
     }
     catch(IOException e) {
       throw new AbortException("Could not load input file: " + infile, e);
@@ -95,6 +98,28 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
     super(in, filters, parser);
   }
 
+  /**
+   * Open the input file. Uncompressed files are passed to streaming parsers
+   * unbuffered, so they can map the file.
+   *
+   * @param in File input stream
+   * @param parser Parser
+   * @return Input stream
+   * @throws IOException on IO errors
+   */
+  private static InputStream open(FileInputStream in, Parser parser) throws IOException {
+    if(parser instanceof AbstractStreamingParser) {
+      // Check for the gzip magic, without moving the file position.
+      ByteBuffer magic = ByteBuffer.allocate(2);
+      FileChannel channel = in.getChannel();
+      channel.read(magic, channel.position());
+      if(magic.position() < 2 || magic.get(0) != 31 || magic.get(1) != -117) {
+        return in;
+      }
+    }
+    return new BufferedInputStream(FileUtil.tryGzipInput(in));
+  }
+
   /**
    * Parameterization class.
    * 
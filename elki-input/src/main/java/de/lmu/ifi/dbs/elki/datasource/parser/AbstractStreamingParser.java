@@ -20,6 +20,7 @@
  */
 package de.lmu.ifi.dbs.elki.datasource.parser;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -64,13 +65,29 @@ public abstract class AbstractStreamingParser implements StreamingParser {
   }
 
   @Override
-  final public MultipleObjectsBundle parse(InputStream in) {
+  public MultipleObjectsBundle parse(InputStream in) {
     this.initStream(in);
     return MultipleObjectsBundle.fromStream(this);
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * Uncompressed files are memory mapped, and tokenized on the bytes, if the
+   * platform default charset is ASCII compatible. Strings are decoded with the
+   * default charset, as when reading the stream.
+   */
   @Override
   public void initStream(InputStream in) {
+    if(in instanceof FileInputStream) {
+      try {
+        reader.reset(((FileInputStream) in).getChannel());
+        return;
+      }
+      catch(IOException e) {
+        // Fall back to reading the stream, e.g. for unsupported charsets.
+      }
+    }
     reader.reset(in);
   }
 
@@ -0,0 +1,412 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import de.lmu.ifi.dbs.elki.data.LabelList;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleMeta;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleStreamSource;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arraylike.DoubleArray;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.io.ParseUtil;
+import de.lmu.ifi.dbs.elki.utilities.io.TokenizedReader;
+import de.lmu.ifi.dbs.elki.utilities.io.Tokenizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+
+/**
+ * Variant of the {@link NumberVectorLabelParser} that parses the input on all
+ * cores, when the whole input is parsed at once.
+ *
+ * The input is read in chunks, which are cut at the last line feed. Each chunk
+ * is tokenized and parsed by a worker thread, with its own reader of the same
+ * format, into vectors and label lists. The chunks are then assembled in the
+ * original order into the bundle. The number of chunks in flight is limited to
+ * twice the number of threads, so the raw input does not pile up in memory.
+ *
+ * The result is the same as with the {@link NumberVectorLabelParser}, except
+ * that the label column is always aligned with the vectors. Chunks are cut at
+ * the byte level, so the input must be in an ASCII compatible encoding such as
+ * UTF-8. When used as a streaming parser, the whole input is parsed in
+ * parallel on initialization, and the parsed objects are then streamed.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @param <V> the type of NumberVector used
+ */
+public class ParallelNumberVectorLabelParser<V extends NumberVector> extends NumberVectorLabelParser<V> {
+  /**
+   * Logging class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelNumberVectorLabelParser.class);
+
+  /**
+   * Input format.
+   */
+  protected CSVReaderFormat format;
+
+  /**
+   * Chunk size in bytes.
+   */
+  protected int chunksize;
+
+  /**
+   * Stream of the parsed objects, when used as streaming parser.
+   */
+  private BundleStreamSource stream;
+
+  /**
+   * Constructor.
+   *
+   * @param format Input format
+   * @param labelIndices Column indexes that are not numeric.
+   * @param factory Vector factory
+   * @param chunksize Chunk size in bytes
+   */
+  public ParallelNumberVectorLabelParser(CSVReaderFormat format, long[] labelIndices, NumberVector.Factory<V> factory, int chunksize) {
+    super(format, labelIndices, factory);
+    this.format = format;
+    this.chunksize = chunksize;
+  }
+
+  @Override
+  public MultipleObjectsBundle parse(InputStream in) {
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      final int maxpending = core.getParallelism() << 1;
+      ArrayDeque<Future<Chunk<V>>> pending = new ArrayDeque<>(maxpending);
+      Assembler asm = new Assembler();
+      byte[] buf = new byte[chunksize];
+      int fill = 0;
+      while(true) {
+        final int read = in.read(buf, fill, buf.length - fill);
+        if(read < 0) {
+          break;
+        }
+        fill += read;
+        if(fill < buf.length) {
+          continue;
+        }
+        int cut = fill;
+        while(cut > 0 && buf[cut - 1] != '\n') {
+          --cut;
+        }
+        if(cut == 0) {
+          // Line longer than the chunk size.
+          buf = Arrays.copyOf(buf, buf.length << 1);
+          continue;
+        }
+        byte[] next = new byte[Math.max(chunksize, (fill - cut) << 1)];
+        System.arraycopy(buf, cut, next, 0, fill - cut);
+        while(pending.size() >= maxpending) {
+          asm.add(get(pending.poll()));
+        }
+        pending.add(core.submit(new ChunkParser(buf, cut)));
+        buf = next;
+        fill -= cut;
+      }
+      if(fill > 0) {
+        pending.add(core.submit(new ChunkParser(buf, fill)));
+      }
+      while(!pending.isEmpty()) {
+        asm.add(get(pending.poll()));
+      }
+      return asm.toBundle();
+    }
+    catch(IOException e) {
+      throw new AbortException("I/O error while reading the input: " + e.getMessage(), e);
+    }
+    finally {
+      core.disconnect();
+    }
+  }
+
+  @Override
+  public void initStream(InputStream in) {
+    stream = parse(in).asStream();
+  }
+
+  @Override
+  public BundleMeta getMeta() {
+    return stream.getMeta();
+  }
+
+  @Override
+  public Event nextEvent() {
+    return stream.nextEvent();
+  }
+
+  @Override
+  public Object data(int rnum) {
+    return stream.data(rnum);
+  }
+
+  @Override
+  public void cleanup() {
+    super.cleanup();
+    stream = null;
+  }
+
+  /**
+   * Wait for a chunk to be parsed.
+   *
+   * @param future Chunk future
+   * @return Parsed chunk
+   */
+  private static <V> Chunk<V> get(Future<Chunk<V>> future) {
+    try {
+      return future.get();
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parsed chunk.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  private static class Chunk<V> {
+    /**
+     * Vectors, one per line.
+     */
+    ArrayList<V> vectors = new ArrayList<>();
+
+    /**
+     * Labels, one per line.
+     */
+    ArrayList<LabelList> labels = new ArrayList<>();
+
+    /**
+     * First token that was not parsed as number because of its precision.
+     */
+    String precision = null;
+  }
+
+  /**
+   * Task parsing a single chunk.
+   *
+   * @author Erich Schubert
+   */
+  private class ChunkParser implements Callable<Chunk<V>> {
+    /**
+     * Chunk data.
+     */
+    private byte[] data;
+
+    /**
+     * Chunk length.
+     */
+    private int len;
+
+    /**
+     * Constructor.
+     *
+     * @param data Chunk data
+     * @param len Chunk length
+     */
+    ChunkParser(byte[] data, int len) {
+      this.data = data;
+      this.len = len;
+    }
+
+    @Override
+    public Chunk<V> call() throws IOException {
+      TokenizedReader reader = format.makeReader();
+      Tokenizer tokenizer = reader.getTokenizer();
+      reader.reset(new ByteArrayInputStream(data, 0, len));
+      DoubleArray attributes = new DoubleArray(11);
+      ArrayList<String> labels = new ArrayList<>();
+      ObjectOpenHashSet<String> unique = new ObjectOpenHashSet<>();
+      Chunk<V> chunk = new Chunk<>();
+      while(reader.nextLineExceptComments()) {
+        // Split into numerical attributes and labels
+        for(int i = 0; tokenizer.valid(); tokenizer.advance(), i++) {
+          if(!isLabelColumn(i) && !tokenizer.isQuoted()) {
+            try {
+              attributes.add(tokenizer.getDouble());
+              continue;
+            }
+            catch(NumberFormatException e) {
+              if(chunk.precision == null && (e == ParseUtil.PRECISION_OVERFLOW || e == ParseUtil.EXPONENT_OVERFLOW)) {
+                chunk.precision = tokenizer.getSubstring();
+              }
+              // Ignore attempt, add to labels below.
+            }
+          }
+          // Else: labels.
+          String lbl = tokenizer.getStrippedSubstring();
+          if(lbl.length() > 0) {
+            labels.add(unique.addOrGet(lbl));
+          }
+        }
+        chunk.vectors.add(factory.newNumberVector(attributes, attributes));
+        chunk.labels.add(LabelList.make(labels));
+        attributes.clear();
+        labels.clear();
+      }
+      reader.close();
+      data = null; // Release early.
+      return chunk;
+    }
+  }
+
+  /**
+   * Assemble the parsed chunks in order.
+   *
+   * @author Erich Schubert
+   */
+  private class Assembler {
+    /**
+     * Vectors.
+     */
+    ArrayList<V> vectors = new ArrayList<>();
+
+    /**
+     * Label lists.
+     */
+    ArrayList<LabelList> lbls = new ArrayList<>();
+
+    /**
+     * Constructor.
+     */
+    Assembler() {
+      mindim = Integer.MAX_VALUE;
+      maxdim = 0;
+      columnnames = null;
+      haslabels = false;
+    }
+
+    /**
+     * Add the next chunk.
+     *
+     * @param chunk Parsed chunk
+     */
+    void add(Chunk<V> chunk) {
+      if(chunk.precision != null && !warnedPrecision) {
+        LOG.warning("Too many digits in what looked like a double number - treating as string: " + chunk.precision);
+        warnedPrecision = true;
+      }
+      for(int i = 0; i < chunk.vectors.size(); i++) {
+        final V vec = chunk.vectors.get(i);
+        final LabelList lbl = chunk.labels.get(i);
+        final int curdim = vec.getDimensionality();
+        // Label row before the first vector: column names.
+        if(curdim == 0 && vectors.isEmpty()) {
+          columnnames = new ArrayList<>(lbl.size());
+          for(int j = 0; j < lbl.size(); j++) {
+            columnnames.add(lbl.get(j));
+          }
+          haslabels = false;
+          continue;
+        }
+        mindim = (curdim < mindim) ? curdim : mindim;
+        maxdim = (curdim > maxdim) ? curdim : maxdim;
+        haslabels |= lbl.size() > 0;
+        vectors.add(vec);
+        lbls.add(lbl);
+      }
+    }
+
+    /**
+     * Build the bundle.
+     *
+     * @return Bundle
+     */
+    MultipleObjectsBundle toBundle() {
+      if(maxdim == 0) {
+        throw new AbortException("No numeric data was read. Verify the column separator; for textual data use other parsers.");
+      }
+      MultipleObjectsBundle bundle = new MultipleObjectsBundle();
+      bundle.appendColumn(getTypeInformation(mindim, maxdim), vectors);
+      if(haslabels) {
+        bundle.appendColumn(TypeUtil.LABELLIST, lbls);
+      }
+      buildMeta();
+      return bundle;
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<V extends NumberVector> extends NumberVectorLabelParser.Parameterizer<V> {
+    /**
+     * Chunk size for parallel parsing.
+     */
+    public static final OptionID CHUNKSIZE_ID = new OptionID("parser.chunksize", "Size in bytes of the chunks of the input that are parsed in parallel.");
+
+    /**
+     * Chunk size in bytes.
+     */
+    protected int chunksize;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter chunksizeP = new IntParameter(CHUNKSIZE_ID, 1 << 22) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(chunksizeP)) {
+        chunksize = chunksizeP.intValue();
+      }
+    }
+
+    @Override
+    protected ParallelNumberVectorLabelParser<V> makeInstance() {
+      return new ParallelNumberVectorLabelParser<>(format, labelIndices, factory, chunksize);
+    }
+  }
+}
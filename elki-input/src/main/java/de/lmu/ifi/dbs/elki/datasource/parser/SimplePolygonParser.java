@@ -134,7 +134,7 @@ public class SimplePolygonParser extends AbstractStreamingParser {
             nextevent = Event.NEXT_OBJECT;
             return Event.META_CHANGED;
           }
-          return Event.META_CHANGED;
+          return Event.NEXT_OBJECT;
         }
       }
       return Event.END_OF_STREAM;
@@ -208,12 +208,10 @@ public class SimplePolygonParser extends AbstractStreamingParser {
         }
       }
       // Match polygon separator:
-      // FIXME: Avoid unnecessary subSequence call.
-      final int len = tokenizer.getEnd() - tokenizer.getStart();
-      if(POLYGON_SEPARATOR.length() == len && //
-      reader.getBuffer().subSequence(tokenizer.getStart(), tokenizer.getEnd()).equals(POLYGON_SEPARATOR)) {
+      if(isSeparator(reader.getBuffer(), tokenizer.getStart(), tokenizer.getEnd())) {
         if(!coords.isEmpty()) {
           polys.add(new Polygon(new ArrayList<>(coords)));
+          coords.clear();
         }
         continue;
       }
@@ -228,13 +226,36 @@ public class SimplePolygonParser extends AbstractStreamingParser {
     }
     // Complete polygon
     if(!coords.isEmpty()) {
-      polys.add(new Polygon(coords));
+      polys.add(new Polygon(new ArrayList<>(coords)));
     }
-    curpoly = new PolygonsObject(polys);
+    curpoly = new PolygonsObject(new ArrayList<>(polys));
     curlbl = (haslabels || !labels.isEmpty()) ? LabelList.make(labels) : null;
     return true;
   }
 
+  /**
+   * Test for the polygon separator, comparing the characters in place.
+   *
+   * Byte views of mapped files do not implement {@code equals}, and this
+   * avoids building a substring for every label token.
+   *
+   * @param buf Line buffer
+   * @param start Token start
+   * @param end Token end
+   * @return {@code true} if the token is the polygon separator
+   */
+  private static boolean isSeparator(CharSequence buf, int start, int end) {
+    if(end - start != POLYGON_SEPARATOR.length()) {
+      return false;
+    }
+    for(int i = 0; start < end; i++, start++) {
+      if(buf.charAt(start) != POLYGON_SEPARATOR.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
@@ -0,0 +1,100 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleWriter;
+import de.lmu.ifi.dbs.elki.datasource.bundle.ColumnarBundleReader;
+import de.lmu.ifi.dbs.elki.datasource.bundle.ColumnarBundleWriter;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+
+/**
+ * Test loading row-wise and columnar bundles.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class BundleDatabaseConnectionTest extends AbstractDataSourceTest {
+  /**
+   * Test file, with a vector and a label column.
+   */
+  private static final String FILENAME = UNITTEST + "label-selection-test-1.csv";
+
+  @Test
+  public void testRowwise() throws IOException {
+    MultipleObjectsBundle expected = readBundle(FILENAME);
+    File file = File.createTempFile("elki-rowwise", ".bundle");
+    file.deleteOnExit();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      new BundleWriter().writeBundleStream(expected.asStream(), out.getChannel());
+    }
+    try (FileInputStream in = new FileInputStream(file)) {
+      assertFalse("Row-wise bundle detected as columnar.", ColumnarBundleReader.isColumnarBundle(in.getChannel()));
+    }
+    assertSameBundle(expected, new BundleDatabaseConnection(null, file).loadData(), new int[] { 0, 1 });
+    // Column selection is not supported, all columns are loaded:
+    assertSameBundle(expected, new BundleDatabaseConnection(null, file, new int[] { 1 }).loadData(), new int[] { 0, 1 });
+    file.delete();
+  }
+
+  @Test
+  public void testColumnar() throws IOException {
+    MultipleObjectsBundle expected = readBundle(FILENAME);
+    File file = File.createTempFile("elki-columnar", ".bundle");
+    file.deleteOnExit();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      new ColumnarBundleWriter(ColumnarBundleWriter.Compression.LZ, 7).writeBundleStream(expected.asStream(), out.getChannel());
+    }
+    assertSameBundle(expected, new BundleDatabaseConnection(null, file).loadData(), new int[] { 0, 1 });
+    assertSameBundle(expected, new BundleDatabaseConnection(null, file, new int[] { 1 }).loadData(), new int[] { 1 });
+    file.delete();
+  }
+
+  /**
+   * Compare a loaded bundle with the original.
+   *
+   * @param expected Original bundle
+   * @param actual Loaded bundle
+   * @param select Expected columns of the original
+   */
+  private static void assertSameBundle(MultipleObjectsBundle expected, MultipleObjectsBundle actual, int[] select) {
+    assertEquals("Columns", select.length, actual.metaLength());
+    assertEquals("Length", expected.dataLength(), actual.dataLength());
+    for(int i = 0; i < expected.dataLength(); i++) {
+      for(int c = 0; c < select.length; c++) {
+        assertEquals("Value", expected.data(i, select[c]).toString(), actual.data(i, c).toString());
+      }
+    }
+    if(select[0] == 0) {
+      assertEquals("Dimensionality", 2, get(actual, 0, 0, DoubleVector.class).getDimensionality());
+    }
+  }
+}
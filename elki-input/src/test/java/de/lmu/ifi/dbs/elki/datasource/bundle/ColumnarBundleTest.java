@@ -0,0 +1,203 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.bundle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.LabelList;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
+
+/**
+ * Test the columnar bundle writer and reader.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class ColumnarBundleTest {
+  /**
+   * Number of rows of the test bundle.
+   */
+  private static final int SIZE = 1000;
+
+  /**
+   * Rows per block, such that the last block is partial.
+   */
+  private static final int BLOCKSIZE = 64;
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    for(ColumnarBundleWriter.Compression compression : ColumnarBundleWriter.Compression.values()) {
+      for(boolean withids : new boolean[] { false, true }) {
+        MultipleObjectsBundle bundle = makeBundle(withids);
+        File file = write(bundle, compression);
+        try (FileInputStream in = new FileInputStream(file)) {
+          assertTrue("Not detected as columnar bundle.", ColumnarBundleReader.isColumnarBundle(in.getChannel()));
+          ColumnarBundleReader reader = new ColumnarBundleReader(in.getChannel());
+          assertEquals("Number of rows", SIZE, reader.size());
+          assertEquals("Number of blocks", (SIZE + BLOCKSIZE - 1) / BLOCKSIZE, reader.getNumBlocks());
+          assertEquals("Has DBIDs", withids, reader.hasDBIDs());
+          assertSameBundle(compression.name(), bundle, reader.asMultipleObjectsBundle(), new int[] { 0, 1 });
+          // Stream the rows, block by block:
+          assertSameBundle(compression.name(), bundle, MultipleObjectsBundle.fromStream(new ColumnarBundleReader(in.getChannel())), new int[] { 0, 1 });
+        }
+        finally {
+          file.delete();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testProjection() throws IOException {
+    MultipleObjectsBundle bundle = makeBundle(true);
+    File file = write(bundle, ColumnarBundleWriter.Compression.SHUFFLE);
+    try (FileInputStream in = new FileInputStream(file)) {
+      for(int[] select : new int[][] { { 0 }, { 1 }, { 1, 0 } }) {
+        ColumnarBundleReader reader = new ColumnarBundleReader(in.getChannel(), select);
+        assertEquals("Number of columns", select.length, reader.getMeta().size());
+        assertSameBundle("projection", bundle, reader.asMultipleObjectsBundle(), select);
+        assertSameBundle("projection", bundle, MultipleObjectsBundle.fromStream(new ColumnarBundleReader(in.getChannel(), select)), select);
+      }
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testRandomAccess() throws IOException {
+    MultipleObjectsBundle bundle = makeBundle(false);
+    for(ColumnarBundleWriter.Compression compression : ColumnarBundleWriter.Compression.values()) {
+      File file = write(bundle, compression);
+      try (FileInputStream in = new FileInputStream(file)) {
+        ColumnarBundleReader reader = new ColumnarBundleReader(in.getChannel());
+        // Rows around block borders, then random rows.
+        List<Integer> rows = new ArrayList<>();
+        for(int b = BLOCKSIZE; b < SIZE; b += BLOCKSIZE) {
+          rows.add(b);
+          rows.add(b - 1);
+        }
+        rows.add(0);
+        rows.add(SIZE - 1);
+        Random r = new Random(0L);
+        for(int i = 0; i < 100; i++) {
+          rows.add(r.nextInt(SIZE));
+        }
+        for(int row : rows) {
+          for(int col = 0; col < 2; col++) {
+            assertEquals(compression + " row " + row + " column " + col, bundle.data(row, col).toString(), reader.get(row, col).toString());
+          }
+        }
+      }
+      finally {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Build a bundle with a vector and a label column.
+   *
+   * @param withids Include DBIDs
+   * @return Bundle
+   */
+  private static MultipleObjectsBundle makeBundle(boolean withids) {
+    Random r = new Random(0L);
+    List<DoubleVector> vecs = new ArrayList<>(SIZE);
+    List<LabelList> labels = new ArrayList<>(SIZE);
+    for(int i = 0; i < SIZE; i++) {
+      vecs.add(new DoubleVector(new double[] { i * .25, r.nextDouble(), r.nextInt(10) }));
+      List<String> l = new ArrayList<>();
+      l.add("label" + r.nextInt(5));
+      if(i % 3 == 0) {
+        l.add("row" + i);
+      }
+      labels.add(LabelList.make(l));
+    }
+    MultipleObjectsBundle bundle = MultipleObjectsBundle.makeSimple(new VectorFieldTypeInformation<>(DoubleVector.FACTORY, 3), vecs, TypeUtil.LABELLIST, labels);
+    if(withids) {
+      bundle.setDBIDs(DBIDUtil.generateStaticDBIDRange(SIZE));
+    }
+    return bundle;
+  }
+
+  /**
+   * Write a bundle to a temporary file.
+   *
+   * @param bundle Bundle
+   * @param compression Compression
+   * @return File
+   * @throws IOException on errors
+   */
+  private static File write(MultipleObjectsBundle bundle, ColumnarBundleWriter.Compression compression) throws IOException {
+    File file = File.createTempFile("elki-columnar", ".bundle");
+    file.deleteOnExit();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      new ColumnarBundleWriter(compression, BLOCKSIZE).writeBundleStream(bundle.asStream(), out.getChannel());
+    }
+    return file;
+  }
+
+  /**
+   * Compare a bundle read back with the original.
+   *
+   * @param msg Message prefix
+   * @param expected Original bundle
+   * @param actual Bundle read back
+   * @param select Selected columns of the original
+   */
+  private static void assertSameBundle(String msg, MultipleObjectsBundle expected, MultipleObjectsBundle actual, int[] select) {
+    assertEquals(msg + ": number of columns", select.length, actual.metaLength());
+    assertEquals(msg + ": number of rows", expected.dataLength(), actual.dataLength());
+    for(int c = 0; c < select.length; c++) {
+      assertEquals(msg + ": column type", expected.meta(select[c]).toString(), actual.meta(c).toString());
+    }
+    if(expected.getDBIDs() == null) {
+      assertFalse(msg + ": unexpected DBIDs", actual.assignDBID(0, DBIDUtil.newVar()));
+    }
+    DBIDVar e = DBIDUtil.newVar(), a = DBIDUtil.newVar();
+    for(int i = 0; i < expected.dataLength(); i++) {
+      if(expected.getDBIDs() != null) {
+        assertTrue(msg + ": missing DBID", expected.assignDBID(i, e) && actual.assignDBID(i, a));
+        assertTrue(msg + ": DBID differs", DBIDUtil.equal(e, a));
+      }
+      for(int c = 0; c < select.length; c++) {
+        assertEquals(msg + ": row " + i + " column " + c, expected.data(i, select[c]).toString(), actual.data(i, c).toString());
+      }
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.LabelList;
+import de.lmu.ifi.dbs.elki.datasource.AbstractDataSourceTest;
+import de.lmu.ifi.dbs.elki.datasource.FileBasedDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.InputStreamDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+
+/**
+ * Test that memory mapped files and streams decode labels the same way.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class NumberVectorLabelParserTest extends AbstractDataSourceTest {
+  /**
+   * Test data, with non-ASCII labels.
+   */
+  private static final String DATA = "1 2 bänänä\n" //
+      + "3 4 ça \"über alles\"\n" //
+      + "5 6 plain\n";
+
+  @Test
+  public void testNonASCIILabels() throws IOException {
+    File file = File.createTempFile("elki-labels", ".txt");
+    file.deleteOnExit();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(DATA.getBytes(Charset.defaultCharset()));
+    }
+    MultipleObjectsBundle mapped, stream;
+    try (FileBasedDatabaseConnection dbc = new FileBasedDatabaseConnection(null, new NumberVectorLabelParser<>(DoubleVector.FACTORY), file)) {
+      mapped = dbc.loadData();
+    }
+    try (InputStream is = new BufferedInputStream(new FileInputStream(file));
+        InputStreamDatabaseConnection dbc = new InputStreamDatabaseConnection(is, null, new NumberVectorLabelParser<>(DoubleVector.FACTORY))) {
+      stream = dbc.loadData();
+    }
+    assertEquals("Objects", 3, mapped.dataLength());
+    assertEquals("Objects", stream.dataLength(), mapped.dataLength());
+    for(int i = 0; i < stream.dataLength(); i++) {
+      LabelList m = get(mapped, i, 1, LabelList.class), s = get(stream, i, 1, LabelList.class);
+      assertEquals("Number of labels", s.size(), m.size());
+      for(int j = 0; j < s.size(); j++) {
+        assertEquals("Label differs.", s.get(j), m.get(j));
+      }
+    }
+    if(Charset.defaultCharset().newEncoder().canEncode(DATA)) {
+      assertEquals("Label not decoded.", "bänänä", get(mapped, 0, 1, LabelList.class).get(0));
+      assertEquals("Label not decoded.", "über alles", get(mapped, 1, 1, LabelList.class).get(1));
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ * 
+ * Copyright (C) 2017
+ * ELKI Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.datasource.AbstractDataSourceTest;
+import de.lmu.ifi.dbs.elki.datasource.InputStreamDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Test the parallel number vector parser against the serial parser.
+ *
+ * @author Erich Schubert
+ */
+public class ParallelNumberVectorLabelParserTest extends AbstractDataSourceTest {
+  @Test
+  public void testLabels() throws IOException {
+    compare(UNITTEST + "label-selection-test-1.csv");
+  }
+
+  @Test
+  public void testNumbers() throws IOException {
+    compare(UNITTEST + "normally-distributed-data-1.csv");
+  }
+
+  /**
+   * Parse a file with tiny chunks, and compare to the serial parser.
+   *
+   * @param filename File name
+   * @throws IOException on errors
+   */
+  private void compare(String filename) throws IOException {
+    MultipleObjectsBundle expected = readBundle(filename);
+    Parser parser = new ELKIBuilder<>(ParallelNumberVectorLabelParser.class) //
+        .with(ParallelNumberVectorLabelParser.Parameterizer.CHUNKSIZE_ID, 50) //
+        .build();
+    MultipleObjectsBundle bundle;
+    try (InputStream is = open(filename);
+        InputStreamDatabaseConnection dbc = new InputStreamDatabaseConnection(is, null, parser)) {
+      bundle = dbc.loadData();
+    }
+    assertEquals("Columns", expected.metaLength(), bundle.metaLength());
+    assertEquals("Length", expected.dataLength(), bundle.dataLength());
+    for(int c = 0; c < bundle.metaLength(); c++) {
+      assertEquals("Column type", expected.meta(c).toString(), bundle.meta(c).toString());
+    }
+    for(int i = 0; i < bundle.dataLength(); i++) {
+      NumberVector e = get(expected, i, 0, DoubleVector.class);
+      NumberVector v = get(bundle, i, 0, DoubleVector.class);
+      assertEquals("Dimensionality", e.getDimensionality(), v.getDimensionality());
+      for(int d = 0; d < v.getDimensionality(); d++) {
+        assertEquals("Value", e.doubleValue(d), v.doubleValue(d), 0.);
+      }
+      for(int c = 1; c < bundle.metaLength(); c++) {
+        assertEquals("Label", expected.data(i, c).toString(), bundle.data(i, c).toString());
+      }
+    }
+  }
+}
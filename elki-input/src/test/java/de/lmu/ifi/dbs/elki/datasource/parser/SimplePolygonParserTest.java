@@ -0,0 +1,127 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.ExternalID;
+import de.lmu.ifi.dbs.elki.data.LabelList;
+import de.lmu.ifi.dbs.elki.data.spatial.PolygonsObject;
+import de.lmu.ifi.dbs.elki.datasource.AbstractDataSourceTest;
+import de.lmu.ifi.dbs.elki.datasource.FileBasedDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.InputStreamDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+
+/**
+ * Test the polygon parser, on memory mapped files and on streams.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class SimplePolygonParserTest extends AbstractDataSourceTest {
+  /**
+   * Whitespace separated format, as commas separate coordinates.
+   */
+  private static final CSVReaderFormat FORMAT = new CSVReaderFormat(Pattern.compile("\\s+"), CSVReaderFormat.QUOTE_CHARS, Pattern.compile(CSVReaderFormat.COMMENT_PATTERN));
+
+  /**
+   * Test data.
+   */
+  private static final String DATA = "# Polygons\n" //
+      + "a 1,2 3,4 5,6 -- 7,8 9,10.5 11,12 x y\n" //
+      + "b 0,0,1 1,0,1 1,1,1 -- -- 2,2,2 z\r\n" //
+      + "c 1,1 2,1 2,2";
+
+  /**
+   * Expected polygons.
+   */
+  private static final String[] POLYGONS = { //
+      "1.0,2.0 3.0,4.0 5.0,6.0 -- 7.0,8.0 9.0,10.5 11.0,12.0", //
+      "0.0,0.0,1.0 1.0,0.0,1.0 1.0,1.0,1.0 -- 2.0,2.0,2.0", //
+      "1.0,1.0 2.0,1.0 2.0,2.0" };
+
+  /**
+   * Expected labels.
+   */
+  private static final String[] LABELS = { "x y", "z", "" };
+
+  @Test
+  public void testMapped() throws IOException {
+    File file = writeData();
+    MultipleObjectsBundle bundle;
+    try (FileBasedDatabaseConnection dbc = new FileBasedDatabaseConnection(null, new SimplePolygonParser(FORMAT), file)) {
+      bundle = dbc.loadData();
+    }
+    checkBundle(bundle);
+  }
+
+  @Test
+  public void testStream() throws IOException {
+    File file = writeData();
+    MultipleObjectsBundle bundle;
+    try (InputStream is = new BufferedInputStream(new FileInputStream(file));
+        InputStreamDatabaseConnection dbc = new InputStreamDatabaseConnection(is, null, new SimplePolygonParser(FORMAT))) {
+      bundle = dbc.loadData();
+    }
+    checkBundle(bundle);
+  }
+
+  /**
+   * Write the test data to a temporary file.
+   *
+   * @return File
+   * @throws IOException on errors
+   */
+  private static File writeData() throws IOException {
+    File file = File.createTempFile("elki-polygons", ".txt");
+    file.deleteOnExit();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(DATA.getBytes(StandardCharsets.UTF_8));
+    }
+    return file;
+  }
+
+  /**
+   * Check the parsed polygons.
+   *
+   * @param bundle Bundle
+   */
+  private static void checkBundle(MultipleObjectsBundle bundle) {
+    assertEquals("Columns", 3, bundle.metaLength());
+    assertEquals("Objects", POLYGONS.length, bundle.dataLength());
+    for(int i = 0; i < POLYGONS.length; i++) {
+      assertEquals("Polygons of object " + i, POLYGONS[i], get(bundle, i, 0, PolygonsObject.class).toString());
+      assertEquals("External ID", String.valueOf((char) ('a' + i)), get(bundle, i, 1, ExternalID.class).toString());
+      assertEquals("Labels", LABELS[i], get(bundle, i, 2, LabelList.class).toString());
+    }
+  }
+}
@@ -0,0 +1,664 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.similarity.SimilarityQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.similarityfunction.SimilarityFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.result.outlier.InvertedOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMaxHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel version of Fast-ABOD (approximateABOF).
+ *
+ * Instead of materializing the O(n²) kernel matrix, the self-similarities
+ * (squared norms in kernel space) are precomputed once, and all other
+ * similarities are computed on demand. Each thread keeps reusable buffers for
+ * the similarities to the current object and for the nearest neighbors, so the
+ * inner loops do not allocate memory.
+ *
+ * The nearest neighbor selection and the order of all floating point
+ * operations are the same as in {@link FastABOD}, so the scores are identical
+ * (assuming a symmetric kernel function, as required of any kernel).
+ *
+ * Reference:
+ * <p>
+ * H.-P. Kriegel, M. Schubert, and A. Zimek:<br />
+ * Angle-Based Outlier Detection in High-dimensional Data.<br />
+ * In: Proc. 14th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining
+ * (KDD '08), Las Vegas, NV, 2008.
+ * </p>
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.composedOf Worker
+ *
+ * @param <V> Vector type
+ */
+@Title("Parallel Approximate ABOD: Angle-Based Outlier Detection")
+@Description("Outlier detection using variance analysis on angles, especially for high dimensional data sets.")
+@Reference(authors = "H.-P. Kriegel, M. Schubert, A. Zimek", //
+    title = "Angle-Based Outlier Detection in High-dimensional Data", //
+    booktitle = "Proc. 14th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining (KDD '08), Las Vegas, NV, 2008", //
+    url = "http://dx.doi.org/10.1145/1401890.1401946")
+public class ParallelFastABOD<V extends NumberVector> extends FastABOD<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelFastABOD.class);
+
+  /**
+   * Score modes of the worker tasks.
+   */
+  protected static final int MODE_FAST = 0, MODE_LOWERBOUND = 1, MODE_EXACT = 2;
+
+  /**
+   * Constructor.
+   *
+   * @param kernelFunction kernel function to use
+   * @param k Number of nearest neighbors
+   */
+  public ParallelFastABOD(SimilarityFunction<? super V> kernelFunction, int k) {
+    super(kernelFunction, k);
+  }
+
+  @Override
+  public OutlierResult run(Database db, Relation<V> relation) {
+    final KernelData<V> data = new KernelData<>(relation, db.getSimilarityQuery(relation, kernelFunction));
+    final int n = data.size();
+    final double[] scores = new double[n];
+
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Fast-ABOD", n, LOG) : null;
+      runTasks(core, data, k, MODE_FAST, null, n, scores, prog, LOG);
+      LOG.ensureCompleted(prog);
+    }
+    finally {
+      core.disconnect();
+    }
+
+    WritableDoubleDataStore abodvalues = DataStoreUtil.makeDoubleStorage(data.ids, DataStoreFactory.HINT_STATIC);
+    DoubleMinMax minmaxabod = new DoubleMinMax();
+    for(DBIDArrayIter it = data.ids.iter(); it.valid(); it.advance()) {
+      final double abof = scores[it.getOffset()];
+      minmaxabod.put(abof);
+      abodvalues.putDouble(it, abof);
+    }
+
+    // Build result representation.
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Angle-Based Outlier Degree", "abod-outlier", abodvalues, relation.getDBIDs());
+    OutlierScoreMeta scoreMeta = new InvertedOutlierScoreMeta(minmaxabod.getMin(), minmaxabod.getMax(), 0.0, Double.POSITIVE_INFINITY);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  /**
+   * Score a set of objects in parallel. The caller must connect to the core.
+   *
+   * @param core Parallel core
+   * @param data Shared kernel data
+   * @param k Number of neighbors
+   * @param mode Score mode
+   * @param offsets Offsets of the objects to score, {@code null} for all
+   * @param num Number of objects to score
+   * @param out Output array, indexed like {@code offsets}
+   * @param prog Progress, may be {@code null}
+   * @param log Logger for progress
+   */
+  protected static <V extends NumberVector> void runTasks(ParallelCore core, KernelData<V> data, int k, int mode, int[] offsets, int num, double[] out, FiniteProgress prog, Logging log) {
+    try {
+      AtomicInteger next = new AtomicInteger();
+      List<Future<?>> futures = new ArrayList<>();
+      for(int i = Math.min(core.getParallelism(), num); i > 0; i--) {
+        futures.add(core.submit(new ScoreTask<>(new Worker<>(data, k), mode, offsets, num, next, out, prog, log)));
+      }
+      for(Future<?> f : futures) {
+        f.get();
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+  }
+
+  /**
+   * Data shared by all threads: vectors, precomputed self-similarities, and
+   * the similarity query.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  protected static class KernelData<V extends NumberVector> {
+    /**
+     * Object ids, in relation order.
+     */
+    final ArrayDBIDs ids;
+
+    /**
+     * Vectors, by offset.
+     */
+    final List<V> vecs;
+
+    /**
+     * Self-similarities (squared norms in kernel space), by offset.
+     */
+    final double[] norms;
+
+    /**
+     * Similarity query.
+     */
+    final SimilarityQuery<V> sq;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param sq Similarity query
+     */
+    protected KernelData(Relation<V> relation, SimilarityQuery<V> sq) {
+      this.ids = DBIDUtil.ensureArray(relation.getDBIDs());
+      this.sq = sq;
+      final int n = ids.size();
+      this.vecs = new ArrayList<>(n);
+      this.norms = new double[n];
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        final V v = relation.get(it);
+        vecs.add(v);
+        norms[it.getOffset()] = sq.similarity(v, v);
+      }
+    }
+
+    /**
+     * Number of objects.
+     *
+     * @return Size
+     */
+    protected int size() {
+      return norms.length;
+    }
+  }
+
+  /**
+   * Task scoring objects claimed using a shared counter.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <V> Vector type
+   */
+  private static class ScoreTask<V extends NumberVector> implements Callable<Void> {
+    /**
+     * Worker with the thread-local buffers.
+     */
+    private final Worker<V> worker;
+
+    /**
+     * Score mode.
+     */
+    private final int mode;
+
+    /**
+     * Offsets to process, may be {@code null}.
+     */
+    private final int[] offsets;
+
+    /**
+     * Number of objects.
+     */
+    private final int num;
+
+    /**
+     * Next object to process.
+     */
+    private final AtomicInteger next;
+
+    /**
+     * Output array.
+     */
+    private final double[] out;
+
+    /**
+     * Progress.
+     */
+    private final FiniteProgress prog;
+
+    /**
+     * Logger for progress.
+     */
+    private final Logging log;
+
+    /**
+     * Constructor.
+     *
+     * @param worker Worker
+     * @param mode Score mode
+     * @param offsets Offsets to process, may be {@code null}
+     * @param num Number of objects
+     * @param next Shared counter
+     * @param out Output array
+     * @param prog Progress
+     * @param log Logger for progress
+     */
+    ScoreTask(Worker<V> worker, int mode, int[] offsets, int num, AtomicInteger next, double[] out, FiniteProgress prog, Logging log) {
+      this.worker = worker;
+      this.mode = mode;
+      this.offsets = offsets;
+      this.num = num;
+      this.next = next;
+      this.out = out;
+      this.prog = prog;
+      this.log = log;
+    }
+
+    @Override
+    public Void call() {
+      for(int i = next.getAndIncrement(); i < num; i = next.getAndIncrement()) {
+        final int a = offsets != null ? offsets[i] : i;
+        out[i] = mode == MODE_EXACT ? worker.exactABOF(a) : //
+            mode == MODE_LOWERBOUND ? worker.lowerBoundABOF(a) : worker.fastABOF(a);
+        if(prog != null) {
+          prog.incrementProcessed(log);
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Thread-local worker, with reusable buffers.
+   *
+   * The nearest neighbor selection replicates the heap used by
+   * {@link de.lmu.ifi.dbs.elki.database.ids.DBIDUtil#newHeap}, including the
+   * handling of ties, on offsets instead of DBIDs, so the neighbors are
+   * visited in the same order.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  protected static class Worker<V extends NumberVector> {
+    /**
+     * Shared data.
+     */
+    private final KernelData<V> data;
+
+    /**
+     * Number of neighbors.
+     */
+    private final int k;
+
+    /**
+     * Similarities to the current object, by offset.
+     */
+    private final double[] simA;
+
+    /**
+     * Nearest neighbor heap, of squared distances and offsets.
+     */
+    private final DoubleIntegerMaxHeap heap;
+
+    /**
+     * Tied neighbors.
+     */
+    private int[] ties = new int[11];
+
+    /**
+     * Number of ties, and k-distance.
+     */
+    private int numties;
+
+    /**
+     * Current k-distance.
+     */
+    private double kdist;
+
+    /**
+     * Nearest neighbors, in ascending order.
+     */
+    private int[] nnoff;
+
+    /**
+     * Squared distances of the nearest neighbors.
+     */
+    private double[] nnsqd;
+
+    /**
+     * Number of nearest neighbors found.
+     */
+    private int nnsize;
+
+    /**
+     * Statistics tracker.
+     */
+    private final MeanVariance s = new MeanVariance();
+
+    /**
+     * Constructor.
+     *
+     * @param data Shared data
+     * @param k Number of neighbors
+     */
+    protected Worker(KernelData<V> data, int k) {
+      this.data = data;
+      this.k = k;
+      this.simA = new double[data.size()];
+      this.heap = new DoubleIntegerMaxHeap(k);
+      this.nnoff = new int[k];
+      this.nnsqd = new double[k];
+    }
+
+    /**
+     * Kernel similarity of two objects.
+     *
+     * @param a First offset
+     * @param b Second offset
+     * @return Similarity
+     */
+    private double similarity(int a, int b) {
+      return data.sq.similarity(data.vecs.get(a), data.vecs.get(b));
+    }
+
+    /**
+     * Compute the Fast-ABOD score, as in {@link FastABOD}.
+     *
+     * @param a Object offset
+     * @return Approximate ABOF
+     */
+    protected double fastABOF(int a) {
+      final int n = data.size();
+      final double[] norms = data.norms;
+      final double simAA = norms[a];
+      final V vA = data.vecs.get(a);
+      clearHeap();
+      for(int b = 0; b < n; b++) {
+        if(b == a) {
+          continue;
+        }
+        double simBB = norms[b];
+        double simAB = simA[b] = data.sq.similarity(vA, data.vecs.get(b));
+        double sqdAB = simAA + simBB - simAB - simAB;
+        if(!(sqdAB > 0.)) {
+          continue;
+        }
+        insert(sqdAB, b);
+      }
+      finishHeap();
+
+      s.reset();
+      for(int i = 0; i < nnsize; i++) {
+        final int b = nnoff[i];
+        double sqdAB = nnsqd[i];
+        double simAB = simA[b];
+        if(!(sqdAB > 0.)) {
+          continue;
+        }
+        for(int j = i + 1; j < nnsize; j++) {
+          final int c = nnoff[j];
+          double sqdAC = nnsqd[j];
+          double simAC = simA[c];
+          if(!(sqdAC > 0.)) {
+            continue;
+          }
+          double simBC = similarity(b, c);
+          double numerator = simBC - simAB - simAC + simAA;
+          double div = 1. / (sqdAB * sqdAC);
+          s.put(numerator * div, FastMath.sqrt(div));
+        }
+      }
+      return s.getNaiveVariance();
+    }
+
+    /**
+     * Compute the lower bound of the ABOF score, as in {@link LBABOD}.
+     *
+     * @param a Object offset
+     * @return Lower bound ABOF
+     */
+    protected double lowerBoundABOF(int a) {
+      final int n = data.size();
+      final double[] norms = data.norms;
+      final double simAA = norms[a];
+      final V vA = data.vecs.get(a);
+      clearHeap();
+      // Sum of 1./(|AB|) and 1./(|AB|^2); for computing R2.
+      double sumid = 0., sumisqd = 0.;
+      for(int b = 0; b < n; b++) {
+        if(b == a) {
+          continue;
+        }
+        double simBB = norms[b];
+        double simAB = simA[b] = data.sq.similarity(vA, data.vecs.get(b));
+        double sqdAB = simAA + simBB - simAB - simAB;
+        final double isqdAB = 1. / sqdAB;
+        sumid += FastMath.sqrt(isqdAB);
+        sumisqd += isqdAB;
+        insert(sqdAB, b);
+      }
+      finishHeap();
+
+      double nnsum = 0., nnsumsq = 0., nnsumisqd = 0.;
+      for(int i = 0; i < nnsize; i++) {
+        final int b = nnoff[i];
+        double sqdAB = nnsqd[i];
+        double simAB = simA[b];
+        if(!(sqdAB > 0.)) {
+          continue;
+        }
+        for(int j = i + 1; j < nnsize; j++) {
+          final int c = nnoff[j];
+          double sqdAC = nnsqd[j];
+          double simAC = simA[c];
+          if(!(sqdAC > 0.)) {
+            continue;
+          }
+          double simBC = similarity(b, c);
+          double numerator = simBC - simAB - simAC + simAA;
+          double sqweight = 1. / (sqdAB * sqdAC);
+          double weight = FastMath.sqrt(sqweight);
+          double val = numerator * sqweight;
+          nnsum += val * weight;
+          nnsumsq += val * val * weight;
+          nnsumisqd += sqweight;
+        }
+      }
+      // Remaining weight, term R2:
+      double r2 = sumisqd * sumisqd - 2. * nnsumisqd;
+      double tmp = (2. * nnsum + r2) / (sumid * sumid);
+      return 2. * nnsumsq / (sumid * sumid) - tmp * tmp;
+    }
+
+    /**
+     * Compute the exact ABOF score, as in {@link ABOD}.
+     *
+     * @param a Object offset
+     * @return ABOF
+     */
+    protected double exactABOF(int a) {
+      final int n = data.size();
+      final double[] norms = data.norms;
+      final double simAA = norms[a];
+      final V vA = data.vecs.get(a);
+      for(int b = 0; b < n; b++) {
+        simA[b] = b != a ? data.sq.similarity(vA, data.vecs.get(b)) : simAA;
+      }
+      s.reset();
+      for(int b = 0; b < n; b++) {
+        if(b == a) {
+          continue;
+        }
+        double simBB = norms[b];
+        double simAB = simA[b];
+        double sqdAB = simAA + simBB - simAB - simAB;
+        if(!(sqdAB > 0.)) {
+          continue;
+        }
+        final V vB = data.vecs.get(b);
+        for(int c = b + 1; c < n; c++) {
+          if(c == a) {
+            continue;
+          }
+          double simCC = norms[c];
+          double simAC = simA[c];
+          double sqdAC = simAA + simCC - simAC - simAC;
+          if(!(sqdAC > 0.)) {
+            continue;
+          }
+          double simBC = data.sq.similarity(vB, data.vecs.get(c));
+          double numerator = simBC - simAB - simAC + simAA;
+          double div = 1. / (sqdAB * sqdAC);
+          s.put(numerator * div, FastMath.sqrt(div));
+        }
+      }
+      return s.getNaiveVariance();
+    }
+
+    /**
+     * Reset the nearest neighbor heap.
+     */
+    private void clearHeap() {
+      heap.clear();
+      numties = 0;
+      kdist = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Insert into the nearest neighbor heap.
+     *
+     * @param distance Squared distance
+     * @param off Object offset
+     */
+    private void insert(double distance, int off) {
+      if(heap.size() < k) {
+        heap.add(distance, off);
+        if(heap.size() >= k) {
+          kdist = heap.peekKey();
+        }
+        return;
+      }
+      if(distance >= kdist) {
+        if(distance == kdist) {
+          addToTies(off);
+        }
+        return;
+      }
+      final double prevdist = kdist;
+      final int prevoff = heap.peekValue();
+      heap.replaceTopElement(distance, off);
+      kdist = heap.peekKey();
+      // If the kdist improved, zap ties.
+      if(kdist < prevdist) {
+        numties = 0;
+      }
+      else {
+        addToTies(prevoff);
+      }
+    }
+
+    /**
+     * Add an object to the ties.
+     *
+     * @param off Object offset
+     */
+    private void addToTies(int off) {
+      if(ties.length == numties) {
+        ties = Arrays.copyOf(ties, (ties.length << 1) + 1);
+      }
+      ties[numties++] = off;
+    }
+
+    /**
+     * Move the heap contents into the sorted neighbor buffers.
+     */
+    private void finishHeap() {
+      final int hsize = heap.size();
+      nnsize = hsize + numties;
+      if(nnoff.length < nnsize) {
+        nnoff = new int[nnsize];
+        nnsqd = new double[nnsize];
+      }
+      for(int i = 0; i < numties; i++) {
+        nnsqd[hsize + i] = kdist;
+        nnoff[hsize + i] = ties[i];
+      }
+      for(int j = hsize - 1; j >= 0; j--) {
+        nnsqd[j] = heap.peekKey();
+        nnoff[j] = heap.peekValue();
+        heap.poll();
+      }
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<V extends NumberVector> extends FastABOD.Parameterizer<V> {
+    @Override
+    protected ParallelFastABOD<V> makeInstance() {
+      return new ParallelFastABOD<>(kernelFunction, k);
+    }
+  }
+}
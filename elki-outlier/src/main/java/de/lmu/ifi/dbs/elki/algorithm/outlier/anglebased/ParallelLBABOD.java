@@ -0,0 +1,198 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased.ParallelFastABOD.KernelData;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.similarityfunction.SimilarityFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.result.outlier.InvertedOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+
+/**
+ * Parallel version of LB-ABOD (lower-bound).
+ *
+ * The lower bounds are computed in parallel, using the same thread-local
+ * buffers as {@link ParallelFastABOD}. The candidates are then refined in
+ * batches of one candidate per thread; the results of each batch are applied
+ * in candidate order with the same stopping rule as {@link LBABOD}, so the
+ * scores are identical, at the cost of at most one batch of unnecessary
+ * refinements.
+ *
+ * Reference:
+ * <p>
+ * H.-P. Kriegel, M. Schubert, and A. Zimek:<br />
+ * Angle-Based Outlier Detection in High-dimensional Data.<br />
+ * In: Proc. 14th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining
+ * (KDD '08), Las Vegas, NV, 2008.
+ * </p>
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.uses ParallelFastABOD.Worker
+ *
+ * @param <V> Vector type
+ */
+@Title("Parallel LB-ABOD: Lower Bounded Angle-Based Outlier Detection")
+@Description("Outlier detection using variance analysis on angles, especially for high dimensional data sets.")
+@Reference(authors = "H.-P. Kriegel, M. Schubert, A. Zimek", //
+    title = "Angle-Based Outlier Detection in High-dimensional Data", //
+    booktitle = "Proc. 14th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining (KDD '08), Las Vegas, NV, 2008", //
+    url = "http://dx.doi.org/10.1145/1401890.1401946")
+public class ParallelLBABOD<V extends NumberVector> extends LBABOD<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelLBABOD.class);
+
+  /**
+   * Constructor.
+   *
+   * @param kernelFunction Kernel function to use
+   * @param k k parameter
+   * @param l Number of outliers to find exact
+   */
+  public ParallelLBABOD(SimilarityFunction<? super V> kernelFunction, int k, int l) {
+    super(kernelFunction, k, l);
+  }
+
+  @Override
+  public OutlierResult run(Database db, Relation<V> relation) {
+    final KernelData<V> data = new KernelData<>(relation, db.getSimilarityQuery(relation, kernelFunction));
+    final int n = data.size();
+    final double[] lbabofs = new double[n];
+
+    // Output storage.
+    WritableDoubleDataStore abodvalues = DataStoreUtil.makeDoubleStorage(data.ids, DataStoreFactory.HINT_STATIC);
+    DoubleMinMax minmaxabod = new DoubleMinMax();
+    int refinements = 0;
+
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("LB-ABOD candidate ranking", n, LOG) : null;
+      ParallelFastABOD.runTasks(core, data, k, ParallelFastABOD.MODE_LOWERBOUND, null, n, lbabofs, prog, LOG);
+      LOG.ensureCompleted(prog);
+
+      // Candidate ranking, in the same order as the serial version.
+      double max = 0.;
+      ModifiableDoubleDBIDList candidates = DBIDUtil.newDistanceDBIDList(n);
+      WritableIntegerDataStore offsets = DataStoreUtil.makeIntegerStorage(data.ids, DataStoreFactory.HINT_TEMP);
+      for(DBIDArrayIter it = data.ids.iter(); it.valid(); it.advance()) {
+        final double lbabof = lbabofs[it.getOffset()];
+        if(lbabof > max) {
+          max = lbabof;
+        }
+        abodvalues.putDouble(it, lbabof);
+        candidates.add(lbabof, it);
+        offsets.putInt(it, it.getOffset());
+      }
+      minmaxabod.put(max); // Put maximum from approximate values.
+      candidates.sort();
+
+      // Refine candidates, one batch at a time.
+      final int batchsize = core.getParallelism();
+      final int[] batch = new int[batchsize];
+      final double[] refined = new double[batchsize];
+      DoubleMinHeap topscores = new DoubleMinHeap(l);
+      DoubleDBIDListIter pA = candidates.iter(), pF = candidates.iter();
+      refine: while(pA.valid()) {
+        int num = 0;
+        for(pF.seek(pA.getOffset()); pF.valid() && num < batchsize; pF.advance()) {
+          batch[num++] = offsets.intValue(pF);
+        }
+        ParallelFastABOD.runTasks(core, data, k, ParallelFastABOD.MODE_EXACT, batch, num, refined, null, LOG);
+        for(int i = 0; i < num; i++, pA.advance()) {
+          // Stop refining
+          if(topscores.size() >= k && pA.doubleValue() > topscores.peek()) {
+            break refine;
+          }
+          final double abof = refined[i];
+          // Store refined score:
+          abodvalues.putDouble(pA, abof);
+          minmaxabod.put(abof);
+          // Update the heap tracking the top scores.
+          if(topscores.size() < k) {
+            topscores.add(abof);
+          }
+          else {
+            if(topscores.peek() > abof) {
+              topscores.replaceTopElement(abof);
+            }
+          }
+          refinements += 1;
+        }
+      }
+      offsets.destroy();
+    }
+    finally {
+      core.disconnect();
+    }
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic("lb-abod.refinements", refinements));
+    }
+    // Build result representation.
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Angle-based Outlier Detection", "abod-outlier", abodvalues, data.ids);
+    OutlierScoreMeta scoreMeta = new InvertedOutlierScoreMeta(minmaxabod.getMin(), minmaxabod.getMax(), 0.0, Double.POSITIVE_INFINITY);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<V extends NumberVector> extends LBABOD.Parameterizer<V> {
+    @Override
+    protected ParallelLBABOD<V> makeInstance() {
+      return new ParallelLBABOD<>(kernelFunction, k, l);
+    }
+  }
+}
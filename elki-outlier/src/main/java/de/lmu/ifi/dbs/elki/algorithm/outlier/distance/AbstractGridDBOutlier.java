@@ -0,0 +1,550 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.lmu.ifi.dbs.elki.algorithm.DistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.CombinedTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.LPNormDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.WeightedLPNormDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.IncompatibleDataException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenCustomHashMap;
+
+import net.jafama.FastMath;
+
+/**
+ * Cell-based distance based outlier detection, for Lp norms.
+ *
+ * The data is binned into a grid with cell width
+ * \(\delta=d/(2\sqrt[p]{\text{dim}})\), such that all objects in the
+ * neighboring cells ("layer 1") are within distance \(d\), while no object
+ * more than \(\lfloor d/\delta\rfloor+1\) cells away ("layer 2") can be. Cell
+ * counts alone then decide most cells; only the objects of the remaining cells
+ * are refined, by scanning the layer 2 cells in parallel.
+ *
+ * Reference:
+ * <p>
+ * E.M. Knorr, R. T. Ng:<br />
+ * Algorithms for Mining Distance-Based Outliers in Large Datasets,<br />
+ * In: Procs Int. Conf. on Very Large Databases (VLDB'98), New York, USA, 1998.
+ * </p>
+ *
+ * This implements the cell-based algorithm of section 4, for data in memory.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @param <V> Vector type
+ */
+public abstract class AbstractGridDBOutlier<V extends NumberVector> extends AbstractDBOutlier<V> {
+  /**
+   * Relative slack of the cell width, to protect the layer 1 guarantee
+   * against rounding.
+   */
+  private static final double SLACK = 1e-9;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function, must be an Lp norm
+   * @param d Radius d
+   */
+  public AbstractGridDBOutlier(DistanceFunction<? super V> distanceFunction, double d) {
+    super(distanceFunction, d);
+  }
+
+  @Override
+  protected DoubleDataStore computeOutlierScores(Database database, Relation<V> relation, double d) {
+    final Logging log = getLogger();
+    if(!(getDistanceFunction() instanceof LPNormDistanceFunction) || getDistanceFunction() instanceof WeightedLPNormDistanceFunction) {
+      throw new AbortException("Cell-based outlier detection requires an unweighted Lp norm.");
+    }
+    final LPNormDistanceFunction df = (LPNormDistanceFunction) getDistanceFunction();
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size(), dim = RelationUtil.dimensionality(relation);
+    final double p = df.getP();
+    final double delta = d / (2. * (p == Double.POSITIVE_INFINITY ? 1. : FastMath.pow(dim, 1. / p))) * (1. - SLACK);
+    final int radius = (int) Math.floor(d / delta) + 1;
+
+    Grid grid = new Grid(relation, ids, dim, delta);
+    double[] out = new double[size];
+    FiniteProgress prog = log.isVerbose() ? new FiniteProgress("Processing grid cells", grid.numCells(), log) : null;
+    List<CellTask> tasks = new ArrayList<>();
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      AtomicInteger next = new AtomicInteger();
+      List<Future<?>> futures = new ArrayList<>();
+      for(int i = Math.min(core.getParallelism(), grid.numCells()); i > 0; i--) {
+        CellTask task = new CellTask(grid, df, d, radius, size, next, out, prog);
+        tasks.add(task);
+        futures.add(core.submit(task));
+      }
+      for(Future<?> f : futures) {
+        f.get();
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+    log.ensureCompleted(prog);
+    if(log.isStatistics()) {
+      long decided = 0, refined = 0;
+      for(CellTask task : tasks) {
+        decided += task.decided;
+        refined += task.refined;
+      }
+      final String prefix = getClass().getName();
+      log.statistics(new LongStatistic(prefix + ".cells", grid.numCells()));
+      log.statistics(new LongStatistic(prefix + ".cells.decided", decided));
+      log.statistics(new LongStatistic(prefix + ".objects.refined", refined));
+    }
+
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      scores.putDouble(it, out[it.getOffset()]);
+    }
+    return scores;
+  }
+
+  /**
+   * Number of neighbors at which the refinement of an object may stop.
+   *
+   * @param size Data set size
+   * @return Limit
+   */
+  protected abstract int refineLimit(int size);
+
+  /**
+   * Decide all objects of a cell from the cell counts, if possible.
+   *
+   * @param lower Number of objects within distance d of every object in the
+   *        cell (own cell and layer 1, including the object itself)
+   * @param upper Upper bound, including the layer 2 cells
+   * @param size Data set size
+   * @return Score for all objects in the cell, or NaN if undecided
+   */
+  protected abstract double decide(int lower, int upper, int size);
+
+  /**
+   * Score of a refined object.
+   *
+   * @param count Number of objects within distance d (or at least the limit),
+   *        including the object itself
+   * @param size Data set size
+   * @return Score
+   */
+  protected abstract double score(int count, int size);
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(new CombinedTypeInformation(TypeUtil.NUMBER_VECTOR_FIELD, getDistanceFunction().getInputTypeRestriction()));
+  }
+
+  /**
+   * Sparse grid, storing the objects of each cell consecutively.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Grid {
+    /**
+     * Vectors, by offset.
+     */
+    final NumberVector[] vecs;
+
+    /**
+     * Map from cell coordinates to cell number.
+     */
+    final Object2IntOpenCustomHashMap<int[]> map;
+
+    /**
+     * Coordinates of each cell.
+     */
+    final int[][] coords;
+
+    /**
+     * Start of each cell in {@link #members}, plus the end.
+     */
+    final int[] start;
+
+    /**
+     * Object offsets, grouped by cell.
+     */
+    final int[] members;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param ids Object ids
+     * @param dim Dimensionality
+     * @param delta Cell width
+     */
+    protected Grid(Relation<? extends NumberVector> relation, ArrayDBIDs ids, int dim, double delta) {
+      final int size = ids.size();
+      vecs = new NumberVector[size];
+      final double[] min = new double[dim], max = new double[dim];
+      Arrays.fill(min, Double.POSITIVE_INFINITY);
+      Arrays.fill(max, Double.NEGATIVE_INFINITY);
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        final NumberVector v = vecs[it.getOffset()] = relation.get(it);
+        for(int j = 0; j < dim; j++) {
+          final double x = v.doubleValue(j);
+          min[j] = x < min[j] ? x : min[j];
+          max[j] = x > max[j] ? x : max[j];
+        }
+      }
+      for(int j = 0; j < dim; j++) {
+        if(!(max[j] - min[j] < Double.POSITIVE_INFINITY)) {
+          throw new IncompatibleDataException("Dimension " + j + " contains non-finite values.");
+        }
+        if((max[j] - min[j]) / delta >= (Integer.MAX_VALUE >> 1)) {
+          throw new AbortException("Radius d is too small for a grid on this data.");
+        }
+      }
+      // Assign cells:
+      map = new Object2IntOpenCustomHashMap<>(IntArrays.HASH_STRATEGY);
+      map.defaultReturnValue(-1);
+      List<int[]> cs = new ArrayList<>();
+      int[] cellOf = new int[size], counts = new int[16];
+      int[] buf = new int[dim];
+      for(int i = 0; i < size; i++) {
+        final NumberVector v = vecs[i];
+        for(int j = 0; j < dim; j++) {
+          buf[j] = (int) ((v.doubleValue(j) - min[j]) / delta);
+        }
+        int c = map.getInt(buf);
+        if(c < 0) {
+          c = cs.size();
+          cs.add(buf);
+          map.put(buf, c);
+          buf = new int[dim];
+          if(c == counts.length) {
+            counts = Arrays.copyOf(counts, c << 1);
+          }
+        }
+        counts[c]++;
+        cellOf[i] = c;
+      }
+      final int numcells = cs.size();
+      coords = cs.toArray(new int[numcells][]);
+      start = new int[numcells + 1];
+      for(int c = 0; c < numcells; c++) {
+        start[c + 1] = start[c] + counts[c];
+      }
+      members = new int[size];
+      int[] pos = Arrays.copyOf(start, numcells);
+      for(int i = 0; i < size; i++) {
+        members[pos[cellOf[i]]++] = i;
+      }
+    }
+
+    /**
+     * Number of occupied cells.
+     *
+     * @return Number of cells
+     */
+    protected int numCells() {
+      return coords.length;
+    }
+  }
+
+  /**
+   * Task processing cells claimed using a shared counter.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class CellTask implements Callable<Void> {
+    /**
+     * Grid.
+     */
+    private final Grid grid;
+
+    /**
+     * Distance function.
+     */
+    private final LPNormDistanceFunction df;
+
+    /**
+     * Radius.
+     */
+    private final double d;
+
+    /**
+     * Layer 2 radius, in cells.
+     */
+    private final int radius;
+
+    /**
+     * Data set size.
+     */
+    private final int size;
+
+    /**
+     * Next cell.
+     */
+    private final AtomicInteger next;
+
+    /**
+     * Output scores, by offset.
+     */
+    private final double[] out;
+
+    /**
+     * Progress.
+     */
+    private final FiniteProgress prog;
+
+    /**
+     * Layer 2 cells of the current cell.
+     */
+    private int[] layer2 = new int[16];
+
+    /**
+     * Number of layer 2 cells.
+     */
+    private int numl2;
+
+    /**
+     * Neighbor coordinates buffer.
+     */
+    private final int[] key;
+
+    /**
+     * Statistics.
+     */
+    long decided, refined;
+
+    /**
+     * Constructor.
+     *
+     * @param grid Grid
+     * @param df Distance function
+     * @param d Radius
+     * @param radius Layer 2 radius
+     * @param size Data set size
+     * @param next Cell counter
+     * @param out Output array
+     * @param prog Progress
+     */
+    CellTask(Grid grid, LPNormDistanceFunction df, double d, int radius, int size, AtomicInteger next, double[] out, FiniteProgress prog) {
+      this.grid = grid;
+      this.df = df;
+      this.d = d;
+      this.radius = radius;
+      this.size = size;
+      this.next = next;
+      this.out = out;
+      this.prog = prog;
+      this.key = new int[grid.coords.length > 0 ? grid.coords[0].length : 0];
+    }
+
+    @Override
+    public Void call() {
+      final int numcells = grid.numCells(), limit = refineLimit(size);
+      final int[] start = grid.start, members = grid.members;
+      // Enumerate neighbor cells, unless there are fewer occupied cells:
+      final boolean enumerate = FastMath.pow(2 * radius + 1, key.length) <= numcells;
+      for(int c = next.getAndIncrement(); c < numcells; c = next.getAndIncrement()) {
+        final int lower = enumerate ? enumerateNeighbors(c) : scanNeighbors(c);
+        int upper = lower;
+        for(int i = 0; i < numl2; i++) {
+          upper += start[layer2[i] + 1] - start[layer2[i]];
+        }
+        final double decision = decide(lower, upper, size);
+        if(decision == decision) { // not NaN
+          for(int i = start[c]; i < start[c + 1]; i++) {
+            out[members[i]] = decision;
+          }
+          ++decided;
+        }
+        else {
+          for(int i = start[c]; i < start[c + 1]; i++) {
+            final NumberVector v = grid.vecs[members[i]];
+            int count = lower;
+            refine: for(int l = 0; l < numl2; l++) {
+              final int cell = layer2[l];
+              for(int j = start[cell]; j < start[cell + 1]; j++) {
+                if(df.distance(v, grid.vecs[members[j]]) <= d && ++count >= limit) {
+                  break refine;
+                }
+              }
+            }
+            out[members[i]] = score(count, size);
+            ++refined;
+          }
+        }
+        if(prog != null) {
+          prog.incrementProcessed(getLogger());
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Find the neighbor cells by enumerating all coordinates.
+     *
+     * @param c Cell number
+     * @return Number of objects in the cell and layer 1
+     */
+    private int enumerateNeighbors(int c) {
+      final int[] cc = grid.coords[c], start = grid.start;
+      final int dim = cc.length;
+      for(int j = 0; j < dim; j++) {
+        key[j] = cc[j] - radius;
+      }
+      int lower = 0;
+      numl2 = 0;
+      while(true) {
+        final int n = grid.map.getInt(key);
+        if(n >= 0) {
+          if(chebyshev(cc, key) <= 1) {
+            lower += start[n + 1] - start[n];
+          }
+          else {
+            addLayer2(n);
+          }
+        }
+        // Advance to the next coordinates:
+        int j = 0;
+        while(j < dim && key[j] == cc[j] + radius) {
+          key[j] = cc[j] - radius;
+          ++j;
+        }
+        if(j == dim) {
+          return lower;
+        }
+        ++key[j];
+      }
+    }
+
+    /**
+     * Find the neighbor cells by scanning all occupied cells.
+     *
+     * @param c Cell number
+     * @return Number of objects in the cell and layer 1
+     */
+    private int scanNeighbors(int c) {
+      final int[] cc = grid.coords[c], start = grid.start;
+      int lower = 0;
+      numl2 = 0;
+      for(int n = 0; n < grid.numCells(); n++) {
+        final int dist = chebyshev(cc, grid.coords[n]);
+        if(dist <= 1) {
+          lower += start[n + 1] - start[n];
+        }
+        else if(dist <= radius) {
+          addLayer2(n);
+        }
+      }
+      return lower;
+    }
+
+    /**
+     * Add a cell to the layer 2 cells.
+     *
+     * @param n Cell number
+     */
+    private void addLayer2(int n) {
+      if(numl2 == layer2.length) {
+        layer2 = Arrays.copyOf(layer2, numl2 << 1);
+      }
+      layer2[numl2++] = n;
+    }
+  }
+
+  /**
+   * Maximum coordinate difference of two cells.
+   *
+   * @param a First cell
+   * @param b Second cell
+   * @return Maximum difference
+   */
+  private static int chebyshev(int[] a, int[] b) {
+    int max = 0;
+    for(int j = 0; j < a.length; j++) {
+      final int diff = Math.abs(a[j] - b[j]);
+      max = diff > max ? diff : max;
+    }
+    return max;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <V> Vector type
+   */
+  public abstract static class Parameterizer<V extends NumberVector> extends AbstractDBOutlier.Parameterizer<V> {
+    @Override
+    protected void makeOptions(Parameterization config) {
+      // Disabled: super.makeOptions(config);
+      // Because we currently only allow Lp norms:
+      ObjectParameter<DistanceFunction<? super V>> distanceFunctionP = new ObjectParameter<>(DistanceBasedAlgorithm.DISTANCE_FUNCTION_ID, LPNormDistanceFunction.class, EuclideanDistanceFunction.class);
+      if(config.grab(distanceFunctionP)) {
+        distanceFunction = distanceFunctionP.instantiateClass(config);
+      }
+      configD(config, distanceFunction);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+
+/**
+ * Cell-based version of {@link DBOutlierDetection}: an object is flagged as an
+ * outlier if at least a fraction p of all data objects has a distance above d.
+ *
+ * A cell is decided without any distance computations if its own objects and
+ * the layer 1 cells already contain enough objects (no outliers), or if even
+ * all layer 2 cells do not (all outliers). Only the objects of the remaining
+ * cells are refined, in parallel.
+ *
+ * Reference:
+ * <p>
+ * E.M. Knorr, R. T. Ng:<br />
+ * Algorithms for Mining Distance-Based Outliers in Large Datasets,<br />
+ * In: Procs Int. Conf. on Very Large Databases (VLDB'98), New York, USA, 1998.
+ * </p>
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @param <V> Vector type
+ */
+@Title("Cell-based DBOD: Distance Based Outlier Detection")
+@Description("If the D-neighborhood of an object contains only very few objects (less than (1-p) percent of the data) this object is flagged as an outlier")
+@Reference(authors = "E.M. Knorr, R. T. Ng", //
+    title = "Algorithms for Mining Distance-Based Outliers in Large Datasets", //
+    booktitle = "Procs Int. Conf. on Very Large Databases (VLDB'98), New York, USA, 1998")
+public class GridDBOutlierDetection<V extends NumberVector> extends AbstractGridDBOutlier<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(GridDBOutlierDetection.class);
+
+  /**
+   * Density threshold percentage p.
+   */
+  private double p;
+
+  /**
+   * Constructor with actual parameters.
+   *
+   * @param distanceFunction distance function parameter, must be an Lp norm
+   * @param d distance query radius
+   * @param p percentage parameter
+   */
+  public GridDBOutlierDetection(DistanceFunction<? super V> distanceFunction, double d, double p) {
+    super(distanceFunction, d);
+    this.p = p;
+  }
+
+  @Override
+  protected int refineLimit(int size) {
+    // maximum number of objects in the D-neighborhood of an outlier
+    return (int) Math.floor(size * (1 - p));
+  }
+
+  @Override
+  protected double decide(int lower, int upper, int size) {
+    final int m = refineLimit(size);
+    return lower >= m ? 0. : upper < m ? 1. : Double.NaN;
+  }
+
+  @Override
+  protected double score(int count, int size) {
+    return count < refineLimit(size) ? 1. : 0.;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractGridDBOutlier.Parameterizer<V> {
+    /**
+     * Density threshold p.
+     */
+    protected double p = 0.0;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      final DoubleParameter pP = new DoubleParameter(DBOutlierDetection.Parameterizer.P_ID) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+          .addConstraint(CommonConstraints.LESS_THAN_ONE_DOUBLE);
+      if(config.grab(pP)) {
+        p = pP.getValue();
+      }
+    }
+
+    @Override
+    protected GridDBOutlierDetection<V> makeInstance() {
+      return new GridDBOutlierDetection<>(distanceFunction, d, p);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+
+/**
+ * Cell-based version of {@link DBOutlierScore}: the score is the fraction of
+ * objects outside the d-neighborhood.
+ *
+ * The objects of the own cell and the layer 1 cells are counted without
+ * computing distances; only the layer 2 cells are scanned, in parallel.
+ *
+ * Reference:
+ * <p>
+ * E.M. Knorr, R. T. Ng:<br />
+ * Algorithms for Mining Distance-Based Outliers in Large Datasets,<br />
+ * In: Procs Int. Conf. on Very Large Databases (VLDB'98), New York, USA, 1998.
+ * </p>
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @param <V> Vector type
+ */
+@Title("Cell-based Distance Based Outlier Score")
+@Description("Distance based outlier score, as the fraction of objects outside the d-neighborhood.")
+@Reference(authors = "E.M. Knorr, R. T. Ng", //
+    title = "Algorithms for Mining Distance-Based Outliers in Large Datasets", //
+    booktitle = "Procs Int. Conf. on Very Large Databases (VLDB'98), New York, USA, 1998")
+public class GridDBOutlierScore<V extends NumberVector> extends AbstractGridDBOutlier<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(GridDBOutlierScore.class);
+
+  /**
+   * Constructor with parameters.
+   *
+   * @param distanceFunction Distance function, must be an Lp norm
+   * @param d distance radius parameter
+   */
+  public GridDBOutlierScore(DistanceFunction<? super V> distanceFunction, double d) {
+    super(distanceFunction, d);
+  }
+
+  @Override
+  protected int refineLimit(int size) {
+    return Integer.MAX_VALUE;
+  }
+
+  @Override
+  protected double decide(int lower, int upper, int size) {
+    return lower == upper ? score(lower, size) : Double.NaN;
+  }
+
+  @Override
+  protected double score(int count, int size) {
+    return 1.0 - count / (double) size;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractGridDBOutlier.Parameterizer<V> {
+    @Override
+    protected GridDBOutlierScore<V> makeInstance() {
+      return new GridDBOutlierScore<>(distanceFunction, d);
+    }
+  }
+}
@@ -107,27 +107,27 @@ public class HilOut<O extends NumberVector> extends AbstractDistanceBasedAlgorit
   /**
    * Number of nearest neighbors
    */
-  private int k;
+  protected int k;
 
   /**
    * Number of outliers to compute exactly
    */
-  private int n;
+  protected int n;
 
   /**
    * Hilbert precision
    */
-  private int h;
+  protected int h;
 
   /**
    * LPNorm p parameter
    */
-  private double t;
+  protected double t;
 
   /**
    * Reporting mode: exact (top n) only, or all
    */
-  private Enum<ScoreType> tn;
+  protected Enum<ScoreType> tn;
 
   /**
    * Distance query
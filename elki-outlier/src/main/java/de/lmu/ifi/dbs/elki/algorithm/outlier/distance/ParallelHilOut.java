@@ -0,0 +1,973 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.LPNormDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.spacefillingcurves.HilbertSpatialSorter;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.BitsUtil;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.IntegerArrayQuickSort;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.IntegerComparator;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+
+import net.jafama.FastMath;
+
+/**
+ * Multi-threaded variant of HilOut, with compact storage.
+ *
+ * Instead of one feature object per point, all state is kept in primitive
+ * arrays indexed by object offset: the Hilbert keys of all objects are packed
+ * into a single {@code long[]}, the nearest neighbor candidates are stored as
+ * fixed size max-heaps in flat distance and offset arrays, and the top
+ * candidates are a bit set.
+ *
+ * The Hilbert keys of each shift are computed in parallel, sorted by sorting
+ * chunks in parallel and merging them, and the neighbor scans are run in
+ * parallel on blocks of consecutive positions. Each object is only modified by
+ * the thread scanning its position; the candidate heaps and the threshold
+ * \(\omega^*\) are updated after each block, in curve order. Within a block,
+ * pruning therefore uses the threshold of the previous block, which may cause
+ * additional refinement, but never prunes more than the serial version. The
+ * top n result is the same as with {@link HilOut}; the approximate bounds
+ * reported for the other objects can differ (they may only be tighter).
+ *
+ * Reference:
+ * <p>
+ * F. Angiulli, C. Pizzuti:<br />
+ * Fast Outlier Detection in High Dimensional Spaces.<br />
+ * In: Proc. European Conference on Principles of Knowledge Discovery and Data
+ * Mining (PKDD'02), Helsinki, Finland, 2002.
+ * </p>
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.composedOf Instance
+ *
+ * @param <O> Object type
+ */
+@Title("Fast Outlier Detection in High Dimensional Spaces")
+@Description("Algorithm to compute outliers using Hilbert space filling curves, multi-threaded")
+@Reference(authors = "F. Angiulli, C. Pizzuti", //
+    title = "Fast Outlier Detection in High Dimensional Spaces", //
+    booktitle = "Proc. European Conference on Principles of Knowledge Discovery and Data Mining (PKDD'02)", //
+    url = "http://dx.doi.org/10.1007/3-540-45681-3_2")
+public class ParallelHilOut<O extends NumberVector> extends HilOut<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelHilOut.class);
+
+  /**
+   * Number of positions scanned by each thread, before synchronizing.
+   */
+  private static final int BLOCK_SIZE = 256;
+
+  /**
+   * Chunk size for distributing simple loops.
+   */
+  private static final int CHUNK_SIZE = 1024;
+
+  /**
+   * Constructor.
+   *
+   * @param distfunc Distance function
+   * @param k Number of Next Neighbors
+   * @param n Number of Outlier
+   * @param h Number of Bits for precision to use - max 32
+   * @param tn TopN or All Outlier Rank to return
+   */
+  protected ParallelHilOut(LPNormDistanceFunction distfunc, int k, int n, int h, Enum<ScoreType> tn) {
+    super(distfunc, k, n, h, tn);
+  }
+
+  @Override
+  public OutlierResult run(Database database, Relation<O> relation) {
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      return new Instance(core, relation).run();
+    }
+    finally {
+      core.disconnect();
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Loop body for parallel loops.
+   *
+   * @author Erich Schubert
+   */
+  private interface LoopBody {
+    /**
+     * Process a single index.
+     *
+     * @param i Index
+     */
+    void process(int i);
+  }
+
+  /**
+   * Instance for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected class Instance {
+    /**
+     * Parallel core.
+     */
+    private ParallelCore core;
+
+    /**
+     * Data relation.
+     */
+    private Relation<O> relation;
+
+    /**
+     * Object ids, in offset order.
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * Vectors, by offset.
+     */
+    private NumberVector[] vecs;
+
+    /**
+     * Distance function.
+     */
+    private LPNormDistanceFunction df;
+
+    /**
+     * Dimensionality, number of objects, and words per Hilbert key.
+     */
+    private int d, capital_n, words;
+
+    /**
+     * Number of candidates, and number of true outliers found.
+     */
+    private int capital_n_star, n_star;
+
+    /**
+     * Outlier threshold
+     */
+    private double omega_star;
+
+    /**
+     * Data space minimums
+     */
+    private double[] min;
+
+    /**
+     * Data space diameter
+     */
+    private double diameter;
+
+    /**
+     * Current curve shift
+     */
+    private double shift;
+
+    /**
+     * Packed Hilbert keys, {@code words} longs per object offset.
+     */
+    private long[] keys;
+
+    /**
+     * Object offsets, in Hilbert order.
+     */
+    private int[] pf;
+
+    /**
+     * Sort buffer.
+     */
+    private int[] buf;
+
+    /**
+     * Levels shared with the next position.
+     */
+    private int[] level;
+
+    /**
+     * Upper and lower bounds, and sum of the neighbor distances, by offset.
+     */
+    private double[] ubound, lbound, sumnn;
+
+    /**
+     * Number of known neighbors, by offset.
+     */
+    private int[] nnsize;
+
+    /**
+     * Neighbor distances, as max-heaps of size k per offset.
+     */
+    private double[] nndist;
+
+    /**
+     * Neighbor offsets, parallel to {@link #nndist}.
+     */
+    private int[] nnoff;
+
+    /**
+     * Top candidates (bit set of offsets).
+     */
+    private long[] top;
+
+    /**
+     * "OUT", by upper bound
+     */
+    private DoubleIntegerMinHeap out;
+
+    /**
+     * "WLB", by lower bound
+     */
+    private DoubleIntegerMinHeap wlb;
+
+    /**
+     * Constructor.
+     *
+     * @param core Parallel core
+     * @param relation Data relation
+     */
+    protected Instance(ParallelCore core, Relation<O> relation) {
+      this.core = core;
+      this.relation = relation;
+      this.df = (LPNormDistanceFunction) getDistanceFunction();
+      this.d = RelationUtil.dimensionality(relation);
+      this.capital_n = relation.size();
+      this.words = ((d * h - 1) >>> 6) + 1;
+      if((long) capital_n * words > Integer.MAX_VALUE - 8 || (long) capital_n * Math.max(k, 1) > Integer.MAX_VALUE - 8) {
+        throw new AbortException("Data set too large for packed storage, reduce the Hilbert precision.");
+      }
+    }
+
+    /**
+     * Run the algorithm.
+     *
+     * @return Result
+     */
+    protected OutlierResult run() {
+      final int size = capital_n;
+      ids = DBIDUtil.ensureArray(relation.getDBIDs());
+      vecs = new NumberVector[size];
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        vecs[it.getOffset()] = relation.get(it);
+      }
+      // Compute extend of dataset.
+      {
+        double[][] hbbs = RelationUtil.computeMinMax(relation);
+        min = hbbs[0];
+        double[] max = hbbs[1];
+        for(int i = 0; i < d; i++) {
+          diameter = Math.max(diameter, max[i] - min[i]);
+        }
+        // Enlarge bounding box to have equal lengths.
+        for(int i = 0; i < d; i++) {
+          min[i] -= (diameter - (max[i] - min[i])) * .5;
+        }
+        if(LOG.isVerbose()) {
+          LOG.verbose("Rescaling dataset by " + (1 / diameter) + " to fit the unit cube.");
+        }
+      }
+      keys = new long[size * words];
+      pf = new int[size];
+      buf = new int[size];
+      for(int i = 0; i < size; i++) {
+        pf[i] = i;
+      }
+      level = new int[size];
+      ubound = new double[size];
+      java.util.Arrays.fill(ubound, Double.POSITIVE_INFINITY);
+      lbound = new double[size];
+      sumnn = new double[size];
+      nnsize = new int[size];
+      nndist = new double[size * k];
+      nnoff = new int[size * k];
+      top = BitsUtil.zero(size);
+      out = new DoubleIntegerMinHeap(n);
+      wlb = new DoubleIntegerMinHeap(n);
+      capital_n_star = capital_n;
+
+      FiniteProgress progressHilOut = LOG.isVerbose() ? new FiniteProgress("HilOut iterations", d + 1, LOG) : null;
+      FiniteProgress progressTrueOut = LOG.isVerbose() ? new FiniteProgress("True outliers found", n, LOG) : null;
+      // Main part: 1. Phase max. d+1 loops
+      for(int j = 0; j <= d && n_star < n; j++) {
+        out.clear();
+        wlb.clear();
+        initialize(.5 * j / (d + 1));
+        scan((int) (k * capital_n / (double) capital_n_star));
+        trueOutliers();
+        if(progressTrueOut != null) {
+          progressTrueOut.setProcessed(n_star, LOG);
+        }
+        // Build the top set as out + wlb
+        BitsUtil.zeroI(top);
+        for(DoubleIntegerHeap.UnsortedIter iter = out.unsortedIter(); iter.valid(); iter.advance()) {
+          BitsUtil.setI(top, iter.getValue());
+        }
+        for(DoubleIntegerHeap.UnsortedIter iter = wlb.unsortedIter(); iter.valid(); iter.advance()) {
+          BitsUtil.setI(top, iter.getValue());
+        }
+        LOG.incrementProcessed(progressHilOut);
+      }
+      // 2. Phase: Additional Scan if less than n true outliers determined
+      if(n_star < n) {
+        out.clear();
+        wlb.clear();
+        scan(capital_n);
+      }
+      if(progressHilOut != null) {
+        progressHilOut.setProcessed(d, LOG);
+        progressHilOut.ensureCompleted(LOG);
+      }
+      if(progressTrueOut != null) {
+        progressTrueOut.setProcessed(n, LOG);
+        progressTrueOut.ensureCompleted(LOG);
+      }
+      WritableDoubleDataStore hilout_weight = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+      DoubleMinMax minmax = new DoubleMinMax();
+      DBIDArrayIter it = ids.iter();
+      if(tn == ScoreType.TopN) {
+        minmax.put(0.0);
+        for(; it.valid(); it.advance()) {
+          hilout_weight.putDouble(it, 0.0);
+        }
+        for(DoubleIntegerHeap.UnsortedIter iter = out.unsortedIter(); iter.valid(); iter.advance()) {
+          final int off = iter.getValue();
+          minmax.put(ubound[off]);
+          hilout_weight.putDouble(it.seek(off), ubound[off]);
+        }
+      }
+      else {
+        for(; it.valid(); it.advance()) {
+          final double s = ubound[it.getOffset()];
+          minmax.put(s);
+          hilout_weight.putDouble(it, s);
+        }
+      }
+      DoubleRelation scoreResult = new MaterializedDoubleRelation("HilOut weight", "hilout-weight", hilout_weight, ids);
+      OutlierScoreMeta scoreMeta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, Double.POSITIVE_INFINITY);
+      return new OutlierResult(scoreMeta, scoreResult);
+    }
+
+    /**
+     * Compute the Hilbert keys for the given shift, sort the objects, and
+     * count the current outlier candidates.
+     *
+     * @param shift the new shift factor
+     */
+    private void initialize(double shift) {
+      this.shift = shift;
+      parallelFor(0, capital_n, new LoopBody() {
+        @Override
+        public void process(int off) {
+          System.arraycopy(hilbertKey(vecs[off]), 0, keys, off * words, words);
+        }
+      });
+      sortByKey();
+      // Update levels
+      parallelFor(0, capital_n - 1, new LoopBody() {
+        @Override
+        public void process(int i) {
+          level[i] = numberSharedLevels(pf[i], pf[i + 1]);
+        }
+      });
+      // Count candidates
+      capital_n_star = 0;
+      for(int i = 0; i < capital_n; i++) {
+        if(ubound[i] >= omega_star) {
+          capital_n_star++;
+        }
+      }
+    }
+
+    /**
+     * Compute the Hilbert key of a single object.
+     *
+     * @param obj Object
+     * @return Hilbert key
+     */
+    private long[] hilbertKey(NumberVector obj) {
+      if(h >= 32) { // 32 to 63 bit
+        final long scale = Long.MAX_VALUE; // = 63 bits
+        long[] coord = new long[d];
+        for(int dim = 0; dim < d; dim++) {
+          coord[dim] = (long) (getDimForObject(obj, dim) * .5 * scale);
+        }
+        return HilbertSpatialSorter.coordinatesToHilbert(coord, h, 1);
+      }
+      if(h >= 16) { // 16-31 bit
+        final int scale = ~1 >>> 1;
+        int[] coord = new int[d];
+        for(int dim = 0; dim < d; dim++) {
+          coord[dim] = (int) (getDimForObject(obj, dim) * .5 * scale);
+        }
+        return HilbertSpatialSorter.coordinatesToHilbert(coord, h, 1);
+      }
+      if(h >= 8) { // 8-15 bit
+        final int scale = ~1 >>> 16;
+        short[] coord = new short[d];
+        for(int dim = 0; dim < d; dim++) {
+          coord[dim] = (short) (getDimForObject(obj, dim) * .5 * scale);
+        }
+        return HilbertSpatialSorter.coordinatesToHilbert(coord, h, 16);
+      }
+      // 1-7 bit
+      final int scale = ~1 >>> 8;
+      byte[] coord = new byte[d];
+      for(int dim = 0; dim < d; dim++) {
+        coord[dim] = (byte) (getDimForObject(obj, dim) * .5 * scale);
+      }
+      return HilbertSpatialSorter.coordinatesToHilbert(coord, h, 24);
+    }
+
+    /**
+     * Sort the offsets by Hilbert key: sort one chunk per thread, then merge.
+     */
+    private void sortByKey() {
+      final IntegerComparator comp = new IntegerComparator() {
+        @Override
+        public int compare(int x, int y) {
+          return compareKeys(x, y);
+        }
+      };
+      final int nchunks = Math.max(1, Math.min(core.getParallelism(), capital_n / CHUNK_SIZE));
+      final int[] bounds = new int[nchunks + 1];
+      for(int i = 0; i <= nchunks; i++) {
+        bounds[i] = (int) ((long) capital_n * i / nchunks);
+      }
+      parallelFor(0, nchunks, new LoopBody() {
+        @Override
+        public void process(int c) {
+          IntegerArrayQuickSort.sort(pf, bounds[c], bounds[c + 1], comp);
+        }
+      });
+      // Merge runs pairwise, alternating between the two buffers.
+      for(int width = 1; width < nchunks; width <<= 1) {
+        final int w = width;
+        final int[] src = pf, dst = buf;
+        parallelFor(0, (nchunks + (w << 1) - 1) / (w << 1), new LoopBody() {
+          @Override
+          public void process(int p) {
+            final int lo = p * (w << 1), mid = Math.min(lo + w, nchunks), hi = Math.min(lo + (w << 1), nchunks);
+            merge(src, dst, bounds[lo], bounds[mid], bounds[hi]);
+          }
+        });
+        buf = src;
+        pf = dst;
+      }
+    }
+
+    /**
+     * Merge two sorted runs.
+     *
+     * @param src Source array
+     * @param dst Destination array
+     * @param start First run start
+     * @param mid Second run start
+     * @param end Second run end
+     */
+    private void merge(int[] src, int[] dst, int start, int mid, int end) {
+      int a = start, b = mid, o = start;
+      while(a < mid && b < end) {
+        dst[o++] = compareKeys(src[b], src[a]) < 0 ? src[b++] : src[a++];
+      }
+      if(a < mid) {
+        System.arraycopy(src, a, dst, o, mid - a);
+      }
+      if(b < end) {
+        System.arraycopy(src, b, dst, o, end - b);
+      }
+    }
+
+    /**
+     * Compare two packed Hilbert keys.
+     *
+     * @param x First offset
+     * @param y Second offset
+     * @return Comparison result
+     */
+    private int compareKeys(int x, int y) {
+      final int bx = x * words, by = y * words;
+      for(int i = words - 1; i >= 0; i--) {
+        final int c = Long.compareUnsigned(keys[bx + i], keys[by + i]);
+        if(c != 0) {
+          return c;
+        }
+      }
+      return 0;
+    }
+
+    /**
+     * Number of levels shared by two packed keys.
+     *
+     * @param x First offset
+     * @param y Second offset
+     * @return Number of level shared
+     */
+    private int numberSharedLevels(int x, int y) {
+      final int bx = x * words, by = y * words;
+      for(int i = 0, j = words - 1; i < words; i++, j--) {
+        final long diff = keys[bx + j] ^ keys[by + j];
+        if(diff != 0) {
+          // expected unused = available - used
+          final int expected = (words * Long.SIZE) - (d * h);
+          return ((BitsUtil.numberOfLeadingZeros(diff) + i * Long.SIZE) - expected) / d;
+        }
+      }
+      return h - 1;
+    }
+
+    /**
+     * Scan the data in Hilbert order. Blocks of positions are refined in
+     * parallel, then the candidate heaps are updated in order.
+     *
+     * @param k0 Base neighborhood size
+     */
+    private void scan(int k0) {
+      final int mink0 = Math.min(2 * k0, capital_n - 1);
+      if(LOG.isDebuggingFine()) {
+        LOG.debugFine("Scanning with k0=" + k0 + " (" + mink0 + ")" + " N*=" + capital_n_star);
+      }
+      final int block = BLOCK_SIZE * core.getParallelism();
+      // Upper bounds before refinement, for the serial skipping rule.
+      final double[] prior = new double[block];
+      for(int start = 0; start < capital_n; start += block) {
+        final int end = Math.min(start + block, capital_n), bstart = start;
+        final double omega = omega_star;
+        parallelFor(start, end, new LoopBody() {
+          @Override
+          public void process(int i) {
+            final int off = pf[i];
+            prior[i - bstart] = ubound[off];
+            if(ubound[off] < omega || !(lbound[off] < ubound[off])) {
+              return;
+            }
+            final double w = fastUpperBound(i);
+            if(w < omega) {
+              ubound[off] = w;
+            }
+            else {
+              // capital_n-1 instead of capital_n: all, except self
+              innerScan(i, BitsUtil.get(top, off) ? capital_n - 1 : mink0, omega);
+            }
+          }
+        });
+        for(int i = start; i < end; i++) {
+          final int off = pf[i];
+          if(prior[i - start] < omega_star) {
+            continue;
+          }
+          if(ubound[off] > 0) {
+            updateHeap(out, ubound[off], off);
+          }
+          if(lbound[off] > 0) {
+            updateHeap(wlb, lbound[off], off);
+          }
+          if(wlb.size() >= n) {
+            omega_star = Math.max(omega_star, wlb.peekKey());
+          }
+        }
+      }
+    }
+
+    /**
+     * Insert an object into a bounded candidate heap.
+     *
+     * @param heap Heap
+     * @param bound Bound of the object
+     * @param off Object offset
+     */
+    private void updateHeap(DoubleIntegerMinHeap heap, double bound, int off) {
+      if(heap.size() < n) {
+        heap.add(bound, off);
+      }
+      else if(bound > heap.peekKey()) {
+        heap.replaceTopElement(bound, off);
+      }
+    }
+
+    /**
+     * Compute new upper and lower bounds of the object at position i, by
+     * exploring its neighborhood on the curve.
+     *
+     * @param i position in pf
+     * @param maxcount maximal size of the neighborhood
+     * @param omega Outlier threshold
+     */
+    private void innerScan(final int i, final int maxcount, final double omega) {
+      final int off = pf[i], base = off * k;
+      final NumberVector p = vecs[off];
+      int a = i, b = i;
+      int lev = h, levela = h, levelb = h;
+      // Explore up to "maxcount" neighbors in this pass
+      for(int count = 0; count < maxcount; count++) {
+        final int c; // Neighbor to explore
+        if(a == 0) { // At left end, explore right
+          levelb = Math.min(levelb, level[b]);
+          b++;
+          c = b;
+        }
+        else if(b >= capital_n - 1) { // At right end, explore left
+          a--;
+          levela = Math.min(levela, level[a]);
+          c = a;
+        }
+        else if(level[a - 1] >= level[b]) { // Prefer higher level
+          a--;
+          levela = Math.min(levela, level[a]);
+          c = a;
+        }
+        else {
+          levelb = Math.min(levelb, level[b]);
+          b++;
+          c = b;
+        }
+        final int coff = pf[c];
+        if(!containsNN(off, coff)) {
+          insertNN(off, coff, df.distance(p, vecs[coff]));
+          if(nnsize[off] == k) {
+            if(sumnn[off] < omega) {
+              break; // stop = true
+            }
+            final int mlevel = Math.max(levela, levelb);
+            if(mlevel < lev) {
+              lev = mlevel;
+              if(minDistLevel(off, lev) >= nndist[base]) {
+                break; // stop = true
+              }
+            }
+          }
+        }
+      }
+      final double br = boxRadius(i, a - 1, b + 1);
+      double newlb = 0.0, newub = 0.0;
+      for(int j = base, e = base + nnsize[off]; j < e; j++) {
+        final double dist = nndist[j];
+        newub += dist;
+        if(dist <= br) {
+          newlb += dist;
+        }
+      }
+      if(newlb > lbound[off]) {
+        lbound[off] = newlb;
+      }
+      if(newub < ubound[off]) {
+        ubound[off] = newub;
+      }
+    }
+
+    /**
+     * Test whether an object is among the known neighbors.
+     *
+     * @param off Object offset
+     * @param coff Neighbor offset
+     * @return {@code true} when contained
+     */
+    private boolean containsNN(int off, int coff) {
+      for(int j = off * k, e = j + nnsize[off]; j < e; j++) {
+        if(nnoff[j] == coff) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Insert a neighbor into the bounded max-heap of an object.
+     *
+     * @param off Object offset
+     * @param coff Neighbor offset
+     * @param dt Distance
+     */
+    private void insertNN(int off, int coff, double dt) {
+      final int base = off * k;
+      int size = nnsize[off];
+      if(size < k) {
+        // Sift up
+        int pos = size;
+        while(pos > 0) {
+          final int parent = (pos - 1) >>> 1;
+          if(nndist[base + parent] >= dt) {
+            break;
+          }
+          nndist[base + pos] = nndist[base + parent];
+          nnoff[base + pos] = nnoff[base + parent];
+          pos = parent;
+        }
+        nndist[base + pos] = dt;
+        nnoff[base + pos] = coff;
+        nnsize[off] = size + 1;
+        sumnn[off] += dt;
+        return;
+      }
+      if(!(dt < nndist[base])) {
+        return;
+      }
+      sumnn[off] -= nndist[base];
+      sumnn[off] += dt;
+      // Sift down
+      int pos = 0;
+      while(true) {
+        int child = (pos << 1) + 1;
+        if(child >= size) {
+          break;
+        }
+        if(child + 1 < size && nndist[base + child + 1] > nndist[base + child]) {
+          child++;
+        }
+        if(nndist[base + child] <= dt) {
+          break;
+        }
+        nndist[base + pos] = nndist[base + child];
+        nnoff[base + pos] = nnoff[base + child];
+        pos = child;
+      }
+      nndist[base + pos] = dt;
+      nnoff[base + pos] = coff;
+    }
+
+    /**
+     * Calculate an upper bound as k*maxDist(pf[i], smallest neighborhood)
+     *
+     * @param i position in pf
+     * @return Upper bound
+     */
+    private double fastUpperBound(int i) {
+      int pre = i, post = i;
+      while(post - pre < k) {
+        int pre_level = (pre - 1 >= 0) ? level[pre - 1] : -2;
+        int post_level = (post < capital_n - 1) ? level[post] : -2;
+        if(post_level >= pre_level) {
+          post++;
+        }
+        else {
+          pre--;
+        }
+      }
+      return k * maxDistLevel(pf[i], numberSharedLevels(pf[pre], pf[post]));
+    }
+
+    /**
+     * Minimal distance to the border of the r-region at the given level.
+     *
+     * @param off Object offset
+     * @param lev Level of the corresponding r-region
+     * @return Distance
+     */
+    private double minDistLevel(int off, int lev) {
+      final NumberVector obj = vecs[off];
+      // level 1 is supposed to have r=1 as in the original publication
+      final double r = 1.0 / (1 << (lev - 1));
+      double dist = Double.POSITIVE_INFINITY;
+      for(int dim = 0; dim < d; dim++) {
+        final double p_m_r = getDimForObject(obj, dim) % r;
+        dist = Math.min(dist, Math.min(p_m_r, r - p_m_r));
+      }
+      return dist * diameter;
+    }
+
+    /**
+     * Maximal distance to the border of the r-region at the given level.
+     *
+     * @param off Object offset
+     * @param lev Level of the corresponding r-region
+     * @return Distance
+     */
+    private double maxDistLevel(int off, int lev) {
+      final NumberVector obj = vecs[off];
+      // level 1 is supposed to have r=1 as in the original publication
+      final double r = 1.0 / (1 << (lev - 1));
+      double dist;
+      if(t == 1.0) {
+        dist = 0.0;
+        for(int dim = 0; dim < d; dim++) {
+          final double p_m_r = getDimForObject(obj, dim) % r;
+          dist += Math.max(p_m_r, r - p_m_r);
+        }
+      }
+      else if(t == 2.0) {
+        dist = 0.0;
+        for(int dim = 0; dim < d; dim++) {
+          final double p_m_r = getDimForObject(obj, dim) % r;
+          double a = Math.max(p_m_r, r - p_m_r);
+          dist += a * a;
+        }
+        dist = FastMath.sqrt(dist);
+      }
+      else if(!Double.isInfinite(t)) {
+        dist = 0.0;
+        for(int dim = 0; dim < d; dim++) {
+          final double p_m_r = getDimForObject(obj, dim) % r;
+          dist += FastMath.pow(Math.max(p_m_r, r - p_m_r), t);
+        }
+        dist = FastMath.pow(dist, 1.0 / t);
+      }
+      else {
+        dist = Double.NEGATIVE_INFINITY;
+        for(int dim = 0; dim < d; dim++) {
+          final double p_m_r = getDimForObject(obj, dim) % r;
+          dist = Math.max(dist, Math.max(p_m_r, r - p_m_r));
+        }
+      }
+      return dist * diameter;
+    }
+
+    /**
+     * Box radius of position i, given the first unexplored positions.
+     *
+     * @param i position of the object
+     * @param a first unexplored position to the left
+     * @param b first unexplored position to the right
+     * @return box radius
+     */
+    private double boxRadius(int i, int a, int b) {
+      final int oi = pf[i];
+      // level are inversely ordered to box sizes. min -> max
+      final int lev;
+      if(a < 0) {
+        if(b >= capital_n) {
+          return Double.POSITIVE_INFINITY;
+        }
+        lev = numberSharedLevels(oi, pf[b]) + 1;
+      }
+      else if(b >= capital_n) {
+        lev = numberSharedLevels(oi, pf[a]) + 1;
+      }
+      else {
+        lev = Math.max(numberSharedLevels(oi, pf[a]), numberSharedLevels(oi, pf[b])) + 1;
+      }
+      return minDistLevel(oi, lev);
+    }
+
+    /**
+     * Update the number of true outliers found.
+     */
+    private void trueOutliers() {
+      n_star = 0;
+      for(DoubleIntegerHeap.UnsortedIter iter = out.unsortedIter(); iter.valid(); iter.advance()) {
+        final int off = iter.getValue();
+        if(ubound[off] >= omega_star && (ubound[off] - lbound[off] < 1E-10)) {
+          n_star++;
+        }
+      }
+    }
+
+    /**
+     * Get the (projected) position of the object in dimension dim.
+     *
+     * @param obj Object
+     * @param dim Dimension
+     * @return Projected and shifted position
+     */
+    private double getDimForObject(NumberVector obj, int dim) {
+      return (obj.doubleValue(dim) - min[dim]) / diameter + shift;
+    }
+
+    /**
+     * Run a loop in parallel, in chunks.
+     *
+     * @param start Start index
+     * @param end End index (exclusive)
+     * @param body Loop body
+     */
+    private void parallelFor(final int start, final int end, final LoopBody body) {
+      final int chunk = Math.max(1, Math.min(CHUNK_SIZE, (end - start) / core.getParallelism()));
+      final AtomicInteger next = new AtomicInteger(start);
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        for(int i = Math.min(core.getParallelism(), (end - start + chunk - 1) / chunk); i > 0; i--) {
+          futures.add(core.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+              for(int s = next.getAndAdd(chunk); s < end; s = next.getAndAdd(chunk)) {
+                for(int i = s, e = Math.min(s + chunk, end); i < e; i++) {
+                  body.process(i);
+                }
+              }
+              return null;
+            }
+          }));
+        }
+        for(Future<?> f : futures) {
+          f.get();
+        }
+      }
+      catch(ExecutionException e) {
+        throw new RuntimeException("Processor execution failed.", e);
+      }
+      catch(InterruptedException e) {
+        throw new RuntimeException("Parallel execution interrupted.");
+      }
+    }
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Vector type
+   */
+  public static class Parameterizer<O extends NumberVector> extends HilOut.Parameterizer<O> {
+    @Override
+    protected ParallelHilOut<O> makeInstance() {
+      return new ParallelHilOut<>(distfunc, k, n, h, tn);
+    }
+  }
+}
@@ -20,9 +20,12 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.outlier.distance.parallel;
 
+import java.io.File;
+
 import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNOutlier;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.parallel.TopNOutlierProcessor;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
@@ -49,8 +52,11 @@ import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierScores;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 
 /**
@@ -90,6 +96,16 @@ public class ParallelKNNOutlier<O> extends AbstractDistanceBasedAlgorithm<O, Out
    */
   private int k;
 
+  /**
+   * Number of top outliers to keep, 0 for all scores.
+   */
+  private int topn;
+
+  /**
+   * File to write all scores to in top n mode, may be {@code null}.
+   */
+  private File scorefile;
+
   /**
    * Constructor.
    * 
@@ -97,8 +113,23 @@ public class ParallelKNNOutlier<O> extends AbstractDistanceBasedAlgorithm<O, Out
    * @param k K parameter
    */
   public ParallelKNNOutlier(DistanceFunction<? super O> distanceFunction, int k) {
+    this(distanceFunction, k, 0, null);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param distanceFunction Distance function
+   * @param k K parameter
+   * @param topn Number of top outliers to keep, 0 for all scores
+   * @param scorefile File to write all scores to in top n mode, may be
+   *        {@code null}
+   */
+  public ParallelKNNOutlier(DistanceFunction<? super O> distanceFunction, int k, int topn, File scorefile) {
     super(distanceFunction);
     this.k = k;
+    this.topn = topn;
+    this.scorefile = scorefile;
   }
 
   /**
@@ -113,7 +144,6 @@ public class ParallelKNNOutlier<O> extends AbstractDistanceBasedAlgorithm<O, Out
 
   public OutlierResult run(Database database, Relation<O> relation) {
     DBIDs ids = relation.getDBIDs();
-    WritableDoubleDataStore store = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
     DistanceQuery<O> distq = database.getDistanceQuery(relation, getDistanceFunction());
     KNNQuery<O> knnq = database.getKNNQuery(distq, k + 1);
 
@@ -126,6 +156,18 @@ public class ParallelKNNOutlier<O> extends AbstractDistanceBasedAlgorithm<O, Out
     SharedDouble kdistv = new SharedDouble();
     kdistm.connectKNNInput(knnv);
     kdistm.connectOutput(kdistv);
+    if(topn > 0) {
+      // Streaming mode: keep the top n and a histogram only.
+      TopNOutlierScores topscores = new TopNOutlierScores(topn, false, TopNOutlierScores.DEFAULT_BINS, scorefile);
+      TopNOutlierProcessor topm = new TopNOutlierProcessor(topscores);
+      topm.connectInput(kdistv);
+      ParallelExecutor.run(ids, knnm, kdistm, topm);
+      DoubleMinMax minmax = topscores.getMinMax();
+      OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, Double.POSITIVE_INFINITY, 0.0);
+      return topscores.makeResult(meta, "kNN Outlier Score", "knn-outlier");
+    }
+
+    WritableDoubleDataStore store = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
     // Store in outlier scores
     WriteDoubleDataStoreProcessor storem = new WriteDoubleDataStoreProcessor(store);
     storem.connectInput(kdistv);
@@ -161,6 +203,16 @@ public class ParallelKNNOutlier<O> extends AbstractDistanceBasedAlgorithm<O, Out
      */
     int k;
 
+    /**
+     * Number of top outliers to keep.
+     */
+    int topn;
+
+    /**
+     * Score output file.
+     */
+    File scorefile;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -169,11 +221,21 @@ public class ParallelKNNOutlier<O> extends AbstractDistanceBasedAlgorithm<O, Out
       if(config.grab(kP)) {
         k = kP.getValue();
       }
+      IntParameter topnP = new IntParameter(TopNOutlierScores.TOPN_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .setOptional(true);
+      if(config.grab(topnP)) {
+        topn = topnP.intValue();
+        FileParameter scorefileP = new FileParameter(TopNOutlierScores.SCOREFILE_ID, FileParameter.FileType.OUTPUT_FILE, true);
+        if(config.grab(scorefileP)) {
+          scorefile = scorefileP.getValue();
+        }
+      }
     }
 
     @Override
     protected ParallelKNNOutlier<O> makeInstance() {
-      return new ParallelKNNOutlier<>(distanceFunction, k);
+      return new ParallelKNNOutlier<>(distanceFunction, k, topn, scorefile);
     }
   }
 }
\ No newline at end of file
@@ -20,9 +20,12 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.outlier.distance.parallel;
 
+import java.io.File;
+
 import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNWeightOutlier;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.parallel.TopNOutlierProcessor;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
@@ -48,8 +51,11 @@ import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierScores;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 
 /**
@@ -89,6 +95,16 @@ public class ParallelKNNWeightOutlier<O> extends AbstractDistanceBasedAlgorithm<
    */
   private int k;
 
+  /**
+   * Number of top outliers to keep, 0 for all scores.
+   */
+  private int topn;
+
+  /**
+   * File to write all scores to in top n mode, may be {@code null}.
+   */
+  private File scorefile;
+
   /**
    * Constructor.
    * 
@@ -96,8 +112,23 @@ public class ParallelKNNWeightOutlier<O> extends AbstractDistanceBasedAlgorithm<
    * @param k K parameter
    */
   public ParallelKNNWeightOutlier(DistanceFunction<? super O> distanceFunction, int k) {
+    this(distanceFunction, k, 0, null);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param distanceFunction Distance function
+   * @param k K parameter
+   * @param topn Number of top outliers to keep, 0 for all scores
+   * @param scorefile File to write all scores to in top n mode, may be
+   *        {@code null}
+   */
+  public ParallelKNNWeightOutlier(DistanceFunction<? super O> distanceFunction, int k, int topn, File scorefile) {
     super(distanceFunction);
     this.k = k;
+    this.topn = topn;
+    this.scorefile = scorefile;
   }
 
   /**
@@ -119,7 +150,6 @@ public class ParallelKNNWeightOutlier<O> extends AbstractDistanceBasedAlgorithm<
    */
   public OutlierResult run(Database database, Relation<O> relation) {
     DBIDs ids = relation.getDBIDs();
-    WritableDoubleDataStore store = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
     DistanceQuery<O> distq = database.getDistanceQuery(relation, getDistanceFunction());
     KNNQuery<O> knnq = database.getKNNQuery(distq, k + 1);
 
@@ -132,6 +162,18 @@ public class ParallelKNNWeightOutlier<O> extends AbstractDistanceBasedAlgorithm<
     SharedDouble kdistv = new SharedDouble();
     kdistm.connectKNNInput(knnv);
     kdistm.connectOutput(kdistv);
+    if(topn > 0) {
+      // Streaming mode: keep the top n and a histogram only.
+      TopNOutlierScores topscores = new TopNOutlierScores(topn, false, TopNOutlierScores.DEFAULT_BINS, scorefile);
+      TopNOutlierProcessor topm = new TopNOutlierProcessor(topscores);
+      topm.connectInput(kdistv);
+      ParallelExecutor.run(ids, knnm, kdistm, topm);
+      DoubleMinMax minmax = topscores.getMinMax();
+      OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., Double.POSITIVE_INFINITY, 0.);
+      return topscores.makeResult(meta, "kNN weight Outlier Score", "knnw-outlier");
+    }
+
+    WritableDoubleDataStore store = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
     // Store in output result
     WriteDoubleDataStoreProcessor storem = new WriteDoubleDataStoreProcessor(store);
     storem.connectInput(kdistv);
@@ -167,6 +209,16 @@ public class ParallelKNNWeightOutlier<O> extends AbstractDistanceBasedAlgorithm<
      */
     int k;
 
+    /**
+     * Number of top outliers to keep.
+     */
+    int topn;
+
+    /**
+     * Score output file.
+     */
+    File scorefile;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -175,11 +227,21 @@ public class ParallelKNNWeightOutlier<O> extends AbstractDistanceBasedAlgorithm<
       if(config.grab(kP)) {
         k = kP.getValue();
       }
+      IntParameter topnP = new IntParameter(TopNOutlierScores.TOPN_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .setOptional(true);
+      if(config.grab(topnP)) {
+        topn = topnP.intValue();
+        FileParameter scorefileP = new FileParameter(TopNOutlierScores.SCOREFILE_ID, FileParameter.FileType.OUTPUT_FILE, true);
+        if(config.grab(scorefileP)) {
+          scorefile = scorefileP.getValue();
+        }
+      }
     }
 
     @Override
     protected ParallelKNNWeightOutlier<O> makeInstance() {
-      return new ParallelKNNWeightOutlier<>(distanceFunction, k);
+      return new ParallelKNNWeightOutlier<>(distanceFunction, k, topn, scorefile);
     }
   }
 }
\ No newline at end of file
@@ -0,0 +1,835 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.forest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.parallel.TopNOutlierProcessor;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierScores;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+import net.jafama.FastMath;
+
+/**
+ * Isolation forest outlier detection, and the extended isolation forest.
+ *
+ * Each tree is trained on a small random subsample, splitting the data at
+ * random until each object is isolated (or a height limit is reached).
+ * Outliers are isolated early, and thus have a short average path length.
+ *
+ * The trees are built in parallel, and stored in the compact array encoding of
+ * {@link IsolationForestModel}. If an output file is given, the forest is
+ * written to disk, so that new data can be scored in a streaming fashion with
+ * {@link de.lmu.ifi.dbs.elki.application.IsolationForestScoringApplication}.
+ * For large data sets, only the top n outliers and a histogram of the scores
+ * can be kept, see {@link TopNOutlierScores}.
+ *
+ * With an extension level of 0, this is the original isolation forest with
+ * axis-parallel splits. With larger extension levels, random hyperplanes with
+ * up to (extension level + 1) non-zero coordinates are used, as proposed for
+ * the extended isolation forest, which avoids the axis-parallel artifacts in
+ * the score.
+ *
+ * Reference:
+ * <p>
+ * F. T. Liu, K. M. Ting, Z.-H. Zhou<br />
+ * Isolation Forest<br />
+ * Proc. 8th IEEE Int. Conf. on Data Mining (ICDM 2008)
+ * </p>
+ *
+ * The extended isolation forest is from:
+ * <p>
+ * S. Hariri, M. Carrasco Kind, R. J. Brunner<br />
+ * Extended Isolation Forest<br />
+ * IEEE Transactions on Knowledge and Data Engineering 33(4)
+ * </p>
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.has IsolationForestModel
+ *
+ * @param <V> Vector type
+ */
+@Title("Isolation Forest")
+@Reference(authors = "F. T. Liu, K. M. Ting, Z.-H. Zhou", //
+    title = "Isolation Forest", //
+    booktitle = "Proc. 8th IEEE Int. Conf. on Data Mining (ICDM 2008)", //
+    url = "http://dx.doi.org/10.1109/ICDM.2008.17")
+public class IsolationForest<V extends NumberVector> extends AbstractAlgorithm<OutlierResult> implements OutlierAlgorithm {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(IsolationForest.class);
+
+  /**
+   * Number of trees.
+   */
+  protected int numtrees;
+
+  /**
+   * Subsample size.
+   */
+  protected int subsample;
+
+  /**
+   * Extension level, 0 for axis-parallel splits.
+   */
+  protected int extension;
+
+  /**
+   * Random generator.
+   */
+  protected RandomFactory rnd;
+
+  /**
+   * File to store the model in, may be {@code null}.
+   */
+  protected File modelfile;
+
+  /**
+   * Number of top outliers to keep, 0 for all scores.
+   */
+  protected int topn;
+
+  /**
+   * File to write all scores to in top n mode, may be {@code null}.
+   */
+  protected File scorefile;
+
+  /**
+   * Constructor.
+   *
+   * @param numtrees Number of trees
+   * @param subsample Subsample size
+   * @param extension Extension level, 0 for axis-parallel splits
+   * @param rnd Random generator
+   * @param modelfile File to store the model in, may be {@code null}
+   */
+  public IsolationForest(int numtrees, int subsample, int extension, RandomFactory rnd, File modelfile) {
+    this(numtrees, subsample, extension, rnd, modelfile, 0, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param numtrees Number of trees
+   * @param subsample Subsample size
+   * @param extension Extension level, 0 for axis-parallel splits
+   * @param rnd Random generator
+   * @param modelfile File to store the model in, may be {@code null}
+   * @param topn Number of top outliers to keep, 0 for all scores
+   * @param scorefile File to write all scores to in top n mode, may be
+   *        {@code null}
+   */
+  public IsolationForest(int numtrees, int subsample, int extension, RandomFactory rnd, File modelfile, int topn, File scorefile) {
+    super();
+    this.numtrees = numtrees;
+    this.subsample = subsample;
+    this.extension = extension;
+    this.rnd = rnd;
+    this.modelfile = modelfile;
+    this.topn = topn;
+    this.scorefile = scorefile;
+  }
+
+  /**
+   * Run the isolation forest.
+   *
+   * @param relation Data relation
+   * @return Outlier result
+   */
+  public OutlierResult run(Relation<V> relation) {
+    IsolationForestModel model = train(relation);
+    if(modelfile != null) {
+      try {
+        model.save(modelfile);
+      }
+      catch(IOException e) {
+        throw new AbortException("Could not write the model file: " + modelfile, e);
+      }
+    }
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    ScoreProcessor<V> scorem = new ScoreProcessor<>(relation, model);
+    SharedDouble scorev = new SharedDouble();
+    scorem.connectOutput(scorev);
+    if(topn > 0) {
+      // Streaming mode: keep the top n and a histogram only.
+      TopNOutlierScores topscores = new TopNOutlierScores(topn, false, TopNOutlierScores.DEFAULT_BINS, scorefile);
+      TopNOutlierProcessor topm = new TopNOutlierProcessor(topscores);
+      topm.connectInput(scorev);
+      ParallelExecutor.run(ids, scorem, topm);
+      DoubleMinMax minmax = topscores.getMinMax();
+      OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., 1., .5);
+      return topscores.makeResult(meta, "Isolation Forest Score", "iforest-outlier");
+    }
+
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    WriteDoubleDataStoreProcessor storem = new WriteDoubleDataStoreProcessor(scores);
+    storem.connectInput(scorev);
+    DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+    mmm.connectInput(scorev);
+    ParallelExecutor.run(ids, scorem, storem, mmm);
+
+    DoubleMinMax minmax = mmm.getMinMax();
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Isolation Forest Score", "iforest-outlier", scores, ids);
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., 1., .5);
+    return new OutlierResult(meta, scoreres);
+  }
+
+  /**
+   * Train the forest, building the trees in parallel.
+   *
+   * @param relation Data relation
+   * @return Trained model
+   */
+  public IsolationForestModel train(Relation<V> relation) {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int dim = RelationUtil.dimensionality(relation);
+    final int psi = Math.min(subsample, ids.size());
+    // Draw the seeds in order, so the result does not depend on scheduling:
+    final Random random = rnd.getSingleThreadedRandom();
+    final long[] seeds = new long[numtrees];
+    for(int t = 0; t < numtrees; t++) {
+      seeds[t] = random.nextLong();
+    }
+    final int ext = extension > 0 ? Math.min(extension, dim - 1) : 0;
+    final int[][] split = new int[numtrees][], right = new int[numtrees][];
+    final double[][] value = new double[numtrees][], normal = extension > 0 ? new double[numtrees][] : null;
+
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Building isolation trees", numtrees, LOG) : null;
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      AtomicInteger next = new AtomicInteger();
+      List<Future<?>> futures = new ArrayList<>();
+      for(int i = Math.min(core.getParallelism(), numtrees); i > 0; i--) {
+        futures.add(core.submit(new BuildTask(relation, ids, dim, psi, ext, seeds, next, split, right, value, normal, prog)));
+      }
+      for(Future<?> f : futures) {
+        f.get();
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+    LOG.ensureCompleted(prog);
+    return new IsolationForestModel(dim, psi, split, right, value, normal);
+  }
+
+  /**
+   * Task to build trees; trees are claimed using a shared counter.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class BuildTask implements Callable<Void> {
+    /**
+     * Data relation.
+     */
+    private final Relation<V> relation;
+
+    /**
+     * Object ids.
+     */
+    private final ArrayDBIDs ids;
+
+    /**
+     * Dimensionality, subsample size, extension level.
+     */
+    private final int dim, psi, ext;
+
+    /**
+     * Random seeds of the trees.
+     */
+    private final long[] seeds;
+
+    /**
+     * Next tree to build.
+     */
+    private final AtomicInteger next;
+
+    /**
+     * Output arrays.
+     */
+    private final int[][] split, right;
+
+    /**
+     * Output arrays.
+     */
+    private final double[][] value, normal;
+
+    /**
+     * Progress.
+     */
+    private final FiniteProgress prog;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param ids Object ids
+     * @param dim Dimensionality
+     * @param psi Subsample size
+     * @param ext Extension level
+     * @param seeds Random seeds
+     * @param next Tree counter
+     * @param split Output split dimensions
+     * @param right Output right children
+     * @param value Output values
+     * @param normal Output hyperplane normals
+     * @param prog Progress
+     */
+    BuildTask(Relation<V> relation, ArrayDBIDs ids, int dim, int psi, int ext, long[] seeds, AtomicInteger next, int[][] split, int[][] right, double[][] value, double[][] normal, FiniteProgress prog) {
+      this.relation = relation;
+      this.ids = ids;
+      this.dim = dim;
+      this.psi = psi;
+      this.ext = ext;
+      this.seeds = seeds;
+      this.next = next;
+      this.split = split;
+      this.right = right;
+      this.value = value;
+      this.normal = normal;
+      this.prog = prog;
+    }
+
+    @Override
+    public Void call() {
+      final int n = ids.size();
+      final double[][] data = new double[psi][];
+      final int[] sample = new int[psi];
+      final TreeBuilder builder = new TreeBuilder(dim, ext, normal != null);
+      DBIDArrayIter iter = ids.iter();
+      for(int t = next.getAndIncrement(); t < seeds.length; t = next.getAndIncrement()) {
+        final Random random = new Random(seeds[t]);
+        sampleWithoutReplacement(random, n, sample);
+        for(int i = 0; i < psi; i++) {
+          data[i] = relation.get(iter.seek(sample[i])).toArray();
+        }
+        builder.build(data, random);
+        split[t] = Arrays.copyOf(builder.split, builder.size);
+        right[t] = Arrays.copyOf(builder.right, builder.size);
+        value[t] = Arrays.copyOf(builder.value, builder.size);
+        if(normal != null) {
+          normal[t] = Arrays.copyOf(builder.normal, builder.size * dim);
+        }
+        if(prog != null) {
+          prog.incrementProcessed(LOG);
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Draw a sample without replacement, using Floyd's algorithm.
+   *
+   * @param random Random generator
+   * @param n Population size
+   * @param sample Output array, its length is the sample size
+   */
+  protected static void sampleWithoutReplacement(Random random, int n, int[] sample) {
+    final int k = sample.length;
+    if(k >= n) {
+      for(int i = 0; i < k; i++) {
+        sample[i] = i;
+      }
+      return;
+    }
+    // Floyd's algorithm, using a bitmap for membership tests.
+    final long[] seen = new long[(n + 63) >>> 6];
+    int c = 0;
+    for(int j = n - k; j < n; j++) {
+      int t = random.nextInt(j + 1);
+      if((seen[t >>> 6] & (1L << t)) != 0L) {
+        t = j;
+      }
+      seen[t >>> 6] |= 1L << t;
+      sample[c++] = t;
+    }
+  }
+
+  /**
+   * Build a single isolation tree in the compact preorder encoding. The buffers
+   * are reused across trees. With an extension level above 0, the splits are
+   * the random hyperplanes of the extended isolation forest.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  @Reference(authors = "S. Hariri, M. Carrasco Kind, R. J. Brunner", //
+      title = "Extended Isolation Forest", //
+      booktitle = "IEEE Transactions on Knowledge and Data Engineering 33(4)", //
+      url = "http://dx.doi.org/10.1109/TKDE.2019.2947676")
+  private static class TreeBuilder {
+    /**
+     * Dimensionality and extension level.
+     */
+    final int dim, ext;
+
+    /**
+     * Node buffers.
+     */
+    int[] split = new int[64], right = new int[64];
+
+    /**
+     * Node buffers.
+     */
+    double[] value = new double[64], normal;
+
+    /**
+     * Number of nodes.
+     */
+    int size;
+
+    /**
+     * Scratch arrays for bounding boxes and candidate dimensions.
+     */
+    final double[] min, max, dir;
+
+    /**
+     * Scratch array for candidate dimensions.
+     */
+    final int[] cand;
+
+    /**
+     * Current data and random generator.
+     */
+    double[][] data;
+
+    /**
+     * Random generator.
+     */
+    Random random;
+
+    /**
+     * Height limit.
+     */
+    int limit;
+
+    /**
+     * Constructor.
+     *
+     * @param dim Dimensionality
+     * @param ext Extension level
+     * @param extended Use hyperplane splits
+     */
+    TreeBuilder(int dim, int ext, boolean extended) {
+      this.dim = dim;
+      this.ext = ext;
+      this.normal = extended ? new double[64 * dim] : null;
+      this.min = new double[dim];
+      this.max = new double[dim];
+      this.dir = new double[dim];
+      this.cand = new int[dim];
+    }
+
+    /**
+     * Build a tree.
+     *
+     * @param data Sample data; will be reordered
+     * @param random Random generator
+     */
+    void build(double[][] data, Random random) {
+      this.data = data;
+      this.random = random;
+      this.limit = (int) Math.ceil(FastMath.log(Math.max(data.length, 2)) / FastMath.log(2.));
+      this.size = 0;
+      build(0, data.length, 0);
+      this.data = null;
+    }
+
+    /**
+     * Recursive build.
+     *
+     * @param start First object
+     * @param end End of interval (exclusive)
+     * @param depth Current depth
+     */
+    private void build(int start, int end, int depth) {
+      final int node = allocate();
+      if(depth >= limit || end - start <= 1) {
+        makeLeaf(node, end - start, depth);
+        return;
+      }
+      // Bounding box and non-constant dimensions
+      System.arraycopy(data[start], 0, min, 0, dim);
+      System.arraycopy(data[start], 0, max, 0, dim);
+      for(int i = start + 1; i < end; i++) {
+        final double[] v = data[i];
+        for(int d = 0; d < dim; d++) {
+          final double x = v[d];
+          min[d] = x < min[d] ? x : min[d];
+          max[d] = x > max[d] ? x : max[d];
+        }
+      }
+      int ncand = 0;
+      for(int d = 0; d < dim; d++) {
+        if(max[d] > min[d]) {
+          cand[ncand++] = d;
+        }
+      }
+      if(ncand == 0) {
+        makeLeaf(node, end - start, depth);
+        return;
+      }
+      int mid;
+      if(normal == null) {
+        final int d = cand[random.nextInt(ncand)];
+        final double p = min[d] + random.nextDouble() * (max[d] - min[d]);
+        split[node] = d;
+        value[node] = p;
+        mid = partition(start, end, d, p);
+      }
+      else {
+        // Random direction, using at most ext+1 non-constant dimensions:
+        Arrays.fill(dir, 0.);
+        final int nz = Math.min(ext + 1, ncand);
+        for(int i = 0; i < nz; i++) {
+          final int j = i + random.nextInt(ncand - i);
+          final int d = cand[j];
+          cand[j] = cand[i];
+          cand[i] = d;
+          dir[d] = random.nextGaussian();
+        }
+        // Random intercept in the bounding box
+        double p = 0.;
+        for(int i = 0; i < nz; i++) {
+          final int d = cand[i];
+          p += dir[d] * (min[d] + random.nextDouble() * (max[d] - min[d]));
+        }
+        split[node] = IsolationForestModel.HYPERPLANE;
+        value[node] = p;
+        System.arraycopy(dir, 0, normal, node * dim, dim);
+        mid = partition(start, end, cand, nz, p);
+      }
+      build(start, mid, depth + 1);
+      right[node] = size;
+      build(mid, end, depth + 1);
+    }
+
+    /**
+     * Make a leaf node.
+     *
+     * @param node Node number
+     * @param n Number of objects
+     * @param depth Depth
+     */
+    private void makeLeaf(int node, int n, int depth) {
+      split[node] = IsolationForestModel.LEAF;
+      right[node] = 0;
+      value[node] = depth + IsolationForestModel.averagePathLength(n);
+    }
+
+    /**
+     * Partition the data by an axis-parallel split.
+     *
+     * @param start Start
+     * @param end End (exclusive)
+     * @param d Dimension
+     * @param p Split value
+     * @return Split position
+     */
+    private int partition(int start, int end, int d, double p) {
+      int l = start, r = end - 1;
+      while(l <= r) {
+        if(data[l][d] < p) {
+          ++l;
+          continue;
+        }
+        final double[] tmp = data[l];
+        data[l] = data[r];
+        data[r--] = tmp;
+      }
+      return l;
+    }
+
+    /**
+     * Partition the data by a hyperplane split.
+     *
+     * @param start Start
+     * @param end End (exclusive)
+     * @param dims Non-zero dimensions
+     * @param nz Number of non-zero dimensions
+     * @param p Offset
+     * @return Split position
+     */
+    private int partition(int start, int end, int[] dims, int nz, double p) {
+      int l = start, r = end - 1;
+      while(l <= r) {
+        final double[] v = data[l];
+        double dot = 0.;
+        for(int i = 0; i < nz; i++) {
+          dot += dir[dims[i]] * v[dims[i]];
+        }
+        if(dot <= p) {
+          ++l;
+          continue;
+        }
+        data[l] = data[r];
+        data[r--] = v;
+      }
+      return l;
+    }
+
+    /**
+     * Allocate a new node.
+     *
+     * @return Node number
+     */
+    private int allocate() {
+      if(size == split.length) {
+        final int newsize = split.length << 1;
+        split = Arrays.copyOf(split, newsize);
+        right = Arrays.copyOf(right, newsize);
+        value = Arrays.copyOf(value, newsize);
+        if(normal != null) {
+          normal = Arrays.copyOf(normal, newsize * dim);
+        }
+      }
+      return size++;
+    }
+  }
+
+  /**
+   * Processor to compute the scores.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <V> Vector type
+   */
+  private static class ScoreProcessor<V extends NumberVector> extends AbstractDoubleProcessor {
+    /**
+     * Data relation.
+     */
+    private final Relation<V> relation;
+
+    /**
+     * Trained model.
+     */
+    private final IsolationForestModel model;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param model Trained model
+     */
+    ScoreProcessor(Relation<V> relation, IsolationForestModel model) {
+      this.relation = relation;
+      this.model = model;
+    }
+
+    @Override
+    public AbstractDoubleProcessor.Instance instantiate(Executor executor) {
+      return new AbstractDoubleProcessor.Instance(executor.getInstance(output)) {
+        @Override
+        public void map(DBIDRef id) {
+          output.set(model.score(relation.get(id)));
+        }
+      };
+    }
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <V> Vector type
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractParameterizer {
+    /**
+     * Number of trees.
+     */
+    public static final OptionID NUM_TREES_ID = new OptionID("iforest.numtrees", "Number of trees to build.");
+
+    /**
+     * Subsample size.
+     */
+    public static final OptionID SUBSAMPLE_ID = new OptionID("iforest.subsample", "Subsample size used to build each tree.");
+
+    /**
+     * Extension level.
+     */
+    public static final OptionID EXTENSION_ID = new OptionID("iforest.extension", "Extension level: 0 for the classic axis-parallel isolation forest, larger values use random hyperplanes with up to extension+1 non-zero coordinates (extended isolation forest).");
+
+    /**
+     * Random seed.
+     */
+    public static final OptionID SEED_ID = new OptionID("iforest.seed", "Random generator seed.");
+
+    /**
+     * Model output file.
+     */
+    public static final OptionID MODEL_ID = new OptionID("iforest.model", "File to store the trained forest in, for scoring new data.");
+
+    /**
+     * Number of trees.
+     */
+    protected int numtrees;
+
+    /**
+     * Subsample size.
+     */
+    protected int subsample;
+
+    /**
+     * Extension level.
+     */
+    protected int extension;
+
+    /**
+     * Random generator.
+     */
+    protected RandomFactory rnd;
+
+    /**
+     * Model output file.
+     */
+    protected File modelfile;
+
+    /**
+     * Number of top outliers to keep.
+     */
+    protected int topn;
+
+    /**
+     * Score output file.
+     */
+    protected File scorefile;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter numtreesP = new IntParameter(NUM_TREES_ID, 100) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(numtreesP)) {
+        numtrees = numtreesP.intValue();
+      }
+      IntParameter subsampleP = new IntParameter(SUBSAMPLE_ID, 256) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT);
+      if(config.grab(subsampleP)) {
+        subsample = subsampleP.intValue();
+      }
+      IntParameter extensionP = new IntParameter(EXTENSION_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(extensionP)) {
+        extension = extensionP.intValue();
+      }
+      RandomParameter rndP = new RandomParameter(SEED_ID);
+      if(config.grab(rndP)) {
+        rnd = rndP.getValue();
+      }
+      FileParameter modelP = new FileParameter(MODEL_ID, FileParameter.FileType.OUTPUT_FILE, true);
+      if(config.grab(modelP)) {
+        modelfile = modelP.getValue();
+      }
+      IntParameter topnP = new IntParameter(TopNOutlierScores.TOPN_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .setOptional(true);
+      if(config.grab(topnP)) {
+        topn = topnP.intValue();
+        FileParameter scorefileP = new FileParameter(TopNOutlierScores.SCOREFILE_ID, FileParameter.FileType.OUTPUT_FILE, true);
+        if(config.grab(scorefileP)) {
+          scorefile = scorefileP.getValue();
+        }
+      }
+    }
+
+    @Override
+    protected IsolationForest<V> makeInstance() {
+      return new IsolationForest<>(numtrees, subsample, extension, rnd, modelfile, topn, scorefile);
+    }
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.forest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+
+import net.jafama.FastMath;
+
+/**
+ * A trained isolation forest, stored as compact arrays.
+ *
+ * Each tree is encoded in preorder: the left child of node {@code i} is node
+ * {@code i+1}, the right child is stored explicitly. Inner nodes store the
+ * split dimension and split value (or, for extended isolation forests, the
+ * hyperplane normal and offset), leaves store the path length including the
+ * correction for the number of objects remaining in the leaf. Scoring an
+ * object thus needs no object allocations.
+ *
+ * The model can be written to and read from a file, to score new data later.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class IsolationForestModel {
+  /**
+   * Magic number of the file format.
+   */
+  private static final int MAGIC = 0x49466f72; // "IFor"
+
+  /**
+   * File format version.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * Marker for leaf nodes.
+   */
+  static final int LEAF = -1;
+
+  /**
+   * Marker for hyperplane splits.
+   */
+  static final int HYPERPLANE = -2;
+
+  /**
+   * Euler-Mascheroni constant.
+   */
+  private static final double EULER_MASCHERONI = 0.5772156649015329;
+
+  /**
+   * Data dimensionality.
+   */
+  final int dim;
+
+  /**
+   * Subsample size used for training.
+   */
+  final int subsample;
+
+  /**
+   * Split dimension of each node, per tree; or {@link #LEAF} or
+   * {@link #HYPERPLANE}.
+   */
+  final int[][] split;
+
+  /**
+   * Right child of each node, per tree.
+   */
+  final int[][] right;
+
+  /**
+   * Split value of inner nodes, path length of leaves, per tree.
+   */
+  final double[][] value;
+
+  /**
+   * Hyperplane normals (dim values per node), per tree; {@code null} for
+   * axis-parallel trees.
+   */
+  final double[][] normal;
+
+  /**
+   * Normalization: average path length of unsuccessful searches.
+   */
+  private final double norm;
+
+  /**
+   * Constructor.
+   *
+   * @param dim Dimensionality
+   * @param subsample Subsample size used for training
+   * @param split Split dimensions
+   * @param right Right children
+   * @param value Split values and leaf path lengths
+   * @param normal Hyperplane normals, may be {@code null}
+   */
+  IsolationForestModel(int dim, int subsample, int[][] split, int[][] right, double[][] value, double[][] normal) {
+    this.dim = dim;
+    this.subsample = subsample;
+    this.split = split;
+    this.right = right;
+    this.value = value;
+    this.normal = normal;
+    // A subsample of one object would normalize by 0; such trees are a single
+    // leaf of depth 0, and all objects get the score 2^0 = 1.
+    this.norm = averagePathLength(Math.max(subsample, 2));
+  }
+
+  /**
+   * Average path length of an unsuccessful search in a binary search tree of
+   * n objects.
+   *
+   * @param n Number of objects
+   * @return Average path length
+   */
+  public static double averagePathLength(int n) {
+    return n > 2 ? 2. * (FastMath.log(n - 1.) + EULER_MASCHERONI) - 2. * (n - 1.) / n : n == 2 ? 1. : 0.;
+  }
+
+  /**
+   * Get the number of trees.
+   *
+   * @return Number of trees
+   */
+  public int numTrees() {
+    return split.length;
+  }
+
+  /**
+   * Get the dimensionality of the training data.
+   *
+   * @return Dimensionality
+   */
+  public int getDimensionality() {
+    return dim;
+  }
+
+  /**
+   * Compute the path length of an object in one tree.
+   *
+   * @param t Tree number
+   * @param vec Object
+   * @return Path length
+   */
+  double pathLength(int t, NumberVector vec) {
+    final int[] sp = split[t], ri = right[t];
+    final double[] va = value[t], no = normal != null ? normal[t] : null;
+    int i = 0;
+    while(true) {
+      final int s = sp[i];
+      if(s == LEAF) {
+        return va[i];
+      }
+      if(s == HYPERPLANE) {
+        double dot = 0.;
+        for(int d = 0, off = i * dim; d < dim; d++) {
+          final double w = no[off + d];
+          dot += w != 0. ? w * vec.doubleValue(d) : 0.;
+        }
+        i = dot <= va[i] ? i + 1 : ri[i];
+      }
+      else {
+        i = vec.doubleValue(s) < va[i] ? i + 1 : ri[i];
+      }
+    }
+  }
+
+  /**
+   * Compute the outlier score of an object, in (0;1]. Scores close to 1
+   * indicate outliers, scores well below 0.5 indicate inliers.
+   *
+   * @param vec Object
+   * @return Outlier score
+   */
+  public double score(NumberVector vec) {
+    if(vec.getDimensionality() != dim) {
+      throw new AbortException("Dimensionality " + vec.getDimensionality() + " does not match the model dimensionality " + dim);
+    }
+    double sum = 0.;
+    for(int t = 0; t < split.length; t++) {
+      sum += pathLength(t, vec);
+    }
+    return FastMath.pow(2., -sum / (split.length * norm));
+  }
+
+  /**
+   * Write the model to a file.
+   *
+   * @param file Output file
+   * @throws IOException on errors
+   */
+  public void save(File file) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(dim);
+      out.writeInt(subsample);
+      out.writeInt(split.length);
+      out.writeBoolean(normal != null);
+      for(int t = 0; t < split.length; t++) {
+        final int[] sp = split[t], ri = right[t];
+        final double[] va = value[t];
+        out.writeInt(sp.length);
+        for(int i = 0; i < sp.length; i++) {
+          out.writeInt(sp[i]);
+          out.writeInt(ri[i]);
+          out.writeDouble(va[i]);
+        }
+        if(normal != null) {
+          for(double w : normal[t]) {
+            out.writeDouble(w);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Read a model from a file.
+   *
+   * @param file Input file
+   * @return Model
+   * @throws IOException on errors
+   */
+  public static IsolationForestModel load(File file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if(in.readInt() != MAGIC) {
+        throw new IOException("Not an isolation forest model file: " + file);
+      }
+      final int version = in.readInt();
+      if(version != VERSION) {
+        throw new IOException("Unsupported model version: " + version);
+      }
+      final int dim = in.readInt(), subsample = in.readInt(), numtrees = in.readInt();
+      final boolean extended = in.readBoolean();
+      int[][] split = new int[numtrees][], right = new int[numtrees][];
+      double[][] value = new double[numtrees][], normal = extended ? new double[numtrees][] : null;
+      for(int t = 0; t < numtrees; t++) {
+        final int nodes = in.readInt();
+        final int[] sp = split[t] = new int[nodes], ri = right[t] = new int[nodes];
+        final double[] va = value[t] = new double[nodes];
+        for(int i = 0; i < nodes; i++) {
+          sp[i] = in.readInt();
+          ri[i] = in.readInt();
+          va[i] = in.readDouble();
+          if(sp[i] < HYPERPLANE || sp[i] >= dim || (sp[i] != LEAF && (ri[i] <= i || ri[i] >= nodes))) {
+            throw new IOException("Corrupt isolation forest model file: " + file);
+          }
+        }
+        if(extended) {
+          final double[] no = normal[t] = new double[nodes * dim];
+          for(int i = 0; i < no.length; i++) {
+            no[i] = in.readDouble();
+          }
+        }
+      }
+      return new IsolationForestModel(dim, subsample, split, right, value, normal);
+    }
+  }
+}
@@ -23,6 +23,9 @@ package de.lmu.ifi.dbs.elki.algorithm.outlier.lof;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.DistanceBasedAlgorithm;
@@ -48,6 +51,7 @@ import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
 import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
@@ -164,26 +168,22 @@ public class ALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResu
       }
     }
 
-    List<ALOCIQuadTree> qts = new ArrayList<>(g);
-
-    double[] nshift = new double[dim];
-    ALOCIQuadTree qt = new ALOCIQuadTree(min, max, nshift, nmin, relation);
-    qts.add(qt);
-    LOG.incrementProcessed(progressPreproc);
     /*
      * create the remaining g-1 shifted QuadTrees. This not clearly described in
      * the paper and therefore implemented in a way that achieves good results
-     * with the test data.
+     * with the test data. The shifts are drawn first, so that the trees do not
+     * depend on the order of construction.
      */
+    double[][] shifts = new double[g][];
+    shifts[0] = new double[dim];
     for(int shift = 1; shift < g; shift++) {
       double[] svec = new double[dim];
       for(int i = 0; i < dim; i++) {
         svec[i] = random.nextDouble() * (max[i] - min[i]);
       }
-      qt = new ALOCIQuadTree(min, max, svec, nmin, relation);
-      qts.add(qt);
-      LOG.incrementProcessed(progressPreproc);
+      shifts[shift] = svec;
     }
+    List<ALOCIQuadTree> qts = buildTrees(min, max, shifts, relation, progressPreproc);
     LOG.ensureCompleted(progressPreproc);
 
     // aLOCI main loop: evaluate
@@ -248,6 +248,48 @@ public class ALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResu
     return result;
   }
 
+  /**
+   * Build the shifted quadtrees, in parallel.
+   *
+   * @param min Minimum coordinates
+   * @param max Maximum coordinates
+   * @param shifts Tree shift offsets
+   * @param relation Relation to index
+   * @param prog Progress
+   * @return Quadtrees, in the order of the shifts
+   */
+  private List<ALOCIQuadTree> buildTrees(final double[] min, final double[] max, double[][] shifts, final Relation<O> relation, final FiniteProgress prog) {
+    List<ALOCIQuadTree> qts = new ArrayList<>(shifts.length);
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      List<Future<ALOCIQuadTree>> futures = new ArrayList<>(shifts.length);
+      for(final double[] shift : shifts) {
+        futures.add(core.submit(new Callable<ALOCIQuadTree>() {
+          @Override
+          public ALOCIQuadTree call() {
+            ALOCIQuadTree qt = new ALOCIQuadTree(min, max, shift, nmin, relation);
+            LOG.incrementProcessed(prog);
+            return qt;
+          }
+        }));
+      }
+      for(Future<ALOCIQuadTree> f : futures) {
+        qts.add(f.get());
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+    return qts;
+  }
+
   /**
    * Method for the MDEF calculation
    *
@@ -0,0 +1,841 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreEvent;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreListener;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.HashSetModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.SetDBIDs;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.math.statistics.distribution.NormalDistribution;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.EnumParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+import net.jafama.FastMath;
+
+/**
+ * Incremental {@link LOF} and {@link LoOP}, maintained over batches of
+ * insertions and deletions of an updatable database.
+ *
+ * The k nearest neighbors, the k-distances and the reverse nearest neighbors
+ * of all objects are materialized. Each batch of database changes (i.e. one
+ * {@link DataStoreEvent}) is processed as a whole: objects that lost a neighbor
+ * are queried again, and the remaining objects are only compared to the new
+ * objects. The densities and scores are then recomputed only for the objects
+ * whose neighborhood, or whose neighbors' k-distances or densities, changed;
+ * these sets are found via the reverse nearest neighbors. The kNN queries and
+ * the recomputations are run in parallel, the materialized stores are only
+ * modified by the updating thread.
+ *
+ * For LoOP, reference and comparison neighborhood are the same, and the
+ * global normalization is refreshed by one linear pass over the stored PLOF
+ * values after every batch (no neighbor queries).
+ *
+ * Updates are serialized; scores must not be read while a batch is being
+ * processed. The update cost of each batch (number of changed objects,
+ * neighborhoods, densities and scores, and the run time) is logged as
+ * statistics.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.has Instance
+ *
+ * @param <O> Object type
+ */
+@Title("Incremental LOF and LoOP")
+@Description("LOF and LoOP scores, updated incrementally on database insertions and deletions.")
+public class IncrementalLOF<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> implements OutlierAlgorithm {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(IncrementalLOF.class);
+
+  /**
+   * Score to maintain.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static enum Score {
+    /** Local Outlier Factor */
+    LOF, //
+    /** Local Outlier Probabilities */
+    LOOP,
+  }
+
+  /**
+   * The number of neighbors to query (including the query point!)
+   */
+  protected int k;
+
+  /**
+   * Score to maintain.
+   */
+  protected Score score;
+
+  /**
+   * LoOP lambda parameter.
+   */
+  protected double lambda;
+
+  /**
+   * Constructor.
+   *
+   * @param k the number of neighbors to use for comparison (excluding the query
+   *        point)
+   * @param distanceFunction the neighborhood distance function
+   * @param score Score to maintain
+   * @param lambda LoOP lambda parameter
+   */
+  public IncrementalLOF(int k, DistanceFunction<? super O> distanceFunction, Score score, double lambda) {
+    super(distanceFunction);
+    this.k = k + 1; // + query point
+    this.score = score;
+    this.lambda = lambda;
+  }
+
+  /**
+   * Compute the initial scores, and register for database updates.
+   *
+   * @param database Database to process
+   * @param relation Data to process
+   * @return Outlier result, updated on database changes
+   */
+  public OutlierResult run(Database database, Relation<O> relation) {
+    Instance inst = new Instance(database, relation);
+    OutlierResult result = inst.initialize();
+    database.addDataStoreListener(inst);
+    return result;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Task for parallel loops.
+   *
+   * @author Erich Schubert
+   */
+  private interface Task {
+    /**
+     * Process a single object.
+     *
+     * @param id Object
+     * @param i Position in the processed array
+     */
+    void process(DBIDRef id, int i);
+  }
+
+  /**
+   * Value computed for a single object.
+   *
+   * @author Erich Schubert
+   */
+  private interface Kernel {
+    /**
+     * Compute the value of an object.
+     *
+     * @param id Object
+     * @return Value
+     */
+    double compute(DBIDRef id);
+  }
+
+  /**
+   * Materialized state for one relation, listening to database changes.
+   *
+   * @author Erich Schubert
+   */
+  protected class Instance implements DataStoreListener {
+    /**
+     * Database, for update notifications.
+     */
+    private Database database;
+
+    /**
+     * Data relation.
+     */
+    private Relation<O> relation;
+
+    /**
+     * Distance query.
+     */
+    private DistanceQuery<O> distq;
+
+    /**
+     * kNN query.
+     */
+    private KNNQuery<O> knnq;
+
+    /**
+     * Materialized nearest neighbors, including the object itself.
+     */
+    private WritableDataStore<KNNList> knns;
+
+    /**
+     * Reverse nearest neighbors, excluding the object itself.
+     */
+    private WritableDataStore<ModifiableDBIDs> rknns;
+
+    /**
+     * k-distances.
+     */
+    private WritableDoubleDataStore kdists;
+
+    /**
+     * Densities: lrd for LOF, pdist for LoOP.
+     */
+    private WritableDoubleDataStore dens;
+
+    /**
+     * PLOF values, LoOP only.
+     */
+    private WritableDoubleDataStore plofs;
+
+    /**
+     * Scores.
+     */
+    private WritableDoubleDataStore scores;
+
+    /**
+     * Score meta data, created after the initial scores are computed.
+     */
+    private BasicOutlierScoreMeta meta;
+
+    /**
+     * Current score range.
+     */
+    private DoubleMinMax minmax = new DoubleMinMax();
+
+    /**
+     * Result.
+     */
+    private OutlierResult result;
+
+    /**
+     * Parallel core, while processing a batch.
+     */
+    private ParallelCore core;
+
+    /**
+     * Number of batches processed.
+     */
+    private long batches = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param database Database
+     * @param relation Data relation
+     */
+    protected Instance(Database database, Relation<O> relation) {
+      this.database = database;
+      this.relation = relation;
+    }
+
+    /**
+     * Compute the initial scores.
+     *
+     * @return Result
+     */
+    protected OutlierResult initialize() {
+      DBIDs ids = relation.getDBIDs();
+      distq = database.getDistanceQuery(relation, getDistanceFunction());
+      // Do not use a materialized (cached) kNN, it may not be updated yet.
+      knnq = relation.getKNNQuery(distq, k, DatabaseQuery.HINT_HEAVY_USE, DatabaseQuery.HINT_NO_CACHE);
+      final int hints = DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_DB;
+      knns = DataStoreUtil.makeStorage(ids, hints, KNNList.class);
+      rknns = DataStoreUtil.makeStorage(ids, hints, ModifiableDBIDs.class);
+      kdists = DataStoreUtil.makeDoubleStorage(ids, hints);
+      dens = DataStoreUtil.makeDoubleStorage(ids, hints);
+      plofs = score == Score.LOOP ? DataStoreUtil.makeDoubleStorage(ids, hints) : null;
+      scores = DataStoreUtil.makeDoubleStorage(ids, hints);
+      update(DBIDUtil.EMPTYDBIDS, ids);
+      if(score == Score.LOOP) {
+        meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., 1., 0.);
+      }
+      else {
+        meta = new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., Double.POSITIVE_INFINITY, 1.);
+      }
+      // The relation ids are a live view in updatable databases.
+      String name = score == Score.LOOP ? "Local Outlier Probabilities" : "Local Outlier Factor";
+      String shortname = score == Score.LOOP ? "loop-outlier" : "lof-outlier";
+      DoubleRelation scoreResult = new MaterializedDoubleRelation(name, shortname, scores, ids);
+      result = new OutlierResult(meta, scoreResult);
+      return result;
+    }
+
+    @Override
+    public void contentChanged(DataStoreEvent e) {
+      DBIDs removals = e.getRemovals(), inserts = e.getInserts();
+      // Updated objects are removed and inserted again.
+      if(!e.getUpdates().isEmpty()) {
+        removals = DBIDUtil.union(removals, e.getUpdates());
+        inserts = DBIDUtil.union(inserts, e.getUpdates());
+      }
+      if(removals.isEmpty() && inserts.isEmpty()) {
+        return;
+      }
+      update(removals, inserts);
+      database.getHierarchy().resultChanged(result);
+    }
+
+    /**
+     * Process one batch of changes.
+     *
+     * @param removals Removed objects (no longer in the relation)
+     * @param inserts Inserted objects (already in the relation)
+     */
+    protected synchronized void update(DBIDs removals, DBIDs inserts) {
+      final String key = IncrementalLOF.class.getName();
+      Duration duration = LOG.isStatistics() ? LOG.newDuration(key + ".batch-time").begin() : null;
+      core = ParallelCore.getCore();
+      core.connect();
+      try {
+        SetDBIDs removed = DBIDUtil.ensureSet(removals), inserted = DBIDUtil.ensureSet(inserts);
+        // Objects that lost a neighbor need a new kNN query.
+        HashSetModifiableDBIDs requery = DBIDUtil.newHashSet();
+        removeObjects(removed, requery);
+        requery.addDBIDs(inserted);
+
+        // Update the neighborhoods:
+        ModifiableDBIDs knnChanged = DBIDUtil.newHashSet(requery.size());
+        ModifiableDBIDs kdistChanged = DBIDUtil.newHashSet(requery.size());
+        for(DBIDIter it = inserted.iter(); it.valid(); it.advance()) {
+          rknns.put(it, DBIDUtil.newHashSet());
+        }
+        updateNeighbors(requery, inserted, knnChanged, kdistChanged);
+
+        // Update densities and scores:
+        final int ndens, nscores;
+        if(score == Score.LOOP) {
+          ModifiableDBIDs densChanged = DBIDUtil.newHashSet();
+          ndens = recompute(knnChanged, dens, inserted, densChanged, new Kernel() {
+            @Override
+            public double compute(DBIDRef id) {
+              return computePDist(id);
+            }
+          });
+          nscores = recompute(affected(knnChanged, densChanged), plofs, inserted, null, new Kernel() {
+            @Override
+            public double compute(DBIDRef id) {
+              return computePLOF(id);
+            }
+          });
+          normalizeLoOP();
+        }
+        else {
+          ModifiableDBIDs densChanged = DBIDUtil.newHashSet();
+          ndens = recompute(affected(knnChanged, kdistChanged), dens, inserted, densChanged, new Kernel() {
+            @Override
+            public double compute(DBIDRef id) {
+              return computeLRD(id);
+            }
+          });
+          ModifiableDBIDs todo = affected(knnChanged, densChanged);
+          todo.addDBIDs(densChanged);
+          nscores = recompute(todo, scores, inserted, null, new Kernel() {
+            @Override
+            public double compute(DBIDRef id) {
+              return computeLOF(id);
+            }
+          });
+          updateMinMax();
+        }
+        ++batches;
+        if(LOG.isStatistics()) {
+          LOG.statistics(new LongStatistic(key + ".batch", batches));
+          LOG.statistics(new LongStatistic(key + ".batch.insertions", inserted.size()));
+          LOG.statistics(new LongStatistic(key + ".batch.removals", removed.size()));
+          LOG.statistics(new LongStatistic(key + ".batch.knn-updates", knnChanged.size()));
+          LOG.statistics(new LongStatistic(key + ".batch.density-updates", ndens));
+          LOG.statistics(new LongStatistic(key + ".batch.score-updates", nscores));
+        }
+      }
+      finally {
+        core.disconnect();
+        core = null;
+      }
+      if(duration != null) {
+        LOG.statistics(duration.end());
+      }
+    }
+
+    /**
+     * Remove objects from the materialized neighborhoods.
+     *
+     * @param removed Removed objects
+     * @param requery Output: objects that need a new kNN query
+     */
+    private void removeObjects(SetDBIDs removed, ModifiableDBIDs requery) {
+      for(DBIDIter it = removed.iter(); it.valid(); it.advance()) {
+        DBIDs rev = rknns.get(it);
+        if(rev == null) {
+          continue; // Not known.
+        }
+        for(DBIDIter r = rev.iter(); r.valid(); r.advance()) {
+          if(!removed.contains(r)) {
+            requery.add(r);
+          }
+        }
+        unlink(it, knns.get(it));
+        knns.delete(it);
+        rknns.delete(it);
+        kdists.delete(it);
+        dens.delete(it);
+        scores.delete(it);
+        if(plofs != null) {
+          plofs.delete(it);
+        }
+      }
+    }
+
+    /**
+     * Query and update the kNN of all objects affected by the batch.
+     *
+     * @param requery Objects to query again
+     * @param inserted Inserted objects
+     * @param knnChanged Output: objects with changed kNN
+     * @param kdistChanged Output: objects with changed k-distance
+     */
+    private void updateNeighbors(SetDBIDs requery, SetDBIDs inserted, ModifiableDBIDs knnChanged, ModifiableDBIDs kdistChanged) {
+      final ArrayDBIDs aquery = DBIDUtil.ensureArray(requery);
+      final KNNList[] queried = new KNNList[aquery.size()];
+      parallel(aquery, new Task() {
+        @Override
+        public void process(DBIDRef id, int i) {
+          queried[i] = knnq.getKNNForDBID(id, k);
+        }
+      });
+      DBIDArrayIter it = aquery.iter();
+      for(int i = 0; i < queried.length; i++, it.seek(i)) {
+        replace(it, queried[i], knnChanged, kdistChanged);
+      }
+      if(inserted.isEmpty()) {
+        return;
+      }
+      // All other objects: only compare to the new objects.
+      final ArrayModifiableDBIDs others = DBIDUtil.newArray(relation.size() - aquery.size());
+      for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+        if(!requery.contains(iter)) {
+          others.add(iter);
+        }
+      }
+      final ArrayDBIDs ains = DBIDUtil.ensureArray(inserted);
+      final KNNList[] updated = new KNNList[others.size()];
+      parallel(others, new Task() {
+        @Override
+        public void process(DBIDRef id, int i) {
+          final KNNList knn = knns.get(id);
+          final double kdist = knn.getKNNDistance();
+          final boolean full = knn.size() >= k;
+          KNNHeap heap = null;
+          for(DBIDIter n = ains.iter(); n.valid(); n.advance()) {
+            final double dist = distq.distance(id, n);
+            if(dist <= kdist || !full) {
+              heap = heap != null ? heap : DBIDUtil.newHeap(knn);
+              heap.insert(dist, n);
+            }
+          }
+          updated[i] = heap != null ? heap.toKNNList() : null;
+        }
+      });
+      it = others.iter();
+      for(int i = 0; i < updated.length; i++, it.seek(i)) {
+        if(updated[i] != null) {
+          replace(it, updated[i], knnChanged, kdistChanged);
+        }
+      }
+    }
+
+    /**
+     * Replace the neighborhood of an object.
+     *
+     * @param id Object
+     * @param knn New neighbors
+     * @param knnChanged Output: objects with changed kNN
+     * @param kdistChanged Output: objects with changed k-distance
+     */
+    private void replace(DBIDRef id, KNNList knn, ModifiableDBIDs knnChanged, ModifiableDBIDs kdistChanged) {
+      KNNList old = knns.get(id);
+      unlink(id, old);
+      knns.put(id, knn);
+      for(DoubleDBIDListIter n = knn.iter(); n.valid(); n.advance()) {
+        if(!DBIDUtil.equal(n, id)) {
+          rknns.get(n).add(id);
+        }
+      }
+      final double kdist = knn.getKNNDistance();
+      if(old == null || kdists.doubleValue(id) != kdist) {
+        kdistChanged.add(id);
+      }
+      kdists.putDouble(id, kdist);
+      knnChanged.add(id);
+    }
+
+    /**
+     * Remove an object from the reverse neighbors of its neighbors.
+     *
+     * @param id Object
+     * @param knn Neighbors, may be {@code null}
+     */
+    private void unlink(DBIDRef id, KNNList knn) {
+      if(knn == null) {
+        return;
+      }
+      for(DoubleDBIDListIter n = knn.iter(); n.valid(); n.advance()) {
+        ModifiableDBIDs rev = DBIDUtil.equal(n, id) ? null : rknns.get(n);
+        if(rev != null) {
+          rev.remove(id);
+        }
+      }
+    }
+
+    /**
+     * Objects depending on a set of changed objects.
+     *
+     * @param base Objects to include
+     * @param changed Changed objects, whose reverse neighbors are included
+     * @return Affected objects
+     */
+    private ModifiableDBIDs affected(DBIDs base, DBIDs changed) {
+      ModifiableDBIDs todo = DBIDUtil.newHashSet(base);
+      for(DBIDIter it = changed.iter(); it.valid(); it.advance()) {
+        todo.addDBIDs(rknns.get(it));
+      }
+      return todo;
+    }
+
+    /**
+     * Recompute a value for a set of objects in parallel, and store the
+     * results.
+     *
+     * @param todo Objects to process
+     * @param store Output storage
+     * @param inserted Inserted objects, always considered changed
+     * @param changed Output: objects with a changed value, may be {@code null}
+     * @param kernel Value to compute
+     * @return Number of values computed
+     */
+    private int recompute(DBIDs todo, WritableDoubleDataStore store, SetDBIDs inserted, ModifiableDBIDs changed, final Kernel kernel) {
+      final ArrayDBIDs aids = DBIDUtil.ensureArray(todo);
+      final double[] vals = new double[aids.size()];
+      parallel(aids, new Task() {
+        @Override
+        public void process(DBIDRef id, int i) {
+          vals[i] = kernel.compute(id);
+        }
+      });
+      DBIDArrayIter it = aids.iter();
+      for(int i = 0; i < vals.length; i++, it.seek(i)) {
+        if(changed != null && (inserted.contains(it) || store.doubleValue(it) != vals[i])) {
+          changed.add(it);
+        }
+        store.putDouble(it, vals[i]);
+      }
+      return vals.length;
+    }
+
+    /**
+     * Compute the local reachability density of an object.
+     *
+     * @param id Object
+     * @return Local reachability density
+     */
+    private double computeLRD(DBIDRef id) {
+      double sum = 0.;
+      int count = 0;
+      for(DoubleDBIDListIter n = knns.get(id).iter(); n.valid(); n.advance()) {
+        if(DBIDUtil.equal(n, id)) {
+          continue;
+        }
+        sum += MathUtil.max(n.doubleValue(), kdists.doubleValue(n));
+        count++;
+      }
+      // Avoid division by 0
+      return (sum > 0) ? (count / sum) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Compute the LOF score of an object.
+     *
+     * @param id Object
+     * @return LOF score
+     */
+    private double computeLOF(DBIDRef id) {
+      final double lrdp = dens.doubleValue(id);
+      if(Double.isInfinite(lrdp)) {
+        return 1.0;
+      }
+      double sum = 0.;
+      int count = 0;
+      for(DBIDIter n = knns.get(id).iter(); n.valid(); n.advance()) {
+        if(DBIDUtil.equal(n, id)) {
+          continue;
+        }
+        sum += dens.doubleValue(n);
+        ++count;
+      }
+      return sum / (lrdp * count);
+    }
+
+    /**
+     * Compute the probabilistic distance of an object, used by LoOP.
+     *
+     * @param id Object
+     * @return Probabilistic distance
+     */
+    private double computePDist(DBIDRef id) {
+      final int kref = k - 1;
+      int ks = 0;
+      double ssum = 0.;
+      for(DoubleDBIDListIter n = knns.get(id).iter(); n.valid() && ks < kref; n.advance()) {
+        if(DBIDUtil.equal(n, id)) {
+          continue;
+        }
+        final double d = n.doubleValue();
+        ssum += d * d;
+        ks++;
+      }
+      return ks > 0 ? FastMath.sqrt(ssum / ks) : 0.;
+    }
+
+    /**
+     * Compute the PLOF value of an object, used by LoOP.
+     *
+     * @param id Object
+     * @return PLOF value
+     */
+    private double computePLOF(DBIDRef id) {
+      final int kcomp = k - 1;
+      int ks = 0;
+      double sum = 0.;
+      for(DBIDIter n = knns.get(id).iter(); n.valid() && ks < kcomp; n.advance()) {
+        if(DBIDUtil.equal(n, id)) {
+          continue;
+        }
+        sum += dens.doubleValue(n);
+        ks++;
+      }
+      double plof = MathUtil.max(dens.doubleValue(id) * ks / sum, 1.0);
+      return (Double.isNaN(plof) || Double.isInfinite(plof)) ? 1.0 : plof;
+    }
+
+    /**
+     * Recompute the LOF score range, as removals may shrink it.
+     */
+    private void updateMinMax() {
+      minmax.reset();
+      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+        minmax.put(scores.doubleValue(it));
+      }
+      updateMeta();
+    }
+
+    /**
+     * Store the score range in the meta data, once it exists.
+     */
+    private void updateMeta() {
+      if(meta != null) {
+        meta.setActualMinimum(minmax.getMin());
+        meta.setActualMaximum(minmax.getMax());
+      }
+    }
+
+    /**
+     * Recompute the LoOP normalization and scores from the stored PLOF values.
+     */
+    private void normalizeLoOP() {
+      if(relation.size() == 0) {
+        minmax.reset();
+        updateMeta();
+        return;
+      }
+      double nplof = 0.;
+      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+        final double v = plofs.doubleValue(it) - 1.;
+        nplof += v * v;
+      }
+      nplof = lambda * FastMath.sqrt(nplof / relation.size());
+      final double norm = 1. / ((nplof > 0. ? nplof : 1.) * MathUtil.SQRT2);
+      minmax.reset();
+      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+        final double loop = NormalDistribution.erf((plofs.doubleValue(it) - 1.) * norm);
+        scores.putDouble(it, loop);
+        minmax.put(loop);
+      }
+      updateMeta();
+    }
+
+    /**
+     * Run a task on all objects in parallel.
+     *
+     * @param ids Objects to process
+     * @param task Task
+     */
+    private void parallel(final ArrayDBIDs ids, final Task task) {
+      final int size = ids.size();
+      final int parallelism = core.getParallelism();
+      final int chunk = Math.max(1, Math.min(1024, size / (parallelism << 2)));
+      final AtomicInteger next = new AtomicInteger(0);
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        for(int t = Math.min(parallelism, (size + chunk - 1) / chunk); t > 0; t--) {
+          futures.add(core.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+              DBIDArrayIter it = ids.iter();
+              for(int s = next.getAndAdd(chunk); s < size; s = next.getAndAdd(chunk)) {
+                for(int i = s, e = Math.min(s + chunk, size); i < e; i++) {
+                  task.process(it.seek(i), i);
+                }
+              }
+              return null;
+            }
+          }));
+        }
+        for(Future<?> f : futures) {
+          f.get();
+        }
+      }
+      catch(ExecutionException e) {
+        throw new RuntimeException("Processor execution failed.", e);
+      }
+      catch(InterruptedException e) {
+        throw new RuntimeException("Parallel execution interrupted.");
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * Score to maintain.
+     */
+    public static final OptionID SCORE_ID = new OptionID("incrementallof.score", "The score to maintain, LOF or LoOP.");
+
+    /**
+     * The neighborhood size to use.
+     */
+    protected int k = 2;
+
+    /**
+     * Score to maintain.
+     */
+    protected Score score;
+
+    /**
+     * LoOP lambda parameter.
+     */
+    protected double lambda = 2.;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      final IntParameter pK = new IntParameter(LOF.Parameterizer.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(pK)) {
+        k = pK.intValue();
+      }
+      EnumParameter<Score> scoreP = new EnumParameter<>(SCORE_ID, Score.class, Score.LOF);
+      if(config.grab(scoreP)) {
+        score = scoreP.getValue();
+      }
+      if(score == Score.LOOP) {
+        final DoubleParameter lambdaP = new DoubleParameter(LoOP.Parameterizer.LAMBDA_ID, 2.0) //
+            .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+        if(config.grab(lambdaP)) {
+          lambda = lambdaP.doubleValue();
+        }
+      }
+    }
+
+    @Override
+    protected IncrementalLOF<O> makeInstance() {
+      return new IncrementalLOF<>(k, distanceFunction, score, lambda);
+    }
+  }
+}
@@ -32,6 +32,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
@@ -45,6 +46,9 @@ import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
 import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
@@ -54,6 +58,7 @@ import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
@@ -67,6 +72,15 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
  *
  * This implementation has O(n<sup>3</sup> log n) runtime complexity!
  *
+ * The exact algorithm keeps the sorted list of all critical radii of every
+ * point, i.e. O(n<sup>2</sup>) memory. If a number of quantized radii is
+ * given, only the neighbor counts at the radii {@code rmax * j / radii} (and at
+ * these radii scaled by alpha) are kept, which needs O(n * radii) memory and
+ * approximates the maximum MDEF over all critical radii. This mode uses
+ * multiple threads, and recomputes the range queries instead of storing them.
+ * As in the exact algorithm, objects with fewer than nmin neighbors within
+ * rmax are scored positive infinity, with rmax as critical radius.
+ *
  * Reference:
  * <p>
  * S. Papadimitriou, H. Kitagawa, P. B. Gibbons and C. Faloutsos: <br />
@@ -109,6 +123,11 @@ public class LOCI<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> im
    */
   private double alpha = 0.5;
 
+  /**
+   * Number of quantized radii, 0 for the exact algorithm.
+   */
+  private int radii = 0;
+
   /**
    * Constructor.
    *
@@ -118,10 +137,24 @@ public class LOCI<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> im
    * @param alpha Alpha value
    */
   public LOCI(DistanceFunction<? super O> distanceFunction, double rmax, int nmin, double alpha) {
+    this(distanceFunction, rmax, nmin, alpha, 0);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param rmax Maximum radius
+   * @param nmin Minimum neighborhood size
+   * @param alpha Alpha value
+   * @param radii Number of quantized radii, 0 for the exact algorithm
+   */
+  public LOCI(DistanceFunction<? super O> distanceFunction, double rmax, int nmin, double alpha, int radii) {
     super(distanceFunction);
     this.rmax = rmax;
     this.nmin = nmin;
     this.alpha = alpha;
+    this.radii = radii;
   }
 
   /**
@@ -134,6 +167,9 @@ public class LOCI<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> im
   public OutlierResult run(Database database, Relation<O> relation) {
     DistanceQuery<O> distFunc = database.getDistanceQuery(relation, getDistanceFunction());
     RangeQuery<O> rangeQuery = database.getRangeQuery(distFunc);
+    if(radii > 0) {
+      return runQuantized(relation, rangeQuery);
+    }
     DBIDs ids = relation.getDBIDs();
 
     // LOCI preprocessing step
@@ -214,6 +250,219 @@ public class LOCI<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> im
     return result;
   }
 
+  /**
+   * Bounded-memory variant, using quantized radii.
+   *
+   * @param relation Relation to process
+   * @param rangeQuery Range query
+   * @return Outlier result
+   */
+  protected OutlierResult runQuantized(Relation<O> relation, RangeQuery<O> rangeQuery) {
+    DBIDs ids = relation.getDBIDs();
+    // Neighbor counts at the quantized radii, then at the scaled radii.
+    WritableDataStore<int[]> counts = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, int[].class);
+    ParallelExecutor.run(ids, new CountProcessor(rangeQuery, counts));
+
+    WritableDoubleDataStore mdef_norm = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    WritableDoubleDataStore mdef_radius = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    ParallelExecutor.run(ids, new MDEFProcessor(rangeQuery, counts, mdef_norm, mdef_radius));
+    counts.destroy();
+
+    DoubleMinMax minmax = new DoubleMinMax();
+    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      minmax.put(mdef_norm.doubleValue(iditer));
+    }
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("LOCI normalized MDEF", "loci-mdef-outlier", mdef_norm, ids);
+    OutlierScoreMeta scoreMeta = new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, Double.POSITIVE_INFINITY, 0.0);
+    OutlierResult result = new OutlierResult(scoreMeta, scoreResult);
+    result.addChildResult(new MaterializedDoubleRelation("LOCI MDEF Radius", "loci-critical-radius", mdef_radius, ids));
+    return result;
+  }
+
+  /**
+   * Get a quantized radius.
+   *
+   * @param j Radius number
+   * @return Radius
+   */
+  private double quantizedRadius(int j) {
+    return rmax * (j + 1) / radii;
+  }
+
+  /**
+   * Find the first quantized radius that (after scaling) includes a distance.
+   *
+   * @param dist Distance
+   * @param scale Radius scaling factor
+   * @return Radius number, {@code radii} if the distance is not included.
+   */
+  private int quantize(double dist, double scale) {
+    int j = Math.max(0, (int) Math.ceil(dist * radii / (scale * rmax)) - 1);
+    // Correct for rounding:
+    while(j > 0 && scale * quantizedRadius(j - 1) >= dist) {
+      --j;
+    }
+    while(j < radii && scale * quantizedRadius(j) < dist) {
+      ++j;
+    }
+    return j;
+  }
+
+  /**
+   * Processor to count the neighbors at the quantized radii.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class CountProcessor implements Processor {
+    /**
+     * Range query.
+     */
+    RangeQuery<O> rangeQuery;
+
+    /**
+     * Output storage.
+     */
+    WritableDataStore<int[]> counts;
+
+    /**
+     * Constructor.
+     *
+     * @param rangeQuery Range query
+     * @param counts Output storage
+     */
+    CountProcessor(RangeQuery<O> rangeQuery, WritableDataStore<int[]> counts) {
+      this.rangeQuery = rangeQuery;
+      this.counts = counts;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      return new Instance() {
+        @Override
+        public void map(DBIDRef id) {
+          int[] c = new int[radii << 1];
+          DoubleDBIDList neighbors = rangeQuery.getRangeForDBID(id, rmax);
+          for(DoubleDBIDListIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance()) {
+            final double d = neighbor.doubleValue();
+            int j = quantize(d, 1.);
+            if(j < radii) {
+              ++c[j];
+            }
+            j = quantize(d, alpha);
+            if(j < radii) {
+              ++c[radii + j];
+            }
+          }
+          // Cumulative counts:
+          for(int j = 1; j < radii; j++) {
+            c[j] += c[j - 1];
+            c[radii + j] += c[radii + j - 1];
+          }
+          counts.put(id, c);
+        }
+      };
+    }
+
+    @Override
+    public void cleanup(Instance inst) {
+      // Nothing to do.
+    }
+  }
+
+  /**
+   * Processor to compute the normalized MDEF at the quantized radii.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class MDEFProcessor implements Processor {
+    /**
+     * Range query.
+     */
+    RangeQuery<O> rangeQuery;
+
+    /**
+     * Neighbor counts.
+     */
+    WritableDataStore<int[]> counts;
+
+    /**
+     * Output storage.
+     */
+    WritableDoubleDataStore mdef_norm, mdef_radius;
+
+    /**
+     * Constructor.
+     *
+     * @param rangeQuery Range query
+     * @param counts Neighbor counts
+     * @param mdef_norm Normalized MDEF output
+     * @param mdef_radius Radius output
+     */
+    MDEFProcessor(RangeQuery<O> rangeQuery, WritableDataStore<int[]> counts, WritableDoubleDataStore mdef_norm, WritableDoubleDataStore mdef_radius) {
+      this.rangeQuery = rangeQuery;
+      this.counts = counts;
+      this.mdef_norm = mdef_norm;
+      this.mdef_radius = mdef_radius;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      final MeanVariance[] mvs = new MeanVariance[radii];
+      for(int j = 0; j < radii; j++) {
+        mvs[j] = new MeanVariance();
+      }
+      return new Instance() {
+        @Override
+        public void map(DBIDRef id) {
+          final int[] c = counts.get(id);
+          if(c[radii - 1] < nmin) {
+            // No radius qualifies, not even rmax: the object is isolated at
+            // every scale considered. Score it like the exact algorithm does,
+            // so both variants rank such objects first.
+            mdef_norm.putDouble(id, Double.POSITIVE_INFINITY);
+            mdef_radius.putDouble(id, rmax);
+            return;
+          }
+          for(int j = 0; j < radii; j++) {
+            mvs[j].reset();
+          }
+          // Collect n(p, alpha * r) of all neighbors within each radius r.
+          DoubleDBIDList neighbors = rangeQuery.getRangeForDBID(id, rmax);
+          for(DoubleDBIDListIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance()) {
+            final int[] c2 = counts.get(neighbor);
+            for(int j = quantize(neighbor.doubleValue(), 1.); j < radii; j++) {
+              mvs[j].put(c2[radii + j]);
+            }
+          }
+          double maxmdefnorm = 0.0;
+          double maxnormr = 0;
+          for(int j = 0; j < radii; j++) {
+            // Only start when minimum size is fulfilled
+            if(c[j] < nmin) {
+              continue;
+            }
+            final double mdefnorm = (mvs[j].getMean() - c[radii + j]) / mvs[j].getNaiveStddev();
+            if(mdefnorm > maxmdefnorm) {
+              maxmdefnorm = mdefnorm;
+              maxnormr = quantizedRadius(j);
+            }
+          }
+          mdef_norm.putDouble(id, maxmdefnorm);
+          mdef_radius.putDouble(id, maxnormr);
+        }
+      };
+    }
+
+    @Override
+    public void cleanup(Instance inst) {
+      // Nothing to do.
+    }
+  }
+
   /**
    * Preprocessing step: determine the radii of interest for each point.
    *
@@ -424,6 +673,11 @@ public class LOCI<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> im
      */
     public static final OptionID ALPHA_ID = new OptionID("loci.alpha", "Scaling factor for averaging neighborhood");
 
+    /**
+     * Parameter to use a fixed number of quantized radii.
+     */
+    public static final OptionID RADII_ID = new OptionID("loci.radii", "Number of quantized radii to use for a bounded-memory approximation, 0 for the exact algorithm.");
+
     /**
      * Maximum radius.
      */
@@ -439,6 +693,11 @@ public class LOCI<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> im
      */
     protected double alpha = 0.5;
 
+    /**
+     * Number of quantized radii.
+     */
+    protected int radii = 0;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -456,11 +715,17 @@ public class LOCI<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> im
       if(config.grab(alphaP)) {
         alpha = alphaP.getValue();
       }
+
+      final IntParameter radiiP = new IntParameter(RADII_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(radiiP)) {
+        radii = radiiP.intValue();
+      }
     }
 
     @Override
     protected LOCI<O> makeInstance() {
-      return new LOCI<>(distanceFunction, rmax, nmin, alpha);
+      return new LOCI<>(distanceFunction, rmax, nmin, alpha, radii);
     }
   }
 }
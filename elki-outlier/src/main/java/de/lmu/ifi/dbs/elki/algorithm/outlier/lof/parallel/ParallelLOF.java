@@ -20,9 +20,12 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
 
+import java.io.File;
+
 import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.parallel.TopNOutlierProcessor;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
@@ -51,8 +54,11 @@ import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierScores;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 
 /**
@@ -85,6 +91,16 @@ public class ParallelLOF<O> extends AbstractDistanceBasedAlgorithm<O, OutlierRes
    */
   private int k;
 
+  /**
+   * Number of top outliers to keep, 0 for all scores.
+   */
+  private int topn;
+
+  /**
+   * File to write all scores to in top n mode, may be {@code null}.
+   */
+  private File scorefile;
+
   /**
    * Constructor.
    * 
@@ -92,8 +108,23 @@ public class ParallelLOF<O> extends AbstractDistanceBasedAlgorithm<O, OutlierRes
    * @param k K parameter
    */
   public ParallelLOF(DistanceFunction<? super O> distanceFunction, int k) {
+    this(distanceFunction, k, 0, null);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param distanceFunction Distance function
+   * @param k K parameter
+   * @param topn Number of top outliers to keep, 0 for all scores
+   * @param scorefile File to write all scores to in top n mode, may be
+   *        {@code null}
+   */
+  public ParallelLOF(DistanceFunction<? super O> distanceFunction, int k, int topn, File scorefile) {
     super(distanceFunction);
     this.k = k;
+    this.topn = topn;
+    this.scorefile = scorefile;
   }
 
   /**
@@ -147,6 +178,19 @@ public class ParallelLOF<O> extends AbstractDistanceBasedAlgorithm<O, OutlierRes
     kdists = null;
 
     // Phase three: LOF
+    if(topn > 0) {
+      // Streaming mode: keep the top n and a histogram only.
+      TopNOutlierScores topscores = new TopNOutlierScores(topn, false, TopNOutlierScores.DEFAULT_BINS, scorefile);
+      LOFProcessor lofm = new LOFProcessor(knns, lrds, true);
+      SharedDouble lofv = new SharedDouble();
+      TopNOutlierProcessor topm = new TopNOutlierProcessor(topscores);
+      lofm.connectOutput(lofv);
+      topm.connectInput(lofv);
+      ParallelExecutor.run(ids, lofm, topm);
+      DoubleMinMax minmax = topscores.getMinMax();
+      OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, Double.POSITIVE_INFINITY, 1.0);
+      return topscores.makeResult(meta, "Local Outlier Factor", "lof-outlier");
+    }
     WritableDoubleDataStore lofs = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
     DoubleMinMax minmax;
     {
@@ -188,6 +232,16 @@ public class ParallelLOF<O> extends AbstractDistanceBasedAlgorithm<O, OutlierRes
      */
     int k;
 
+    /**
+     * Number of top outliers to keep.
+     */
+    int topn;
+
+    /**
+     * Score output file.
+     */
+    File scorefile;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -196,11 +250,21 @@ public class ParallelLOF<O> extends AbstractDistanceBasedAlgorithm<O, OutlierRes
       if(config.grab(kP)) {
         k = kP.intValue();
       }
+      IntParameter topnP = new IntParameter(TopNOutlierScores.TOPN_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .setOptional(true);
+      if(config.grab(topnP)) {
+        topn = topnP.intValue();
+        FileParameter scorefileP = new FileParameter(TopNOutlierScores.SCOREFILE_ID, FileParameter.FileType.OUTPUT_FILE, true);
+        if(config.grab(scorefileP)) {
+          scorefile = scorefileP.getValue();
+        }
+      }
     }
 
     @Override
     protected ParallelLOF<O> makeInstance() {
-      return new ParallelLOF<>(distanceFunction, k);
+      return new ParallelLOF<>(distanceFunction, k, topn, scorefile);
     }
   }
 }
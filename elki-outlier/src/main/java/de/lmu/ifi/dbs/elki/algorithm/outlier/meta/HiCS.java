@@ -114,37 +114,37 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
   /**
    * Maximum number of retries.
    */
-  private static final int MAX_RETRIES = 100;
+  protected static final int MAX_RETRIES = 100;
 
   /**
    * Monte-Carlo iterations.
    */
-  private int m;
+  protected int m;
 
   /**
    * Alpha threshold.
    */
-  private double alpha;
+  protected double alpha;
 
   /**
    * Outlier detection algorithm.
    */
-  private OutlierAlgorithm outlierAlgorithm;
+  protected OutlierAlgorithm outlierAlgorithm;
 
   /**
    * Statistical test to use.
    */
-  private GoodnessOfFitTest statTest;
+  protected GoodnessOfFitTest statTest;
 
   /**
    * Candidates limit.
    */
-  private int cutoff;
+  protected int cutoff;
 
   /**
    * Random generator.
    */
-  private RandomFactory rnd;
+  protected RandomFactory rnd;
 
   /**
    * Constructor.
@@ -555,32 +555,32 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
     /**
      * Holds the value of {@link #M_ID}.
      */
-    private int m = 50;
+    protected int m = 50;
 
     /**
      * Holds the value of {@link #ALPHA_ID}.
      */
-    private double alpha = 0.1;
+    protected double alpha = 0.1;
 
     /**
      * Holds the value of {@link #ALGO_ID}.
      */
-    private OutlierAlgorithm outlierAlgorithm;
+    protected OutlierAlgorithm outlierAlgorithm;
 
     /**
      * Holds the value of {@link #TEST_ID}.
      */
-    private GoodnessOfFitTest statTest;
+    protected GoodnessOfFitTest statTest;
 
     /**
      * Holds the value of {@link #LIMIT_ID}.
      */
-    private int cutoff = 400;
+    protected int cutoff = 400;
 
     /**
      * Random generator.
      */
-    private RandomFactory rnd;
+    protected RandomFactory rnd;
 
     @Override
     protected void makeOptions(Parameterization config) {
@@ -0,0 +1,275 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.meta;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.result.Result;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+
+/**
+ * Run the members of an outlier ensemble concurrently, under a memory budget.
+ *
+ * Members are started in order, as long as a thread is available and the sum
+ * of the estimated memory of all running and not yet combined members stays
+ * within the budget (a member larger than the budget runs alone). Results are
+ * handed to the combiner in member order, and released afterwards; so only
+ * the results of members that finished ahead of a slower predecessor are held
+ * at the same time, and the combination does not depend on the thread timing.
+ *
+ * One thread of the {@link ParallelCore} is left for members that use it
+ * themselves; on a single processor, the members are run sequentially.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public final class ParallelEnsembleRunner {
+  /**
+   * Memory budget for concurrently running ensemble members, in MiB.
+   */
+  public static final OptionID MEMORY_ID = new OptionID("ensemble.memory", "Memory budget in MiB for concurrently running ensemble members. Default: half of the maximum heap size.");
+
+  /**
+   * Fake constructor: do not instantiate.
+   */
+  private ParallelEnsembleRunner() {
+    // Do not instantiate
+  }
+
+  /**
+   * Ensemble member.
+   *
+   * @author Erich Schubert
+   */
+  public interface Member {
+    /**
+     * Estimated memory use while running, and of the result until combined.
+     *
+     * @return Memory estimate in bytes
+     */
+    long estimateMemory();
+
+    /**
+     * Run the ensemble member.
+     *
+     * @return Result
+     */
+    Result run();
+  }
+
+  /**
+   * Streaming combination of member results.
+   *
+   * @author Erich Schubert
+   */
+  public interface Combiner {
+    /**
+     * Combine the result of the next member; called in member order.
+     *
+     * @param i Member number
+     * @param result Member result
+     */
+    void combine(int i, Result result);
+  }
+
+  /**
+   * Get the memory budget.
+   *
+   * @param mib Budget in MiB, or a non-positive value for the default.
+   * @return Budget in bytes
+   */
+  public static long budget(int mib) {
+    return mib > 0 ? mib * 1024L * 1024L : Runtime.getRuntime().maxMemory() >> 1;
+  }
+
+  /**
+   * Run all members, and combine their results.
+   *
+   * @param members Ensemble members
+   * @param budget Memory budget in bytes
+   * @param combiner Result combination
+   * @param log Logger for progress
+   */
+  public static void run(List<? extends Member> members, long budget, Combiner combiner, Logging log) {
+    final int num = members.size();
+    final long[] cost = new long[num];
+    for(int i = 0; i < num; i++) {
+      cost[i] = Math.max(0L, Math.min(members.get(i).estimateMemory(), budget));
+    }
+    final State state = new State(num);
+    FiniteProgress prog = log.isVerbose() ? new FiniteProgress("Ensemble members", num, log) : null;
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      // Keep one thread free for members that use the parallel core themselves.
+      final int parallelism = core.getParallelism(), slots = Math.max(1, parallelism - 1);
+      long used = 0L;
+      for(int next = 0, started = 0; next < num;) {
+        final boolean combine;
+        Result result = null;
+        synchronized(state) {
+          while(true) {
+            if(state.failure != null) {
+              throw new RuntimeException("Processor execution failed.", state.failure);
+            }
+            if(state.done[next]) {
+              combine = true;
+              break;
+            }
+            if(started < num && state.running < slots && (used == 0L || used + cost[started] <= budget)) {
+              combine = false;
+              break;
+            }
+            try {
+              state.wait();
+            }
+            catch(InterruptedException e) {
+              throw new RuntimeException("Parallel execution interrupted.");
+            }
+          }
+          if(combine) {
+            result = state.results[next];
+            state.results[next] = null;
+          }
+          else {
+            ++state.running;
+          }
+        }
+        if(combine) {
+          combiner.combine(next, result);
+          used -= cost[next];
+          ++next;
+          log.incrementProcessed(prog);
+          continue;
+        }
+        used += cost[started];
+        Task task = new Task(members.get(started), started, state);
+        if(parallelism > 1) {
+          core.submit(task);
+        }
+        else {
+          task.call();
+        }
+        ++started;
+      }
+    }
+    finally {
+      core.disconnect();
+    }
+    log.ensureCompleted(prog);
+  }
+
+  /**
+   * Shared state of the running members.
+   *
+   * @author Erich Schubert
+   */
+  private static class State {
+    /**
+     * Finished results, not yet combined.
+     */
+    Result[] results;
+
+    /**
+     * Finished flags.
+     */
+    boolean[] done;
+
+    /**
+     * Number of running members.
+     */
+    int running;
+
+    /**
+     * First failure, if any.
+     */
+    Throwable failure;
+
+    /**
+     * Constructor.
+     *
+     * @param num Number of members
+     */
+    State(int num) {
+      this.results = new Result[num];
+      this.done = new boolean[num];
+    }
+  }
+
+  /**
+   * Task running a single member.
+   *
+   * @author Erich Schubert
+   */
+  private static class Task implements Callable<Void> {
+    /**
+     * Member to run.
+     */
+    private Member member;
+
+    /**
+     * Member number.
+     */
+    private int i;
+
+    /**
+     * Shared state.
+     */
+    private State state;
+
+    /**
+     * Constructor.
+     *
+     * @param member Member to run
+     * @param i Member number
+     * @param state Shared state
+     */
+    Task(Member member, int i, State state) {
+      this.member = member;
+      this.i = i;
+      this.state = state;
+    }
+
+    @Override
+    public Void call() {
+      try {
+        Result result = member.run();
+        synchronized(state) {
+          state.results[i] = result;
+          state.done[i] = true;
+          --state.running;
+          state.notifyAll();
+        }
+      }
+      catch(Throwable e) {
+        synchronized(state) {
+          state.failure = state.failure != null ? state.failure : e;
+          state.notifyAll();
+        }
+      }
+      return null;
+    }
+  }
+}
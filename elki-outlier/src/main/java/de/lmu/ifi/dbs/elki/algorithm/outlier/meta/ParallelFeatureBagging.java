@@ -0,0 +1,201 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.meta;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.subspace.SubspaceEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.result.Result;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Feature bagging, running the LOF instances concurrently.
+ *
+ * The random subspaces are chosen up front, in the same order as
+ * {@link FeatureBagging}. All LOF instances work on the full relation with a
+ * subspace distance, so no projected copies of the data are made. The
+ * instances are run by {@link ParallelEnsembleRunner} within a memory budget,
+ * and each result is folded into the combined score as soon as all previous
+ * instances are combined: the cumulative sum is accumulated, and for the
+ * breadth-first combination only the best rank seen so far is kept for every
+ * object. The result is the same as with {@link FeatureBagging}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.uses ParallelEnsembleRunner
+ */
+@Title("Feature Bagging for Outlier Detection")
+@Reference(title = "Feature Bagging for Outlier Detection", authors = "A. Lazarevic, V. Kumar", booktitle = "Proc. of the 11th ACM SIGKDD international conference on Knowledge discovery in data mining", url = "http://dx.doi.org/10.1145/1081870.1081891")
+public class ParallelFeatureBagging extends FeatureBagging {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelFeatureBagging.class);
+
+  /**
+   * Memory budget, in bytes.
+   */
+  protected long budget;
+
+  /**
+   * Constructor.
+   *
+   * @param k k Parameter for LOF
+   * @param num Number of subspaces to use
+   * @param breadth Flag for breadth-first merging
+   * @param rnd Random generator
+   * @param budget Memory budget, in bytes
+   */
+  public ParallelFeatureBagging(int k, int num, boolean breadth, RandomFactory rnd, long budget) {
+    super(k, num, breadth, rnd);
+    this.budget = budget;
+  }
+
+  @Override
+  public OutlierResult run(final Database database, final Relation<NumberVector> relation) {
+    final int dbdim = RelationUtil.dimensionality(relation);
+    final int mindim = dbdim >> 1;
+    final int maxdim = dbdim - 1;
+    final Random rand = rnd.getSingleThreadedRandom();
+    final DBIDs ids = relation.getDBIDs();
+    // kNN lists, densities and scores of one LOF instance.
+    final long memory = ids.size() * (12L * (k + 1) + 80L);
+
+    ArrayList<ParallelEnsembleRunner.Member> members = new ArrayList<>(num);
+    for(int i = 0; i < num; i++) {
+      long[] dimset = randomSubspace(dbdim, mindim, maxdim, rand);
+      final LOF<NumberVector> lof = new LOF<>(k, new SubspaceEuclideanDistanceFunction(dimset));
+      members.add(new ParallelEnsembleRunner.Member() {
+        @Override
+        public long estimateMemory() {
+          return memory;
+        }
+
+        @Override
+        public Result run() {
+          return lof.run(database, relation);
+        }
+      });
+    }
+
+    final WritableDoubleDataStore scores;
+    if(breadth) {
+      scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+      final WritableIntegerDataStore ranks = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, Integer.MAX_VALUE);
+      ParallelEnsembleRunner.run(members, budget, new ParallelEnsembleRunner.Combiner() {
+        @Override
+        public void combine(int i, Result result) {
+          OutlierResult r = (OutlierResult) result;
+          DoubleRelation rscores = r.getScores();
+          // Earlier instances win ties, as in the breadth-first traversal.
+          int rank = 0;
+          for(DBIDIter iter = r.getOrdering().order(ids).iter(); iter.valid(); iter.advance(), rank++) {
+            if(rank < ranks.intValue(iter)) {
+              ranks.putInt(iter, rank);
+              scores.putDouble(iter, rscores.doubleValue(iter));
+            }
+          }
+        }
+      }, LOG);
+      ranks.destroy();
+    }
+    else {
+      scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC, 0.);
+      ParallelEnsembleRunner.run(members, budget, new ParallelEnsembleRunner.Combiner() {
+        @Override
+        public void combine(int i, Result result) {
+          DoubleRelation rscores = ((OutlierResult) result).getScores();
+          for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+            final double s = rscores.doubleValue(iter);
+            if(!Double.isNaN(s)) {
+              scores.putDouble(iter, scores.doubleValue(iter) + s);
+            }
+          }
+        }
+      }, LOG);
+    }
+    DoubleMinMax minmax = new DoubleMinMax();
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      minmax.put(scores.doubleValue(iter));
+    }
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax());
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Feature bagging", "fb-outlier", scores, ids);
+    return new OutlierResult(meta, scoreres);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends FeatureBagging.Parameterizer {
+    /**
+     * Memory budget, in bytes.
+     */
+    protected long budget;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter memoryP = new IntParameter(ParallelEnsembleRunner.MEMORY_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .setOptional(true);
+      budget = ParallelEnsembleRunner.budget(config.grab(memoryP) ? memoryP.intValue() : 0);
+    }
+
+    @Override
+    protected ParallelFeatureBagging makeInstance() {
+      return new ParallelFeatureBagging(k, num, breadth, rnd, budget);
+    }
+  }
+}
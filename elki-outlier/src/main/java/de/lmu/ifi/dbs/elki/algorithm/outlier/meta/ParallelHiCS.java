@@ -0,0 +1,545 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.meta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.meta.HiCS.HiCSSubspace;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.projection.NumericalFeatureSelection;
+import de.lmu.ifi.dbs.elki.database.ProxyDatabase;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.ProjectedView;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.AbstractProgress;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.statistics.tests.GoodnessOfFitTest;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.BitsUtil;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.Heap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.TopBoundedHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel version of HiCS: High Contrast Subspaces for Density-Based Outlier
+ * Ranking.
+ *
+ * The per-dimension sort orders are computed once, as arrays of offsets, along
+ * with the sorted values of each dimension. A Monte-Carlo slice then is a
+ * window of a sort order, and the conditional sample is the intersection of
+ * bit sets, using thread-local buffers.
+ *
+ * All candidates of one level of the subspace search are tested in parallel.
+ * Every candidate uses its own random generator, seeded from the main random
+ * generator in candidate order, so the result does not depend on the number
+ * of threads. Duplicate candidates generated by different pairs of subspaces
+ * are tested only once.
+ *
+ * Any {@link OutlierAlgorithm} can be used on the selected subspaces; it is
+ * run on a projected view of the data.
+ *
+ * Reference:
+ * <p>
+ * F. Keller and E. Müller and K. Böhm:<br />
+ * HiCS: High Contrast Subspaces for Density-Based Outlier Ranking<br />
+ * in: Proc. IEEE 28th Int. Conf. on Data Engineering (ICDE 2012), Washington,
+ * DC, USA
+ * </p>
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.composedOf GoodnessOfFitTest
+ * @apiviz.composedOf OutlierAlgorithm
+ * @apiviz.has SubspaceIndex
+ *
+ * @param <V> vector type
+ */
+@Title("Parallel HiCS: High Contrast Subspaces for Density-Based Outlier Ranking")
+@Description("Algorithm to compute High Contrast Subspaces in a database as a pre-processing step for for density-based outlier ranking methods.")
+@Reference(authors = "F. Keller and E. Müller and K. Böhm", //
+    title = "HiCS: High Contrast Subspaces for Density-Based Outlier Ranking", //
+    booktitle = "Proc. IEEE 28th International Conference on Data Engineering (ICDE 2012)", //
+    url = "http://dx.doi.org/10.1109/ICDE.2012.88")
+public class ParallelHiCS<V extends NumberVector> extends HiCS<V> {
+  /**
+   * The Logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelHiCS.class);
+
+  /**
+   * Constructor.
+   *
+   * @param m value of m
+   * @param alpha value of alpha
+   * @param outlierAlgorithm Inner outlier detection algorithm
+   * @param statTest Test to use
+   * @param cutoff Candidate limit
+   * @param rnd Random generator
+   */
+  public ParallelHiCS(int m, double alpha, OutlierAlgorithm outlierAlgorithm, GoodnessOfFitTest statTest, int cutoff, RandomFactory rnd) {
+    super(m, alpha, outlierAlgorithm, statTest, cutoff, rnd);
+  }
+
+  /**
+   * Perform HiCS on a given database.
+   *
+   * @param relation the database
+   * @return The aggregated resulting scores that were assigned by the given
+   *         outlier detection algorithm
+   */
+  @Override
+  public OutlierResult run(Relation<V> relation) {
+    Set<HiCSSubspace> subspaces;
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      SubspaceIndex index = new SubspaceIndex(core, relation);
+      subspaces = calculateSubspaces(core, index, rnd.getSingleThreadedRandom());
+    }
+    finally {
+      core.disconnect();
+    }
+
+    if(LOG.isVerbose()) {
+      LOG.verbose("Number of high-contrast subspaces: " + subspaces.size());
+    }
+    List<DoubleRelation> results = new ArrayList<>();
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Calculating Outlier scores for high Contrast subspaces", subspaces.size(), LOG) : null;
+    for(HiCSSubspace dimset : subspaces) {
+      if(LOG.isVerbose()) {
+        LOG.verbose("Performing outlier detection in subspace " + dimset);
+      }
+      ProxyDatabase pdb = new ProxyDatabase(relation.getDBIDs());
+      pdb.addRelation(new ProjectedView<>(relation, new NumericalFeatureSelection<V>(dimset)));
+      OutlierResult result = outlierAlgorithm.run(pdb);
+      results.add(result.getScores());
+      LOG.incrementProcessed(prog);
+    }
+    LOG.ensureCompleted(prog);
+
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    DoubleMinMax minmax = new DoubleMinMax();
+    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+      double sum = 0.0;
+      for(DoubleRelation r : results) {
+        final double s = r.doubleValue(iditer);
+        if(!Double.isNaN(s)) {
+          sum += s;
+        }
+      }
+      scores.putDouble(iditer, sum);
+      minmax.put(sum);
+    }
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax());
+    DoubleRelation scoreres = new MaterializedDoubleRelation("HiCS", "HiCS-outlier", scores, relation.getDBIDs());
+    return new OutlierResult(meta, scoreres);
+  }
+
+  /**
+   * Identifies high contrast subspaces in a given full-dimensional database.
+   *
+   * @param core Parallel core
+   * @param index Subspace index
+   * @param random Random generator
+   * @return a set of high contrast subspaces
+   */
+  private Set<HiCSSubspace> calculateSubspaces(ParallelCore core, SubspaceIndex index, Random random) {
+    final int dbdim = index.sorted.length;
+
+    FiniteProgress dprog = LOG.isVerbose() ? new FiniteProgress("Subspace dimensionality", dbdim, LOG) : null;
+    if(dprog != null) {
+      dprog.setProcessed(2, LOG);
+    }
+
+    TreeSet<HiCSSubspace> subspaceList = new TreeSet<>(HiCSSubspace.SORT_BY_SUBSPACE);
+    TopBoundedHeap<HiCSSubspace> dDimensionalList = new TopBoundedHeap<>(cutoff, HiCSSubspace.SORT_BY_CONTRAST_ASC);
+    // compute two-element sets of subspaces
+    List<HiCSSubspace> level = new ArrayList<>((dbdim * (dbdim - 1)) >> 1);
+    for(int i = 0; i < dbdim; i++) {
+      for(int j = i + 1; j < dbdim; j++) {
+        HiCSSubspace ts = new HiCSSubspace();
+        ts.set(i);
+        ts.set(j);
+        level.add(ts);
+      }
+    }
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Generating two-element subsets", level.size(), LOG) : null;
+    calculateContrasts(core, index, level, random, prog);
+    LOG.ensureCompleted(prog);
+    for(HiCSSubspace ts : level) {
+      dDimensionalList.add(ts);
+    }
+
+    IndefiniteProgress qprog = LOG.isVerbose() ? new IndefiniteProgress("Testing subspace candidates", LOG) : null;
+    for(int d = 3; !dDimensionalList.isEmpty(); d++) {
+      if(dprog != null) {
+        dprog.setProcessed(d, LOG);
+      }
+      ArrayList<HiCSSubspace> candidateList = new ArrayList<>(dDimensionalList.size());
+      for(Heap<HiCSSubspace>.UnorderedIter it = dDimensionalList.unorderedIter(); it.valid(); it.advance()) {
+        subspaceList.add(it.get());
+        candidateList.add(it.get());
+      }
+      dDimensionalList.clear();
+      // candidateList now contains the *m* best d-dimensional sets
+      Collections.sort(candidateList, HiCSSubspace.SORT_BY_SUBSPACE);
+
+      // Join, skipping duplicates:
+      TreeSet<HiCSSubspace> joined = new TreeSet<>(HiCSSubspace.SORT_BY_SUBSPACE);
+      for(int i = 0; i < candidateList.size() - 1; i++) {
+        for(int j = i + 1; j < candidateList.size(); j++) {
+          HiCSSubspace joinedSet = new HiCSSubspace();
+          joinedSet.or(candidateList.get(i));
+          joinedSet.or(candidateList.get(j));
+          if(joinedSet.cardinality() == d) {
+            joined.add(joinedSet);
+          }
+        }
+      }
+      level = new ArrayList<>(joined);
+      calculateContrasts(core, index, level, random, qprog);
+      for(HiCSSubspace ts : level) {
+        dDimensionalList.add(ts);
+      }
+      // Prune
+      for(HiCSSubspace cand : candidateList) {
+        for(Heap<HiCSSubspace>.UnorderedIter it = dDimensionalList.unorderedIter(); it.valid(); it.advance()) {
+          if(it.get().contrast > cand.contrast) {
+            subspaceList.remove(cand);
+            break;
+          }
+        }
+      }
+    }
+    LOG.setCompleted(qprog);
+    if(dprog != null) {
+      dprog.setProcessed(dbdim, LOG);
+      dprog.ensureCompleted(LOG);
+    }
+    return subspaceList;
+  }
+
+  /**
+   * Calculate the contrast of all candidates, in parallel.
+   *
+   * @param core Parallel core
+   * @param index Subspace index
+   * @param candidates Candidates
+   * @param random Random generator, for seeding
+   * @param prog Progress, may be {@code null}
+   */
+  private void calculateContrasts(ParallelCore core, SubspaceIndex index, List<HiCSSubspace> candidates, Random random, AbstractProgress prog) {
+    final int num = candidates.size();
+    // Draw the seeds in order, so the result does not depend on scheduling:
+    final long[] seeds = new long[num];
+    for(int i = 0; i < num; i++) {
+      seeds[i] = random.nextLong();
+    }
+    try {
+      AtomicInteger next = new AtomicInteger();
+      List<Future<?>> futures = new ArrayList<>();
+      for(int i = Math.min(core.getParallelism(), num); i > 0; i--) {
+        futures.add(core.submit(new ContrastTask(index, candidates, seeds, next, prog)));
+      }
+      for(Future<?> f : futures) {
+        f.get();
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+  }
+
+  /**
+   * Sort orders of each dimension, computed once.
+   *
+   * @author Erich Schubert
+   */
+  protected static class SubspaceIndex {
+    /**
+     * Data values, by dimension and offset.
+     */
+    final double[][] columns;
+
+    /**
+     * Offsets, sorted by each dimension.
+     */
+    final int[][] sorted;
+
+    /**
+     * Values of each dimension, sorted.
+     */
+    final double[][] sortedValues;
+
+    /**
+     * Constructor.
+     *
+     * @param core Parallel core
+     * @param relation Data relation
+     */
+    protected SubspaceIndex(ParallelCore core, final Relation<? extends NumberVector> relation) {
+      final int dim = RelationUtil.dimensionality(relation);
+      final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+      final int n = ids.size();
+      columns = new double[dim][n];
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        final NumberVector vec = relation.get(it);
+        final int off = it.getOffset();
+        for(int d = 0; d < dim; d++) {
+          columns[d][off] = vec.doubleValue(d);
+        }
+      }
+      sorted = new int[dim][];
+      sortedValues = new double[dim][];
+      try {
+        final AtomicInteger next = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for(int i = Math.min(core.getParallelism(), dim); i > 0; i--) {
+          futures.add(core.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+              for(int d = next.getAndIncrement(); d < dim; d = next.getAndIncrement()) {
+                double[] keys = columns[d].clone();
+                int[] order = new int[n];
+                for(int j = 0; j < n; j++) {
+                  order[j] = j;
+                }
+                DoubleIntegerArrayQuickSort.sort(keys, order, n);
+                sorted[d] = order;
+                sortedValues[d] = keys;
+              }
+              return null;
+            }
+          }));
+        }
+        for(Future<?> f : futures) {
+          f.get();
+        }
+      }
+      catch(ExecutionException e) {
+        throw new RuntimeException("Processor execution failed.", e);
+      }
+      catch(InterruptedException e) {
+        throw new RuntimeException("Parallel execution interrupted.");
+      }
+    }
+  }
+
+  /**
+   * Task to compute the contrast of candidates claimed using a shared counter.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class ContrastTask implements Callable<Void> {
+    /**
+     * Subspace index.
+     */
+    private final SubspaceIndex index;
+
+    /**
+     * Candidates.
+     */
+    private final List<HiCSSubspace> candidates;
+
+    /**
+     * Random seeds of the candidates.
+     */
+    private final long[] seeds;
+
+    /**
+     * Next candidate.
+     */
+    private final AtomicInteger next;
+
+    /**
+     * Progress.
+     */
+    private final AbstractProgress prog;
+
+    /**
+     * Bit set buffers for the conditional sample and the current slice.
+     */
+    private final long[] sample, slice;
+
+    /**
+     * Buffer for the full sample, as the tests may modify it.
+     */
+    private final double[] full;
+
+    /**
+     * Constructor.
+     *
+     * @param index Subspace index
+     * @param candidates Candidates
+     * @param seeds Random seeds
+     * @param next Candidate counter
+     * @param prog Progress
+     */
+    ContrastTask(SubspaceIndex index, List<HiCSSubspace> candidates, long[] seeds, AtomicInteger next, AbstractProgress prog) {
+      this.index = index;
+      this.candidates = candidates;
+      this.seeds = seeds;
+      this.next = next;
+      this.prog = prog;
+      final int n = index.columns[0].length;
+      this.sample = BitsUtil.zero(n);
+      this.slice = BitsUtil.zero(n);
+      this.full = new double[n];
+    }
+
+    @Override
+    public Void call() {
+      for(int c = next.getAndIncrement(); c < seeds.length; c = next.getAndIncrement()) {
+        calculateContrast(candidates.get(c), new Random(seeds[c]));
+        LOG.incrementProcessed(prog);
+      }
+      return null;
+    }
+
+    /**
+     * Calculates the actual contrast of a given subspace.
+     *
+     * @param subspace Subspace
+     * @param random Random generator
+     */
+    private void calculateContrast(HiCSSubspace subspace, Random random) {
+      final int card = subspace.cardinality();
+      final int n = full.length;
+      final double alpha1 = FastMath.pow(alpha, (1.0 / card));
+      final int windowsize = (int) (n * alpha1);
+
+      int retries = 0;
+      double deviationSum = 0.0;
+      for(int i = 0; i < m; i++) {
+        // Choose a random set bit.
+        int chosen = -1;
+        for(int tmp = random.nextInt(card); tmp >= 0; tmp--) {
+          chosen = subspace.nextSetBit(chosen + 1);
+        }
+        // Intersect the slices of all other dimensions.
+        boolean first = true;
+        for(int j = subspace.nextSetBit(0); j >= 0; j = subspace.nextSetBit(j + 1)) {
+          if(j == chosen) {
+            continue;
+          }
+          final long[] target = first ? sample : slice;
+          BitsUtil.zeroI(target);
+          final int[] order = index.sorted[j];
+          for(int k = random.nextInt(n - windowsize), e = k + windowsize; k < e; k++) {
+            BitsUtil.setI(target, order[k]);
+          }
+          if(!first) {
+            BitsUtil.andI(sample, slice);
+          }
+          first = false;
+        }
+        final int size = BitsUtil.cardinality(sample);
+        if(size < 10) {
+          retries++;
+          if(LOG.isDebugging()) {
+            LOG.debug("Sample size very small. Retry no. " + retries);
+          }
+          if(retries >= MAX_RETRIES) {
+            LOG.warning("Too many retries, for small samples: " + retries);
+          }
+          else {
+            i--;
+            continue;
+          }
+        }
+        // Project conditional set
+        final double[] column = index.columns[chosen];
+        double[] sampleValues = new double[size];
+        for(int l = 0, o = BitsUtil.nextSetBit(sample, 0); o >= 0; o = BitsUtil.nextSetBit(sample, o + 1)) {
+          sampleValues[l++] = column[o];
+        }
+        // Full set, already sorted:
+        System.arraycopy(index.sortedValues[chosen], 0, full, 0, n);
+        double contrast = statTest.deviation(full, sampleValues);
+        if(Double.isNaN(contrast)) {
+          i--;
+          LOG.warning("Contrast was NaN");
+          continue;
+        }
+        deviationSum += contrast;
+      }
+      subspace.contrast = deviationSum / m;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <V> vector type
+   */
+  public static class Parameterizer<V extends NumberVector> extends HiCS.Parameterizer<V> {
+    @Override
+    protected ParallelHiCS<V> makeInstance() {
+      return new ParallelHiCS<>(m, alpha, outlierAlgorithm, statTest, cutoff, rnd);
+    }
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.meta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ProxyDatabase;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.result.Result;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.ensemble.EnsembleVoting;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.WrongParameterValueException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntListParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Simple outlier ensemble method, running the inner algorithms concurrently.
+ *
+ * The inner algorithms are run by {@link ParallelEnsembleRunner} within a
+ * memory budget. As soon as all previous algorithms are combined, the scores of
+ * an algorithm are copied into a compact score vector per object, and the
+ * result is released; the voting is then applied to these vectors.
+ *
+ * Because databases and result hierarchies are not thread safe, every inner
+ * algorithm runs on its own {@link ProxyDatabase} view of the data. The data
+ * is shared, but the indexes of the original database are not used.
+ *
+ * The memory needed by each inner algorithm can be given explicitly; by
+ * default, a rough estimate of a typical outlier algorithm (result stores and
+ * neighborhoods, 128 bytes per object) is used.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.uses ParallelEnsembleRunner
+ */
+public class ParallelOutlierEnsemble extends SimpleOutlierEnsemble {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelOutlierEnsemble.class);
+
+  /**
+   * Default memory estimate of an inner algorithm, in bytes per object.
+   */
+  private static final long DEFAULT_MEMORY = 128L;
+
+  /**
+   * Memory budget, in bytes.
+   */
+  protected long budget;
+
+  /**
+   * Memory estimates of the inner algorithms in bytes, may be {@code null}.
+   */
+  protected long[] memory;
+
+  /**
+   * Constructor.
+   *
+   * @param algorithms Algorithms to run
+   * @param voting Voting method
+   * @param budget Memory budget, in bytes
+   * @param memory Memory estimates of the inner algorithms in bytes, may be
+   *        {@code null} for the default
+   */
+  public ParallelOutlierEnsemble(List<OutlierAlgorithm> algorithms, EnsembleVoting voting, long budget, long[] memory) {
+    super(algorithms, voting);
+    this.budget = budget;
+    this.memory = memory;
+    if(memory != null && memory.length != algorithms.size()) {
+      throw new IllegalArgumentException("Number of memory estimates does not match the number of algorithms.");
+    }
+  }
+
+  @Override
+  public OutlierResult run(final Database database) throws IllegalStateException {
+    final DBIDs all = database.getRelation(TypeUtil.DBID).getDBIDs();
+    ArrayList<ParallelEnsembleRunner.Member> members = new ArrayList<>(algorithms.size());
+    for(int i = 0; i < algorithms.size(); i++) {
+      final OutlierAlgorithm alg = algorithms.get(i);
+      final long estimate = memory != null ? memory[i] : all.size() * DEFAULT_MEMORY;
+      members.add(new ParallelEnsembleRunner.Member() {
+        @Override
+        public long estimateMemory() {
+          return estimate;
+        }
+
+        @Override
+        public Result run() {
+          // Separate view, with its own result hierarchy.
+          return alg.run(new ProxyDatabase(all, database));
+        }
+      });
+    }
+    // Score vectors, with missing scores as NaN.
+    final WritableDataStore<double[]> vecs = DataStoreUtil.makeStorage(all, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, double[].class);
+    final double[] empty = new double[0];
+    for(DBIDIter id = all.iter(); id.valid(); id.advance()) {
+      vecs.put(id, empty);
+    }
+    final ModifiableDBIDs ids = DBIDUtil.newHashSet();
+    final ArrayList<String> names = new ArrayList<>();
+    ParallelEnsembleRunner.run(members, budget, new ParallelEnsembleRunner.Combiner() {
+      @Override
+      public void combine(int i, Result res) {
+        for(OutlierResult or : OutlierResult.getOutlierResults(res)) {
+          final int j = names.size();
+          names.add(or.toString());
+          DoubleRelation rscores = or.getScores();
+          ids.addDBIDs(rscores.getDBIDs());
+          for(DBIDIter id = all.iter(); id.valid(); id.advance()) {
+            double[] vec = vecs.get(id);
+            if(j == vec.length) {
+              vecs.put(id, vec = Arrays.copyOf(vec, Math.max(4, j << 1)));
+            }
+            vec[j] = Double.NaN;
+          }
+          for(DBIDIter id = rscores.iterDBIDs(); id.valid(); id.advance()) {
+            vecs.get(id)[j] = rscores.doubleValue(id);
+          }
+        }
+      }
+    }, LOG);
+    // Combine
+    final int num = names.size();
+    WritableDoubleDataStore sumscore = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    DoubleMinMax minmax = new DoubleMinMax();
+    for(DBIDIter id = ids.iter(); id.valid(); id.advance()) {
+      double[] scores = vecs.get(id);
+      int i = 0;
+      for(int j = 0; j < num; j++) {
+        final double score = scores[j];
+        if(!Double.isNaN(score)) {
+          scores[i++] = score;
+        }
+        else {
+          LOG.warning("DBID " + id + " was not given a score by result " + names.get(j));
+        }
+      }
+      if(i > 0) {
+        double combined = voting.combine(i < scores.length ? Arrays.copyOf(scores, i) : scores);
+        sumscore.putDouble(id, combined);
+        minmax.put(combined);
+      }
+      else {
+        LOG.warning("DBID " + id + " was not given any score at all.");
+      }
+    }
+    vecs.destroy();
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax());
+    DoubleRelation scores = new MaterializedDoubleRelation("Simple Outlier Ensemble", "ensemble-outlier", sumscore, ids);
+    return new OutlierResult(meta, scores);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends SimpleOutlierEnsemble.Parameterizer {
+    /**
+     * Memory estimates of the inner algorithms, in MiB.
+     */
+    public static final OptionID MEMBER_MEMORY_ID = new OptionID("ensemble.member-memory", "Memory needed by each inner algorithm in MiB, in the order of the algorithms. Default: 128 bytes per object.");
+
+    /**
+     * Memory budget, in bytes.
+     */
+    protected long budget;
+
+    /**
+     * Memory estimates of the inner algorithms in bytes, may be {@code null}.
+     */
+    protected long[] memory;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter memoryP = new IntParameter(ParallelEnsembleRunner.MEMORY_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .setOptional(true);
+      budget = ParallelEnsembleRunner.budget(config.grab(memoryP) ? memoryP.intValue() : 0);
+      IntListParameter memberP = new IntListParameter(MEMBER_MEMORY_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT_LIST) //
+          .setOptional(true);
+      if(config.grab(memberP)) {
+        int[] mib = memberP.getValue();
+        if(algorithms != null && mib.length != algorithms.size()) {
+          config.reportError(new WrongParameterValueException(memberP, memberP.getValueAsString(), "One memory estimate per algorithm is required."));
+        }
+        else {
+          memory = new long[mib.length];
+          for(int i = 0; i < mib.length; i++) {
+            memory[i] = mib[i] * 1024L * 1024L;
+          }
+        }
+      }
+    }
+
+    @Override
+    protected ParallelOutlierEnsemble makeInstance() {
+      return new ParallelOutlierEnsemble(algorithms, voting, budget, memory);
+    }
+  }
+}
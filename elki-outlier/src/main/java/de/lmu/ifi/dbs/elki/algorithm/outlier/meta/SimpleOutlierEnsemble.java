@@ -74,12 +74,12 @@ public class SimpleOutlierEnsemble extends AbstractAlgorithm<OutlierResult> impl
   /**
    * The algorithms to run.
    */
-  private List<OutlierAlgorithm> algorithms;
+  protected List<OutlierAlgorithm> algorithms;
 
   /**
    * The voting in use.
    */
-  private EnsembleVoting voting;
+  protected EnsembleVoting voting;
 
   /**
    * Constructor.
@@ -179,12 +179,12 @@ public class SimpleOutlierEnsemble extends AbstractAlgorithm<OutlierResult> impl
     /**
      * The algorithms to run.
      */
-    private List<OutlierAlgorithm> algorithms;
+    protected List<OutlierAlgorithm> algorithms;
 
     /**
      * The voting in use.
      */
-    private EnsembleVoting voting;
+    protected EnsembleVoting voting;
 
     @Override
     protected void makeOptions(Parameterization config) {
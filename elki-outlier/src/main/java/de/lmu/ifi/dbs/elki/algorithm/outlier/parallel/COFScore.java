@@ -0,0 +1,238 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.COF;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
+
+/**
+ * Connectivity-based outlier factor, as in {@link COF}, for the
+ * {@link ParallelKNNOutlierEngine}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class COFScore implements ParallelKNNScore {
+  /**
+   * Average chaining distances.
+   */
+  private WritableDoubleDataStore acds;
+
+  /**
+   * Scores.
+   */
+  private WritableDoubleDataStore scores;
+
+  /**
+   * Score minimum and maximum.
+   */
+  private DoubleMinMaxProcessor mm;
+
+  @Override
+  public void addProcessors(int pass, ParallelKNNOutlierEngine.Context ctx, List<Processor> procs) {
+    if(pass == ParallelKNNOutlierEngine.PASS_KNN) {
+      acds = ctx.addOutput(procs, new ACDProcessor(ctx.getK() + 1, ctx.getKNNInput(), ctx.getDistanceQuery()), null, null);
+    }
+    else if(pass == ParallelKNNOutlierEngine.PASS_DENSITY) {
+      scores = ctx.addOutput(procs, new COFProcessor(ctx.getK() + 1, ctx.getKNNs(), acds), null, mm = new DoubleMinMaxProcessor());
+    }
+  }
+
+  @Override
+  public void finishPass(int pass, ParallelKNNOutlierEngine.Context ctx) {
+    if(pass == ParallelKNNOutlierEngine.PASS_DENSITY) {
+      acds.destroy();
+      acds = null;
+    }
+  }
+
+  @Override
+  public OutlierResult getResult(ParallelKNNOutlierEngine.Context ctx) {
+    DoubleMinMax minmax = mm.getMinMax();
+    return new OutlierResult(new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., Double.POSITIVE_INFINITY, 1.), //
+        new MaterializedDoubleRelation("Connectivity-Based Outlier Factor", "cof-outlier", scores, ctx.getDBIDs()));
+  }
+
+  /**
+   * Compute the average chaining distance of an object.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class ACDProcessor extends AbstractDoubleProcessor {
+    /**
+     * Neighborhood size, including the query point.
+     */
+    final int k;
+
+    /**
+     * kNN input.
+     */
+    final SharedObject<KNNList> input;
+
+    /**
+     * Distance query.
+     */
+    final DistanceQuery<?> dq;
+
+    /**
+     * Constructor.
+     *
+     * @param k Neighborhood size, including the query point
+     * @param input kNN input
+     * @param dq Distance query
+     */
+    ACDProcessor(int k, SharedObject<KNNList> input, DistanceQuery<?> dq) {
+      this.k = k;
+      this.input = input;
+      this.dq = dq;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      final SharedObject.Instance<KNNList> in = executor.getInstance(input);
+      return new Instance(executor.getInstance(output)) {
+        /**
+         * Current lowest reachability, reused.
+         */
+        double[] mindists = new double[k + 5];
+
+        @Override
+        public void map(DBIDRef id) {
+          final KNNList neighbors = in.get();
+          final int r = neighbors.size();
+          if(mindists.length < r) {
+            mindists = new double[r + 5];
+          }
+          DoubleDBIDListIter it1 = neighbors.iter(), it2 = neighbors.iter();
+          for(int i = 0; it1.valid(); it1.advance(), ++i) {
+            mindists[i] = DBIDUtil.equal(it1, id) ? Double.NaN : it1.doubleValue();
+          }
+          double acsum = 0.;
+          for(int j = ((r < k) ? r : k) - 1; j > 0; --j) {
+            // Find the minimum:
+            int minpos = -1;
+            double mindist = Double.NaN;
+            for(int i = 0; i < r; ++i) {
+              double curdist = mindists[i];
+              // Both values could be NaN, deliberately.
+              if(curdist == curdist && !(curdist > mindist)) {
+                minpos = i;
+                mindist = curdist;
+              }
+            }
+            acsum += mindist * j; // Weighted sum, decreasing weights
+            mindists[minpos] = Double.NaN;
+            it1.seek(minpos);
+            // Update distances
+            it2.seek(0);
+            for(int i = 0; it2.valid(); it2.advance(), ++i) {
+              final double curdist = mindists[i];
+              if(curdist != curdist) {
+                continue; // NaN = processed!
+              }
+              double newdist = dq.distance(it1, it2);
+              if(newdist < curdist) {
+                mindists[i] = newdist;
+              }
+            }
+          }
+          output.set(acsum / (r * 0.5 * (r - 1.)));
+        }
+      };
+    }
+  }
+
+  /**
+   * Compute the COF score from the average chaining distances.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class COFProcessor extends AbstractDoubleProcessor {
+    /**
+     * Neighborhood size, including the query point.
+     */
+    final int k;
+
+    /**
+     * Materialized kNN.
+     */
+    final DataStore<KNNList> knns;
+
+    /**
+     * Average chaining distances.
+     */
+    final DoubleDataStore acds;
+
+    /**
+     * Constructor.
+     *
+     * @param k Neighborhood size, including the query point
+     * @param knns Materialized kNN
+     * @param acds Average chaining distances
+     */
+    COFProcessor(int k, DataStore<KNNList> knns, DoubleDataStore acds) {
+      this.k = k;
+      this.knns = knns;
+      this.acds = acds;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      return new Instance(executor.getInstance(output)) {
+        @Override
+        public void map(DBIDRef id) {
+          double sum = 0.;
+          for(DBIDIter neighbor = knns.get(id).iter(); neighbor.valid(); neighbor.advance()) {
+            if(DBIDUtil.equal(neighbor, id)) {
+              continue;
+            }
+            sum += acds.doubleValue(neighbor);
+          }
+          final double acd = acds.doubleValue(id);
+          output.set((sum > 0.) ? (acd * k / sum) : (acd > 0. ? Double.POSITIVE_INFINITY : 1.));
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,334 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.INFLO;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.HashSetModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+
+/**
+ * Influence outliers using symmetric relationship, as in {@link INFLO}, for
+ * the {@link ParallelKNNOutlierEngine}.
+ *
+ * The reverse neighbors (that are not also k nearest neighbors) are collected
+ * by each thread, and merged at the end of the density pass.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class INFLOScore implements ParallelKNNScore {
+  /**
+   * Pruning threshold m.
+   */
+  private double m;
+
+  /**
+   * Pruning flags (1 if pruned).
+   */
+  private WritableDoubleDataStore pruned;
+
+  /**
+   * Reverse nearest neighbors, that are not also nearest neighbors.
+   */
+  private WritableDataStore<ModifiableDBIDs> rnns;
+
+  /**
+   * Scores.
+   */
+  private WritableDoubleDataStore scores;
+
+  /**
+   * Score minimum and maximum.
+   */
+  private DoubleMinMaxProcessor mm;
+
+  /**
+   * Constructor.
+   *
+   * @param m Pruning threshold
+   */
+  public INFLOScore(double m) {
+    super();
+    this.m = m;
+  }
+
+  @Override
+  public void addProcessors(int pass, ParallelKNNOutlierEngine.Context ctx, List<Processor> procs) {
+    if(pass == ParallelKNNOutlierEngine.PASS_DENSITY) {
+      rnns = DataStoreUtil.makeStorage(ctx.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, ModifiableDBIDs.class);
+      for(DBIDIter iter = ctx.getDBIDs().iter(); iter.valid(); iter.advance()) {
+        rnns.put(iter, DBIDUtil.newArray());
+      }
+      pruned = ctx.addOutput(procs, new NeighborhoodProcessor(ctx.getKNNs(), rnns), null, null);
+    }
+    else if(pass == ParallelKNNOutlierEngine.PASS_SCORE) {
+      scores = ctx.addOutput(procs, new INFLOProcessor(ctx.getKNNs(), ctx.getKDistances(), rnns, pruned), null, mm = new DoubleMinMaxProcessor());
+    }
+  }
+
+  @Override
+  public void finishPass(int pass, ParallelKNNOutlierEngine.Context ctx) {
+    if(pass == ParallelKNNOutlierEngine.PASS_SCORE) {
+      rnns.destroy();
+      rnns = null;
+      pruned.destroy();
+      pruned = null;
+    }
+  }
+
+  @Override
+  public OutlierResult getResult(ParallelKNNOutlierEngine.Context ctx) {
+    DoubleMinMax minmax = mm.getMinMax();
+    return new OutlierResult(new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., Double.POSITIVE_INFINITY, 1.), //
+        new MaterializedDoubleRelation("Influence Outlier Score", "inflo-outlier", scores, ctx.getDBIDs()));
+  }
+
+  /**
+   * Find the reverse nearest neighbors, and apply the pruning rule. Outputs 1
+   * for pruned objects, 0 otherwise.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class NeighborhoodProcessor extends AbstractDoubleProcessor {
+    /**
+     * Materialized kNN.
+     */
+    final DataStore<KNNList> knns;
+
+    /**
+     * Reverse nearest neighbors output.
+     */
+    final WritableDataStore<ModifiableDBIDs> rnns;
+
+    /**
+     * Constructor.
+     *
+     * @param knns Materialized kNN
+     * @param rnns Reverse nearest neighbors output
+     */
+    NeighborhoodProcessor(DataStore<KNNList> knns, WritableDataStore<ModifiableDBIDs> rnns) {
+      this.knns = knns;
+      this.rnns = rnns;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      return new NeighborhoodInstance(executor.getInstance(output));
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      NeighborhoodInstance instance = (NeighborhoodInstance) inst;
+      synchronized(this) {
+        DBIDArrayIter t = instance.targets.iter(), s = instance.sources.iter();
+        for(; t.valid(); t.advance(), s.advance()) {
+          rnns.get(t).add(s);
+        }
+      }
+    }
+
+    /**
+     * Instance, collecting reverse neighbor pairs.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    private class NeighborhoodInstance extends Instance {
+      /**
+       * Reverse neighbor pairs, (target, source).
+       */
+      ArrayModifiableDBIDs targets = DBIDUtil.newArray(), sources = DBIDUtil.newArray();
+
+      /**
+       * Constructor.
+       *
+       * @param output Output variable
+       */
+      NeighborhoodInstance(SharedDouble.Instance output) {
+        super(output);
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        final KNNList knn = knns.get(id);
+        int count = 1; // The point itself.
+        for(DBIDIter niter = knn.iter(); niter.valid(); niter.advance()) {
+          if(DBIDUtil.equal(id, niter)) {
+            continue;
+          }
+          if(knns.get(niter).contains(id)) {
+            count++;
+          }
+          else {
+            // Only store reverse neighbors that are not kNN.
+            targets.add(niter);
+            sources.add(id);
+          }
+        }
+        // INFLO pruning rule
+        output.set(count >= knn.size() * m ? 1. : 0.);
+      }
+    }
+  }
+
+  /**
+   * Compute the INFLO scores.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class INFLOProcessor extends AbstractDoubleProcessor {
+    /**
+     * Materialized kNN.
+     */
+    final DataStore<KNNList> knns;
+
+    /**
+     * k-distances.
+     */
+    final DoubleDataStore kdists;
+
+    /**
+     * Reverse nearest neighbors, that are not also nearest neighbors.
+     */
+    final DataStore<ModifiableDBIDs> rnns;
+
+    /**
+     * Pruning flags.
+     */
+    final DoubleDataStore pruned;
+
+    /**
+     * Constructor.
+     *
+     * @param knns Materialized kNN
+     * @param kdists k-distances
+     * @param rnns Reverse nearest neighbors
+     * @param pruned Pruning flags
+     */
+    INFLOProcessor(DataStore<KNNList> knns, DoubleDataStore kdists, DataStore<ModifiableDBIDs> rnns, DoubleDataStore pruned) {
+      this.knns = knns;
+      this.kdists = kdists;
+      this.rnns = rnns;
+      this.pruned = pruned;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      return new Instance(executor.getInstance(output)) {
+        /**
+         * Union of kNN and reverse kNN.
+         */
+        HashSetModifiableDBIDs set = DBIDUtil.newHashSet();
+
+        @Override
+        public void map(DBIDRef id) {
+          final double kdist = kdists.doubleValue(id);
+          if(pruned.doubleValue(id) > 0. || kdist == 0.) {
+            output.set(1.);
+            return;
+          }
+          set.clear();
+          set.addDBIDs(knns.get(id));
+          set.addDBIDs(rnns.get(id));
+          // Compute mean density of NN \cup RNN
+          double sum = 0.;
+          int c = 0;
+          for(DBIDIter niter = set.iter(); niter.valid(); niter.advance()) {
+            if(DBIDUtil.equal(id, niter)) {
+              continue;
+            }
+            final double nkdist = kdists.doubleValue(niter);
+            if(nkdist <= 0) {
+              sum = Double.POSITIVE_INFINITY;
+              c++;
+              break;
+            }
+            sum += 1. / nkdist;
+            c++;
+          }
+          sum *= kdist;
+          output.set(sum == 0 ? 1. : sum / c);
+        }
+      };
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    /**
+     * Pruning threshold m.
+     */
+    protected double m = 1.;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      DoubleParameter mP = new DoubleParameter(INFLO.Parameterizer.M_ID, 1.0) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+      if(config.grab(mP)) {
+        m = mP.doubleValue();
+      }
+    }
+
+    @Override
+    protected INFLOScore makeInstance() {
+      return new INFLOScore(m);
+    }
+  }
+}
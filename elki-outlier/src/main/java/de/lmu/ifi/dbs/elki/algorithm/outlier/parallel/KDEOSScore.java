@@ -0,0 +1,404 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.KDEOS;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.math.statistics.distribution.NormalDistribution;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.GaussianKernelDensityFunction;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.ProbabilisticOutlierScore;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Kernel density estimation outlier score, as in {@link KDEOS}, for the
+ * {@link ParallelKNNOutlierEngine}. The maximum neighborhood size is the k of
+ * the engine.
+ *
+ * The kernel densities are distributed to the neighbors; these updates are
+ * synchronized on the density array of the receiving object.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class KDEOSScore implements ParallelKNNScore {
+  /**
+   * Significance cutoff when computing kernel density.
+   */
+  private static final double CUTOFF = 1e-20;
+
+  /**
+   * Kernel density function.
+   */
+  private KernelDensityFunction kernel;
+
+  /**
+   * Minimum bandwidth.
+   */
+  private double minBandwidth;
+
+  /**
+   * Kernel scaling parameter.
+   */
+  private double scale;
+
+  /**
+   * Minimum neighborhood size.
+   */
+  private int kmin;
+
+  /**
+   * Intrinsic dimensionality, -1 to use the data dimensionality.
+   */
+  private int idim;
+
+  /**
+   * Densities of each object, for each neighborhood size.
+   */
+  private WritableDataStore<double[]> densities;
+
+  /**
+   * Scores.
+   */
+  private WritableDoubleDataStore scores;
+
+  /**
+   * Score minimum and maximum.
+   */
+  private DoubleMinMaxProcessor mm;
+
+  /**
+   * Constructor.
+   *
+   * @param kernel Kernel density function
+   * @param minBandwidth Minimum bandwidth
+   * @param scale Kernel scaling parameter
+   * @param kmin Minimum neighborhood size
+   * @param idim Intrinsic dimensionality, -1 to use the data dimensionality
+   */
+  public KDEOSScore(KernelDensityFunction kernel, double minBandwidth, double scale, int kmin, int idim) {
+    super();
+    this.kernel = kernel;
+    this.minBandwidth = minBandwidth;
+    this.scale = scale;
+    this.kmin = kmin;
+    this.idim = idim;
+  }
+
+  @Override
+  public void addProcessors(int pass, ParallelKNNOutlierEngine.Context ctx, List<Processor> procs) {
+    final int kmax = ctx.getK();
+    if(kmin > kmax) {
+      throw new AbortException("The minimum neighborhood size of KDEOS must be at most k.");
+    }
+    if(pass == ParallelKNNOutlierEngine.PASS_KNN) {
+      final int dim = idim >= 0 ? idim : ctx.getDimensionality();
+      if(dim < 0) {
+        throw new AbortException("When using KDEOS with non-vectorspace data, the intrinsic dimensionality parameter must be set!");
+      }
+      densities = DataStoreUtil.makeStorage(ctx.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, double[].class);
+      for(DBIDIter iter = ctx.getDBIDs().iter(); iter.valid(); iter.advance()) {
+        densities.put(iter, new double[kmax + 1 - kmin]);
+      }
+      procs.add(new DensityProcessor(ctx.getKNNInput(), densities, kmax, dim));
+    }
+    else if(pass == ParallelKNNOutlierEngine.PASS_DENSITY) {
+      scores = ctx.addOutput(procs, new ScoreProcessor(ctx.getKNNs(), densities, kmax), null, mm = new DoubleMinMaxProcessor());
+    }
+  }
+
+  @Override
+  public void finishPass(int pass, ParallelKNNOutlierEngine.Context ctx) {
+    if(pass == ParallelKNNOutlierEngine.PASS_DENSITY) {
+      densities.destroy();
+      densities = null;
+    }
+  }
+
+  @Override
+  public OutlierResult getResult(ParallelKNNOutlierEngine.Context ctx) {
+    DoubleMinMax minmax = mm.getMinMax();
+    return new OutlierResult(new ProbabilisticOutlierScore(minmax.getMin(), minmax.getMax()), //
+        new MaterializedDoubleRelation("Kernel Density Estimation Outlier Scores", "kdeos-outlier", scores, ctx.getDBIDs()));
+  }
+
+  /**
+   * Distribute the kernel densities to the neighbors.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class DensityProcessor implements Processor {
+    /**
+     * kNN input.
+     */
+    final SharedObject<KNNList> input;
+
+    /**
+     * Density storage.
+     */
+    final DataStore<double[]> densities;
+
+    /**
+     * Maximum neighborhood size, and dimensionality.
+     */
+    final int kmax, dim;
+
+    /**
+     * Constructor.
+     *
+     * @param input kNN input
+     * @param densities Density storage
+     * @param kmax Maximum neighborhood size
+     * @param dim Dimensionality
+     */
+    DensityProcessor(SharedObject<KNNList> input, DataStore<double[]> densities, int kmax, int dim) {
+      this.input = input;
+      this.densities = densities;
+      this.kmax = kmax;
+      this.dim = dim;
+    }
+
+    @Override
+    public Processor.Instance instantiate(Executor executor) {
+      final SharedObject.Instance<KNNList> in = executor.getInstance(input);
+      final double iminbw = (minBandwidth > 0.) ? 1. / (minBandwidth * scale) : Double.POSITIVE_INFINITY;
+      return new Processor.Instance() {
+        @Override
+        public void map(DBIDRef id) {
+          final KNNList neighbors = in.get();
+          int k = 1, idx = 0;
+          double sum = 0.;
+          for(DoubleDBIDListIter kneighbor = neighbors.iter(); k <= kmax && kneighbor.valid(); kneighbor.advance(), k++) {
+            sum += kneighbor.doubleValue();
+            if(k < kmin) {
+              continue;
+            }
+            final double ibw = Math.min(k / (sum * scale), iminbw);
+            final double sca = MathUtil.powi(ibw, dim);
+            for(DoubleDBIDListIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance()) {
+              final double dens;
+              if(sca < Double.POSITIVE_INFINITY) { // NaNs with duplicate points!
+                dens = sca * kernel.density(neighbor.doubleValue() * ibw);
+              }
+              else {
+                dens = neighbor.doubleValue() == 0. ? 1. : 0.;
+              }
+              final double[] ndens = densities.get(neighbor);
+              synchronized(ndens) {
+                ndens[idx] += dens;
+              }
+              if(dens < CUTOFF) {
+                break;
+              }
+            }
+            ++idx; // Only if k >= kmin
+          }
+        }
+      };
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      // Nothing to do.
+    }
+  }
+
+  /**
+   * Compute the KDEOS scores.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class ScoreProcessor extends AbstractDoubleProcessor {
+    /**
+     * Materialized kNN.
+     */
+    final DataStore<KNNList> knns;
+
+    /**
+     * Density storage.
+     */
+    final DataStore<double[]> densities;
+
+    /**
+     * Maximum neighborhood size.
+     */
+    final int kmax;
+
+    /**
+     * Constructor.
+     *
+     * @param knns Materialized kNN
+     * @param densities Density storage
+     * @param kmax Maximum neighborhood size
+     */
+    ScoreProcessor(DataStore<KNNList> knns, DataStore<double[]> densities, int kmax) {
+      this.knns = knns;
+      this.densities = densities;
+      this.kmax = kmax;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      final int knum = kmax + 1 - kmin;
+      return new Instance(executor.getInstance(output)) {
+        /**
+         * Scratch storage of neighbor densities.
+         */
+        double[][] scratch = new double[knum][kmax + 5];
+
+        /**
+         * Mean and variance.
+         */
+        MeanVariance mv = new MeanVariance();
+
+        @Override
+        public void map(DBIDRef id) {
+          final double[] dens = densities.get(id);
+          final KNNList neighbors = knns.get(id);
+          if(scratch[0].length < neighbors.size()) {
+            // Resize scratch. Add some extra margin again.
+            scratch = new double[knum][neighbors.size() + 5];
+          }
+          int n = 0;
+          for(DoubleDBIDListIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance(), n++) {
+            double[] ndens = densities.get(neighbor);
+            for(int k = 0; k < knum; k++) {
+              scratch[k][n] = ndens[k];
+            }
+          }
+          // Compute means and stddevs for each k
+          double score = 0.;
+          for(int i = 0; i < knum; i++) {
+            mv.reset();
+            for(int j = 0; j < n; j++) {
+              mv.put(scratch[i][j]);
+            }
+            final double mean = mv.getMean(), stddev = mv.getSampleStddev();
+            if(stddev > 0.) {
+              score += (mean - dens[i]) / stddev;
+            }
+          }
+          score /= knum; // average
+          output.set(NormalDistribution.standardNormalCDF(score));
+        }
+      };
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    /**
+     * Kernel density function.
+     */
+    protected KernelDensityFunction kernel;
+
+    /**
+     * Minimum bandwidth.
+     */
+    protected double minBandwidth = 0.;
+
+    /**
+     * Kernel scaling parameter.
+     */
+    protected double scale;
+
+    /**
+     * Minimum neighborhood size.
+     */
+    protected int kmin;
+
+    /**
+     * Intrinsic dimensionality.
+     */
+    protected int idim = -1;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      ObjectParameter<KernelDensityFunction> kernelP = new ObjectParameter<>(KDEOS.Parameterizer.KERNEL_ID, KernelDensityFunction.class, GaussianKernelDensityFunction.class);
+      if(config.grab(kernelP)) {
+        kernel = kernelP.instantiateClass(config);
+      }
+      IntParameter kminP = new IntParameter(KDEOS.Parameterizer.KMIN_ID, 1) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kminP)) {
+        kmin = kminP.intValue();
+      }
+      DoubleParameter scaleP = new DoubleParameter(KDEOS.Parameterizer.KERNEL_SCALE_ID, .25) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+      if(config.grab(scaleP)) {
+        // Scale kernels by their canonical bandwidth, as in KDEOS.
+        scale = scaleP.doubleValue() * ((kernel != null) ? kernel.canonicalBandwidth() : 1.);
+      }
+      DoubleParameter minbwP = new DoubleParameter(KDEOS.Parameterizer.KERNEL_MIN_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_DOUBLE) //
+          .setOptional(true);
+      if(config.grab(minbwP)) {
+        minBandwidth = minbwP.doubleValue();
+      }
+      IntParameter idimP = new IntParameter(KDEOS.Parameterizer.IDIM_ID, 1);
+      if(config.grab(idimP)) {
+        idim = idimP.intValue();
+      }
+    }
+
+    @Override
+    protected KDEOSScore makeInstance() {
+      return new KDEOSScore(kernel, minBandwidth, scale, kmin, idim);
+    }
+  }
+}
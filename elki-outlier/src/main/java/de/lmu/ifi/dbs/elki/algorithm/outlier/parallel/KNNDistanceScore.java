@@ -0,0 +1,73 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNOutlier;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.KDistanceProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+
+/**
+ * kNN distance outlier score, as in {@link KNNOutlier}, for the
+ * {@link ParallelKNNOutlierEngine}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class KNNDistanceScore implements ParallelKNNScore {
+  /**
+   * Scores.
+   */
+  private WritableDoubleDataStore scores;
+
+  /**
+   * Score minimum and maximum.
+   */
+  private DoubleMinMaxProcessor mm;
+
+  @Override
+  public void addProcessors(int pass, ParallelKNNOutlierEngine.Context ctx, List<Processor> procs) {
+    if(pass == ParallelKNNOutlierEngine.PASS_KNN) {
+      KDistanceProcessor kdistm = new KDistanceProcessor(ctx.getK() + 1);
+      kdistm.connectKNNInput(ctx.getKNNInput());
+      scores = ctx.addOutput(procs, kdistm, null, mm = new DoubleMinMaxProcessor());
+    }
+  }
+
+  @Override
+  public void finishPass(int pass, ParallelKNNOutlierEngine.Context ctx) {
+    // Nothing to do.
+  }
+
+  @Override
+  public OutlierResult getResult(ParallelKNNOutlierEngine.Context ctx) {
+    DoubleMinMax minmax = mm.getMinMax();
+    return new OutlierResult(new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., Double.POSITIVE_INFINITY, 0.), //
+        new MaterializedDoubleRelation("kNN Outlier Score", "knn-outlier", scores, ctx.getDBIDs()));
+  }
+}
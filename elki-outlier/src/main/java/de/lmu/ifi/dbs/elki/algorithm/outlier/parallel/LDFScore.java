@@ -0,0 +1,292 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LDF;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.GaussianKernelDensityFunction;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Local density factor, as in {@link LDF}, for the
+ * {@link ParallelKNNOutlierEngine}. Requires vector data.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class LDFScore implements ParallelKNNScore {
+  /**
+   * Kernel density function.
+   */
+  private KernelDensityFunction kernel;
+
+  /**
+   * Bandwidth scaling factor.
+   */
+  private double h;
+
+  /**
+   * Scaling constant, to limit value range to 1/c.
+   */
+  private double c;
+
+  /**
+   * Local density estimates.
+   */
+  private WritableDoubleDataStore ldes;
+
+  /**
+   * Scores.
+   */
+  private WritableDoubleDataStore scores;
+
+  /**
+   * Score minimum and maximum.
+   */
+  private DoubleMinMaxProcessor mm;
+
+  /**
+   * Constructor.
+   *
+   * @param kernel Kernel density function
+   * @param h Kernel bandwidth scaling
+   * @param c Score scaling parameter
+   */
+  public LDFScore(KernelDensityFunction kernel, double h, double c) {
+    super();
+    this.kernel = kernel;
+    this.h = h;
+    this.c = c;
+  }
+
+  @Override
+  public void addProcessors(int pass, ParallelKNNOutlierEngine.Context ctx, List<Processor> procs) {
+    if(pass == ParallelKNNOutlierEngine.PASS_DENSITY) {
+      final int dim = ctx.getDimensionality();
+      if(dim < 1) {
+        throw new AbortException("LDF requires vector data of a fixed dimensionality.");
+      }
+      ldes = ctx.addOutput(procs, new LDEProcessor(ctx.getKNNs(), ctx.getKDistances(), dim), null, null);
+    }
+    else if(pass == ParallelKNNOutlierEngine.PASS_SCORE) {
+      scores = ctx.addOutput(procs, new LDFProcessor(ctx.getKNNs(), ldes), null, mm = new DoubleMinMaxProcessor());
+    }
+  }
+
+  @Override
+  public void finishPass(int pass, ParallelKNNOutlierEngine.Context ctx) {
+    if(pass == ParallelKNNOutlierEngine.PASS_SCORE) {
+      ldes.destroy();
+      ldes = null;
+    }
+  }
+
+  @Override
+  public OutlierResult getResult(ParallelKNNOutlierEngine.Context ctx) {
+    DoubleMinMax minmax = mm.getMinMax();
+    return new OutlierResult(new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, 1. / c, 1 / (1 + c)), //
+        new MaterializedDoubleRelation("Local Density Factor", "ldf-outlier", scores, ctx.getDBIDs()));
+  }
+
+  /**
+   * Compute the local density estimates.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class LDEProcessor extends AbstractDoubleProcessor {
+    /**
+     * Materialized kNN.
+     */
+    final DataStore<KNNList> knns;
+
+    /**
+     * k-distances.
+     */
+    final DoubleDataStore kdists;
+
+    /**
+     * Dimensionality.
+     */
+    final int dim;
+
+    /**
+     * Constructor.
+     *
+     * @param knns Materialized kNN
+     * @param kdists k-distances
+     * @param dim Dimensionality
+     */
+    LDEProcessor(DataStore<KNNList> knns, DoubleDataStore kdists, int dim) {
+      this.knns = knns;
+      this.kdists = kdists;
+      this.dim = dim;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      return new Instance(executor.getInstance(output)) {
+        @Override
+        public void map(DBIDRef id) {
+          double sum = 0.0;
+          int count = 0;
+          for(DoubleDBIDListIter neighbor = knns.get(id).iter(); neighbor.valid(); neighbor.advance()) {
+            if(DBIDUtil.equal(neighbor, id)) {
+              continue;
+            }
+            final double nkdist = kdists.doubleValue(neighbor);
+            if(!(nkdist > 0.) || nkdist == Double.POSITIVE_INFINITY) {
+              sum = Double.POSITIVE_INFINITY;
+              count++;
+              break;
+            }
+            final double v = MathUtil.max(nkdist, neighbor.doubleValue()) / (h * nkdist);
+            sum += kernel.density(v) / MathUtil.powi(h * nkdist, dim);
+            count++;
+          }
+          output.set(sum / count);
+        }
+      };
+    }
+  }
+
+  /**
+   * Compute the local density factors.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class LDFProcessor extends AbstractDoubleProcessor {
+    /**
+     * Materialized kNN.
+     */
+    final DataStore<KNNList> knns;
+
+    /**
+     * Local density estimates.
+     */
+    final DoubleDataStore ldes;
+
+    /**
+     * Constructor.
+     *
+     * @param knns Materialized kNN
+     * @param ldes Local density estimates
+     */
+    LDFProcessor(DataStore<KNNList> knns, DoubleDataStore ldes) {
+      this.knns = knns;
+      this.ldes = ldes;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      return new Instance(executor.getInstance(output)) {
+        @Override
+        public void map(DBIDRef id) {
+          final double lrdp = ldes.doubleValue(id);
+          double sum = 0.0;
+          int count = 0;
+          for(DBIDIter neighbor = knns.get(id).iter(); neighbor.valid(); neighbor.advance()) {
+            if(DBIDUtil.equal(neighbor, id)) {
+              continue;
+            }
+            sum += ldes.doubleValue(neighbor);
+            count++;
+          }
+          sum /= count;
+          final double div = lrdp + c * sum;
+          output.set(div == Double.POSITIVE_INFINITY ? (sum < Double.POSITIVE_INFINITY ? 0. : 1) : (div > 0) ? sum / div : 0);
+        }
+      };
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    /**
+     * Kernel density function.
+     */
+    protected KernelDensityFunction kernel;
+
+    /**
+     * Bandwidth scaling factor.
+     */
+    protected double h;
+
+    /**
+     * Scaling constant.
+     */
+    protected double c = 0.1;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      ObjectParameter<KernelDensityFunction> kernelP = new ObjectParameter<>(LDF.Parameterizer.KERNEL_ID, KernelDensityFunction.class, GaussianKernelDensityFunction.class);
+      if(config.grab(kernelP)) {
+        kernel = kernelP.instantiateClass(config);
+      }
+      DoubleParameter hP = new DoubleParameter(LDF.Parameterizer.H_ID);
+      if(config.grab(hP)) {
+        h = hP.doubleValue();
+      }
+      DoubleParameter cP = new DoubleParameter(LDF.Parameterizer.C_ID, 0.1);
+      if(config.grab(cP)) {
+        c = cP.doubleValue();
+      }
+    }
+
+    @Override
+    protected LDFScore makeInstance() {
+      return new LDFScore(kernel, h, c);
+    }
+  }
+}
@@ -0,0 +1,363 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LoOP;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.math.statistics.distribution.NormalDistribution;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.ProbabilisticOutlierScore;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+
+import net.jafama.FastMath;
+
+/**
+ * Local outlier probabilities, as in {@link LoOP}, for the
+ * {@link ParallelKNNOutlierEngine}. The same neighborhood is used for the
+ * reference and the comparison set.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class LoOPScore implements ParallelKNNScore {
+  /**
+   * Lambda parameter.
+   */
+  private double lambda;
+
+  /**
+   * Probabilistic distances.
+   */
+  private WritableDoubleDataStore pdists;
+
+  /**
+   * Probabilistic local outlier factors.
+   */
+  private WritableDoubleDataStore plofs;
+
+  /**
+   * Computation of the probabilistic local outlier factors.
+   */
+  private PLOFProcessor plofm;
+
+  /**
+   * Normalization factor.
+   */
+  private double nplof;
+
+  /**
+   * Scores.
+   */
+  private WritableDoubleDataStore scores;
+
+  /**
+   * Score minimum and maximum.
+   */
+  private DoubleMinMaxProcessor mm;
+
+  /**
+   * Constructor.
+   *
+   * @param lambda Lambda parameter
+   */
+  public LoOPScore(double lambda) {
+    super();
+    this.lambda = lambda;
+  }
+
+  @Override
+  public void addProcessors(int pass, ParallelKNNOutlierEngine.Context ctx, List<Processor> procs) {
+    final int k = ctx.getK();
+    switch(pass){
+    case ParallelKNNOutlierEngine.PASS_KNN:
+      pdists = ctx.addOutput(procs, new PDistProcessor(k, ctx.getKNNInput()), null, null);
+      break;
+    case ParallelKNNOutlierEngine.PASS_DENSITY:
+      plofs = ctx.addOutput(procs, plofm = new PLOFProcessor(k, ctx.getKNNs(), pdists), null, null);
+      break;
+    case ParallelKNNOutlierEngine.PASS_SCORE:
+      scores = ctx.addOutput(procs, new NormalizationProcessor(plofs, 1. / (nplof * MathUtil.SQRT2)), null, mm = new DoubleMinMaxProcessor());
+      break;
+    default:
+      break;
+    }
+  }
+
+  @Override
+  public void finishPass(int pass, ParallelKNNOutlierEngine.Context ctx) {
+    if(pass == ParallelKNNOutlierEngine.PASS_DENSITY) {
+      pdists.destroy();
+      pdists = null;
+      nplof = lambda * FastMath.sqrt(plofm.sum / ctx.getDBIDs().size());
+      nplof = nplof > 0. ? nplof : 1.;
+      plofm = null;
+    }
+    else if(pass == ParallelKNNOutlierEngine.PASS_SCORE) {
+      plofs.destroy();
+      plofs = null;
+    }
+  }
+
+  @Override
+  public OutlierResult getResult(ParallelKNNOutlierEngine.Context ctx) {
+    DoubleMinMax minmax = mm.getMinMax();
+    return new OutlierResult(new ProbabilisticOutlierScore(minmax.getMin(), minmax.getMax(), 0.), //
+        new MaterializedDoubleRelation("Local Outlier Probabilities", "loop-outlier", scores, ctx.getDBIDs()));
+  }
+
+  /**
+   * Compute the probabilistic distance of an object.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class PDistProcessor extends AbstractDoubleProcessor {
+    /**
+     * Neighborhood size.
+     */
+    final int k;
+
+    /**
+     * kNN input.
+     */
+    final SharedObject<KNNList> input;
+
+    /**
+     * Constructor.
+     *
+     * @param k Neighborhood size
+     * @param input kNN input
+     */
+    PDistProcessor(int k, SharedObject<KNNList> input) {
+      this.k = k;
+      this.input = input;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      final SharedObject.Instance<KNNList> in = executor.getInstance(input);
+      return new Instance(executor.getInstance(output)) {
+        @Override
+        public void map(DBIDRef id) {
+          int ks = 0;
+          double ssum = 0.;
+          for(DoubleDBIDListIter neighbor = in.get().iter(); neighbor.valid() && ks < k; neighbor.advance()) {
+            if(DBIDUtil.equal(neighbor, id)) {
+              continue;
+            }
+            final double d = neighbor.doubleValue();
+            ssum += d * d;
+            ks++;
+          }
+          output.set(ks > 0 ? FastMath.sqrt(ssum / ks) : 0.);
+        }
+      };
+    }
+  }
+
+  /**
+   * Compute the probabilistic local outlier factor, and the sum of squared
+   * deviations used for normalization.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class PLOFProcessor extends AbstractDoubleProcessor {
+    /**
+     * Neighborhood size.
+     */
+    final int k;
+
+    /**
+     * Materialized kNN.
+     */
+    final DataStore<KNNList> knns;
+
+    /**
+     * Probabilistic distances.
+     */
+    final DoubleDataStore pdists;
+
+    /**
+     * Sum of squared deviations of the PLOF from 1.
+     */
+    double sum;
+
+    /**
+     * Constructor.
+     *
+     * @param k Neighborhood size
+     * @param knns Materialized kNN
+     * @param pdists Probabilistic distances
+     */
+    PLOFProcessor(int k, DataStore<KNNList> knns, DoubleDataStore pdists) {
+      this.k = k;
+      this.knns = knns;
+      this.pdists = pdists;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      return new PLOFInstance(executor.getInstance(output));
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      synchronized(this) {
+        sum += ((PLOFInstance) inst).sum;
+      }
+    }
+
+    /**
+     * Instance, tracking a partial sum.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    private class PLOFInstance extends Instance {
+      /**
+       * Partial sum of squared deviations.
+       */
+      double sum;
+
+      /**
+       * Constructor.
+       *
+       * @param output Output variable
+       */
+      PLOFInstance(SharedDouble.Instance output) {
+        super(output);
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        int ks = 0;
+        double s = 0.;
+        for(DBIDIter neighbor = knns.get(id).iter(); neighbor.valid() && ks < k; neighbor.advance()) {
+          if(DBIDUtil.equal(neighbor, id)) {
+            continue;
+          }
+          s += pdists.doubleValue(neighbor);
+          ks++;
+        }
+        double plof = MathUtil.max(pdists.doubleValue(id) * ks / s, 1.0);
+        if(Double.isNaN(plof) || Double.isInfinite(plof)) {
+          plof = 1.0;
+        }
+        sum += (plof - 1.0) * (plof - 1.0);
+        output.set(plof);
+      }
+    }
+  }
+
+  /**
+   * Normalize the probabilistic local outlier factors to probabilities.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class NormalizationProcessor extends AbstractDoubleProcessor {
+    /**
+     * Probabilistic local outlier factors.
+     */
+    final DoubleDataStore plofs;
+
+    /**
+     * Normalization factor.
+     */
+    final double norm;
+
+    /**
+     * Constructor.
+     *
+     * @param plofs Probabilistic local outlier factors
+     * @param norm Normalization factor
+     */
+    NormalizationProcessor(DoubleDataStore plofs, double norm) {
+      this.plofs = plofs;
+      this.norm = norm;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      return new Instance(executor.getInstance(output)) {
+        @Override
+        public void map(DBIDRef id) {
+          output.set(NormalDistribution.erf((plofs.doubleValue(id) - 1.) * norm));
+        }
+      };
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    /**
+     * Lambda parameter.
+     */
+    protected double lambda = 2.;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      DoubleParameter lambdaP = new DoubleParameter(LoOP.Parameterizer.LAMBDA_ID, 2.) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+      if(config.grab(lambdaP)) {
+        lambda = lambdaP.doubleValue();
+      }
+    }
+
+    @Override
+    protected LoOPScore makeInstance() {
+      return new LoOPScore(lambda);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.ODIN;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.IntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+import de.lmu.ifi.dbs.elki.result.outlier.InvertedOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+
+/**
+ * Outlier detection based on the in-degree of the kNN graph, as in
+ * {@link ODIN}, for the {@link ParallelKNNOutlierEngine}.
+ *
+ * The in-degrees are counted with atomic increments, so the result does not
+ * depend on the order of processing.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class ODINScore implements ParallelKNNScore {
+  /**
+   * In-degree counts, by object offset.
+   */
+  private AtomicIntegerArray counts;
+
+  /**
+   * Scores.
+   */
+  private WritableDoubleDataStore scores;
+
+  /**
+   * Score minimum and maximum.
+   */
+  private DoubleMinMax minmax;
+
+  @Override
+  public void addProcessors(int pass, ParallelKNNOutlierEngine.Context ctx, List<Processor> procs) {
+    if(pass == ParallelKNNOutlierEngine.PASS_KNN) {
+      counts = new AtomicIntegerArray(ctx.getDBIDs().size());
+      procs.add(new InDegreeProcessor(ctx.getKNNInput(), ctx.getOffsets(), counts));
+    }
+  }
+
+  @Override
+  public void finishPass(int pass, ParallelKNNOutlierEngine.Context ctx) {
+    if(pass == ParallelKNNOutlierEngine.PASS_KNN) {
+      final double inc = 1. / ctx.getK();
+      scores = DataStoreUtil.makeDoubleStorage(ctx.getDBIDs(), DataStoreFactory.HINT_DB);
+      minmax = new DoubleMinMax();
+      for(DBIDArrayIter it = ctx.getDBIDs().iter(); it.valid(); it.advance()) {
+        final double score = counts.get(it.getOffset()) * inc;
+        scores.putDouble(it, score);
+        minmax.put(score);
+      }
+      counts = null;
+    }
+  }
+
+  @Override
+  public OutlierResult getResult(ParallelKNNOutlierEngine.Context ctx) {
+    final double inc = 1. / ctx.getK();
+    return new OutlierResult(new InvertedOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., inc * (ctx.getDBIDs().size() - 1), 1), //
+        new MaterializedDoubleRelation("ODIN In-Degree", "odin", scores, ctx.getDBIDs()));
+  }
+
+  /**
+   * Count the in-degree of the neighbors.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class InDegreeProcessor implements Processor {
+    /**
+     * kNN input.
+     */
+    final SharedObject<KNNList> input;
+
+    /**
+     * Object offsets.
+     */
+    final IntegerDataStore offsets;
+
+    /**
+     * In-degree counts.
+     */
+    final AtomicIntegerArray counts;
+
+    /**
+     * Constructor.
+     *
+     * @param input kNN input
+     * @param offsets Object offsets
+     * @param counts In-degree counts
+     */
+    InDegreeProcessor(SharedObject<KNNList> input, IntegerDataStore offsets, AtomicIntegerArray counts) {
+      this.input = input;
+      this.offsets = offsets;
+      this.counts = counts;
+    }
+
+    @Override
+    public Processor.Instance instantiate(Executor executor) {
+      final SharedObject.Instance<KNNList> in = executor.getInstance(input);
+      return new Processor.Instance() {
+        @Override
+        public void map(DBIDRef id) {
+          for(DBIDIter nei = in.get().iter(); nei.valid(); nei.advance()) {
+            if(!DBIDUtil.equal(id, nei)) {
+              counts.incrementAndGet(offsets.intValue(nei));
+            }
+          }
+        }
+      };
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      // Nothing to do.
+    }
+  }
+}
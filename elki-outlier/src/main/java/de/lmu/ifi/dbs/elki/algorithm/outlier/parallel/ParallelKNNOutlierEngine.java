@@ -0,0 +1,474 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
+import de.lmu.ifi.dbs.elki.data.type.FieldTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.IntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.StepProgress;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.KDistanceProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.KNNProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+import de.lmu.ifi.dbs.elki.result.BasicResult;
+import de.lmu.ifi.dbs.elki.result.Result;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierScores;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectListParameter;
+
+/**
+ * Parallel engine for kNN-based outlier detection, which materializes the k
+ * nearest neighbors once, and then computes any number of outlier scores
+ * (such as LOF, LoOP, kNN, ODIN, ...) from this materialization.
+ *
+ * All scores are computed concurrently in a fixed number of parallel passes
+ * over the data, with each score contributing processors to each pass. The
+ * result is a group of outlier results, one for each score.
+ *
+ * If only the top n outliers are requested, each score is reduced to its top
+ * n and a histogram when it is complete. Because the materialized kNN
+ * dominate the memory use, the scores are not streamed as in the single
+ * algorithms, and no score files are written.
+ *
+ * This parallelized implementation is based on the easy-to-parallelize
+ * generalized pattern discussed in
+ * <p>
+ * Erich Schubert, Arthur Zimek, Hans-Peter Kriegel<br />
+ * Local Outlier Detection Reconsidered: a Generalized View on Locality with
+ * Applications to Spatial, Video, and Network Outlier Detection<br />
+ * Data Mining and Knowledge Discovery, 28(1): 190–237, 2014.
+ * </p>
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.composedOf ParallelKNNScore
+ * @apiviz.has Context
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "E. Schubert, A. Zimek, H.-P. Kriegel", //
+    title = "Local Outlier Detection Reconsidered: a Generalized View on Locality with Applications to Spatial, Video, and Network Outlier Detection", //
+    booktitle = "Data Mining and Knowledge Discovery, 28(1): 190–237, 2014.", //
+    url = "http://dx.doi.org/10.1007/s10618-012-0300-z")
+public class ParallelKNNOutlierEngine<O> extends AbstractDistanceBasedAlgorithm<O, Result> {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelKNNOutlierEngine.class);
+
+  /**
+   * Pass in which the kNN are computed, and available for the current object.
+   */
+  public static final int PASS_KNN = 0;
+
+  /**
+   * First pass in which all kNN and k-distances are available.
+   */
+  public static final int PASS_DENSITY = 1;
+
+  /**
+   * Final pass, in which the results of the density pass are available.
+   */
+  public static final int PASS_SCORE = 2;
+
+  /**
+   * Number of passes.
+   */
+  public static final int NUM_PASSES = 3;
+
+  /**
+   * Parameter k
+   */
+  protected int k;
+
+  /**
+   * Scores to compute.
+   */
+  protected List<? extends ParallelKNNScore> scores;
+
+  /**
+   * Number of top outliers to keep, 0 for all scores.
+   */
+  protected int topn;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param k K parameter
+   * @param scores Scores to compute
+   */
+  public ParallelKNNOutlierEngine(DistanceFunction<? super O> distanceFunction, int k, List<? extends ParallelKNNScore> scores) {
+    this(distanceFunction, k, scores, 0);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param k K parameter
+   * @param scores Scores to compute
+   * @param topn Number of top outliers to keep, 0 for all scores
+   */
+  public ParallelKNNOutlierEngine(DistanceFunction<? super O> distanceFunction, int k, List<? extends ParallelKNNScore> scores, int topn) {
+    super(distanceFunction);
+    this.k = k;
+    this.scores = scores;
+    this.topn = topn;
+  }
+
+  /**
+   * Run the outlier detection methods.
+   *
+   * @param database Database
+   * @param relation Relation
+   * @return Result, containing one outlier result for each score
+   */
+  public Result run(Database database, Relation<O> relation) {
+    StepProgress stepprog = LOG.isVerbose() ? new StepProgress("Parallel kNN outlier detection", NUM_PASSES) : null;
+    DistanceQuery<O> distq = database.getDistanceQuery(relation, getDistanceFunction());
+    KNNQuery<O> knnq = database.getKNNQuery(distq, k + 1);
+    Context ctx = new Context(relation, DBIDUtil.ensureArray(relation.getDBIDs()), k, distq);
+
+    List<Processor> procs = new ArrayList<>();
+    for(int pass = 0; pass < NUM_PASSES; pass++) {
+      LOG.beginStep(stepprog, pass + 1, pass == PASS_KNN ? "Materializing nearest neighbors." : pass == PASS_DENSITY ? "Computing densities." : "Computing outlier scores.");
+      procs.clear();
+      if(pass == PASS_KNN) {
+        // Compute and store the kNN and k-distances
+        KNNProcessor<O> knnm = new KNNProcessor<>(k + 1, knnq);
+        knnm.connectKNNOutput(ctx.knnv);
+        WriteDataStoreProcessor<KNNList> storek = new WriteDataStoreProcessor<>(ctx.knns);
+        storek.connectInput(ctx.knnv);
+        KDistanceProcessor kdistm = new KDistanceProcessor(k + 1);
+        kdistm.connectKNNInput(ctx.knnv);
+        procs.add(knnm);
+        procs.add(storek);
+        ctx.addOutput(procs, kdistm, ctx.kdists, null);
+      }
+      for(ParallelKNNScore score : scores) {
+        score.addProcessors(pass, ctx, procs);
+      }
+      if(!procs.isEmpty()) {
+        ParallelExecutor.run(ctx.ids, procs.toArray(new Processor[procs.size()]));
+      }
+      for(ParallelKNNScore score : scores) {
+        score.finishPass(pass, ctx);
+      }
+    }
+    LOG.setCompleted(stepprog);
+
+    BasicResult result = new BasicResult("kNN Outlier Scores", "knn-outlier-scores");
+    for(ParallelKNNScore score : scores) {
+      OutlierResult or = score.getResult(ctx);
+      result.addChildResult(topn > 0 ? TopNOutlierScores.topN(or, topn, null) : or);
+    }
+    ctx.knns.destroy();
+    ctx.kdists.destroy();
+    return result;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Shared state of a run, available to the individual scores.
+   *
+   * @author Erich Schubert
+   */
+  public static class Context {
+    /**
+     * Data relation.
+     */
+    private final Relation<?> relation;
+
+    /**
+     * Object ids.
+     */
+    private final ArrayDBIDs ids;
+
+    /**
+     * Neighborhood size (excluding the query object).
+     */
+    private final int k;
+
+    /**
+     * Distance query.
+     */
+    private final DistanceQuery<?> distq;
+
+    /**
+     * kNN of the current object, in the first pass.
+     */
+    private final SharedObject<KNNList> knnv = new SharedObject<>();
+
+    /**
+     * Materialized kNN, of size k+1 (including the query object).
+     */
+    private final WritableDataStore<KNNList> knns;
+
+    /**
+     * k-distances (of the k+1 nearest neighbors, including the query object).
+     */
+    private final WritableDoubleDataStore kdists;
+
+    /**
+     * Object offsets, built on demand.
+     */
+    private WritableIntegerDataStore offsets;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param ids Object ids
+     * @param k Neighborhood size
+     * @param distq Distance query
+     */
+    protected Context(Relation<?> relation, ArrayDBIDs ids, int k, DistanceQuery<?> distq) {
+      this.relation = relation;
+      this.ids = ids;
+      this.k = k;
+      this.distq = distq;
+      this.knns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, KNNList.class);
+      this.kdists = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+    }
+
+    /**
+     * Get the data relation.
+     *
+     * @return Relation
+     */
+    public Relation<?> getRelation() {
+      return relation;
+    }
+
+    /**
+     * Get the dimensionality of the data, if it is a vector field.
+     *
+     * @return Dimensionality, or -1
+     */
+    public int getDimensionality() {
+      final SimpleTypeInformation<?> type = relation.getDataTypeInformation();
+      return type instanceof FieldTypeInformation ? ((FieldTypeInformation) type).getDimensionality() : -1;
+    }
+
+    /**
+     * Get the object ids.
+     *
+     * @return Object ids
+     */
+    public ArrayDBIDs getDBIDs() {
+      return ids;
+    }
+
+    /**
+     * Get the neighborhood size k (not including the query object; the kNN
+     * lists contain k+1 objects).
+     *
+     * @return k
+     */
+    public int getK() {
+      return k;
+    }
+
+    /**
+     * Get the distance query.
+     *
+     * @return Distance query
+     */
+    public DistanceQuery<?> getDistanceQuery() {
+      return distq;
+    }
+
+    /**
+     * Get the kNN of the current object; only valid in the first pass.
+     *
+     * @return kNN input variable
+     */
+    public SharedObject<KNNList> getKNNInput() {
+      return knnv;
+    }
+
+    /**
+     * Get the materialized kNN; only available after the first pass.
+     *
+     * @return kNN lists, of k+1 objects including the query object
+     */
+    public DataStore<KNNList> getKNNs() {
+      return knns;
+    }
+
+    /**
+     * Get the k-distances; only available after the first pass.
+     *
+     * @return Distance to the (k+1) nearest neighbor, including the query
+     *         object
+     */
+    public DoubleDataStore getKDistances() {
+      return kdists;
+    }
+
+    /**
+     * Get the offsets of the objects in {@link #getDBIDs()}, for scores that
+     * aggregate into arrays. Must be called before the pass starts.
+     *
+     * @return Offsets
+     */
+    public IntegerDataStore getOffsets() {
+      if(offsets == null) {
+        offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+        for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+          offsets.putInt(it, it.getOffset());
+        }
+      }
+      return offsets;
+    }
+
+    /**
+     * Connect a double processor to a new (or existing) storage, and
+     * optionally to a minimum/maximum statistic.
+     *
+     * @param procs Processor list to add to
+     * @param proc Processor producing the values
+     * @param store Output storage, may be {@code null} to allocate a new one
+     * @param mm Minimum and maximum, may be {@code null}
+     * @return Output storage
+     */
+    public WritableDoubleDataStore addOutput(List<Processor> procs, AbstractDoubleProcessor proc, WritableDoubleDataStore store, DoubleMinMaxProcessor mm) {
+      if(store == null) {
+        store = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+      }
+      SharedDouble var = new SharedDouble();
+      proc.connectOutput(var);
+      WriteDoubleDataStoreProcessor storem = new WriteDoubleDataStoreProcessor(store);
+      storem.connectInput(var);
+      procs.add(proc);
+      procs.add(storem);
+      if(mm != null) {
+        mm.connectInput(var);
+        procs.add(mm);
+      }
+      return store;
+    }
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * Outlier scores to compute.
+     */
+    public static final OptionID SCORES_ID = new OptionID("knnengine.scores", "Outlier scores to compute from the shared kNN.");
+
+    /**
+     * K parameter
+     */
+    protected int k;
+
+    /**
+     * Scores to compute.
+     */
+    protected List<ParallelKNNScore> scores;
+
+    /**
+     * Number of top outliers to keep.
+     */
+    protected int topn;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter kP = new IntParameter(LOF.Parameterizer.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.intValue();
+      }
+      ObjectListParameter<ParallelKNNScore> scoresP = new ObjectListParameter<>(SCORES_ID, ParallelKNNScore.class);
+      scoresP.setDefaultValue(Arrays.<Class<? extends ParallelKNNScore>> asList(LOFScore.class, KNNDistanceScore.class));
+      if(config.grab(scoresP)) {
+        scores = scoresP.instantiateClasses(config);
+      }
+      IntParameter topnP = new IntParameter(TopNOutlierScores.TOPN_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .setOptional(true);
+      if(config.grab(topnP)) {
+        topn = topnP.intValue();
+      }
+    }
+
+    @Override
+    protected ParallelKNNOutlierEngine<O> makeInstance() {
+      return new ParallelKNNOutlierEngine<>(distanceFunction, k, scores, topn);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+
+/**
+ * A kNN-based outlier score computed by the
+ * {@link ParallelKNNOutlierEngine}.
+ *
+ * The engine performs {@link ParallelKNNOutlierEngine#NUM_PASSES} parallel
+ * passes over the data set; in each pass, every score can contribute
+ * processors. In pass {@link ParallelKNNOutlierEngine#PASS_KNN} the kNN of the
+ * current object is available via {@link ParallelKNNOutlierEngine.Context#getKNNInput()},
+ * in all later passes the kNN and k-distances of all objects are available.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public interface ParallelKNNScore {
+  /**
+   * Add the processors needed in the given pass.
+   *
+   * @param pass Pass number
+   * @param ctx Shared context
+   * @param procs Output list of processors
+   */
+  void addProcessors(int pass, ParallelKNNOutlierEngine.Context ctx, List<Processor> procs);
+
+  /**
+   * Called after each pass, for (cheap) serial postprocessing.
+   *
+   * @param pass Pass number
+   * @param ctx Shared context
+   */
+  void finishPass(int pass, ParallelKNNOutlierEngine.Context ctx);
+
+  /**
+   * Get the final result, after all passes.
+   *
+   * @param ctx Shared context
+   * @return Outlier result
+   */
+  OutlierResult getResult(ParallelKNNOutlierEngine.Context ctx);
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.SimplifiedLOF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel.LOFProcessor;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel.SimplifiedLRDProcessor;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
+
+/**
+ * Simplified local outlier factor, as in {@link SimplifiedLOF}, for the
+ * {@link ParallelKNNOutlierEngine}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.uses SimplifiedLRDProcessor
+ * @apiviz.uses LOFProcessor
+ */
+public class SimplifiedLOFScore implements ParallelKNNScore {
+  /**
+   * Simplified densities.
+   */
+  private WritableDoubleDataStore lrds;
+
+  /**
+   * Scores.
+   */
+  private WritableDoubleDataStore scores;
+
+  /**
+   * Score minimum and maximum.
+   */
+  private DoubleMinMaxProcessor mm;
+
+  @Override
+  public void addProcessors(int pass, ParallelKNNOutlierEngine.Context ctx, List<Processor> procs) {
+    if(pass == ParallelKNNOutlierEngine.PASS_DENSITY) {
+      lrds = ctx.addOutput(procs, new SimplifiedLRDProcessor(ctx.getKNNs()), null, null);
+    }
+    else if(pass == ParallelKNNOutlierEngine.PASS_SCORE) {
+      scores = ctx.addOutput(procs, new LOFProcessor(ctx.getKNNs(), lrds, true), null, mm = new DoubleMinMaxProcessor());
+    }
+  }
+
+  @Override
+  public void finishPass(int pass, ParallelKNNOutlierEngine.Context ctx) {
+    if(pass == ParallelKNNOutlierEngine.PASS_SCORE) {
+      lrds.destroy();
+      lrds = null;
+    }
+  }
+
+  @Override
+  public OutlierResult getResult(ParallelKNNOutlierEngine.Context ctx) {
+    DoubleMinMax minmax = mm.getMinMax();
+    return new OutlierResult(new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., Double.POSITIVE_INFINITY, 1.), //
+        new MaterializedDoubleRelation("Simplified Local Outlier Factor", "simplified-lof-outlier", scores, ctx.getDBIDs()));
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierScores;
+
+/**
+ * Sink passing outlier scores on to a streaming {@link TopNOutlierScores}
+ * collector, instead of a data store.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.has Instance
+ * @apiviz.uses SharedDouble
+ * @apiviz.uses TopNOutlierScores
+ */
+public class TopNOutlierProcessor implements Processor {
+  /**
+   * Score collector.
+   */
+  TopNOutlierScores scores;
+
+  /**
+   * Input channel.
+   */
+  SharedDouble input;
+
+  /**
+   * Constructor.
+   *
+   * @param scores Score collector
+   */
+  public TopNOutlierProcessor(TopNOutlierScores scores) {
+    super();
+    this.scores = scores;
+  }
+
+  /**
+   * Connect the input channel.
+   *
+   * @param input Input channel
+   */
+  public void connectInput(SharedDouble input) {
+    this.input = input;
+  }
+
+  @Override
+  public Instance instantiate(Executor executor) {
+    return new Instance(executor.getInstance(input), scores.newBatch());
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    ((Instance) inst).batch.finish();
+  }
+
+  /**
+   * Instance for a sub-channel.
+   *
+   * @author Erich Schubert
+   */
+  private static class Instance implements Processor.Instance {
+    /**
+     * Input channel instance.
+     */
+    private SharedDouble.Instance input;
+
+    /**
+     * Batch of this instance.
+     */
+    private TopNOutlierScores.Batch batch;
+
+    /**
+     * Constructor.
+     *
+     * @param input Input channel instance
+     * @param batch Batch to add to
+     */
+    public Instance(SharedDouble.Instance input, TopNOutlierScores.Batch batch) {
+      super();
+      this.input = input;
+      this.batch = batch;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      batch.put(id, input.doubleValue());
+    }
+  }
+}
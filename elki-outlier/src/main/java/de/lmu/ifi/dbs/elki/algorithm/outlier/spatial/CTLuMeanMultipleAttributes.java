@@ -33,6 +33,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
@@ -42,6 +43,9 @@ import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.Centroid;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.CovarianceMatrix;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
@@ -100,36 +104,64 @@ public class CTLuMeanMultipleAttributes<N, O extends NumberVector> extends Abstr
    * @param attributes Numerical attributes
    * @return Outlier detection result
    */
-  public OutlierResult run(Database database, Relation<N> spatial, Relation<O> attributes) {
+  public OutlierResult run(Database database, Relation<N> spatial, final Relation<O> attributes) {
     if(LOG.isDebugging()) {
       LOG.debug("Dimensionality: " + RelationUtil.dimensionality(attributes));
     }
     final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(database, spatial);
 
+    final WritableDataStore<double[]> deltas = DataStoreUtil.makeStorage(attributes.getDBIDs(), DataStoreFactory.HINT_TEMP, double[].class);
+    ParallelExecutor.run(attributes.getDBIDs(), new Processor() {
+      @Override
+      public Instance instantiate(Executor executor) {
+        return new Instance() {
+          @Override
+          public void map(DBIDRef id) {
+            final DBIDs neighbors = npred.getNeighborDBIDs(id);
+            // TODO: remove object itself from neighbors?
+
+            // Mean vector "g"
+            double[] mean = Centroid.make(attributes, neighbors).getArrayRef();
+            // Delta vector "h"
+            deltas.put(id, minusEquals(attributes.get(id).toArray(), mean));
+          }
+        };
+      }
+
+      @Override
+      public void cleanup(Instance inst) {
+        // Nothing to do.
+      }
+    });
+    // Covariance matrix, in the original order:
     CovarianceMatrix covmaker = new CovarianceMatrix(RelationUtil.dimensionality(attributes));
-    WritableDataStore<double[]> deltas = DataStoreUtil.makeStorage(attributes.getDBIDs(), DataStoreFactory.HINT_TEMP, double[].class);
     for(DBIDIter iditer = attributes.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      final O obj = attributes.get(iditer);
-      final DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      // TODO: remove object itself from neighbors?
-
-      // Mean vector "g"
-      double[] mean = Centroid.make(attributes, neighbors).getArrayRef();
-      // Delta vector "h"
-      double[] delta = minusEquals(obj.toArray(), mean);
-      deltas.put(iditer, delta);
-      covmaker.put(delta);
+      covmaker.put(deltas.get(iditer));
     }
     // Finalize covariance matrix:
-    double[] mean = covmaker.getMeanVector();
-    double[][] cmati = inverse(covmaker.destroyToSampleMatrix());
+    final double[] mean = covmaker.getMeanVector();
+    final double[][] cmati = inverse(covmaker.destroyToSampleMatrix());
+
+    final WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(attributes.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    ParallelExecutor.run(attributes.getDBIDs(), new Processor() {
+      @Override
+      public Instance instantiate(Executor executor) {
+        return new Instance() {
+          @Override
+          public void map(DBIDRef id) {
+            scores.putDouble(id, mahalanobisDistance(cmati, deltas.get(id), mean));
+          }
+        };
+      }
 
+      @Override
+      public void cleanup(Instance inst) {
+        // Nothing to do.
+      }
+    });
     DoubleMinMax minmax = new DoubleMinMax();
-    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(attributes.getDBIDs(), DataStoreFactory.HINT_STATIC);
     for(DBIDIter iditer = attributes.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      final double score = mahalanobisDistance(cmati, deltas.get(iditer), mean);
-      minmax.put(score);
-      scores.putDouble(iditer, score);
+      minmax.put(scores.doubleValue(iditer));
     }
 
     DoubleRelation scoreResult = new MaterializedDoubleRelation("mean multiple attributes spatial outlier", "mean-multipleattributes-outlier", scores, attributes.getDBIDs());
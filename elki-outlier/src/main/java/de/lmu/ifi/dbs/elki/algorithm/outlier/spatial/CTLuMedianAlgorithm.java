@@ -29,6 +29,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
@@ -37,6 +38,9 @@ import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
 import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
@@ -91,35 +95,50 @@ public class CTLuMedianAlgorithm<N> extends AbstractNeighborhoodOutlier<N> {
    * @param relation Data relation (1d!)
    * @return Outlier detection result
    */
-  public OutlierResult run(Database database, Relation<N> nrel, Relation<? extends NumberVector> relation) {
+  public OutlierResult run(Database database, Relation<N> nrel, final Relation<? extends NumberVector> relation) {
     final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(database, nrel);
-    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    final WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
 
-    MeanVariance mv = new MeanVariance();
-    for (DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      final double median;
-      {
-        double[] fi = new double[neighbors.size()];
-        // calculate and store Median of neighborhood
-        int c = 0;
-        for (DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-          if (DBIDUtil.equal(iditer, iter)) {
-            continue;
+    ParallelExecutor.run(relation.getDBIDs(), new Processor() {
+      @Override
+      public Instance instantiate(Executor executor) {
+        return new Instance() {
+          @Override
+          public void map(DBIDRef id) {
+            DBIDs neighbors = npred.getNeighborDBIDs(id);
+            final double median;
+            {
+              double[] fi = new double[neighbors.size()];
+              // calculate and store Median of neighborhood
+              int c = 0;
+              for (DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
+                if (DBIDUtil.equal(id, iter)) {
+                  continue;
+                }
+                fi[c] = relation.get(iter).doubleValue(0);
+                c++;
+              }
+
+              if (c > 0) {
+                median = QuickSelect.median(fi, 0, c);
+              } else {
+                median = relation.get(id).doubleValue(0);
+              }
+            }
+            scores.putDouble(id, relation.get(id).doubleValue(0) - median);
           }
-          fi[c] = relation.get(iter).doubleValue(0);
-          c++;
-        }
+        };
+      }
 
-        if (c > 0) {
-          median = QuickSelect.median(fi, 0, c);
-        } else {
-          median = relation.get(iditer).doubleValue(0);
-        }
+      @Override
+      public void cleanup(Instance inst) {
+        // Nothing to do.
       }
-      double h = relation.get(iditer).doubleValue(0) - median;
-      scores.putDouble(iditer, h);
-      mv.put(h);
+    });
+
+    MeanVariance mv = new MeanVariance();
+    for (DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+      mv.put(scores.doubleValue(iditer));
     }
 
     // Normalize scores
@@ -31,8 +31,10 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
@@ -45,6 +47,9 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.VMath;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
@@ -126,67 +131,100 @@ public class CTLuRandomWalkEC<P> extends AbstractDistanceBasedAlgorithm<P, Outli
    * @param relation Attribute value relation
    * @return Outlier result
    */
-  public OutlierResult run(Relation<P> spatial, Relation<? extends NumberVector> relation) {
-    DistanceQuery<P> distFunc = getDistanceFunction().instantiate(spatial);
-    WritableDataStore<double[]> similarityVectors = DataStoreUtil.makeStorage(spatial.getDBIDs(), DataStoreFactory.HINT_TEMP, double[].class);
-    WritableDataStore<DBIDs> neighbors = DataStoreUtil.makeStorage(spatial.getDBIDs(), DataStoreFactory.HINT_TEMP, DBIDs.class);
+  public OutlierResult run(Relation<P> spatial, final Relation<? extends NumberVector> relation) {
+    final DistanceQuery<P> distFunc = getDistanceFunction().instantiate(spatial);
+    final WritableDataStore<double[]> similarityVectors = DataStoreUtil.makeStorage(spatial.getDBIDs(), DataStoreFactory.HINT_TEMP, double[].class);
+    final WritableDataStore<DBIDs> neighbors = DataStoreUtil.makeStorage(spatial.getDBIDs(), DataStoreFactory.HINT_TEMP, DBIDs.class);
 
     // Make a static IDs array for matrix column indexing
-    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
-
-    // construct the relation Matrix of the ec-graph
-    double[][] E = new double[ids.size()][ids.size()];
-    KNNHeap heap = DBIDUtil.newHeap(k);
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final WritableIntegerDataStore index = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP);
     {
       int i = 0;
       for(DBIDIter id = ids.iter(); id.valid(); id.advance(), i++) {
-        final double val = relation.get(id).doubleValue(0);
-        assert (heap.size() == 0);
-        int j = 0;
-        for(DBIDIter n = ids.iter(); n.valid(); n.advance(), j++) {
-          if(i == j) {
-            continue;
-          }
-          final double e;
-          final double distance = distFunc.distance(id, n);
-          heap.insert(distance, n);
-          if(distance == 0) {
-            LOG.warning("Zero distances are not supported - skipping: " + DBIDUtil.toString(id) + " " + DBIDUtil.toString(n));
-            e = 0;
-          }
-          else {
-            double diff = Math.abs(val - relation.get(n).doubleValue(0));
-            double exp = FastMath.exp(FastMath.pow(diff, alpha));
-            // Implementation note: not inverting exp worked a lot better.
-            // Therefore we diverge from the article here.
-            e = exp / distance;
-          }
-          E[j][i] = e;
-        }
-        // Convert kNN Heap into DBID array
-        ModifiableDBIDs nids = DBIDUtil.newArray(heap.size());
-        while(heap.size() > 0) {
-          nids.add(heap.poll());
-        }
-        neighbors.put(id, nids);
+        index.putInt(id, i);
       }
     }
+
+    // construct the relation Matrix of the ec-graph, transposed: each task
+    // writes only its own row, instead of a column shared with other tasks.
+    final double[][] ET = new double[ids.size()][ids.size()];
+    ParallelExecutor.run(ids, new Processor() {
+      @Override
+      public Instance instantiate(Executor executor) {
+        final KNNHeap heap = DBIDUtil.newHeap(k);
+        return new Instance() {
+          @Override
+          public void map(DBIDRef id) {
+            final int i = index.intValue(id);
+            final double val = relation.get(id).doubleValue(0);
+            final double[] row = ET[i];
+            assert (heap.size() == 0);
+            int j = 0;
+            for(DBIDIter n = ids.iter(); n.valid(); n.advance(), j++) {
+              if(i == j) {
+                continue;
+              }
+              final double e;
+              final double distance = distFunc.distance(id, n);
+              heap.insert(distance, n);
+              if(distance == 0) {
+                LOG.warning("Zero distances are not supported - skipping: " + DBIDUtil.toString(id) + " " + DBIDUtil.toString(n));
+                e = 0;
+              }
+              else {
+                double diff = Math.abs(val - relation.get(n).doubleValue(0));
+                double exp = FastMath.exp(FastMath.pow(diff, alpha));
+                // Implementation note: not inverting exp worked a lot better.
+                // Therefore we diverge from the article here.
+                e = exp / distance;
+              }
+              row[j] = e;
+            }
+            // Convert kNN Heap into DBID array
+            ModifiableDBIDs nids = DBIDUtil.newArray(heap.size());
+            while(heap.size() > 0) {
+              nids.add(heap.poll());
+            }
+            neighbors.put(id, nids);
+          }
+        };
+      }
+
+      @Override
+      public void cleanup(Instance inst) {
+        // Nothing to do.
+      }
+    });
+    index.destroy();
     // normalize the adjacent Matrix
     // Sum based normalization - don't use E.normalizeColumns()
     // Which normalized to Euclidean length 1.0!
     // Also do the -c multiplication in this process.
-    for(int i = 0; i < E[0].length; i++) {
+    // The columns of E are the rows of ET.
+    for(int i = 0; i < ET.length; i++) {
+      final double[] row = ET[i];
       double sum = 0.0;
-      for(int j = 0; j < E.length; j++) {
-        sum += E[j][i];
+      for(int j = 0; j < row.length; j++) {
+        sum += row[j];
       }
       if(sum == 0) {
         sum = 1.0;
       }
-      for(int j = 0; j < E.length; j++) {
-        E[j][i] = -c * E[j][i] / sum;
+      for(int j = 0; j < row.length; j++) {
+        row[j] = -c * row[j] / sum;
+      }
+    }
+    // Transpose in place, the matrix is square.
+    for(int i = 1; i < ET.length; i++) {
+      final double[] row = ET[i];
+      for(int j = 0; j < i; j++) {
+        final double tmp = row[j];
+        row[j] = ET[j][i];
+        ET[j][i] = tmp;
       }
     }
+    double[][] E = ET;
     // Add identity matrix. The diagonal should still be 0s, so this is trivial.
     assert (E.length == E[0].length);
     for(int col = 0; col < E[0].length; col++) {
@@ -206,22 +244,36 @@ public class CTLuRandomWalkEC<P> extends AbstractDistanceBasedAlgorithm<P, Outli
     }
     E = null;
     // compute the relevance scores between specified Object and its neighbors
+    final WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(spatial.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    ParallelExecutor.run(ids, new Processor() {
+      @Override
+      public Instance instantiate(Executor executor) {
+        return new Instance() {
+          @Override
+          public void map(DBIDRef id) {
+            double gmean = 1.0;
+            int cnt = 0;
+            for(DBIDIter iter = neighbors.get(id).iter(); iter.valid(); iter.advance()) {
+              if(DBIDUtil.equal(id, iter)) {
+                continue;
+              }
+              double sim = VMath.angle(similarityVectors.get(id), similarityVectors.get(iter));
+              gmean *= sim;
+              cnt++;
+            }
+            scores.putDouble(id, FastMath.pow(gmean, 1.0 / cnt));
+          }
+        };
+      }
+
+      @Override
+      public void cleanup(Instance inst) {
+        // Nothing to do.
+      }
+    });
     DoubleMinMax minmax = new DoubleMinMax();
-    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(spatial.getDBIDs(), DataStoreFactory.HINT_STATIC);
     for(DBIDIter id = ids.iter(); id.valid(); id.advance()) {
-      double gmean = 1.0;
-      int cnt = 0;
-      for(DBIDIter iter = neighbors.get(id).iter(); iter.valid(); iter.advance()) {
-        if(DBIDUtil.equal(id, iter)) {
-          continue;
-        }
-        double sim = VMath.angle(similarityVectors.get(id), similarityVectors.get(iter));
-        gmean *= sim;
-        cnt++;
-      }
-      final double score = FastMath.pow(gmean, 1.0 / cnt);
-      minmax.put(score);
-      scores.putDouble(id, score);
+      minmax.put(scores.doubleValue(id));
     }
 
     DoubleRelation scoreResult = new MaterializedDoubleRelation("randomwalkec", "RandomWalkEC", scores, relation.getDBIDs());
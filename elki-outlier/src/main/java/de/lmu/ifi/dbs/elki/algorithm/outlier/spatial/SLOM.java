@@ -28,6 +28,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
@@ -37,6 +38,9 @@ import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
@@ -92,96 +96,124 @@ public class SLOM<N, O> extends AbstractDistanceBasedSpatialOutlier<N, O> {
    */
   public OutlierResult run(Database database, Relation<N> spatial, Relation<O> relation) {
     final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(database, spatial);
-    DistanceQuery<O> distFunc = getNonSpatialDistanceFunction().instantiate(relation);
+    final DistanceQuery<O> distFunc = getNonSpatialDistanceFunction().instantiate(relation);
 
-    WritableDoubleDataStore modifiedDistance = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+    final WritableDoubleDataStore modifiedDistance = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
     // calculate D-Tilde
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      double sum = 0;
-      double maxDist = 0;
-      int cnt = 0;
-
-      final DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-        if(DBIDUtil.equal(iditer, iter)) {
-          continue;
-        }
-        double dist = distFunc.distance(iditer, iter);
-        sum += dist;
-        cnt++;
-        maxDist = Math.max(maxDist, dist);
-      }
-      if(cnt > 1) {
-        modifiedDistance.putDouble(iditer, ((sum - maxDist) / (cnt - 1)));
+    ParallelExecutor.run(relation.getDBIDs(), new Processor() {
+      @Override
+      public Instance instantiate(Executor executor) {
+        return new Instance() {
+          @Override
+          public void map(DBIDRef id) {
+            double sum = 0;
+            double maxDist = 0;
+            int cnt = 0;
+
+            final DBIDs neighbors = npred.getNeighborDBIDs(id);
+            for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
+              if(DBIDUtil.equal(id, iter)) {
+                continue;
+              }
+              double dist = distFunc.distance(id, iter);
+              sum += dist;
+              cnt++;
+              maxDist = Math.max(maxDist, dist);
+            }
+            if(cnt > 1) {
+              modifiedDistance.putDouble(id, ((sum - maxDist) / (cnt - 1)));
+            }
+            else {
+              // Use regular distance when the d-tilde trick is undefined.
+              // Note: this can be 0 when there were no neighbors.
+              modifiedDistance.putDouble(id, maxDist);
+            }
+          }
+        };
       }
-      else {
-        // Use regular distance when the d-tilde trick is undefined.
-        // Note: this can be 0 when there were no neighbors.
-        modifiedDistance.putDouble(iditer, maxDist);
+
+      @Override
+      public void cleanup(Instance inst) {
+        // Nothing to do.
       }
-    }
+    });
 
     // Second step - compute actual SLOM values
     DoubleMinMax slomminmax = new DoubleMinMax();
-    WritableDoubleDataStore sloms = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    final WritableDoubleDataStore sloms = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
 
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      double sum = 0;
-      int cnt = 0;
-
-      final DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-        if(DBIDUtil.equal(iditer, iter)) {
-          continue;
-        }
-        sum += modifiedDistance.doubleValue(iter);
-        cnt++;
-      }
-      double slom;
-      if(cnt > 0) {
-        // With and without the object itself:
-        double avgPlus = (sum + modifiedDistance.doubleValue(iditer)) / (cnt + 1);
-        double avg = sum / cnt;
-
-        double beta = 0;
-        for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-          final double dist = modifiedDistance.doubleValue(iter);
-          if(dist > avgPlus) {
-            beta += 1;
-          }
-          else if(dist < avgPlus) {
-            beta -= 1;
-          }
-        }
-        // Include object itself
-        if(!neighbors.contains(iditer)) {
-          final double dist = modifiedDistance.doubleValue(iditer);
-          if(dist > avgPlus) {
-            beta += 1;
-          }
-          else if(dist < avgPlus) {
-            beta -= 1;
+    ParallelExecutor.run(relation.getDBIDs(), new Processor() {
+      @Override
+      public Instance instantiate(Executor executor) {
+        return new Instance() {
+          @Override
+          public void map(DBIDRef id) {
+            double sum = 0;
+            int cnt = 0;
+
+            final DBIDs neighbors = npred.getNeighborDBIDs(id);
+            for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
+              if(DBIDUtil.equal(id, iter)) {
+                continue;
+              }
+              sum += modifiedDistance.doubleValue(iter);
+              cnt++;
+            }
+            double slom;
+            if(cnt > 0) {
+              // With and without the object itself:
+              double avgPlus = (sum + modifiedDistance.doubleValue(id)) / (cnt + 1);
+              double avg = sum / cnt;
+
+              double beta = 0;
+              for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
+                final double dist = modifiedDistance.doubleValue(iter);
+                if(dist > avgPlus) {
+                  beta += 1;
+                }
+                else if(dist < avgPlus) {
+                  beta -= 1;
+                }
+              }
+              // Include object itself
+              if(!neighbors.contains(id)) {
+                final double dist = modifiedDistance.doubleValue(id);
+                if(dist > avgPlus) {
+                  beta += 1;
+                }
+                else if(dist < avgPlus) {
+                  beta -= 1;
+                }
+              }
+              beta = Math.abs(beta);
+              // note: cnt == size of N(x), not N+(x)
+              if(cnt > 1) {
+                beta = Math.max(beta, 1.0) / (cnt - 1);
+              }
+              else {
+                // Workaround insufficiency in SLOM paper - div by zero
+                beta = 1.0;
+              }
+              beta = beta / (1 + avg);
+
+              slom = beta * modifiedDistance.doubleValue(id);
+            }
+            else {
+              // No neighbors to compare to - no score.
+              slom = 0.0;
+            }
+            sloms.putDouble(id, slom);
           }
-        }
-        beta = Math.abs(beta);
-        // note: cnt == size of N(x), not N+(x)
-        if(cnt > 1) {
-          beta = Math.max(beta, 1.0) / (cnt - 1);
-        }
-        else {
-          // Workaround insufficiency in SLOM paper - div by zero
-          beta = 1.0;
-        }
-        beta = beta / (1 + avg);
-
-        slom = beta * modifiedDistance.doubleValue(iditer);
+        };
       }
-      else {
-        // No neighbors to compare to - no score.
-        slom = 0.0;
+
+      @Override
+      public void cleanup(Instance inst) {
+        // Nothing to do.
       }
-      sloms.putDouble(iditer, slom);
-      slomminmax.put(slom);
+    });
+    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+      slomminmax.put(sloms.doubleValue(iditer));
     }
 
     DoubleRelation scoreResult = new MaterializedDoubleRelation("SLOM", "slom-outlier", sloms, relation.getDBIDs());
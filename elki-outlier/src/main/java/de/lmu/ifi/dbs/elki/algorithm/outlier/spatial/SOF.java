@@ -28,6 +28,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
@@ -36,6 +37,9 @@ import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
@@ -99,36 +103,64 @@ public class SOF<N, O> extends AbstractDistanceBasedSpatialOutlier<N, O> {
    */
   public OutlierResult run(Database database, Relation<N> spatial, Relation<O> relation) {
     final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(database, spatial);
-    DistanceQuery<O> distFunc = getNonSpatialDistanceFunction().instantiate(relation);
+    final DistanceQuery<O> distFunc = getNonSpatialDistanceFunction().instantiate(relation);
 
-    WritableDoubleDataStore lrds = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT);
-    WritableDoubleDataStore lofs = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    final WritableDoubleDataStore lrds = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT);
+    final WritableDoubleDataStore lofs = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
     DoubleMinMax lofminmax = new DoubleMinMax();
 
     // Compute densities
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      double avg = 0;
-      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-        avg += distFunc.distance(iditer, iter);
+    ParallelExecutor.run(relation.getDBIDs(), new Processor() {
+      @Override
+      public Instance instantiate(Executor executor) {
+        return new Instance() {
+          @Override
+          public void map(DBIDRef id) {
+            DBIDs neighbors = npred.getNeighborDBIDs(id);
+            double avg = 0;
+            for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
+              avg += distFunc.distance(id, iter);
+            }
+            double lrd = 1 / (avg / neighbors.size());
+            if (Double.isNaN(lrd)) {
+              lrd = 0;
+            }
+            lrds.putDouble(id, lrd);
+          }
+        };
       }
-      double lrd = 1 / (avg / neighbors.size());
-      if (Double.isNaN(lrd)) {
-        lrd = 0;
+
+      @Override
+      public void cleanup(Instance inst) {
+        // Nothing to do.
       }
-      lrds.putDouble(iditer, lrd);
-    }
+    });
 
     // Compute density quotients
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      double avg = 0;
-      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-        avg += lrds.doubleValue(iter);
+    ParallelExecutor.run(relation.getDBIDs(), new Processor() {
+      @Override
+      public Instance instantiate(Executor executor) {
+        return new Instance() {
+          @Override
+          public void map(DBIDRef id) {
+            DBIDs neighbors = npred.getNeighborDBIDs(id);
+            double avg = 0;
+            for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
+              avg += lrds.doubleValue(iter);
+            }
+            lofs.putDouble(id, (avg / neighbors.size()) / lrds.doubleValue(id));
+          }
+        };
       }
-      final double lrd = (avg / neighbors.size()) / lrds.doubleValue(iditer);
+
+      @Override
+      public void cleanup(Instance inst) {
+        // Nothing to do.
+      }
+    });
+    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+      final double lrd = lofs.doubleValue(iditer);
       if (!Double.isNaN(lrd)) {
-        lofs.putDouble(iditer, lrd);
         lofminmax.put(lrd);
       } else {
         lofs.putDouble(iditer, 0.0);
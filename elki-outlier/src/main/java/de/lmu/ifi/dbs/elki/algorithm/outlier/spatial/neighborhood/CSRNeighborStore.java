@@ -0,0 +1,225 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+
+/**
+ * Materialized neighbor sets in compressed sparse row (CSR) form.
+ *
+ * The neighbors of all objects are concatenated into a single array, and an
+ * offset array marks where the neighbors of each object begin. Compared to a
+ * separate {@link DBIDs} object per object, this saves the per-object
+ * overhead, which matters for large neighborhood graphs.
+ *
+ * The neighborhoods are computed in parallel, in contiguous blocks that are
+ * concatenated in the original order.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class CSRNeighborStore implements DataStore<DBIDs> {
+  /**
+   * Row number of each object, -1 for objects without a neighbor set.
+   */
+  private WritableIntegerDataStore rows;
+
+  /**
+   * Start offset of each row, plus the end offset of the last row.
+   */
+  private int[] offsets;
+
+  /**
+   * Concatenated neighbors.
+   */
+  private ArrayDBIDs neighbors;
+
+  /**
+   * Constructor.
+   *
+   * @param rows Row number of each object
+   * @param offsets Row offsets
+   * @param neighbors Concatenated neighbors
+   */
+  protected CSRNeighborStore(WritableIntegerDataStore rows, int[] offsets, ArrayDBIDs neighbors) {
+    super();
+    this.rows = rows;
+    this.offsets = offsets;
+    this.neighbors = neighbors;
+  }
+
+  @Override
+  public DBIDs get(DBIDRef id) {
+    final int row = rows.intValue(id);
+    return row < 0 ? null : neighbors.slice(offsets[row], offsets[row + 1]);
+  }
+
+  /**
+   * Function computing the neighbors of a single object. Must be safe to call
+   * from multiple threads.
+   *
+   * @author Erich Schubert
+   */
+  public interface Neighbors {
+    /**
+     * Compute the neighbors of an object.
+     *
+     * @param id Object
+     * @return Neighbors, or {@code null}
+     */
+    DBIDs getNeighbors(DBIDRef id);
+  }
+
+  /**
+   * Materialize the neighbor sets of all objects.
+   *
+   * @param ids Objects
+   * @param function Function computing the neighbors
+   * @return Neighbor store
+   */
+  public static CSRNeighborStore build(DBIDs ids, Neighbors function) {
+    final ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
+    final int size = aids.size();
+    ArrayList<Future<Block>> futures = new ArrayList<>();
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      final int parallelism = core.getParallelism();
+      final int numblocks = parallelism > 1 ? Math.min(size, parallelism << 2) : 1;
+      final int blocksize = numblocks > 0 ? (size + numblocks - 1) / numblocks : 0;
+      for(int start = 0; start < size; start += blocksize) {
+        futures.add(core.submit(new Block(aids, start, Math.min(start + blocksize, size), function)));
+      }
+      List<Block> blocks = new ArrayList<>(futures.size());
+      int total = 0;
+      for(Future<Block> f : futures) {
+        Block b = f.get();
+        blocks.add(b);
+        total += b.neighbors.size();
+      }
+      futures = null;
+      // Concatenate the blocks:
+      WritableIntegerDataStore rows = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC, -1);
+      int[] offsets = new int[size + 1];
+      ArrayModifiableDBIDs neighbors = DBIDUtil.newArray(total);
+      DBIDArrayIter iter = aids.iter();
+      for(int i = 0; i < blocks.size(); i++) {
+        Block b = blocks.get(i);
+        for(int j = 0; j < b.sizes.length; j++, iter.advance()) {
+          final int row = b.start + j;
+          offsets[row + 1] = offsets[row] + Math.max(b.sizes[j], 0);
+          if(b.sizes[j] >= 0) {
+            rows.putInt(iter, row);
+          }
+        }
+        neighbors.addDBIDs(b.neighbors);
+        blocks.set(i, null); // Release
+      }
+      return new CSRNeighborStore(rows, offsets, neighbors);
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+  }
+
+  /**
+   * Neighbors of a contiguous block of objects.
+   *
+   * @author Erich Schubert
+   */
+  private static class Block implements Callable<Block> {
+    /**
+     * Objects.
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * First object of the block.
+     */
+    int start;
+
+    /**
+     * Neighbor set sizes, -1 for missing neighbor sets.
+     */
+    int[] sizes;
+
+    /**
+     * Concatenated neighbors.
+     */
+    ArrayModifiableDBIDs neighbors;
+
+    /**
+     * Neighborhood function.
+     */
+    private Neighbors function;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Objects
+     * @param start First object
+     * @param end End (exclusive)
+     * @param function Neighborhood function
+     */
+    Block(ArrayDBIDs ids, int start, int end, Neighbors function) {
+      this.ids = ids;
+      this.start = start;
+      this.sizes = new int[end - start];
+      this.function = function;
+    }
+
+    @Override
+    public Block call() {
+      neighbors = DBIDUtil.newArray();
+      DBIDArrayIter iter = ids.iter().seek(start);
+      for(int j = 0; j < sizes.length; j++, iter.advance()) {
+        DBIDs n = function.getNeighbors(iter);
+        sizes[j] = n != null ? n.size() : -1;
+        if(n != null) {
+          neighbors.addDBIDs(n);
+        }
+      }
+      return this;
+    }
+  }
+}
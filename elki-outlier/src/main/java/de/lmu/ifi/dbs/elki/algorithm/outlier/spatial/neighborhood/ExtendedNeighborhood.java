@@ -23,10 +23,8 @@ package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
-import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
-import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
-import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.HashSetModifiableDBIDs;
@@ -125,38 +123,39 @@ public class ExtendedNeighborhood extends AbstractPrecomputedNeighborhood {
      * Method to load the external neighbors.
      */
     private DataStore<DBIDs> extendNeighborhood(Database database, Relation<? extends O> relation) {
-      NeighborSetPredicate innerinst = inner.instantiate(database, relation);
-
-      final WritableDataStore<DBIDs> store = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC | DataStoreFactory.HINT_TEMP, DBIDs.class);
+      final NeighborSetPredicate innerinst = inner.instantiate(database, relation);
 
       // Expand multiple steps
-      FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Expanding neighborhoods", relation.size(), LOG) : null;
-      for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
-        HashSetModifiableDBIDs res = DBIDUtil.newHashSet();
-        res.add(iter);
-        DBIDs todo = DBIDUtil.deref(iter);
-        for(int i = 0; i < steps; i++) {
-          ModifiableDBIDs ntodo = DBIDUtil.newHashSet();
-          for(DBIDIter iter2 = todo.iter(); iter2.valid(); iter2.advance()) {
-            DBIDs add = innerinst.getNeighborDBIDs(iter2);
-            if(add != null) {
-              for(DBIDIter iter3 = add.iter(); iter3.valid(); iter3.advance()) {
-                if(res.contains(iter3)) {
-                  continue;
+      final FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Expanding neighborhoods", relation.size(), LOG) : null;
+      DataStore<DBIDs> store = CSRNeighborStore.build(relation.getDBIDs(), new CSRNeighborStore.Neighbors() {
+        @Override
+        public DBIDs getNeighbors(DBIDRef id) {
+          HashSetModifiableDBIDs res = DBIDUtil.newHashSet();
+          res.add(id);
+          DBIDs todo = DBIDUtil.deref(id);
+          for(int i = 0; i < steps; i++) {
+            ModifiableDBIDs ntodo = DBIDUtil.newHashSet();
+            for(DBIDIter iter2 = todo.iter(); iter2.valid(); iter2.advance()) {
+              DBIDs add = innerinst.getNeighborDBIDs(iter2);
+              if(add != null) {
+                for(DBIDIter iter3 = add.iter(); iter3.valid(); iter3.advance()) {
+                  if(res.contains(iter3)) {
+                    continue;
+                  }
+                  ntodo.add(iter3);
+                  res.add(iter3);
                 }
-                ntodo.add(iter3);
-                res.add(iter3);
               }
             }
+            if(ntodo.size() == 0) {
+              continue;
+            }
+            todo = ntodo;
           }
-          if(ntodo.size() == 0) {
-            continue;
-          }
-          todo = ntodo;
+          LOG.incrementProcessed(progress);
+          return res;
         }
-        store.put(iter, res);
-        LOG.incrementProcessed(progress);
-      }
+      });
       LOG.ensureCompleted(progress);
 
       return store;
@@ -24,14 +24,8 @@ import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.QueryUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
-import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
-import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
-import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
-import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
-import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
@@ -110,18 +104,14 @@ public class PrecomputedKNearestNeighborNeighborhood extends AbstractPrecomputed
 
     @Override
     public NeighborSetPredicate instantiate(Database database, Relation<? extends O> relation) {
-      KNNQuery<?> knnQuery = QueryUtil.getKNNQuery(relation, distFunc);
-
-      // TODO: use bulk?
-      WritableDataStore<DBIDs> s = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC, DBIDs.class);
-      for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-        KNNList neighbors = knnQuery.getKNNForDBID(iditer, k);
-        ArrayModifiableDBIDs neighbours = DBIDUtil.newArray(neighbors.size());
-        for(DBIDIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance()) {
-          neighbours.add(neighbor);
+      final KNNQuery<?> knnQuery = QueryUtil.getKNNQuery(relation, distFunc);
+
+      DataStore<DBIDs> s = CSRNeighborStore.build(relation.getDBIDs(), new CSRNeighborStore.Neighbors() {
+        @Override
+        public DBIDs getNeighbors(DBIDRef id) {
+          return knnQuery.getKNNForDBID(id, k);
         }
-        s.put(iditer, neighbours);
-      }
+      });
       return new PrecomputedKNearestNeighborNeighborhood(s);
     }
 
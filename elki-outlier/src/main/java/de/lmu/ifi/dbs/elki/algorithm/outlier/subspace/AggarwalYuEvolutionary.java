@@ -21,13 +21,21 @@
 package de.lmu.ifi.dbs.elki.algorithm.outlier.subspace;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
@@ -35,11 +43,14 @@ import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.progress.StepProgress;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.result.outlier.InvertedOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.BitsUtil;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.Heap;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.TopBoundedHeap;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
@@ -67,6 +78,10 @@ import it.unimi.dsi.fastutil.ints.IntIterator;
  * Proc. 2001 ACM SIGMOD international conference on Management of data
  * </p>
  *
+ * The equi-depth ranges of each dimension are stored as bitmaps over the
+ * object offsets, and the cube counts of evaluated genes are cached; the
+ * fitness of a new generation is evaluated on all cores.
+ *
  * @author Ahmed Hettab
  * @author Erich Schubert
  * @since 0.4.0
@@ -76,7 +91,6 @@ import it.unimi.dsi.fastutil.ints.IntIterator;
  *
  * @param <V> the type of FeatureVector handled by this Algorithm
  */
-// TODO: progress logging!
 @Title("EAFOD: the evolutionary outlier detection algorithm")
 @Description("Outlier detection for high dimensional data")
 @Reference(authors = "C.C. Aggarwal, P. S. Yu", //
@@ -133,21 +147,29 @@ public class AggarwalYuEvolutionary<V extends NumberVector> extends AbstractAgga
    */
   public OutlierResult run(Database database, Relation<V> relation) {
     final int dbsize = relation.size();
-    ArrayList<ArrayList<DBIDs>> ranges = buildRanges(relation);
+    StepProgress stepprog = LOG.isVerbose() ? new StepProgress("Evolutionary outlier search", 4) : null;
+    LOG.beginStep(stepprog, 1, "Building equi-depth grid bitmaps.");
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    long[][][] grid = buildGrid(ids, buildRanges(relation));
 
-    Heap<Individuum>.UnorderedIter individuums = (new EvolutionarySearch(relation, ranges, m, rnd.getSingleThreadedRandom())).run();
+    Heap<Individuum>.UnorderedIter individuums = (new EvolutionarySearch(relation, grid, m, rnd.getSingleThreadedRandom())).run(stepprog);
 
+    LOG.beginStep(stepprog, 4, "Computing outlier scores.");
     WritableDoubleDataStore outlierScore = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC);
+    long[] cube = BitsUtil.zero(dbsize);
+    DBIDArrayIter iter = ids.iter();
     for(; individuums.valid(); individuums.advance()) {
-      DBIDs ids = computeSubspaceForGene(individuums.get().getGene(), ranges);
-      double sparsityC = sparsity(ids.size(), dbsize, k, phi);
-      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      final int size = intersection(selectBitmaps(individuums.get().getGene(), grid), cube, dbsize);
+      double sparsityC = sparsity(size, dbsize, k, phi);
+      for(int off = BitsUtil.nextSetBit(cube, 0); off >= 0; off = BitsUtil.nextSetBit(cube, off + 1)) {
+        iter.seek(off);
         double prev = outlierScore.doubleValue(iter);
         if(Double.isNaN(prev) || sparsityC < prev) {
           outlierScore.putDouble(iter, sparsityC);
         }
       }
     }
+    LOG.setCompleted(stepprog);
 
     DoubleMinMax minmax = new DoubleMinMax();
     for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
@@ -163,6 +185,102 @@ public class AggarwalYuEvolutionary<V extends NumberVector> extends AbstractAgga
     return new OutlierResult(meta, scoreResult);
   }
 
+  /**
+   * Convert the equi-depth ranges into bitmaps over the object offsets.
+   *
+   * @param ids Object ids, giving the offsets
+   * @param ranges Equi-depth ranges, see {@link #buildRanges}
+   * @return Bitmaps, indexed by dimension and range
+   */
+  protected static long[][][] buildGrid(ArrayDBIDs ids, ArrayList<ArrayList<DBIDs>> ranges) {
+    WritableIntegerDataStore offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      offsets.putInt(iter, iter.getOffset());
+    }
+    long[][][] grid = new long[ranges.size()][][];
+    for(int d = 0; d < grid.length; d++) {
+      ArrayList<DBIDs> dimranges = ranges.get(d);
+      long[][] bitmaps = grid[d] = new long[dimranges.size()][];
+      for(int r = 0; r < bitmaps.length; r++) {
+        long[] bits = bitmaps[r] = BitsUtil.zero(ids.size());
+        for(DBIDIter iter = dimranges.get(r).iter(); iter.valid(); iter.advance()) {
+          BitsUtil.setI(bits, offsets.intValue(iter));
+        }
+      }
+    }
+    offsets.destroy();
+    return grid;
+  }
+
+  /**
+   * Get the bitmaps of the ranges selected by a gene.
+   *
+   * @param gene Gene
+   * @param grid Range bitmaps
+   * @return Selected bitmaps
+   */
+  private static long[][] selectBitmaps(short[] gene, long[][][] grid) {
+    int n = 0;
+    for(int i = 0; i < gene.length; i++) {
+      n += (gene[i] != DONT_CARE) ? 1 : 0;
+    }
+    long[][] bitmaps = new long[n][];
+    for(int i = 0, j = 0; i < gene.length; i++) {
+      if(gene[i] != DONT_CARE) {
+        bitmaps[j++] = grid[i][gene[i] - GENE_OFFSET];
+      }
+    }
+    return bitmaps;
+  }
+
+  /**
+   * Count the objects in the intersection of bitmaps.
+   *
+   * @param bitmaps Bitmaps to intersect
+   * @param size Number of objects, if no bitmap is given
+   * @return Number of objects in all bitmaps
+   */
+  private static int intersectionSize(long[][] bitmaps, int size) {
+    if(bitmaps.length == 0) {
+      return size;
+    }
+    final long[] first = bitmaps[0];
+    int count = 0;
+    for(int w = 0; w < first.length; w++) {
+      long v = first[w];
+      for(int i = 1; i < bitmaps.length && v != 0L; i++) {
+        v &= bitmaps[i][w];
+      }
+      count += Long.bitCount(v);
+    }
+    return count;
+  }
+
+  /**
+   * Intersect bitmaps.
+   *
+   * @param bitmaps Bitmaps to intersect
+   * @param out Output bitmap
+   * @param size Number of objects, if no bitmap is given
+   * @return Number of objects in all bitmaps
+   */
+  private static int intersection(long[][] bitmaps, long[] out, int size) {
+    if(bitmaps.length == 0) {
+      System.arraycopy(BitsUtil.ones(size), 0, out, 0, out.length);
+      return size;
+    }
+    int count = 0;
+    for(int w = 0; w < out.length; w++) {
+      long v = bitmaps[0][w];
+      for(int i = 1; i < bitmaps.length && v != 0L; i++) {
+        v &= bitmaps[i][w];
+      }
+      out[w] = v;
+      count += Long.bitCount(v);
+    }
+    return count;
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
@@ -187,9 +305,14 @@ public class AggarwalYuEvolutionary<V extends NumberVector> extends AbstractAgga
     final int dim;
 
     /**
-     * Database ranges.
+     * Bitmaps of the equi-depth ranges.
+     */
+    final long[][][] grid;
+
+    /**
+     * Cache of cube counts, by gene.
      */
-    final ArrayList<ArrayList<DBIDs>> ranges;
+    final ConcurrentHashMap<GeneKey, Integer> counts = new ConcurrentHashMap<>();
 
     /**
      * m to use.
@@ -205,27 +328,53 @@ public class AggarwalYuEvolutionary<V extends NumberVector> extends AbstractAgga
      * Constructor.
      *
      * @param relation Database to use
-     * @param ranges DBID ranges to process
+     * @param grid Range bitmaps
      * @param m Population size
      * @param random Random generator
      */
-    public EvolutionarySearch(Relation<V> relation, ArrayList<ArrayList<DBIDs>> ranges, int m, Random random) {
+    public EvolutionarySearch(Relation<V> relation, long[][][] grid, int m, Random random) {
       super();
-      this.ranges = ranges;
+      this.grid = grid;
       this.m = m;
       this.dbsize = relation.size();
       this.dim = RelationUtil.dimensionality(relation);
       this.random = random;
     }
 
-    public Heap<Individuum>.UnorderedIter run() {
-      ArrayList<Individuum> pop = initialPopulation(m);
+    /**
+     * Run the evolutionary search.
+     *
+     * @param stepprog Step progress, may be {@code null}
+     * @return Best individuums
+     */
+    public Heap<Individuum>.UnorderedIter run(StepProgress stepprog) {
+      ParallelCore core = ParallelCore.getCore();
+      core.connect();
+      try {
+        return run(core, stepprog);
+      }
+      finally {
+        core.disconnect();
+      }
+    }
+
+    /**
+     * Run the evolutionary search.
+     *
+     * @param core Parallel core, connected
+     * @param stepprog Step progress, may be {@code null}
+     * @return Best individuums
+     */
+    private Heap<Individuum>.UnorderedIter run(ParallelCore core, StepProgress stepprog) {
+      LOG.beginStep(stepprog, 2, "Evaluating the initial population.");
+      ArrayList<Individuum> pop = initialPopulation(core, m);
       // best Population
       TopBoundedHeap<Individuum> bestSol = new TopBoundedHeap<>(m, Collections.reverseOrder());
       for(Individuum ind : pop) {
         bestSol.add(ind);
       }
 
+      LOG.beginStep(stepprog, 3, "Evolving the population.");
       IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Evolutionary search iterations", LOG) : null;
       int iterations = 0;
       while(!checkConvergence(pop)) {
@@ -233,9 +382,9 @@ public class AggarwalYuEvolutionary<V extends NumberVector> extends AbstractAgga
         // Fitter members are more likely to survive
         pop = rouletteRankSelection(pop);
         // Crossover survivors
-        pop = crossoverOptimized(pop);
+        pop = crossoverOptimized(core, pop);
         // Mutation with probability 0.25 , 0.25
-        pop = mutation(pop, 0.25, 0.25);
+        pop = mutation(core, pop, 0.25, 0.25);
         // Avoid duplicates
         ind: for(Individuum ind : pop) {
           for(Heap<Individuum>.UnorderedIter it = bestSol.unorderedIter(); it.valid(); it.advance()) {
@@ -322,12 +471,13 @@ public class AggarwalYuEvolutionary<V extends NumberVector> extends AbstractAgga
     /**
      * Produce an initial (random) population.
      *
+     * @param core Parallel core
      * @param popsize Population size
      * @return Sorted list of Individuums
      */
-    private ArrayList<Individuum> initialPopulation(int popsize) {
+    private ArrayList<Individuum> initialPopulation(ParallelCore core, int popsize) {
       // Initial Population
-      ArrayList<Individuum> population = new ArrayList<>(popsize);
+      ArrayList<short[]> population = new ArrayList<>(popsize);
       // fill population
       for(int i = 0; i < popsize; i++) {
         // Random Individual
@@ -345,10 +495,10 @@ public class AggarwalYuEvolutionary<V extends NumberVector> extends AbstractAgga
           gene[z] = (short) (random.nextInt(phi) + GENE_OFFSET);
           countDim--;
         }
-        population.add(makeIndividuum(gene));
+        population.add(gene);
       }
       // Collections.sort(population);
-      return population;
+      return evaluate(core, population);
     }
 
     /**
@@ -388,9 +538,9 @@ public class AggarwalYuEvolutionary<V extends NumberVector> extends AbstractAgga
     /**
      * Apply the mutation algorithm.
      */
-    private ArrayList<Individuum> mutation(ArrayList<Individuum> population, double perc1, double perc2) {
+    private ArrayList<Individuum> mutation(ParallelCore core, ArrayList<Individuum> population, double perc1, double perc2) {
       // the Mutations
-      ArrayList<Individuum> mutations = new ArrayList<>();
+      ArrayList<short[]> mutations = new ArrayList<>();
       int[] QR = new int[dim];
 
       // for each individuum
@@ -421,9 +571,67 @@ public class AggarwalYuEvolutionary<V extends NumberVector> extends AbstractAgga
           // Mutate 1...phi into another 1...phi
           gene[QR[pr]] = (short) (random.nextInt(phi) + GENE_OFFSET);
         }
-        mutations.add(makeIndividuum(gene));
+        mutations.add(gene);
+      }
+      return evaluate(core, mutations);
+    }
+
+    /**
+     * Evaluate the fitness of new genes in parallel.
+     *
+     * @param core Parallel core
+     * @param genes Genes to evaluate
+     * @return Individuums, in the same order
+     */
+    private ArrayList<Individuum> evaluate(ParallelCore core, List<short[]> genes) {
+      ArrayList<Future<Individuum>> futures = new ArrayList<>(genes.size());
+      for(final short[] gene : genes) {
+        futures.add(core.submit(new Callable<Individuum>() {
+          @Override
+          public Individuum call() {
+            return makeIndividuum(gene);
+          }
+        }));
+      }
+      return gather(futures);
+    }
+
+    /**
+     * Wait for parallel tasks, and collect their results in order.
+     *
+     * @param futures Submitted tasks
+     * @return Results
+     */
+    private <T> ArrayList<T> gather(List<Future<T>> futures) {
+      ArrayList<T> results = new ArrayList<>(futures.size());
+      try {
+        for(Future<T> f : futures) {
+          results.add(f.get());
+        }
+      }
+      catch(ExecutionException e) {
+        throw new RuntimeException("Processor execution failed.", e);
+      }
+      catch(InterruptedException e) {
+        throw new RuntimeException("Parallel execution interrupted.");
+      }
+      return results;
+    }
+
+    /**
+     * Number of objects in the cube of a gene, cached.
+     *
+     * @param gene Gene
+     * @return Number of objects
+     */
+    private int count(short[] gene) {
+      GeneKey key = new GeneKey(gene);
+      Integer count = counts.get(key);
+      if(count == null) {
+        count = intersectionSize(selectBitmaps(gene, grid), dbsize);
+        counts.putIfAbsent(key, count);
       }
-      return mutations;
+      return count;
     }
 
     /**
@@ -433,20 +641,30 @@ public class AggarwalYuEvolutionary<V extends NumberVector> extends AbstractAgga
      * @return new individuum
      */
     private Individuum makeIndividuum(short[] gene) {
-      final DBIDs ids = computeSubspaceForGene(gene, ranges);
-      final double fitness = (ids.size() > 0) ? sparsity(ids.size(), dbsize, k, phi) : Double.MAX_VALUE;
+      final int size = count(gene);
+      final double fitness = (size > 0) ? sparsity(size, dbsize, k, phi) : Double.MAX_VALUE;
       return new Individuum(fitness, gene);
     }
 
     /**
      * method implements the crossover algorithm
      */
-    private ArrayList<Individuum> crossoverOptimized(ArrayList<Individuum> population) {
+    private ArrayList<Individuum> crossoverOptimized(ParallelCore core, ArrayList<Individuum> population) {
       // Crossover Set of population Set
       ArrayList<Individuum> crossover = new ArrayList<>();
 
+      // Recombine pairs in parallel.
+      ArrayList<Future<Pair<Individuum, Individuum>>> futures = new ArrayList<>(population.size() >> 1);
       for(int i = 0; i < population.size() - 1; i += 2) {
-        Pair<Individuum, Individuum> recombine = recombineOptimized(population.get(i), population.get(i + 1));
+        final Individuum parent1 = population.get(i), parent2 = population.get(i + 1);
+        futures.add(core.submit(new Callable<Pair<Individuum, Individuum>>() {
+          @Override
+          public Pair<Individuum, Individuum> call() {
+            return recombineOptimized(parent1, parent2);
+          }
+        }));
+      }
+      for(Pair<Individuum, Individuum> recombine : gather(futures)) {
         // add the Solutions to the new Set
         crossover.add(recombine.getFirst());
         crossover.add(recombine.getSecond());
@@ -504,8 +722,8 @@ public class AggarwalYuEvolutionary<V extends NumberVector> extends AbstractAgga
           l1[next] = parent1.getGene()[next];
           l2[next] = parent2.getGene()[next];
 
-          final double sparsityL1 = sparsity(computeSubspaceForGene(l1, ranges).size(), dbsize, k, phi);
-          final double sparsityL2 = sparsity(computeSubspaceForGene(l2, ranges).size(), dbsize, k, phi);
+          final double sparsityL1 = sparsity(count(l1), dbsize, k, phi);
+          final double sparsityL2 = sparsity(count(l2), dbsize, k, phi);
 
           if(sparsityL1 <= sparsityL2) {
             b = l1.clone();
@@ -570,6 +788,43 @@ public class AggarwalYuEvolutionary<V extends NumberVector> extends AbstractAgga
     }
   }
 
+  /**
+   * Immutable copy of a gene, as cache key.
+   *
+   * @author Erich Schubert
+   */
+  private static final class GeneKey {
+    /**
+     * Gene.
+     */
+    final short[] gene;
+
+    /**
+     * Hash code.
+     */
+    final int hash;
+
+    /**
+     * Constructor.
+     *
+     * @param gene Gene, will be copied
+     */
+    GeneKey(short[] gene) {
+      this.gene = gene.clone();
+      this.hash = Arrays.hashCode(gene);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof GeneKey && Arrays.equals(gene, ((GeneKey) obj).gene);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
   /**
    * Individuum for the evolutionary search.
    *
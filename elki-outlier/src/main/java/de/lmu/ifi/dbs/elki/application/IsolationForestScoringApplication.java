@@ -0,0 +1,317 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.application;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.forest.IsolationForest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.forest.IsolationForestModel;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleMeta;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleStreamSource;
+import de.lmu.ifi.dbs.elki.datasource.parser.NumberVectorLabelParser;
+import de.lmu.ifi.dbs.elki.datasource.parser.StreamingParser;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierScores;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.io.FileUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Score a data file with a previously trained {@link IsolationForest}.
+ *
+ * The input is streamed through the parser, and the scores are written one per
+ * line as they are computed, so the data set never needs to fit into memory.
+ * If only the top n outliers are requested, the output file instead lists the
+ * object numbers and scores of the top n, followed by a histogram of all
+ * scores; all scores can then be written to a binary score file, see
+ * {@link TopNOutlierScores}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.uses IsolationForestModel
+ */
+public class IsolationForestScoringApplication extends AbstractApplication {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(IsolationForestScoringApplication.class);
+
+  /**
+   * Model file.
+   */
+  private File modelfile;
+
+  /**
+   * Input file.
+   */
+  private File infile;
+
+  /**
+   * Parser.
+   */
+  private StreamingParser parser;
+
+  /**
+   * Output file.
+   */
+  private File outfile;
+
+  /**
+   * Number of top outliers to keep, 0 for all scores.
+   */
+  private int topn;
+
+  /**
+   * File to write all scores to in top n mode, may be {@code null}.
+   */
+  private File scorefile;
+
+  /**
+   * Constructor.
+   *
+   * @param modelfile Model file
+   * @param infile Input file
+   * @param parser Streaming parser
+   * @param outfile Output file
+   */
+  public IsolationForestScoringApplication(File modelfile, File infile, StreamingParser parser, File outfile) {
+    this(modelfile, infile, parser, outfile, 0, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param modelfile Model file
+   * @param infile Input file
+   * @param parser Streaming parser
+   * @param outfile Output file
+   * @param topn Number of top outliers to keep, 0 for all scores
+   * @param scorefile File to write all scores to in top n mode, may be
+   *        {@code null}
+   */
+  public IsolationForestScoringApplication(File modelfile, File infile, StreamingParser parser, File outfile, int topn, File scorefile) {
+    super();
+    this.modelfile = modelfile;
+    this.infile = infile;
+    this.parser = parser;
+    this.outfile = outfile;
+    this.topn = topn;
+    this.scorefile = scorefile;
+  }
+
+  @Override
+  public void run() {
+    final IsolationForestModel model;
+    try {
+      model = IsolationForestModel.load(modelfile);
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not read the model file: " + modelfile, e);
+    }
+    IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Scoring objects", LOG) : null;
+    try (InputStream in = FileUtil.tryGzipInput(new FileInputStream(infile)); //
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outfile), StandardCharsets.UTF_8))) {
+      parser.initStream(in);
+      TopNOutlierScores topscores = topn > 0 ? new TopNOutlierScores(topn, false, TopNOutlierScores.DEFAULT_BINS, scorefile) : null;
+      TopNOutlierScores.Batch batch = topscores != null ? topscores.newBatch() : null;
+      int col = -1, num = 0;
+      loop: while(true) {
+        BundleStreamSource.Event ev = parser.nextEvent();
+        switch(ev){
+        case END_OF_STREAM:
+          break loop;
+        case META_CHANGED:
+          col = -1;
+          BundleMeta meta = parser.getMeta();
+          for(int i = 0; i < meta.size(); i++) {
+            if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(meta.get(i))) {
+              col = i;
+              break;
+            }
+          }
+          break; // switch
+        case NEXT_OBJECT:
+          if(col < 0) {
+            throw new AbortException("No number vector column found in the data stream.");
+          }
+          final double score = model.score((NumberVector) parser.data(col));
+          if(batch != null) {
+            batch.put(DBIDUtil.importInteger(num), score);
+          }
+          else {
+            out.write(Double.toString(score));
+            out.newLine();
+          }
+          ++num;
+          LOG.incrementProcessed(prog);
+          break; // switch
+        default:
+          LOG.warning("Unknown bundle stream event. API inconsistent? " + ev);
+          break; // switch
+        }
+      }
+      if(batch != null) {
+        batch.finish();
+        writeTopN(out, topscores);
+      }
+    }
+    catch(IOException e) {
+      throw new AbortException("I/O error while scoring: " + e.getMessage(), e);
+    }
+    finally {
+      parser.cleanup();
+    }
+    LOG.setCompleted(prog);
+  }
+
+  /**
+   * Write the top n outliers and the histogram of all scores.
+   *
+   * @param out Output
+   * @param topscores Score collector
+   * @throws IOException on write errors
+   */
+  private static void writeTopN(BufferedWriter out, TopNOutlierScores topscores) throws IOException {
+    DoubleMinMax minmax = topscores.getMinMax();
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., 1., .5);
+    TopNOutlierResult result = topscores.makeResult(meta, "Isolation Forest Score", "iforest-outlier");
+    DoubleRelation scores = result.getScores();
+    out.write("# Top " + scores.size() + " of " + result.getCount() + " objects: object number, score");
+    out.newLine();
+    for(DBIDIter it = result.getOrdering().order(scores.getDBIDs()).iter(); it.valid(); it.advance()) {
+      out.write(DBIDUtil.asInteger(it) + " " + scores.doubleValue(it));
+      out.newLine();
+    }
+    out.write("# Score histogram: bin center, count");
+    out.newLine();
+    for(double[] bin : result.getHistogram()) {
+      out.write(bin[0] + " " + bin[1]);
+      out.newLine();
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractApplication.Parameterizer {
+    /**
+     * Parser to use for the input file.
+     */
+    public static final OptionID PARSER_ID = new OptionID("iforest.parser", "Streaming parser for the input file.");
+
+    /**
+     * Model file.
+     */
+    private File modelfile;
+
+    /**
+     * Input file.
+     */
+    private File infile;
+
+    /**
+     * Parser.
+     */
+    private StreamingParser parser;
+
+    /**
+     * Output file.
+     */
+    private File outfile;
+
+    /**
+     * Number of top outliers to keep.
+     */
+    private int topn;
+
+    /**
+     * Score output file.
+     */
+    private File scorefile;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      FileParameter modelP = new FileParameter(IsolationForest.Parameterizer.MODEL_ID, FileParameter.FileType.INPUT_FILE);
+      modelP.setShortDescription("Trained isolation forest model file.");
+      if(config.grab(modelP)) {
+        modelfile = modelP.getValue();
+      }
+      infile = super.getParameterInputFile(config, "Data file to score.");
+      ObjectParameter<StreamingParser> parserP = new ObjectParameter<>(PARSER_ID, StreamingParser.class, NumberVectorLabelParser.class);
+      if(config.grab(parserP)) {
+        parser = parserP.instantiateClass(config);
+      }
+      outfile = super.getParameterOutputFile(config, "File to write the outlier scores to, one per line.");
+      IntParameter topnP = new IntParameter(TopNOutlierScores.TOPN_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .setOptional(true);
+      if(config.grab(topnP)) {
+        topn = topnP.intValue();
+        FileParameter scorefileP = new FileParameter(TopNOutlierScores.SCOREFILE_ID, FileParameter.FileType.OUTPUT_FILE, true);
+        if(config.grab(scorefileP)) {
+          scorefile = scorefileP.getValue();
+        }
+      }
+    }
+
+    @Override
+    protected IsolationForestScoringApplication makeInstance() {
+      return new IsolationForestScoringApplication(modelfile, infile, parser, outfile, topn, scorefile);
+    }
+  }
+
+  /**
+   * Run command line application.
+   *
+   * @param args Command line parameters
+   */
+  public static void main(String[] args) {
+    runCLIApplication(IsolationForestScoringApplication.class, args);
+  }
+}
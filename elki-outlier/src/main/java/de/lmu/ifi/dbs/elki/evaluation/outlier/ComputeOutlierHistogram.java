@@ -38,6 +38,7 @@ import de.lmu.ifi.dbs.elki.result.Result;
 import de.lmu.ifi.dbs.elki.result.ResultHierarchy;
 import de.lmu.ifi.dbs.elki.result.ResultUtil;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierResult;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.histogram.AbstractObjDynamicHistogram;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.histogram.AbstractObjStaticHistogram;
@@ -222,6 +223,9 @@ public class ComputeOutlierHistogram implements Evaluator {
     }
 
     for(OutlierResult or : ors) {
+      if(or instanceof TopNOutlierResult) {
+        continue; // Already has a histogram of all scores.
+      }
       db.getHierarchy().add(or, evaluateOutlierResult(db, or));
     }
   }
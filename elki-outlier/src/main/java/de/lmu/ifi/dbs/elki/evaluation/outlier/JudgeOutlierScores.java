@@ -22,6 +22,7 @@ package de.lmu.ifi.dbs.elki.evaluation.outlier;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -39,6 +40,7 @@ import de.lmu.ifi.dbs.elki.result.Result;
 import de.lmu.ifi.dbs.elki.result.ResultHierarchy;
 import de.lmu.ifi.dbs.elki.result.ResultUtil;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierResult;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
@@ -151,6 +153,16 @@ public class JudgeOutlierScores implements Evaluator {
       // logger.warning("No results found for "+JudgeOutlierScores.class.getSimpleName());
       return;
     }
+    for(Iterator<OutlierResult> iter = ors.iterator(); iter.hasNext();) {
+      OutlierResult or = iter.next();
+      if(or instanceof TopNOutlierResult) {
+        LOG.warning("Skipping score judgement of " + or.getLongName() + ", only the top n scores were kept.");
+        iter.remove();
+      }
+    }
+    if (ors.isEmpty()) {
+      return;
+    }
 
     ModifiableDBIDs ids = DBIDUtil.newHashSet(ors.iterator().next().getScores().getDBIDs());
     DBIDs outlierIds = DatabaseUtil.getObjectsByLabelMatch(db, positiveClassName);
@@ -37,6 +37,7 @@ import de.lmu.ifi.dbs.elki.result.Result;
 import de.lmu.ifi.dbs.elki.result.ResultHierarchy;
 import de.lmu.ifi.dbs.elki.result.ResultUtil;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierResult;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
@@ -95,6 +96,11 @@ public class OutlierPrecisionAtKCurve implements Evaluator {
     List<OrderingResult> orderings = ResultUtil.getOrderingResults(result);
     // Outlier results are the main use case.
     for(OutlierResult o : oresults) {
+      if(o instanceof TopNOutlierResult) {
+        LOG.warning("Skipping precision at k of " + o.getLongName() + ", only the top n scores were kept.");
+        orderings.remove(o.getOrdering());
+        continue;
+      }
       DBIDs sorted = o.getOrdering().order(o.getOrdering().getDBIDs());
       db.getHierarchy().add(o, computePrecisionResult(o.getScores().size(), positiveids, sorted));
       // Process them only once.
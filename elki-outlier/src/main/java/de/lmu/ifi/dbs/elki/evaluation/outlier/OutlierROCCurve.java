@@ -38,6 +38,7 @@ import de.lmu.ifi.dbs.elki.math.geometry.XYCurve;
 import de.lmu.ifi.dbs.elki.result.*;
 import de.lmu.ifi.dbs.elki.result.EvaluationResult.MeasurementGroup;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierResult;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
@@ -122,6 +123,11 @@ public class OutlierROCCurve implements Evaluator {
     List<OrderingResult> orderings = ResultUtil.getOrderingResults(result);
     // Outlier results are the main use case.
     for(OutlierResult o : oresults) {
+      if(o instanceof TopNOutlierResult) {
+        LOG.warning("Skipping ROC evaluation of " + o.getLongName() + ", only the top n scores were kept.");
+        orderings.remove(o.getOrdering());
+        continue;
+      }
       ROCResult rocres = computeROCResult(o.getScores().size(), positiveids, o);
       db.getHierarchy().add(o, rocres);
       EvaluationResult ev = EvaluationResult.findOrCreate(db.getHierarchy(), o, "Evaluation of ranking", "ranking-evaluation");
@@ -38,6 +38,7 @@ import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
 import de.lmu.ifi.dbs.elki.result.*;
 import de.lmu.ifi.dbs.elki.result.EvaluationResult.MeasurementGroup;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierResult;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
@@ -189,6 +190,11 @@ public class OutlierRankingEvaluation implements Evaluator {
     List<OrderingResult> orderings = ResultUtil.getOrderingResults(result);
     // Outlier results are the main use case.
     for(OutlierResult o : oresults) {
+      if(o instanceof TopNOutlierResult) {
+        LOG.warning("Skipping ranking evaluation of " + o.getLongName() + ", only the top n scores were kept.");
+        orderings.remove(o.getOrdering());
+        continue;
+      }
       db.getHierarchy().add(o, evaluateOutlierResult(o.getScores().size(), positiveids, o));
       // Process them only once.
       orderings.remove(o.getOrdering());
@@ -37,6 +37,7 @@ import de.lmu.ifi.dbs.elki.result.Result;
 import de.lmu.ifi.dbs.elki.result.ResultHierarchy;
 import de.lmu.ifi.dbs.elki.result.ResultUtil;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierResult;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
@@ -190,6 +191,11 @@ public class OutlierSmROCCurve implements Evaluator {
     List<OutlierResult> oresults = OutlierResult.getOutlierResults(result);
     List<OrderingResult> orderings = ResultUtil.getOrderingResults(result);
     for(OutlierResult o : oresults) {
+      if(o instanceof TopNOutlierResult) {
+        LOG.warning("Skipping smooth ROC evaluation of " + o.getLongName() + ", only the top n scores were kept.");
+        orderings.remove(o.getOrdering());
+        continue;
+      }
       db.getHierarchy().add(o, computeSmROCResult(positiveids, o));
       orderings.remove(o.getOrdering());
     }
@@ -66,10 +66,21 @@ public class OutlierResult extends BasicResult {
    * @param scores Scores result.
    */
   public OutlierResult(OutlierScoreMeta meta, DoubleRelation scores) {
+    this(meta, scores, new OrderingFromRelation(scores, meta instanceof InvertedOutlierScoreMeta));
+  }
+
+  /**
+   * Constructor with a custom ordering.
+   * 
+   * @param meta Outlier score metadata.
+   * @param scores Scores result.
+   * @param ordering Ordering of the scores.
+   */
+  protected OutlierResult(OutlierScoreMeta meta, DoubleRelation scores, OrderingResult ordering) {
     super(scores.getLongName(), scores.getShortName());
     this.meta = meta;
     this.scores = scores;
-    this.ordering = new OrderingFromRelation(scores, meta instanceof InvertedOutlierScoreMeta);
+    this.ordering = ordering;
     this.addChildResult(scores);
     this.addChildResult(ordering);
     this.addChildResult(meta);
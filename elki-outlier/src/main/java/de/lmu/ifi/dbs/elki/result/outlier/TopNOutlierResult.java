@@ -0,0 +1,144 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.result.outlier;
+
+import java.io.File;
+
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.SetDBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.result.HistogramResult;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+
+/**
+ * Outlier result of a streaming run, see {@link TopNOutlierScores}.
+ *
+ * The score relation and the ordering only contain the top n outliers; the
+ * distribution of all scores is available as a histogram, and the meta data
+ * has the full score range.
+ *
+ * Because the scores of most objects are not known, this result cannot be
+ * evaluated like a full outlier result: the ordering refuses to order any
+ * other objects, and the outlier evaluation measures skip such results.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.composedOf HistogramResult
+ */
+public class TopNOutlierResult extends OutlierResult {
+  /**
+   * Histogram of all scores.
+   */
+  private HistogramResult histogram;
+
+  /**
+   * Number of scored objects.
+   */
+  private long count;
+
+  /**
+   * Score file with all scores, may be {@code null}.
+   */
+  private File scorefile;
+
+  /**
+   * Constructor.
+   *
+   * @param meta Outlier score metadata
+   * @param scores Scores of the top n outliers
+   * @param histogram Histogram of all scores
+   * @param count Number of scored objects
+   * @param scorefile Score file with all scores, may be {@code null}
+   */
+  public TopNOutlierResult(OutlierScoreMeta meta, DoubleRelation scores, HistogramResult histogram, long count, File scorefile) {
+    super(meta, scores, new TopNOrdering(scores, meta instanceof InvertedOutlierScoreMeta));
+    this.histogram = histogram;
+    this.count = count;
+    this.scorefile = scorefile;
+    this.addChildResult(histogram);
+  }
+
+  /**
+   * Get the histogram of all scores.
+   *
+   * @return Histogram, of (bin center, count) pairs
+   */
+  public HistogramResult getHistogram() {
+    return histogram;
+  }
+
+  /**
+   * Get the number of scored objects.
+   *
+   * @return Number of objects
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Get the score file.
+   *
+   * @return Score file, or {@code null}
+   */
+  public File getScoreFile() {
+    return scorefile;
+  }
+
+  /**
+   * Ordering of the top n outliers, which rejects all other objects.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class TopNOrdering extends OrderingFromRelation {
+    /**
+     * Objects with a score.
+     */
+    private SetDBIDs top;
+
+    /**
+     * Constructor.
+     *
+     * @param scores Scores of the top n outliers
+     * @param ascending Ascending when {@code true}, descending otherwise
+     */
+    public TopNOrdering(DoubleRelation scores, boolean ascending) {
+      super(scores, ascending);
+      this.top = DBIDUtil.ensureSet(scores.getDBIDs());
+    }
+
+    @Override
+    public ArrayModifiableDBIDs order(DBIDs ids) {
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        if(!top.contains(iter)) {
+          throw new AbortException("Only the top " + top.size() + " outliers were kept, other objects cannot be ordered.");
+        }
+      }
+      return super.order(ids);
+    }
+  }
+}
@@ -0,0 +1,409 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.result.outlier;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDPair;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.result.HistogramResult;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.TopBoundedHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.histogram.DoubleDynamicHistogram;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.histogram.DoubleHistogram;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteArrayUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+
+/**
+ * Streaming collector for outlier scores, for data sets where the full score
+ * relation and its ordering are too expensive.
+ *
+ * Only the top n outliers are kept in a bounded heap, and all other scores go
+ * into a {@link DoubleDynamicHistogram} and the score range. Optionally, all
+ * scores are spilled to a binary score file, as they arrive.
+ *
+ * Scores are added through {@link Batch}es, one per thread. Each batch keeps
+ * its own top n heap, and passes its scores on to the shared histogram and
+ * score file in blocks. Ties are broken by object id, so the top n do not
+ * depend on the partitioning of the data.
+ *
+ * The score file starts with the {@link #MAGIC} number, followed by one record
+ * per object of the integer object id and the double score, in big endian
+ * byte order. The records are in the order the blocks were passed on.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ *
+ * @apiviz.has Batch
+ * @apiviz.uses TopNOutlierResult oneway - - «create»
+ */
+public class TopNOutlierScores {
+  /**
+   * Number of top outliers to keep.
+   */
+  public static final OptionID TOPN_ID = new OptionID("outlier.topn", "Only keep the top n outlier scores and a histogram of all scores, instead of a full score relation.");
+
+  /**
+   * Binary score file.
+   */
+  public static final OptionID SCOREFILE_ID = new OptionID("outlier.scorefile", "Binary file to write all outlier scores to, when only the top n are kept.");
+
+  /**
+   * Magic number of the score file.
+   */
+  public static final int MAGIC = 0xa8123b20;
+
+  /**
+   * Default number of histogram bins.
+   */
+  public static final int DEFAULT_BINS = 100;
+
+  /**
+   * Number of scores per block.
+   */
+  private static final int BLOCKSIZE = 4096;
+
+  /**
+   * Size of a score file record.
+   */
+  private static final int RECORDSIZE = ByteArrayUtil.SIZE_INT + ByteArrayUtil.SIZE_DOUBLE;
+
+  /**
+   * Number of top outliers to keep.
+   */
+  private final int n;
+
+  /**
+   * Low scores are outliers.
+   */
+  private final boolean ascending;
+
+  /**
+   * Order of the top n, with the strongest outliers last.
+   */
+  private final Comparator<DoubleDBIDPair> comparator;
+
+  /**
+   * Merged top n outliers.
+   */
+  private final TopBoundedHeap<DoubleDBIDPair> heap;
+
+  /**
+   * Histogram of the finite scores.
+   */
+  private final DoubleDynamicHistogram histogram;
+
+  /**
+   * Score range.
+   */
+  private final DoubleMinMax minmax = new DoubleMinMax();
+
+  /**
+   * Number of scores.
+   */
+  private long count = 0L;
+
+  /**
+   * Score file, may be {@code null}.
+   */
+  private final File scorefile;
+
+  /**
+   * Open score file.
+   */
+  private FileChannel channel;
+
+  /**
+   * Write buffer for the score file.
+   */
+  private ByteBuffer buffer;
+
+  /**
+   * Constructor.
+   *
+   * @param n Number of top outliers to keep
+   * @param ascending {@code true} when low scores are outliers
+   * @param bins Number of histogram bins
+   * @param scorefile Score file, may be {@code null}
+   */
+  public TopNOutlierScores(int n, final boolean ascending, int bins, File scorefile) {
+    super();
+    this.n = n;
+    this.ascending = ascending;
+    this.comparator = new Comparator<DoubleDBIDPair>() {
+      @Override
+      public int compare(DoubleDBIDPair o1, DoubleDBIDPair o2) {
+        return TopNOutlierScores.this.compare(o1.doubleValue(), o1, o2);
+      }
+    };
+    this.heap = new TopBoundedHeap<>(n, comparator);
+    this.histogram = new DoubleDynamicHistogram(bins);
+    this.scorefile = scorefile;
+  }
+
+  /**
+   * Compare a score to a kept score.
+   *
+   * @param score Score
+   * @param id Object id
+   * @param other Kept score
+   * @return Positive, if the score is the stronger outlier
+   */
+  private int compare(double score, DBIDRef id, DoubleDBIDPair other) {
+    final int c = Double.compare(score, other.doubleValue());
+    return c != 0 ? (ascending ? -c : c) : DBIDUtil.compare(other, id);
+  }
+
+  /**
+   * Start a new batch; batches are not thread safe, use one per thread.
+   *
+   * @return New batch
+   */
+  public Batch newBatch() {
+    return new Batch();
+  }
+
+  /**
+   * Pass a block of scores on to the histogram and the score file.
+   *
+   * @param ids Object ids, {@code null} without score file
+   * @param scores Scores
+   * @param len Number of scores
+   */
+  private synchronized void write(int[] ids, double[] scores, int len) {
+    for(int i = 0; i < len; i++) {
+      final double score = scores[i];
+      if(score != score) {
+        continue; // NaN
+      }
+      minmax.put(score);
+      if(!Double.isInfinite(score)) {
+        histogram.increment(score, 1.);
+      }
+    }
+    count += len;
+    if(scorefile == null) {
+      return;
+    }
+    try {
+      if(channel == null) {
+        channel = new FileOutputStream(scorefile).getChannel();
+        buffer = ByteBuffer.allocateDirect(BLOCKSIZE * RECORDSIZE);
+        buffer.putInt(MAGIC);
+      }
+      for(int i = 0; i < len; i++) {
+        if(buffer.remaining() < RECORDSIZE) {
+          flushBuffer();
+        }
+        buffer.putInt(ids[i]).putDouble(scores[i]);
+      }
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not write the score file: " + scorefile, e);
+    }
+  }
+
+  /**
+   * Write the buffer to the score file.
+   *
+   * @throws IOException on write errors
+   */
+  private void flushBuffer() throws IOException {
+    buffer.flip();
+    while(buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Merge the top n of a batch.
+   *
+   * @param other Top n of the batch
+   */
+  private synchronized void merge(TopBoundedHeap<DoubleDBIDPair> other) {
+    while(!other.isEmpty()) {
+      heap.add(other.poll());
+    }
+  }
+
+  /**
+   * Close the score file; all batches must be finished before.
+   */
+  public synchronized void close() {
+    if(channel == null) {
+      return;
+    }
+    try {
+      flushBuffer();
+      channel.close();
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not write the score file: " + scorefile, e);
+    }
+    channel = null;
+    buffer = null;
+  }
+
+  /**
+   * Get the range of the scores; all batches must be finished before.
+   *
+   * @return Minimum and maximum
+   */
+  public DoubleMinMax getMinMax() {
+    return minmax;
+  }
+
+  /**
+   * Get the number of scores; all batches must be finished before.
+   *
+   * @return Number of scores
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Build the outlier result; closes the score file.
+   *
+   * @param meta Score meta data
+   * @param name Long name
+   * @param shortname Short name
+   * @return Outlier result, with scores of the top n only
+   */
+  public TopNOutlierResult makeResult(OutlierScoreMeta meta, String name, String shortname) {
+    close();
+    // The heap yields the weakest of the top n first.
+    DoubleDBIDPair[] top = new DoubleDBIDPair[heap.size()];
+    for(int i = top.length - 1; i >= 0; i--) {
+      top[i] = heap.poll();
+    }
+    ArrayModifiableDBIDs ids = DBIDUtil.newArray(top.length);
+    for(DoubleDBIDPair pair : top) {
+      ids.add(pair);
+    }
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    for(DoubleDBIDPair pair : top) {
+      scores.putDouble(pair, pair.doubleValue());
+    }
+    ArrayList<double[]> bins = new ArrayList<>(histogram.getNumBins());
+    if(minmax.isValid()) {
+      for(DoubleHistogram.Iter iter = histogram.iter(); iter.valid(); iter.advance()) {
+        bins.add(new double[] { iter.getCenter(), iter.getValue() });
+      }
+    }
+    HistogramResult hist = new HistogramResult(name + " Histogram", shortname + "-histogram", bins);
+    return new TopNOutlierResult(meta, new MaterializedDoubleRelation(name, shortname, scores, ids), hist, count, scorefile);
+  }
+
+  /**
+   * Reduce a full outlier result to its top n, e.g. when the scores are
+   * computed together with other data that has to be kept anyway.
+   *
+   * @param result Full outlier result
+   * @param n Number of top outliers to keep
+   * @param scorefile Score file, may be {@code null}
+   * @return Top n result
+   */
+  public static TopNOutlierResult topN(OutlierResult result, int n, File scorefile) {
+    final DoubleRelation scores = result.getScores();
+    final OutlierScoreMeta meta = result.getOutlierMeta();
+    TopNOutlierScores top = new TopNOutlierScores(n, meta instanceof InvertedOutlierScoreMeta, DEFAULT_BINS, scorefile);
+    Batch batch = top.newBatch();
+    for(DBIDIter iter = scores.iterDBIDs(); iter.valid(); iter.advance()) {
+      batch.put(iter, scores.doubleValue(iter));
+    }
+    batch.finish();
+    return top.makeResult(meta, scores.getLongName(), scores.getShortName());
+  }
+
+  /**
+   * Batch of scores, added by a single thread.
+   *
+   * @author Erich Schubert
+   */
+  public class Batch {
+    /**
+     * Top n outliers of this batch.
+     */
+    private final TopBoundedHeap<DoubleDBIDPair> top = new TopBoundedHeap<>(n, comparator);
+
+    /**
+     * Object ids of the current block, {@code null} without score file.
+     */
+    private final int[] ids = scorefile != null ? new int[BLOCKSIZE] : null;
+
+    /**
+     * Scores of the current block.
+     */
+    private final double[] scores = new double[BLOCKSIZE];
+
+    /**
+     * Fill of the current block.
+     */
+    private int fill = 0;
+
+    /**
+     * Add a score.
+     *
+     * @param id Object id
+     * @param score Score
+     */
+    public void put(DBIDRef id, double score) {
+      // Only allocate a pair when the object enters the top n.
+      if(score == score && (top.size() < n || compare(score, id, top.peek()) > 0)) {
+        top.add(DBIDUtil.newPair(score, id));
+      }
+      if(ids != null) {
+        ids[fill] = DBIDUtil.asInteger(id);
+      }
+      scores[fill++] = score;
+      if(fill == BLOCKSIZE) {
+        write(ids, scores, fill);
+        fill = 0;
+      }
+    }
+
+    /**
+     * Finish the batch, and merge it into the collector.
+     */
+    public void finish() {
+      write(ids, scores, fill);
+      fill = 0;
+      merge(top);
+    }
+  }
+}
@@ -27,13 +27,18 @@ import java.util.Collection;
 import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
 import de.lmu.ifi.dbs.elki.evaluation.outlier.OutlierROCCurve;
 import de.lmu.ifi.dbs.elki.result.ResultHierarchy;
 import de.lmu.ifi.dbs.elki.result.ResultUtil;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierResult;
 import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 
 /**
  * Abstract test for outlier algorithms.
@@ -89,4 +94,46 @@ public abstract class AbstractOutlierAlgorithmTest extends AbstractSimpleAlgorit
     double actual = result.getScores().doubleValue(dbid);
     assertEquals("Outlier score of object " + id + " doesn't match.", expected, actual, 0.0001);
   }
+
+  /**
+   * Test a top n result against the full result of the same algorithm.
+   *
+   * @param db Database
+   * @param full Full result
+   * @param result Top n result
+   * @param n Number of top outliers
+   */
+  protected void testTopN(Database db, OutlierResult full, OutlierResult result, int n) {
+    assertTrue("Not a top n result.", result instanceof TopNOutlierResult);
+    DoubleRelation fscores = full.getScores(), scores = result.getScores();
+    assertEquals("Number of scored objects.", fscores.size(), ((TopNOutlierResult) result).getCount());
+    assertEquals("Number of top n scores.", n, scores.size());
+    assertEquals("Top n contains duplicates.", n, DBIDUtil.ensureSet(scores.getDBIDs()).size());
+    assertEquals("Minimum score.", full.getOutlierMeta().getActualMinimum(), result.getOutlierMeta().getActualMinimum(), 1e-12);
+    assertEquals("Maximum score.", full.getOutlierMeta().getActualMaximum(), result.getOutlierMeta().getActualMaximum(), 1e-12);
+    DBIDIter it = full.getOrdering().order(fscores.getDBIDs()).iter();
+    DBIDIter it2 = result.getOrdering().order(scores.getDBIDs()).iter();
+    for(int i = 0; i < n; i++, it.advance(), it2.advance()) {
+      assertEquals("Top n score differs.", fscores.doubleValue(it), scores.doubleValue(it2), 1e-12);
+      assertEquals("Top n score differs.", fscores.doubleValue(it2), scores.doubleValue(it2), 1e-12);
+    }
+    assertFalse("Too many top n scores.", it2.valid());
+    // Other objects cannot be ordered:
+    try {
+      result.getOrdering().order(fscores.getDBIDs());
+      fail("Ordering of objects not in the top n did not fail.");
+    }
+    catch(AbortException e) {
+      // Expected.
+    }
+    // Evaluation must skip the partial result:
+    ResultHierarchy hier = db.getHierarchy();
+    if(hier.numParents(result) < 1) {
+      hier.add(db, result);
+    }
+    new ELKIBuilder<>(OutlierROCCurve.class)//
+        .with(OutlierROCCurve.Parameterizer.POSITIVE_CLASS_NAME_ID, "Noise").build() //
+        .processNewResult(hier, result);
+    assertTrue("Top n result was evaluated.", ResultUtil.filterResults(hier, result, OutlierROCCurve.ROCResult.class).isEmpty());
+  }
 }
@@ -0,0 +1,62 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the parallel LB-ABOD algorithm.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class ParallelLBABODTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testParallelLBABOD() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<ParallelLBABOD<DoubleVector>>(ParallelLBABOD.class) //
+        .with(FastABOD.Parameterizer.K_ID, 150) //
+        .with(LBABOD.Parameterizer.L_ID, 10) //
+        .build().run(db);
+    testAUC(db, "Noise", result, 0.92279629629629);
+    testSingleScore(result, 945, 2.0897348547799E-5);
+
+    // Scores must be identical to the serial version.
+    OutlierResult serial = new ELKIBuilder<LBABOD<DoubleVector>>(LBABOD.class) //
+        .with(FastABOD.Parameterizer.K_ID, 150) //
+        .with(LBABOD.Parameterizer.L_ID, 10) //
+        .build().run(db);
+    DoubleRelation expected = serial.getScores(), actual = result.getScores();
+    for(DBIDIter it = expected.iterDBIDs(); it.valid(); it.advance()) {
+      assertEquals("Score does not match.", expected.doubleValue(it), actual.doubleValue(it), 0.);
+    }
+  }
+}
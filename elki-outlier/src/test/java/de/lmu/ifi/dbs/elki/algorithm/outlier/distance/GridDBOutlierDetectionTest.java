@@ -0,0 +1,62 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the cell-based DBOutlierDetection algorithm.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class GridDBOutlierDetectionTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testGridDBOutlierDetection() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-fire.ascii", 1025);
+    OutlierResult result = new ELKIBuilder<GridDBOutlierDetection<DoubleVector>>(GridDBOutlierDetection.class) //
+        .with(DBOutlierDetection.Parameterizer.D_ID, 0.175) //
+        .with(DBOutlierDetection.Parameterizer.P_ID, 0.98) //
+        .build().run(db);
+    testSingleScore(result, 1025, 0.0);
+    testAUC(db, "Noise", result, 0.97487179);
+
+    // Must agree with the range query based version:
+    OutlierResult expected = new ELKIBuilder<DBOutlierDetection<DoubleVector>>(DBOutlierDetection.class) //
+        .with(DBOutlierDetection.Parameterizer.D_ID, 0.175) //
+        .with(DBOutlierDetection.Parameterizer.P_ID, 0.98) //
+        .build().run(db);
+    DoubleRelation es = expected.getScores(), rs = result.getScores();
+    for(DBIDIter it = es.iterDBIDs(); it.valid(); it.advance()) {
+      assertEquals("Score does not match.", es.doubleValue(it), rs.doubleValue(it), 0.);
+    }
+  }
+}
@@ -20,6 +20,11 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.outlier.distance.parallel;
 
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
 import org.junit.Test;
 
 import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
@@ -27,6 +32,7 @@ import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNOutlier;
 import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierScores;
 import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
 
 /**
@@ -44,4 +50,20 @@ public class ParallelKNNOutlierTest extends AbstractOutlierAlgorithmTest {
     testSingleScore(result, 945, 0.4793554700168577);
     testAUC(db, "Noise", result, 0.991462962962963);
   }
+
+  @Test
+  public void testTopN() throws IOException {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult full = new ELKIBuilder<ParallelKNNOutlier<DoubleVector>>(ParallelKNNOutlier.class) //
+        .with(KNNOutlier.Parameterizer.K_ID, 1).build().run(db);
+    File file = File.createTempFile("knnoutlier", ".scores");
+    file.deleteOnExit();
+    OutlierResult result = new ELKIBuilder<ParallelKNNOutlier<DoubleVector>>(ParallelKNNOutlier.class) //
+        .with(KNNOutlier.Parameterizer.K_ID, 1) //
+        .with(TopNOutlierScores.TOPN_ID, 20) //
+        .with(TopNOutlierScores.SCOREFILE_ID, file) //
+        .build().run(db);
+    testTopN(db, full, result, 20);
+    assertEquals("Size of the score file.", 4 + 960 * 12, file.length());
+  }
 }
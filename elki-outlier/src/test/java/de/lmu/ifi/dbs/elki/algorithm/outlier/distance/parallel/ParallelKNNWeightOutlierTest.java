@@ -27,6 +27,7 @@ import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNWeightOutlier;
 import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierScores;
 import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
 
 /**
@@ -44,4 +45,15 @@ public class ParallelKNNWeightOutlierTest extends AbstractOutlierAlgorithmTest {
     testSingleScore(result, 945, 2.384117261027324);
     testAUC(db, "Noise", result, 0.9912777777777778);
   }
+
+  @Test
+  public void testTopN() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult full = new ELKIBuilder<ParallelKNNWeightOutlier<DoubleVector>>(ParallelKNNWeightOutlier.class) //
+        .with(KNNWeightOutlier.Parameterizer.K_ID, 4).build().run(db);
+    OutlierResult result = new ELKIBuilder<ParallelKNNWeightOutlier<DoubleVector>>(ParallelKNNWeightOutlier.class) //
+        .with(KNNWeightOutlier.Parameterizer.K_ID, 4) //
+        .with(TopNOutlierScores.TOPN_ID, 20).build().run(db);
+    testTopN(db, full, result, 20);
+  }
 }
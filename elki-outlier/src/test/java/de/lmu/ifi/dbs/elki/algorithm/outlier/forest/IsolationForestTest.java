@@ -0,0 +1,184 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.forest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
+import de.lmu.ifi.dbs.elki.application.IsolationForestScoringApplication;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.ArrayAdapterDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.parser.NumberVectorLabelParser;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierScores;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the isolation forest algorithm.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class IsolationForestTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testIsolationForest() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-fire.ascii", 1025);
+    OutlierResult result = new ELKIBuilder<IsolationForest<DoubleVector>>(IsolationForest.class) //
+        .with(IsolationForest.Parameterizer.SEED_ID, 0) //
+        .build().run(db);
+    testSingleScore(result, 1025, 0.45233776859154645);
+    testAUC(db, "Noise", result, 0.9952205128205127);
+  }
+
+  @Test
+  public void testExtendedIsolationForest() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-fire.ascii", 1025);
+    OutlierResult result = new ELKIBuilder<IsolationForest<DoubleVector>>(IsolationForest.class) //
+        .with(IsolationForest.Parameterizer.EXTENSION_ID, 1) //
+        .with(IsolationForest.Parameterizer.SEED_ID, 0) //
+        .build().run(db);
+    testSingleScore(result, 1025, 0.4408464644099269);
+    testAUC(db, "Noise", result, 0.9950564102564102);
+  }
+
+  @Test
+  public void testSingleObject() {
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(new double[][] { { 1., 2. } }), null);
+    db.initialize();
+    OutlierResult result = new ELKIBuilder<IsolationForest<DoubleVector>>(IsolationForest.class) //
+        .with(IsolationForest.Parameterizer.SEED_ID, 0) //
+        .build().run(db);
+    testSingleScore(result, 1, 1.);
+  }
+
+  @Test
+  public void testModelFile() throws IOException {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-fire.ascii", 1025);
+    File file = File.createTempFile("iforest", ".bin");
+    file.deleteOnExit();
+    OutlierResult result = new ELKIBuilder<IsolationForest<DoubleVector>>(IsolationForest.class) //
+        .with(IsolationForest.Parameterizer.EXTENSION_ID, 1) //
+        .with(IsolationForest.Parameterizer.SEED_ID, 0) //
+        .with(IsolationForest.Parameterizer.MODEL_ID, file) //
+        .build().run(db);
+    IsolationForestModel model = IsolationForestModel.load(file);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      assertEquals("Score differs after loading the model.", result.getScores().doubleValue(it), model.score(rel.get(it)), 0.);
+    }
+  }
+
+  @Test
+  public void testTopN() throws IOException {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-fire.ascii", 1025);
+    OutlierResult full = new ELKIBuilder<IsolationForest<DoubleVector>>(IsolationForest.class) //
+        .with(IsolationForest.Parameterizer.SEED_ID, 0) //
+        .build().run(db);
+    File file = File.createTempFile("iforest", ".scores");
+    file.deleteOnExit();
+    TopNOutlierResult result = (TopNOutlierResult) new ELKIBuilder<IsolationForest<DoubleVector>>(IsolationForest.class) //
+        .with(IsolationForest.Parameterizer.SEED_ID, 0) //
+        .with(TopNOutlierScores.TOPN_ID, 10) //
+        .with(TopNOutlierScores.SCOREFILE_ID, file) //
+        .build().run(db);
+    assertEquals("Number of scored objects.", 1025, result.getCount());
+    assertEquals("Size of the score file.", 4 + 1025 * 12, file.length());
+    assertEquals("Minimum score.", full.getOutlierMeta().getActualMinimum(), result.getOutlierMeta().getActualMinimum(), 0.);
+    assertEquals("Maximum score.", full.getOutlierMeta().getActualMaximum(), result.getOutlierMeta().getActualMaximum(), 0.);
+    DBIDIter it = full.getOrdering().order(full.getScores().getDBIDs()).iter();
+    DBIDIter it2 = result.getOrdering().order(result.getScores().getDBIDs()).iter();
+    for(int i = 0; i < 10; i++, it.advance(), it2.advance()) {
+      assertEquals("Top n score differs.", full.getScores().doubleValue(it), result.getScores().doubleValue(it2), 0.);
+      assertEquals("Top n score differs.", full.getScores().doubleValue(it2), result.getScores().doubleValue(it2), 0.);
+    }
+    assertEquals("Too many top n scores.", false, it2.valid());
+    assertEquals("Top n contains duplicates.", 10, DBIDUtil.ensureSet(result.getScores().getDBIDs()).size());
+  }
+
+  @Test
+  public void testScoringApplicationTopN() throws IOException {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-fire.ascii", 1025);
+    File modelfile = File.createTempFile("iforest", ".bin");
+    modelfile.deleteOnExit();
+    OutlierResult full = new ELKIBuilder<IsolationForest<DoubleVector>>(IsolationForest.class) //
+        .with(IsolationForest.Parameterizer.SEED_ID, 0) //
+        .with(IsolationForest.Parameterizer.MODEL_ID, modelfile) //
+        .build().run(db);
+    // Write the vectors in database order, so object numbers are offsets.
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    File infile = File.createTempFile("iforest", ".csv"), outfile = File.createTempFile("iforest", ".txt");
+    infile.deleteOnExit();
+    outfile.deleteOnExit();
+    try (BufferedWriter out = new BufferedWriter(new FileWriter(infile))) {
+      for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+        NumberVector v = rel.get(it);
+        for(int d = 0; d < v.getDimensionality(); d++) {
+          out.write((d > 0 ? " " : "") + v.doubleValue(d));
+        }
+        out.newLine();
+      }
+    }
+    new IsolationForestScoringApplication(modelfile, infile, new NumberVectorLabelParser<>(DoubleVector.FACTORY), outfile, 10, null).run();
+    DBIDIter it = full.getOrdering().order(full.getScores().getDBIDs()).iter();
+    DBIDArrayIter pos = ((ArrayDBIDs) rel.getDBIDs()).iter();
+    int tops = 0, total = 0;
+    try (BufferedReader in = new BufferedReader(new FileReader(outfile))) {
+      assertEquals("# Top 10 of 1025 objects: object number, score", in.readLine());
+      for(String line; (line = in.readLine()) != null;) {
+        if(line.startsWith("#")) {
+          assertEquals("Wrong number of top n lines.", 10, tops);
+          continue;
+        }
+        String[] cols = line.split(" ");
+        if(tops < 10) {
+          assertEquals("Top n score differs.", full.getScores().doubleValue(it), Double.parseDouble(cols[1]), 0.);
+          assertEquals("Top n score differs.", full.getScores().doubleValue(pos.seek(Integer.parseInt(cols[0]))), Double.parseDouble(cols[1]), 0.);
+          ++tops;
+          it.advance();
+        }
+        else {
+          total += (int) Double.parseDouble(cols[1]);
+        }
+      }
+    }
+    assertEquals("Wrong number of top n lines.", 10, tops);
+    assertEquals("Histogram does not count all objects.", 1025, total);
+  }
+}
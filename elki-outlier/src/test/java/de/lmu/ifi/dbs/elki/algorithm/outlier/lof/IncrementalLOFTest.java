@@ -0,0 +1,146 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.VectorUtil;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.HashmapDatabase;
+import de.lmu.ifi.dbs.elki.database.UpdatableDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.datasource.FileBasedDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the incremental LOF and LoOP algorithm, by comparing to the static
+ * algorithms after insertions and deletions.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class IncrementalLOFTest {
+  /**
+   * Data set to use.
+   */
+  static String dataset = "elki/testdata/unittests/3clusters-and-noise-2d.csv";
+
+  /**
+   * Neighborhood size.
+   */
+  static int k = 5;
+
+  @Test
+  public void testIncrementalLOF() {
+    UpdatableDatabase db = getDatabase();
+    OutlierResult scores = new IncrementalLOF<DoubleVector>(k, EuclideanDistanceFunction.STATIC, IncrementalLOF.Score.LOF, 2.).run(db);
+    LOF<DoubleVector> lof = new LOF<>(k, EuclideanDistanceFunction.STATIC);
+    runUpdates(db, scores, lof);
+  }
+
+  @Test
+  public void testIncrementalLoOP() {
+    UpdatableDatabase db = getDatabase();
+    OutlierResult scores = new IncrementalLOF<DoubleVector>(k, EuclideanDistanceFunction.STATIC, IncrementalLOF.Score.LOOP, 2.).run(db);
+    LoOP<DoubleVector> loop = new LoOP<>(k, k, EuclideanDistanceFunction.STATIC, EuclideanDistanceFunction.STATIC, 2.);
+    runUpdates(db, scores, loop);
+  }
+
+  /**
+   * Insert and delete random objects, and compare to the static algorithm.
+   *
+   * @param db Database
+   * @param scores Incrementally maintained result
+   * @param ref Reference algorithm
+   */
+  private static void runUpdates(UpdatableDatabase db, OutlierResult scores, OutlierAlgorithm ref) {
+    assertSameScores(ref.run(db), scores);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    NumberVector.Factory<DoubleVector> factory = RelationUtil.getNumberVectorFactory(rel);
+    int dim = RelationUtil.dimensionality(rel);
+    Random random = new Random(5);
+    ArrayList<DoubleVector> insertions = new ArrayList<>();
+    for(int i = 0; i < 50; i++) {
+      insertions.add(VectorUtil.randomVector(factory, dim, random));
+    }
+    // Two batches of insertions:
+    DBIDs ins1 = db.insert(MultipleObjectsBundle.makeSimple(rel.getDataTypeInformation(), insertions.subList(0, 30)));
+    assertSameScores(ref.run(db), scores);
+    DBIDs ins2 = db.insert(MultipleObjectsBundle.makeSimple(rel.getDataTypeInformation(), insertions.subList(30, 50)));
+    assertSameScores(ref.run(db), scores);
+    // Delete objects of both batches, and some original objects.
+    ArrayList<DBIDs> dels = new ArrayList<>();
+    dels.add(ins1);
+    dels.add(DBIDUtil.randomSample(DBIDUtil.difference(rel.getDBIDs(), DBIDUtil.union(ins1, ins2)), 20, random));
+    dels.add(ins2);
+    for(DBIDs del : dels) {
+      db.delete(del);
+      assertSameScores(ref.run(db), scores);
+    }
+  }
+
+  /**
+   * Compare two outlier results, including the score range.
+   *
+   * @param eresult Expected result
+   * @param aresult Actual result
+   */
+  private static void assertSameScores(OutlierResult eresult, OutlierResult aresult) {
+    DoubleRelation expected = eresult.getScores(), actual = aresult.getScores();
+    assertEquals("Number of scores differs.", expected.size(), actual.size());
+    for(DBIDIter it = expected.iterDBIDs(); it.valid(); it.advance()) {
+      assertEquals("Score differs for " + DBIDUtil.toString(it), expected.doubleValue(it), actual.doubleValue(it), 1e-10);
+    }
+    OutlierScoreMeta emeta = eresult.getOutlierMeta(), ameta = aresult.getOutlierMeta();
+    assertEquals("Minimum differs.", emeta.getActualMinimum(), ameta.getActualMinimum(), 1e-10);
+    assertEquals("Maximum differs.", emeta.getActualMaximum(), ameta.getActualMaximum(), 1e-10);
+  }
+
+  /**
+   * Returns the database.
+   *
+   * @return Database
+   */
+  private static UpdatableDatabase getDatabase() {
+    UpdatableDatabase db = new ELKIBuilder<>(HashmapDatabase.class) //
+        .with(FileBasedDatabaseConnection.Parameterizer.INPUT_ID, dataset) //
+        .build();
+    db.initialize();
+    return db;
+  }
+}
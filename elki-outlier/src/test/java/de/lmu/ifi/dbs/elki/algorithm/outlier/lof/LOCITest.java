@@ -20,11 +20,14 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.outlier.lof;
 
+import static org.junit.Assert.assertEquals;
+
 import org.junit.Test;
 
 import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
 import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
 
@@ -43,4 +46,35 @@ public class LOCITest extends AbstractOutlierAlgorithmTest {
     testAUC(db, "Noise", result, 0.982444);
     testSingleScore(result, 146, 3.8054382);
   }
+
+  @Test
+  public void testLOCIQuantized() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    OutlierResult exact = new ELKIBuilder<LOCI<DoubleVector>>(LOCI.class) //
+        .with(LOCI.Parameterizer.RMAX_ID, 0.5).build().run(db);
+    OutlierResult result = new ELKIBuilder<LOCI<DoubleVector>>(LOCI.class) //
+        .with(LOCI.Parameterizer.RMAX_ID, 0.5) //
+        .with(LOCI.Parameterizer.RADII_ID, 50).build().run(db);
+    testAUC(db, "Noise", result, 0.985444);
+    testSingleScore(result, 1, 5.0317542);
+    testSingleScore(result, 146, 3.8471727);
+    // The quantized radii approximate the exact scores of strong outliers:
+    for(int id : new int[] { 1, 65, 146 }) {
+      assertEquals("Quantized score too far from exact LOCI.", score(exact, id), score(result, id), 0.15);
+    }
+    // Objects with fewer than nmin neighbors are scored like the exact variant.
+    assertEquals(Double.POSITIVE_INFINITY, score(exact, 9), 0.);
+    assertEquals(Double.POSITIVE_INFINITY, score(result, 9), 0.);
+  }
+
+  /**
+   * Get the score of a single object.
+   *
+   * @param result Outlier result
+   * @param id Object number, 1-indexed
+   * @return Score
+   */
+  private static double score(OutlierResult result, int id) {
+    return result.getScores().doubleValue(((ArrayDBIDs) result.getScores().getDBIDs()).iter().seek(id - 1));
+  }
 }
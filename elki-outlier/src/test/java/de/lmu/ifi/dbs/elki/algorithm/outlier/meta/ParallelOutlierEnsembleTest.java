@@ -0,0 +1,103 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.meta;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNOutlier;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LoOP;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+import de.lmu.ifi.dbs.elki.utilities.ensemble.EnsembleVotingMean;
+
+/**
+ * Tests the parallel outlier ensemble against the sequential one.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class ParallelOutlierEnsembleTest extends AbstractOutlierAlgorithmTest {
+  /**
+   * Inner algorithms.
+   */
+  private static final String ALGORITHMS = KNNOutlier.class.getName() + "," + LOF.class.getName() + "," + LoOP.class.getName();
+
+  @Test
+  public void testParallelOutlierEnsemble() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<>(ParallelOutlierEnsemble.class) //
+        .with(AbstractAlgorithm.ALGORITHM_ID, ALGORITHMS) //
+        .with(KNNOutlier.Parameterizer.K_ID, 5) //
+        .with(LOF.Parameterizer.K_ID, 10) //
+        .with(LoOP.Parameterizer.KCOMP_ID, 15) //
+        .with(SimpleOutlierEnsemble.Parameterizer.VOTING_ID, EnsembleVotingMean.class) //
+        .build().run(db);
+    assertSameScores(db, result);
+  }
+
+  @Test
+  public void testMemoryEstimates() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    // At most two of the inner algorithms fit into the budget at once.
+    OutlierResult result = new ELKIBuilder<>(ParallelOutlierEnsemble.class) //
+        .with(AbstractAlgorithm.ALGORITHM_ID, ALGORITHMS) //
+        .with(KNNOutlier.Parameterizer.K_ID, 5) //
+        .with(LOF.Parameterizer.K_ID, 10) //
+        .with(LoOP.Parameterizer.KCOMP_ID, 15) //
+        .with(SimpleOutlierEnsemble.Parameterizer.VOTING_ID, EnsembleVotingMean.class) //
+        .with(ParallelEnsembleRunner.MEMORY_ID, 3) //
+        .with(ParallelOutlierEnsemble.Parameterizer.MEMBER_MEMORY_ID, "1,2,1") //
+        .build().run(db);
+    assertSameScores(db, result);
+  }
+
+  /**
+   * Compare to the sequential ensemble.
+   *
+   * @param db Database
+   * @param result Result of the parallel ensemble
+   */
+  private void assertSameScores(Database db, OutlierResult result) {
+    OutlierResult expected = new ELKIBuilder<>(SimpleOutlierEnsemble.class) //
+        .with(AbstractAlgorithm.ALGORITHM_ID, ALGORITHMS) //
+        .with(KNNOutlier.Parameterizer.K_ID, 5) //
+        .with(LOF.Parameterizer.K_ID, 10) //
+        .with(LoOP.Parameterizer.KCOMP_ID, 15) //
+        .with(SimpleOutlierEnsemble.Parameterizer.VOTING_ID, EnsembleVotingMean.class) //
+        .build().run(db);
+    DoubleRelation escores = expected.getScores(), scores = result.getScores();
+    assertEquals("Number of scores", escores.size(), scores.size());
+    for(DBIDIter iter = escores.iterDBIDs(); iter.valid(); iter.advance()) {
+      assertEquals("Score differs", escores.doubleValue(iter), scores.doubleValue(iter), 1e-15);
+    }
+    assertEquals("Minimum differs", expected.getOutlierMeta().getActualMinimum(), result.getOutlierMeta().getActualMinimum(), 1e-15);
+    assertEquals("Maximum differs", expected.getOutlierMeta().getActualMaximum(), result.getOutlierMeta().getActualMaximum(), 1e-15);
+    testAUC(db, "Noise", result, 0.9878888);
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNOutlier;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNWeightOutlier;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.ODIN;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.COF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.INFLO;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.KDEOS;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LDF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LoOP;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.SimplifiedLOF;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.result.HierarchicalResult;
+import de.lmu.ifi.dbs.elki.result.Result;
+import de.lmu.ifi.dbs.elki.result.ResultUtil;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.TopNOutlierScores;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Test the parallel kNN outlier engine against the serial implementations.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class ParallelKNNOutlierEngineTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testAllScores() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-fire.ascii", 1025);
+    Result result = new ELKIBuilder<ParallelKNNOutlierEngine<DoubleVector>>(ParallelKNNOutlierEngine.class) //
+        .with(LOF.Parameterizer.K_ID, 10) //
+        .with(ParallelKNNOutlierEngine.Parameterizer.SCORES_ID, "LOFScore,SimplifiedLOFScore,LoOPScore,INFLOScore,LDFScore,KDEOSScore,COFScore,KNNDistanceScore,KNNWeightScore,ODINScore") //
+        .with(LDF.Parameterizer.H_ID, 1.) //
+        .with(KDEOS.Parameterizer.KMIN_ID, 5) //
+        .build().run(db);
+    List<OutlierResult> outliers = ResultUtil.filterResults(((HierarchicalResult) result).getHierarchy(), result, OutlierResult.class);
+    assertEquals("Number of results", 10, outliers.size());
+
+    compare(db, outliers.get(0), new ELKIBuilder<LOF<DoubleVector>>(LOF.class) //
+        .with(LOF.Parameterizer.K_ID, 10).build());
+    compare(db, outliers.get(1), new ELKIBuilder<SimplifiedLOF<DoubleVector>>(SimplifiedLOF.class) //
+        .with(LOF.Parameterizer.K_ID, 10).build());
+    compare(db, outliers.get(2), new ELKIBuilder<LoOP<DoubleVector>>(LoOP.class) //
+        .with(LoOP.Parameterizer.KCOMP_ID, 10).build());
+    compare(db, outliers.get(3), new ELKIBuilder<INFLO<DoubleVector>>(INFLO.class) //
+        .with(INFLO.Parameterizer.K_ID, 10).build());
+    compare(db, outliers.get(4), new ELKIBuilder<LDF<DoubleVector>>(LDF.class) //
+        .with(LDF.Parameterizer.K_ID, 10).with(LDF.Parameterizer.H_ID, 1.).build());
+    compare(db, outliers.get(5), new ELKIBuilder<KDEOS<DoubleVector>>(KDEOS.class) //
+        .with(KDEOS.Parameterizer.KMIN_ID, 5).with(KDEOS.Parameterizer.KMAX_ID, 10).build());
+    compare(db, outliers.get(6), new ELKIBuilder<COF<DoubleVector>>(COF.class) //
+        .with(COF.Parameterizer.K_ID, 10).build());
+    compare(db, outliers.get(7), new ELKIBuilder<KNNOutlier<DoubleVector>>(KNNOutlier.class) //
+        .with(KNNOutlier.Parameterizer.K_ID, 10).build());
+    compare(db, outliers.get(8), new ELKIBuilder<KNNWeightOutlier<DoubleVector>>(KNNWeightOutlier.class) //
+        .with(KNNWeightOutlier.Parameterizer.K_ID, 10).build());
+    compare(db, outliers.get(9), new ELKIBuilder<ODIN<DoubleVector>>(ODIN.class) //
+        .with(ODIN.Parameterizer.K_ID, 10).build());
+  }
+
+  @Test
+  public void testTopN() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-fire.ascii", 1025);
+    Result result = new ELKIBuilder<ParallelKNNOutlierEngine<DoubleVector>>(ParallelKNNOutlierEngine.class) //
+        .with(LOF.Parameterizer.K_ID, 10) //
+        .with(ParallelKNNOutlierEngine.Parameterizer.SCORES_ID, "LOFScore,KNNDistanceScore") //
+        .with(TopNOutlierScores.TOPN_ID, 15) //
+        .build().run(db);
+    List<OutlierResult> outliers = ResultUtil.filterResults(((HierarchicalResult) result).getHierarchy(), result, OutlierResult.class);
+    assertEquals("Number of results", 2, outliers.size());
+    testTopN(db, new ELKIBuilder<LOF<DoubleVector>>(LOF.class) //
+        .with(LOF.Parameterizer.K_ID, 10).build().run(db), outliers.get(0), 15);
+    testTopN(db, new ELKIBuilder<KNNOutlier<DoubleVector>>(KNNOutlier.class) //
+        .with(KNNOutlier.Parameterizer.K_ID, 10).build().run(db), outliers.get(1), 15);
+  }
+
+  /**
+   * Compare the scores to a serial implementation.
+   *
+   * @param db Database
+   * @param result Result of the engine
+   * @param alg Serial algorithm
+   */
+  private static void compare(Database db, OutlierResult result, OutlierAlgorithm alg) {
+    DoubleRelation expected = alg.run(db).getScores(), actual = result.getScores();
+    for(DBIDIter it = expected.iterDBIDs(); it.valid(); it.advance()) {
+      final double e = expected.doubleValue(it);
+      assertEquals(alg.getClass().getSimpleName() + " score does not match.", e, actual.doubleValue(it), 1e-12 * Math.max(1., Math.abs(e)));
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial;
+
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.NeighborSetPredicate;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.PrecomputedKNearestNeighborNeighborhood;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.AbstractDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.filter.FixedDBIDsFilter;
+import de.lmu.ifi.dbs.elki.datasource.filter.typeconversions.SplitNumberVectorFilter;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Abstract base class for spatial outlier tests.
+ *
+ * The first two dimensions of the test data are used as spatial coordinates,
+ * the third dimension as non-spatial attribute.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public abstract class AbstractSpatialOutlierTest extends AbstractOutlierAlgorithmTest {
+  /**
+   * Load the spatial test data set.
+   *
+   * @return Database
+   */
+  protected static Database makeSpatialDatabase() {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(AbstractDatabaseConnection.Parameterizer.FILTERS_ID, //
+        Arrays.asList(new FixedDBIDsFilter(1), new SplitNumberVectorFilter<DoubleVector>(new int[] { 0, 1 })));
+    return makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960, params);
+  }
+
+  /**
+   * Get the spatial coordinates.
+   *
+   * @param db Database
+   * @return Spatial relation
+   */
+  protected static Relation<DoubleVector> getSpatial(Database db) {
+    return db.getRelation(VectorFieldTypeInformation.typeRequest(DoubleVector.class, 2, 2));
+  }
+
+  /**
+   * Get the non-spatial attribute.
+   *
+   * @param db Database
+   * @return Attribute relation
+   */
+  protected static Relation<NumberVector> getAttribute(Database db) {
+    return db.getRelation(VectorFieldTypeInformation.typeRequest(NumberVector.class, 1, 1));
+  }
+
+  /**
+   * Make a kNN neighborhood on the spatial coordinates.
+   *
+   * @param k Number of neighbors
+   * @return Neighborhood factory
+   */
+  protected static NeighborSetPredicate.Factory<DoubleVector> makeKNNNeighborhood(int k) {
+    return new ELKIBuilder<PrecomputedKNearestNeighborNeighborhood.Factory<DoubleVector>>(PrecomputedKNearestNeighborNeighborhood.Factory.class) //
+        .with(PrecomputedKNearestNeighborNeighborhood.Factory.Parameterizer.K_ID, k) //
+        .with(PrecomputedKNearestNeighborNeighborhood.Factory.Parameterizer.DISTANCEFUNCTION_ID, EuclideanDistanceFunction.class) //
+        .build();
+  }
+}
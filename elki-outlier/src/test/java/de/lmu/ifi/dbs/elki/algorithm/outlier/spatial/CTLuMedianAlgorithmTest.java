@@ -0,0 +1,46 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+
+/**
+ * Tests the CTLu median algorithm.
+ *
+ * The expected values were computed with the serial implementation.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class CTLuMedianAlgorithmTest extends AbstractSpatialOutlierTest {
+  @Test
+  public void testCTLuMedianAlgorithm() {
+    Database db = makeSpatialDatabase();
+    OutlierResult result = new CTLuMedianAlgorithm<DoubleVector>(makeKNNNeighborhood(10)).run(db, getSpatial(db), getAttribute(db));
+    testAUC(db, "Noise", result, 0.8575556);
+    testSingleScore(result, 1, 0.0343481);
+    testSingleScore(result, 950, 1.0156984);
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+
+/**
+ * Tests the SLOM algorithm.
+ *
+ * The expected values were computed with the serial implementation.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class SLOMTest extends AbstractSpatialOutlierTest {
+  @Test
+  public void testSLOM() {
+    Database db = makeSpatialDatabase();
+    OutlierResult result = new SLOM<DoubleVector, NumberVector>(makeKNNNeighborhood(10), EuclideanDistanceFunction.STATIC).run(db, getSpatial(db), getAttribute(db));
+    testAUC(db, "Noise", result, 0.7576296);
+    testSingleScore(result, 1, 0.0439058);
+    testSingleScore(result, 950, 0.1447859);
+  }
+}
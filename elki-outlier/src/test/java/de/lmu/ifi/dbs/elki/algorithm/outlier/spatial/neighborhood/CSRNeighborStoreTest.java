@@ -0,0 +1,91 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2017
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+
+/**
+ * Test the CSR neighbor store.
+ *
+ * @author Erich Schubert
+ * @since 0.7.2
+ */
+public class CSRNeighborStoreTest {
+  @Test
+  public void testNeighbors() {
+    final DBIDRange ids = DBIDUtil.generateStaticDBIDRange(1000);
+    CSRNeighborStore.Neighbors function = new CSRNeighborStore.Neighbors() {
+      @Override
+      public DBIDs getNeighbors(DBIDRef id) {
+        return neighbors(ids, ids.getOffset(id));
+      }
+    };
+    CSRNeighborStore store = CSRNeighborStore.build(ids, function);
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+      final int i = ids.getOffset(it);
+      DBIDs expected = neighbors(ids, i), actual = store.get(it);
+      if(expected == null) {
+        assertNull("Missing neighbor set not preserved: " + i, actual);
+        continue;
+      }
+      assertEquals("Neighbor set size differs: " + i, expected.size(), actual.size());
+      DBIDIter e = expected.iter(), a = actual.iter();
+      for(; e.valid(); e.advance(), a.advance()) {
+        assertTrue("Neighbors differ: " + i, a.valid() && DBIDUtil.equal(e, a));
+      }
+    }
+  }
+
+  /**
+   * Synthetic neighbor sets of varying size. Every 7th object has no neighbor
+   * set, every 5th has an empty one.
+   *
+   * @param ids Object IDs
+   * @param i Object offset
+   * @return Neighbors, or {@code null}
+   */
+  private static DBIDs neighbors(DBIDRange ids, int i) {
+    if(i % 7 == 3) {
+      return null;
+    }
+    ArrayModifiableDBIDs n = DBIDUtil.newArray();
+    if(i % 5 == 0) {
+      return n;
+    }
+    DBIDArrayIter it = ids.iter();
+    for(int j = 0; j < i % 11 + 1; j++) {
+      n.add(it.seek((i * 31 + j * 17) % ids.size()));
+    }
+    return n;
+  }
+}